@@ -0,0 +1,147 @@
+package edu.soumya.logstash.filter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates the documents, configuration files and main properties file used
+ * by the benchmarks.<br>
+ * Documents have a station id, a name, a number of trains and
+ * <code>platformCount</code> platforms, so that their size can be varied. The
+ * configuration files map the name, the number of trains and the first and last
+ * platforms.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public final class BenchmarkDocuments {
+
+	/**
+	 * Identifier xpath written to the main properties file
+	 */
+	public static final String XML_IDENTIFIER_PATH = "/stations/station/id";
+
+	/**
+	 * Identifier jsonpath written to the main properties file
+	 */
+	public static final String JSON_IDENTIFIER_PATH = "$.stations[0].station.id";
+
+	private BenchmarkDocuments() {
+	}
+
+	/**
+	 * @param index
+	 * @return id of the station at <code>index</code>
+	 */
+	public static String stationId(int index) {
+		return "st" + index;
+	}
+
+	/**
+	 * @param stationId
+	 * @param platformCount
+	 * @return xml document of the station
+	 */
+	public static String xmlDocument(String stationId, int platformCount) {
+		StringBuilder xml = new StringBuilder(128 + platformCount * 96);
+		xml.append("<stations><station><id>").append(stationId).append("</id>");
+		xml.append("<name>Station ").append(stationId).append("</name>");
+		xml.append("<trainsToday>").append(platformCount * 7).append("</trainsToday><platforms>");
+		for (int platform = 1; platform <= platformCount; platform++) {
+			xml.append("<platform number=\"").append(platform).append("\"><trains>").append(platform * 3)
+					.append("</trains><length>").append(300 + platform).append("</length></platform>");
+		}
+		xml.append("</platforms></station></stations>");
+		return xml.toString();
+	}
+
+	/**
+	 * @param stationId
+	 * @param platformCount
+	 * @return json document of the station
+	 */
+	public static String jsonDocument(String stationId, int platformCount) {
+		StringBuilder json = new StringBuilder(128 + platformCount * 64);
+		json.append("{\"stations\":[{\"station\":{\"id\":\"").append(stationId).append("\",");
+		json.append("\"name\":\"Station ").append(stationId).append("\",");
+		json.append("\"trainsToday\":").append(platformCount * 7).append(",\"platforms\":[");
+		for (int platform = 1; platform <= platformCount; platform++) {
+			if (platform > 1) {
+				json.append(',');
+			}
+			json.append("{\"number\":").append(platform).append(",\"trains\":").append(platform * 3)
+					.append(",\"length\":").append(300 + platform).append('}');
+		}
+		json.append("]}}]}");
+		return json.toString();
+	}
+
+	/**
+	 * @param platformCount
+	 * @return content of the configuration file for xml documents
+	 */
+	public static String xmlConfig(int platformCount) {
+		return "/stations/station/name => name\n" + "/stations/station/trainsToday => trainsToday\n"
+				+ "/stations/station/platforms/platform[1]/trains => firstPlatformTrains\n"
+				+ "/stations/station/platforms/platform[" + platformCount + "]/@number => lastPlatform\n";
+	}
+
+	/**
+	 * @param platformCount
+	 * @return content of the configuration file for json documents
+	 */
+	public static String jsonConfig(int platformCount) {
+		return "$.stations[0].station.name => name\n" + "$.stations[0].station.trainsToday => trainsToday\n"
+				+ "$.stations[0].station.platforms[0].trains => firstPlatformTrains\n"
+				+ "$.stations[0].station.platforms[" + (platformCount - 1) + "].number => lastPlatform\n";
+	}
+
+	/**
+	 * Writes the main properties file and configuration files for
+	 * <code>stationCount</code> stations under <code>folder</code>. Only stations
+	 * with an even index get a configuration file, documents of the others are
+	 * dropped by the filter.
+	 * 
+	 * @param folder
+	 * @param stationCount
+	 * @param platformCount
+	 * @return path of the main properties file
+	 * @throws IOException
+	 */
+	public static Path writeConfigurations(Path folder, int stationCount, int platformCount) throws IOException {
+		Path xmlFolder = Files.createDirectories(folder.resolve("xml"));
+		Path jsonFolder = Files.createDirectories(folder.resolve("json"));
+		for (int index = 0; index < stationCount; index += 2) {
+			write(xmlFolder.resolve(stationId(index) + ".conf"), xmlConfig(platformCount));
+			write(jsonFolder.resolve(stationId(index) + ".conf"), jsonConfig(platformCount));
+		}
+		Path mainProperties = folder.resolve("mainProp.properties");
+		write(mainProperties, "identifier.attribute.path.xml=" + XML_IDENTIFIER_PATH + "\n"
+				+ "identifier.attribute.path.json=" + JSON_IDENTIFIER_PATH + "\n" + "config.location.xml="
+				+ xmlFolder.toString().replace('\\', '/') + "\n" + "config.location.json="
+				+ jsonFolder.toString().replace('\\', '/') + "\n");
+		return mainProperties;
+	}
+
+	/**
+	 * Deletes the <code>folder</code> with everything in it
+	 * 
+	 * @param folder
+	 * @throws IOException
+	 */
+	public static void delete(Path folder) throws IOException {
+		if (folder == null || !Files.exists(folder)) {
+			return;
+		}
+		Files.walk(folder).sorted((first, second) -> second.compareTo(first)).forEach(path -> path.toFile().delete());
+	}
+
+	private static void write(Path path, String content) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			writer.write(content);
+		}
+	}
+}
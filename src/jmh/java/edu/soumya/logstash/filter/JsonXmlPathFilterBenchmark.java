@@ -0,0 +1,149 @@
+package edu.soumya.logstash.filter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.logstash.plugins.ConfigurationImpl;
+import org.logstash.plugins.ContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.api.Filter;
+import co.elastic.logstash.api.FilterMatchListener;
+import edu.soumya.logstash.filter.constants.Constants;
+
+/**
+ * Measures {@link JsonXmlPathFilter#filter} over a batch of the default
+ * Logstash batch size, with xml and json documents alternating.<br>
+ * Half of the station ids have a configuration file, so the batch has both
+ * mapped and dropped documents. With more station ids than
+ * <code>cacheSize</code> the configurations cache also misses.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonXmlPathFilterBenchmark {
+
+	/**
+	 * Default batch size of a Logstash pipeline
+	 */
+	private static final int BATCH_SIZE = 125;
+
+	private static final int CACHE_SIZE = 100;
+
+	/**
+	 * Number of platforms in each document, to vary the document size
+	 */
+	@Param({ "4", "256" })
+	public int platformCount;
+
+	/**
+	 * Number of distinct station ids in the documents
+	 */
+	@Param({ "1", "50", "1000" })
+	public int idCardinality;
+
+	/**
+	 * <code>default</code> for the dom and jsonpath engines, <code>streaming</code>
+	 * for the stax and streaming engines
+	 */
+	@Param({ "default", "streaming" })
+	public String engine;
+
+	private Path configFolder;
+
+	private Filter filter;
+
+	private String[] documents;
+
+	private String[] documentTypes;
+
+	private int nextDocument;
+
+	private FilterMatchListener matchListener = event -> {
+	};
+
+	/**
+	 * Events of the batch, created before every invocation as the filter modifies
+	 * them
+	 */
+	private List<Event> batch;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.configFolder = Files.createTempDirectory("json-xml-path-filter-benchmark");
+		Path mainProperties = BenchmarkDocuments.writeConfigurations(this.configFolder, this.idCardinality,
+				this.platformCount);
+		Map<String, Object> configMap = new HashMap<>();
+		configMap.put("mainProp", mainProperties.toString());
+		configMap.put("cacheSize", (long) CACHE_SIZE);
+		if ("streaming".equals(this.engine)) {
+			configMap.put("xmlEngine", Constants.XML_ENGINE_STAX);
+			configMap.put("jsonEngine", Constants.JSON_ENGINE_STREAMING);
+		}
+		this.filter = new JsonXmlPathFilter("benchmark", new ConfigurationImpl(Collections.unmodifiableMap(configMap)),
+				new ContextImpl(null, null));
+		// Enough documents to go through every station id, for both types
+		int documentCount = Math.max(BATCH_SIZE, 2 * this.idCardinality);
+		this.documents = new String[documentCount];
+		this.documentTypes = new String[documentCount];
+		for (int index = 0; index < documentCount; index++) {
+			String stationId = BenchmarkDocuments.stationId((index / 2) % this.idCardinality);
+			if (index % 2 == 0) {
+				this.documents[index] = BenchmarkDocuments.xmlDocument(stationId, this.platformCount);
+				this.documentTypes[index] = Constants.DOC_TYPE_XML;
+			} else {
+				this.documents[index] = BenchmarkDocuments.jsonDocument(stationId, this.platformCount);
+				this.documentTypes[index] = Constants.DOC_TYPE_JSON;
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void createBatch() {
+		this.batch = new ArrayList<>(BATCH_SIZE);
+		for (int count = 0; count < BATCH_SIZE; count++) {
+			Event event = new org.logstash.Event();
+			event.setField("type", this.documentTypes[this.nextDocument]);
+			event.setField("message", this.documents[this.nextDocument]);
+			this.batch.add(event);
+			this.nextDocument = (this.nextDocument + 1) % this.documents.length;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkDocuments.delete(this.configFolder);
+	}
+
+	@Benchmark
+	public Collection<Event> filterBatch() {
+		return this.filter.filter(this.batch, this.matchListener);
+	}
+}
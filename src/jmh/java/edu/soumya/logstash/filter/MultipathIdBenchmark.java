@@ -0,0 +1,173 @@
+package edu.soumya.logstash.filter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.logstash.plugins.ConfigurationImpl;
+import org.logstash.plugins.ContextImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import co.elastic.logstash.api.Event;
+import co.elastic.logstash.api.Filter;
+import co.elastic.logstash.api.FilterMatchListener;
+import edu.soumya.logstash.filter.constants.Constants;
+
+/**
+ * Measures the identification of documents from several producers with
+ * <code>multipathIdFirstMatch</code>, each producer having the document id at
+ * its own path.<br>
+ * Producers take turns, so with more than one producer most documents miss the
+ * first path tried whatever the order is. Without configuration files the
+ * documents are dropped once identified, so the time is spent finding their
+ * ids.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultipathIdBenchmark {
+
+	/**
+	 * Default batch size of a Logstash pipeline
+	 */
+	private static final int BATCH_SIZE = 125;
+
+	/**
+	 * Number of identifier paths, one per producer
+	 */
+	private static final int PATH_COUNT = 8;
+
+	/**
+	 * Number of producers the documents come from, in turn
+	 */
+	@Param({ "1", "8" })
+	public int producerCount;
+
+	/**
+	 * Number of platforms in each document, to vary the document size
+	 */
+	@Param({ "4", "256" })
+	public int platformCount;
+
+	/**
+	 * <code>default</code> for the dom and jsonpath engines, <code>streaming</code>
+	 * for the stax and streaming engines
+	 */
+	@Param({ "default", "streaming" })
+	public String engine;
+
+	private Path configFolder;
+
+	private Filter filter;
+
+	private String[] documents;
+
+	private String[] documentTypes;
+
+	private FilterMatchListener matchListener = event -> {
+	};
+
+	/**
+	 * Events of the batch, created before every invocation as the filter modifies
+	 * them
+	 */
+	private List<Event> batch;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.configFolder = Files.createTempDirectory("json-xml-path-filter-benchmark");
+		StringBuilder xmlPaths = new StringBuilder();
+		StringBuilder jsonPaths = new StringBuilder();
+		for (int producer = 0; producer < PATH_COUNT; producer++) {
+			String separator = producer == 0 ? "" : " |OR| ";
+			xmlPaths.append(separator).append("/producer").append(producer)
+					.append(BenchmarkDocuments.XML_IDENTIFIER_PATH);
+			jsonPaths.append(separator).append("$.producer").append(producer)
+					.append(BenchmarkDocuments.JSON_IDENTIFIER_PATH.substring(1));
+		}
+		Path xmlFolder = Files.createDirectories(this.configFolder.resolve("xml"));
+		Path jsonFolder = Files.createDirectories(this.configFolder.resolve("json"));
+		Path mainProperties = this.configFolder.resolve("mainProp.properties");
+		try (Writer writer = Files.newBufferedWriter(mainProperties, StandardCharsets.UTF_8)) {
+			writer.write("identifier.attribute.path.xml=" + xmlPaths + "\n" + "identifier.attribute.path.json="
+					+ jsonPaths + "\n" + "config.location.xml=" + xmlFolder.toString().replace('\\', '/') + "\n"
+					+ "config.location.json=" + jsonFolder.toString().replace('\\', '/') + "\n");
+		}
+		Map<String, Object> configMap = new HashMap<>();
+		configMap.put("mainProp", mainProperties.toString());
+		configMap.put("cacheSize", 10L);
+		configMap.put("multipathId", true);
+		configMap.put("multipathIdFirstMatch", true);
+		configMap.put("multipathIdConflictCheckPercent", 0L);
+		if ("streaming".equals(this.engine)) {
+			configMap.put("xmlEngine", Constants.XML_ENGINE_STAX);
+			configMap.put("jsonEngine", Constants.JSON_ENGINE_STREAMING);
+		}
+		this.filter = new JsonXmlPathFilter("benchmark", new ConfigurationImpl(Collections.unmodifiableMap(configMap)),
+				new ContextImpl(null, null));
+		// xml and json documents alternate, the producer changes every two documents
+		this.documents = new String[BATCH_SIZE];
+		this.documentTypes = new String[BATCH_SIZE];
+		for (int index = 0; index < BATCH_SIZE; index++) {
+			String stationId = BenchmarkDocuments.stationId(index);
+			String producer = "producer" + (index / 2) % this.producerCount;
+			if (index % 2 == 0) {
+				this.documents[index] = "<" + producer + ">"
+						+ BenchmarkDocuments.xmlDocument(stationId, this.platformCount) + "</" + producer + ">";
+				this.documentTypes[index] = Constants.DOC_TYPE_XML;
+			} else {
+				this.documents[index] = "{\"" + producer + "\":"
+						+ BenchmarkDocuments.jsonDocument(stationId, this.platformCount) + "}";
+				this.documentTypes[index] = Constants.DOC_TYPE_JSON;
+			}
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void createBatch() {
+		this.batch = new ArrayList<>(BATCH_SIZE);
+		for (int index = 0; index < BATCH_SIZE; index++) {
+			Event event = new org.logstash.Event();
+			event.setField("type", this.documentTypes[index]);
+			event.setField("message", this.documents[index]);
+			this.batch.add(event);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		BenchmarkDocuments.delete(this.configFolder);
+	}
+
+	@Benchmark
+	public Collection<Event> filterBatch() {
+		return this.filter.filter(this.batch, this.matchListener);
+	}
+}
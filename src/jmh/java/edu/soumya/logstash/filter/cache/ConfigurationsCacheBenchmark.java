@@ -0,0 +1,82 @@
+package edu.soumya.logstash.filter.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.soumya.logstash.filter.BenchmarkDocuments;
+import edu.soumya.logstash.filter.config.Configurations;
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * Measures lookups in {@link ConfigurationsCache} from several pipeline
+ * workers.<br>
+ * With <code>configCount</code> up to <code>CACHE_SIZE</code> every lookup
+ * after the warmup is a hit. With more configuration files than
+ * <code>CACHE_SIZE</code> lookups are a mix of hits and misses, the misses
+ * loading the file.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ConfigurationsCacheBenchmark {
+
+	private static final long CACHE_SIZE = 64;
+
+	@Param({ "64", "128", "1024" })
+	public int configCount;
+
+	private Path configFolder;
+
+	private String[] configFilePaths;
+
+	private ConfigurationsCache cache;
+
+	@Setup
+	public void setUp() throws IOException {
+		this.configFolder = Files.createTempDirectory("json-xml-path-filter-benchmark");
+		// Every id gets a configuration file, so no lookup is for a missing file
+		BenchmarkDocuments.writeConfigurations(this.configFolder, 2 * this.configCount, 4);
+		this.configFilePaths = new String[this.configCount];
+		for (int index = 0; index < this.configCount; index++) {
+			this.configFilePaths[index] = this.configFolder.resolve("xml")
+					.resolve(BenchmarkDocuments.stationId(2 * index) + Constants.CONFIG_FILE_EXTENSION).toString();
+		}
+		this.cache = new ConfigurationsCache(CACHE_SIZE);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkDocuments.delete(this.configFolder);
+	}
+
+	@Benchmark
+	public Configurations getConfigFromFileOrCache() throws ConfigurationException {
+		String configFilePath = this.configFilePaths[ThreadLocalRandom.current().nextInt(this.configCount)];
+		return this.cache.getConfigFromFileOrCache(configFilePath, Constants.DOC_TYPE_XML);
+	}
+}
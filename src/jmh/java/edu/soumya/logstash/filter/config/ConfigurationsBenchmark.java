@@ -0,0 +1,84 @@
+package edu.soumya.logstash.filter.config;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * Measures loading of configuration files, with and without compiling the
+ * xpaths
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigurationsBenchmark {
+
+	/**
+	 * Number of lines in the configuration file
+	 */
+	@Param({ "4", "64" })
+	public int lineCount;
+
+	private Path configFile;
+
+	private String configContent;
+
+	@Setup
+	public void setUp() throws IOException {
+		StringBuilder content = new StringBuilder();
+		for (int line = 1; line <= this.lineCount; line++) {
+			content.append("/stations/station/platforms/platform[").append(line).append("]/trains => platform")
+					.append(line).append("Trains\n");
+		}
+		this.configContent = content.toString();
+		this.configFile = Files.createTempFile("json-xml-path-filter-benchmark", Constants.CONFIG_FILE_EXTENSION);
+		Files.write(this.configFile, this.configContent.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(this.configFile);
+	}
+
+	@Benchmark
+	public Configurations load() throws ConfigurationException {
+		Configurations configs = new Configurations();
+		configs.load(new StringReader(this.configContent));
+		return configs;
+	}
+
+	@Benchmark
+	public Configurations loadConfigFromFile() throws ConfigurationException {
+		return Configurations.loadConfigFromFile(this.configFile.toString());
+	}
+
+	@Benchmark
+	public Configurations loadAndCompileConfigFromFile() throws ConfigurationException {
+		return Configurations.loadConfigFromFile(this.configFile.toString(), Constants.DOC_TYPE_XML);
+	}
+}
@@ -0,0 +1,110 @@
+package edu.soumya.logstash.filter.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.ParseContext;
+
+import edu.soumya.logstash.filter.BenchmarkDocuments;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.plan.CompiledJsonPaths;
+import edu.soumya.logstash.filter.plan.StreamingJsonPaths;
+
+/**
+ * Measures parsing of json documents and evaluation of jsonpaths on them, with
+ * every json provider
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonParseUtilBenchmark {
+
+	@Param({ "4", "256" })
+	public int platformCount;
+
+	@Param({ "smart", "jackson" })
+	public String jsonProvider;
+
+	private ParseContext parseContext;
+
+	private String jsonDocument;
+
+	private String[] jsonPathExpressions;
+
+	private DocumentContext documentContext;
+
+	private CompiledJsonPaths compiledJsonPaths;
+
+	private StreamingJsonPaths streamingJsonPaths;
+
+	@Setup
+	public void setUp() throws ConfigurationException {
+		this.jsonDocument = BenchmarkDocuments.jsonDocument("st0", this.platformCount);
+		String[] configLines = BenchmarkDocuments.jsonConfig(this.platformCount).split("\n");
+		this.jsonPathExpressions = new String[configLines.length];
+		for (int index = 0; index < configLines.length; index++) {
+			this.jsonPathExpressions[index] = configLines[index].split("=>")[0].trim();
+		}
+		this.parseContext = JsonParseUtil.getParseContext(this.jsonProvider);
+		this.documentContext = this.parseContext.parse(this.jsonDocument);
+		this.compiledJsonPaths = new CompiledJsonPaths(this.jsonPathExpressions);
+		this.streamingJsonPaths = new StreamingJsonPaths(this.jsonPathExpressions);
+	}
+
+	@Benchmark
+	public DocumentContext getDocumentContext() {
+		return this.parseContext.parse(this.jsonDocument);
+	}
+
+	@Benchmark
+	public String[] getStringFromJsonPath() throws ConfigurationException {
+		String[] values = new String[this.jsonPathExpressions.length];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = JsonParseUtil.getStringFromJsonPath(this.documentContext,
+					this.jsonPathExpressions[index]);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] getStringFromCompiledJsonPath() throws ConfigurationException {
+		String[] values = new String[this.compiledJsonPaths.size()];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = this.compiledJsonPaths.evaluate(this.documentContext, index);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] parseAndEvaluateCompiledJsonPaths() throws ConfigurationException {
+		DocumentContext parsedContext = this.parseContext.parse(this.jsonDocument);
+		String[] values = new String[this.compiledJsonPaths.size()];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = this.compiledJsonPaths.evaluate(parsedContext, index);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] evaluateStreamingJsonPaths() {
+		return this.streamingJsonPaths.evaluate(this.jsonDocument);
+	}
+}
@@ -0,0 +1,133 @@
+package edu.soumya.logstash.filter.util;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.xpath.XPath;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.BenchmarkDocuments;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.plan.CompiledXPaths;
+import edu.soumya.logstash.filter.plan.StreamingXPaths;
+import edu.soumya.logstash.filter.spi.XPathEngine;
+
+/**
+ * Measures parsing of xml documents and evaluation of xpaths on them
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlParseUtilBenchmark {
+
+	@Param({ "4", "256" })
+	public int platformCount;
+
+	@Param({ "jdk", "index" })
+	public String xpathEngine;
+
+	private String xmlDocument;
+
+	private String[] xPathExpressions;
+
+	private Document document;
+
+	private XPath xPath;
+
+	private CompiledXPaths compiledXPaths;
+
+	private StreamingXPaths streamingXPaths;
+
+	private XmlParserPool xmlParserPool;
+
+	private XPathEngine engine;
+
+	private XPathEngine.Expressions engineXPaths;
+
+	@Setup
+	public void setUp() throws ConfigurationException {
+		this.xmlDocument = BenchmarkDocuments.xmlDocument("st0", this.platformCount);
+		String[] configLines = BenchmarkDocuments.xmlConfig(this.platformCount).split("\n");
+		this.xPathExpressions = new String[configLines.length];
+		for (int index = 0; index < configLines.length; index++) {
+			this.xPathExpressions[index] = configLines[index].split("=>")[0].trim();
+		}
+		this.xmlParserPool = new XmlParserPool(1);
+		this.document = this.xmlParserPool.parse(this.xmlDocument);
+		this.xPath = XmlParseUtil.createXPathInstance();
+		this.compiledXPaths = new CompiledXPaths(this.xPathExpressions);
+		this.streamingXPaths = new StreamingXPaths(this.xPathExpressions);
+		this.engine = XmlParseUtil.getXPathEngine(this.xpathEngine, this.xmlParserPool);
+		this.engineXPaths = this.engine.compile(this.xPathExpressions);
+	}
+
+	@Benchmark
+	public Document getDocumentWithNewBuilder() throws ConfigurationException {
+		return XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), this.xmlDocument);
+	}
+
+	@Benchmark
+	public Document getDocumentWithPooledBuilder() throws ConfigurationException {
+		return this.xmlParserPool.parse(this.xmlDocument);
+	}
+
+	@Benchmark
+	public String[] getStringFromXPath() throws ConfigurationException {
+		String[] values = new String[this.xPathExpressions.length];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = XmlParseUtil.getStringFromXPath(this.document, this.xPath, this.xPathExpressions[index]);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] getStringFromCompiledXPath() throws ConfigurationException {
+		String[] values = new String[this.compiledXPaths.size()];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = this.compiledXPaths.evaluate(this.document, index);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] parseAndEvaluateCompiledXPaths() throws ConfigurationException {
+		Document parsedDocument = this.xmlParserPool.parse(this.xmlDocument);
+		String[] values = new String[this.compiledXPaths.size()];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = this.compiledXPaths.evaluate(parsedDocument, index);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] parseAndEvaluateWithXPathEngine() throws ConfigurationException {
+		Object parsedDocument = this.engine.parse(this.xmlDocument);
+		String[] values = new String[this.engineXPaths.size()];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = this.engineXPaths.evaluate(parsedDocument, index);
+		}
+		return values;
+	}
+
+	@Benchmark
+	public String[] evaluateStreamingXPaths() throws ConfigurationException {
+		return this.streamingXPaths.evaluate(this.xmlDocument);
+	}
+}
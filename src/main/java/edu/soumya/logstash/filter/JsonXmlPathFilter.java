@@ -1,26 +1,36 @@
 package edu.soumya.logstash.filter;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.xpath.XPath;
-
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.w3c.dom.Document;
 
 import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.ParseContext;
 
 import co.elastic.logstash.api.Configuration;
 import co.elastic.logstash.api.Context;
@@ -28,21 +38,41 @@ import co.elastic.logstash.api.Event;
 import co.elastic.logstash.api.Filter;
 import co.elastic.logstash.api.FilterMatchListener;
 import co.elastic.logstash.api.LogstashPlugin;
+import co.elastic.logstash.api.NamespacedMetric;
 import co.elastic.logstash.api.PluginConfigSpec;
 import edu.soumya.logstash.filter.cache.ConfigurationsCache;
+import edu.soumya.logstash.filter.cache.ConfigurationsWarmUp;
+import edu.soumya.logstash.filter.cache.ConfigurationsWarmUp.SnapshotSchedule;
+import edu.soumya.logstash.filter.cache.ConfigurationsWatcher;
+import edu.soumya.logstash.filter.cache.ResultCache;
+import edu.soumya.logstash.filter.cache.ResultCache.CachedResult;
 import edu.soumya.logstash.filter.config.Configurations;
+import edu.soumya.logstash.filter.config.ConfigurationsBundle;
 import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+import edu.soumya.logstash.filter.metrics.FilterMetrics;
+import edu.soumya.logstash.filter.metrics.MetricsReporter;
+import edu.soumya.logstash.filter.plan.AdaptivePathOrder;
+import edu.soumya.logstash.filter.plan.CompiledJsonPaths;
+import edu.soumya.logstash.filter.plan.ExtractionPlan;
+import edu.soumya.logstash.filter.plan.JsonIdentifierScanner;
+import edu.soumya.logstash.filter.plan.StreamingJsonPaths;
+import edu.soumya.logstash.filter.plan.StreamingXPaths;
+import edu.soumya.logstash.filter.plan.XmlIdentifierScanner;
+import edu.soumya.logstash.filter.spi.XPathEngine;
+import edu.soumya.logstash.filter.util.FailureLogger;
 import edu.soumya.logstash.filter.util.JsonParseUtil;
 import edu.soumya.logstash.filter.util.PropertiesLoaderUtil;
 import edu.soumya.logstash.filter.util.XmlParseUtil;
+import edu.soumya.logstash.filter.util.XmlParserPool;
 
 /**
  * @author Soumya Banerjee
  *
  */
 @LogstashPlugin(name = "json_xml_path_filter")
-public class JsonXmlPathFilter implements Filter {
+public class JsonXmlPathFilter implements Filter, AutoCloseable {
 
 	/**
 	 * Logger Instance
@@ -79,6 +109,47 @@ public class JsonXmlPathFilter implements Filter {
 	 */
 	public static final PluginConfigSpec<Long> CACHE_SIZE_CONFIG = PluginConfigSpec.numSetting("cacheSize");
 
+	/**
+	 * Configuration setting for the filter, which says maximum how many bytes of
+	 * heap the cached configurations can take, as estimated from their keys,
+	 * values and compiled expressions.<br>
+	 * Large configuration files take more of the bound than small ones, unlike
+	 * <code>cacheSize</code>, which counts every configuration file as one. Can
+	 * not be used together with <code>cacheSize</code>.<br>
+	 * If not specified cache is bounded only by <code>cacheSize</code>.
+	 */
+	public static final PluginConfigSpec<Long> CACHE_MAX_BYTES_CONFIG = PluginConfigSpec
+			.numSetting("cacheMaxBytes");
+
+	/**
+	 * Configuration setting for the filter, which says after how many seconds a
+	 * cached configuration is reloaded from its file.<br>
+	 * The reload happens in background on the next lookup of the configuration,
+	 * until it completes the already cached configuration is used.<br>
+	 * If not specified cached configurations are never reloaded.
+	 */
+	public static final PluginConfigSpec<Long> CACHE_REFRESH_INTERVAL_CONFIG = PluginConfigSpec
+			.numSetting("cacheRefreshInterval");
+
+	/**
+	 * Configuration setting for the filter, which says if the configuration
+	 * folders will be watched for changes.<br>
+	 * If true, when a configuration file is created, modified or deleted, the
+	 * cached configuration for it is reloaded without restarting Logstash.<br>
+	 * Default value is <code>false<code>.
+	 */
+	public static final PluginConfigSpec<Boolean> CONFIG_WATCH_CONFIG = PluginConfigSpec.booleanSetting("configWatch",
+			false);
+
+	/**
+	 * Configuration setting for the filter, which says how many milliseconds to
+	 * wait for further changes in the configuration folders before reloading the
+	 * changed configurations, when <code>configWatch</code> is true.<br>
+	 * Default value is 500.
+	 */
+	public static final PluginConfigSpec<Long> CONFIG_WATCH_DELAY_CONFIG = PluginConfigSpec
+			.numSetting("configWatchDelay", 500);
+
 	/**
 	 * Configuration setting for the filter, which says if document id will be in
 	 * different paths or not, for different documents.<br>
@@ -105,6 +176,237 @@ public class JsonXmlPathFilter implements Filter {
 	public static final PluginConfigSpec<Boolean> MULTIPATH_ID_CONFIG = PluginConfigSpec.booleanSetting("multipathId",
 			false);
 
+	/**
+	 * Configuration setting for the filter, which says if, with
+	 * <code>multipathId</code>, the paths to find the document id are tried one
+	 * by one until the first non blank document id, instead of evaluating all of
+	 * them for every document.<br>
+	 * The paths which found the document id most often recently are tried first.
+	 * Conflicting document ids are only checked for the sampled documents, see
+	 * <code>multipathIdConflictCheckPercent</code>, other documents get the
+	 * document id of the first path finding one.<br>
+	 * Default value is <code>false<code>.
+	 */
+	public static final PluginConfigSpec<Boolean> MULTIPATH_ID_FIRST_MATCH_CONFIG = PluginConfigSpec
+			.booleanSetting("multipathIdFirstMatch", false);
+
+	/**
+	 * Configuration setting for the filter, which says for what percent of the
+	 * documents, all the paths to find the document id are evaluated to check for
+	 * conflicting document ids, with <code>multipathIdFirstMatch</code>. 0 never
+	 * checks, 100 checks every document.<br>
+	 * Default value is 1.
+	 */
+	public static final PluginConfigSpec<Long> MULTIPATH_ID_CONFLICT_CHECK_PERCENT_CONFIG = PluginConfigSpec
+			.numSetting("multipathIdConflictCheckPercent", 1);
+
+	/**
+	 * Configuration setting for the filter, which says how the xml documents will
+	 * be read.<br>
+	 * <code>dom</code>: the whole document is parsed into a DOM and the xpaths are
+	 * evaluated on it.<br>
+	 * <code>stax</code>: all the xpaths of a configuration are evaluated in a
+	 * single streaming pass over the document, which stops as soon as all of them
+	 * are found, without building a DOM. The rest of the document is not read, so
+	 * a document malformed only after the values found is mapped without the
+	 * parse failure tag. Only absolute child paths, attribute steps, positional
+	 * predicates and attribute equality predicates are supported. Configurations
+	 * having any other xpath are evaluated on a DOM.<br>
+	 * Default value is <code>dom</code>.
+	 */
+	public static final PluginConfigSpec<String> XML_ENGINE_CONFIG = PluginConfigSpec.stringSetting("xmlEngine",
+			Constants.XML_ENGINE_DOM);
+
+	/**
+	 * Configuration setting for the filter, which says how the json documents
+	 * will be read.<br>
+	 * <code>jsonpath</code>: the whole document is parsed and the jsonpaths are
+	 * evaluated on it one by one.<br>
+	 * <code>streaming</code>: all the jsonpaths of a configuration are evaluated
+	 * in a single pass over the tokens of the document, skipping the parts not
+	 * needed. The objects on the paths are read to their end, as a repeated
+	 * property replaces the earlier one. Only definite paths of
+	 * properties and array indexes are supported. Configurations having any other
+	 * jsonpath, or selecting an object or array, are evaluated on the parsed
+	 * document.<br>
+	 * Default value is <code>jsonpath</code>.
+	 */
+	public static final PluginConfigSpec<String> JSON_ENGINE_CONFIG = PluginConfigSpec.stringSetting("jsonEngine",
+			Constants.JSON_ENGINE_JSONPATH);
+
+	/**
+	 * Configuration setting for the filter, which says the json parser the json
+	 * documents are parsed with, when they are not read by streaming.<br>
+	 * <code>smart</code> parses with json-smart, which accepts lenient json.
+	 * <code>jackson</code> parses with Jackson databind, faster on large
+	 * documents. Other providers can be added as a
+	 * {@link edu.soumya.logstash.filter.spi.JsonBackend} service. The extracted
+	 * values are the same for every provider.<br>
+	 * Default value is <code>smart</code>.
+	 */
+	public static final PluginConfigSpec<String> JSON_PROVIDER_CONFIG = PluginConfigSpec
+			.stringSetting("jsonProvider", Constants.JSON_PROVIDER_SMART);
+
+	/**
+	 * Configuration setting for the filter, which says maximum how many xml
+	 * parsers are kept for reuse between the documents.<br>
+	 * A parser is used by one pipeline worker at a time, so the pool size should
+	 * be the number of pipeline workers. 0 disables the reuse, a new parser is
+	 * created for every xml document.<br>
+	 * If not specified the pool size will be the number of available processors,
+	 * which is the default number of pipeline workers.
+	 */
+	public static final PluginConfigSpec<Long> XML_PARSER_POOL_SIZE_CONFIG = PluginConfigSpec
+			.numSetting("xmlParserPoolSize");
+
+	/**
+	 * Configuration setting for the filter, which says the xpath engine the
+	 * xpaths are evaluated with, when the xml documents are not read by
+	 * streaming.<br>
+	 * <code>jdk</code> parses the document into a DOM and evaluates the xpaths
+	 * with the xpath implementation of the JDK. <code>index</code> indexes the
+	 * offsets of the elements in the text of the document, without building a
+	 * DOM, and evaluates absolute child and descendant paths with positional
+	 * predicates, attribute and <code>text()</code> steps on it; any other xpath
+	 * is evaluated like by <code>jdk</code>. Other engines can be added as a
+	 * {@link edu.soumya.logstash.filter.spi.XPathBackend} service.<br>
+	 * Default value is <code>jdk</code>.
+	 */
+	public static final PluginConfigSpec<String> XPATH_ENGINE_CONFIG = PluginConfigSpec
+			.stringSetting("xpathEngine", Constants.XPATH_ENGINE_JDK);
+
+	/**
+	 * Configuration setting for the filter, which says how many threads will
+	 * process the events of a batch in parallel.<br>
+	 * Useful when the time taken by the documents varies a lot, like with large
+	 * xml documents, so that a pipeline worker is not stalled by a few of them.
+	 * The threads are shared by all the pipeline workers. The order of the
+	 * events in the batch is kept.<br>
+	 * Default value is 1, the events are processed one by one by the pipeline
+	 * worker.
+	 */
+	public static final PluginConfigSpec<Long> PARALLELISM_CONFIG = PluginConfigSpec.numSetting("parallelism", 1);
+
+	/**
+	 * Configuration setting for the filter, which says minimum how many events a
+	 * batch should have to be processed in parallel, when <code>parallelism</code>
+	 * is more than 1. Smaller batches are processed one by one by the pipeline
+	 * worker.<br>
+	 * Default value is 16.
+	 */
+	public static final PluginConfigSpec<Long> PARALLEL_BATCH_THRESHOLD_CONFIG = PluginConfigSpec
+			.numSetting("parallelBatchThreshold", 16);
+
+	/**
+	 * Configuration setting for the filter, which says after how many seconds the
+	 * filter metrics are reported.<br>
+	 * Metrics are published to the Logstash plugin metrics, shown by the
+	 * monitoring API under the filter. If they are not available, the metrics are
+	 * registered as a JMX MBean instead, or logged if that fails too. 0 disables
+	 * the reporting, the metrics are still counted.<br>
+	 * Default value is 10.
+	 */
+	public static final PluginConfigSpec<Long> METRICS_INTERVAL_CONFIG = PluginConfigSpec
+			.numSetting("metricsInterval", 10);
+
+	/**
+	 * Configuration setting for the filter, which says after how many seconds a
+	 * failure of a document is logged again, for the same failure reason.<br>
+	 * The failures in between are only counted, and the count is logged with the
+	 * next failure. Failure reason and message are always added to the event in
+	 * <code>[@metadata][json_xml_path_filter]</code>. 0 logs every failure.<br>
+	 * Default value is 10.
+	 */
+	public static final PluginConfigSpec<Long> FAILURE_LOG_INTERVAL_CONFIG = PluginConfigSpec
+			.numSetting("failureLogInterval", 10);
+
+	/**
+	 * Configuration setting for the filter, which says if only the document id
+	 * will be read first, before reading the whole document.<br>
+	 * If true, the document id is found by a streaming read which stops at the
+	 * identifier path, or for json at the end of the objects on the path, for
+	 * both xml and json documents, whatever
+	 * <code>xmlEngine</code> and <code>jsonEngine</code> are. The whole document
+	 * is parsed only when a configuration is found for the document id, so the
+	 * documents which are not sent to any output channel are never parsed fully.
+	 * If the identifier paths can not be evaluated by streaming, the document is
+	 * parsed to find the document id.<br>
+	 * Default value is <code>false<code>.
+	 */
+	public static final PluginConfigSpec<Boolean> IDENTIFIER_FIRST_CONFIG = PluginConfigSpec
+			.booleanSetting("identifierFirst", false);
+
+	/**
+	 * Configuration setting for the filter, which says if the document id is
+	 * found by scanning the text of the document, before any streaming or
+	 * parsing.<br>
+	 * Only simple identifier paths are scanned, like
+	 * <code>/Envelope/Header/DocId</code> or <code>$.header.docType</code>. The
+	 * xml scan stops at the first match, the json scan reads the objects on the
+	 * path to their end as a repeated property replaces the earlier one. The scan
+	 * gives up whenever the text alone can not tell the value, then the document id is found as without the scan. The
+	 * scan does not check if the document is well-formed, so a malformed
+	 * document without configuration is dropped instead of being tagged as a
+	 * parse failure.<br>
+	 * Default value is <code>false<code>.
+	 */
+	public static final PluginConfigSpec<Boolean> IDENTIFIER_SCAN_CONFIG = PluginConfigSpec
+			.booleanSetting("identifierScan", false);
+
+	/**
+	 * Configuration setting for the filter, which says which configurations are
+	 * preloaded into the cache at startup, in background threads, so that the
+	 * first events after a restart do not wait for the configuration files.<br>
+	 * <code>none</code>: nothing is preloaded.<br>
+	 * <code>all</code>: all the document ids in the configuration folders.<br>
+	 * <code>manifest</code>: the document ids in <code>warmUpFile</code>, one
+	 * <code>type:id</code> per line, like <code>xml:id1</code>, the most used
+	 * first.<br>
+	 * <code>snapshot</code>: the most used document ids of the last run, saved to
+	 * <code>warmUpFile</code> every minute and on shutdown.<br>
+	 * At most <code>cacheSize</code> configurations are preloaded.<br>
+	 * Default value is <code>none</code>.
+	 */
+	public static final PluginConfigSpec<String> WARM_UP_CONFIG = PluginConfigSpec.stringSetting("warmUp",
+			Constants.WARM_UP_NONE);
+
+	/**
+	 * Configuration setting for the filter, which says the manifest or snapshot
+	 * file of the document ids, for <code>warmUp</code> <code>manifest</code> and
+	 * <code>snapshot</code>.
+	 */
+	public static final PluginConfigSpec<String> WARM_UP_FILE_CONFIG = PluginConfigSpec
+			.stringSetting("warmUpFile");
+
+	/**
+	 * Configuration setting for the filter, which says how many threads preload
+	 * the configurations in parallel.<br>
+	 * Default value is 4.
+	 */
+	public static final PluginConfigSpec<Long> WARM_UP_THREADS_CONFIG = PluginConfigSpec
+			.numSetting("warmUpThreads", 4);
+
+	/**
+	 * Configuration setting for the filter, which says how many results of
+	 * mapped documents are cached, so that a document exactly the same as a
+	 * recently mapped one is neither parsed nor identified again, the cached
+	 * values are added to the event directly.<br>
+	 * Every cached result holds its document, so the memory taken is about this
+	 * size times the size of the documents. 0 disables the cache.<br>
+	 * Default value is 0.
+	 */
+	public static final PluginConfigSpec<Long> RESULT_CACHE_SIZE_CONFIG = PluginConfigSpec
+			.numSetting("resultCacheSize", 0);
+
+	/**
+	 * Configuration setting for the filter, which says after how many seconds a
+	 * cached result expires. 0 expires results only by
+	 * <code>resultCacheSize</code>.<br>
+	 * Default value is 300.
+	 */
+	public static final PluginConfigSpec<Long> RESULT_CACHE_TTL_CONFIG = PluginConfigSpec
+			.numSetting("resultCacheTtl", 300);
+
 	/**
 	 * The id of the Logstash Filter
 	 */
@@ -125,27 +427,170 @@ public class JsonXmlPathFilter implements Filter {
 	 */
 	private Properties mainProperties;
 
+	/**
+	 * Engine used to read xml documents, dom or stax
+	 */
+	private String xmlEngine;
+
+	/**
+	 * Engine used to read json documents, jsonpath or streaming
+	 */
+	private String jsonEngine;
+
+	/**
+	 * Shared parse context of the json provider
+	 */
+	private ParseContext jsonParseContext;
+
+	/**
+	 * If document id is read by streaming before parsing the document
+	 */
+	private Boolean identifierFirst;
+
+	/**
+	 * If document id is found by scanning the text of the document first
+	 */
+	private Boolean identifierScan;
+
+	/**
+	 * Reusable parsers for xml documents
+	 */
+	private XmlParserPool xmlParserPool;
+
+	/**
+	 * Engine the xpaths are evaluated with, when not streaming
+	 */
+	private XPathEngine xpathEngine;
+
+	/**
+	 * Threads processing the events of a batch in parallel, null if
+	 * <code>parallelism</code> is 1
+	 */
+	private ExecutorService parallelPool;
+
+	/**
+	 * Minimum number of events in a batch to process it in parallel
+	 */
+	private Long parallelBatchThreshold;
+
+	/**
+	 * Metrics of the filter
+	 */
+	private FilterMetrics metrics;
+
+	/**
+	 * Reporter of the metrics, null if not reporting
+	 */
+	private MetricsReporter metricsReporter;
+
+	/**
+	 * Rate limited logger of the failures of documents
+	 */
+	private FailureLogger failureLogger;
+
+	/**
+	 * Completed with the number of preloaded configurations when the warm-up of
+	 * the cache is done, null if no warm-up
+	 */
+	private CompletableFuture<Integer> warmUpResult;
+
+	/**
+	 * Snapshots of the most used document ids, null if <code>warmUp</code> is
+	 * not <code>snapshot</code>
+	 */
+	private SnapshotSchedule warmUpSnapshots;
+
 	/**
 	 * Instance of ConfigurationsCache
 	 */
 	private ConfigurationsCache configCache;
 
+	/**
+	 * Results of recently mapped documents, null if not caching
+	 */
+	private ResultCache resultCache;
+
+	/**
+	 * Watcher of the configuration folders, null if not watching
+	 */
+	private ConfigurationsWatcher configWatcher;
+
 	/**
 	 * If document id can be found in different path for different documents
 	 */
 	private Boolean multipathId;
 
+	/**
+	 * Percent of the documents, for which all the paths to find the document id
+	 * are evaluated, with <code>multipathIdFirstMatch</code>
+	 */
+	private long multipathIdConflictCheckPercent;
+
 	/**
 	 * List of xpaths from where document id will be found for xml type documents
 	 */
 	private List<String> documentIdXPathList;
 
+	/**
+	 * Compiled form of <code>documentIdXPathList</code>
+	 */
+	private XPathEngine.Expressions documentIdXPaths;
+
+	/**
+	 * Streaming form of <code>documentIdXPathList</code>
+	 */
+	private StreamingXPaths documentIdStreamingXPaths;
+
+	/**
+	 * Scanner of <code>documentIdXPathList</code>, null if not scanning
+	 */
+	private XmlIdentifierScanner documentIdXmlScanner;
+
+	/**
+	 * Order in which <code>documentIdXPathList</code> are tried, null if all of
+	 * them are evaluated for every document
+	 */
+	private AdaptivePathOrder documentIdXPathOrder;
+
+	/**
+	 * Streaming form of every xpath of <code>documentIdXPathList</code>, to try
+	 * them one by one, null if all of them are evaluated for every document
+	 */
+	private StreamingXPaths[] documentIdStreamingXPathAlternatives;
+
 	/**
 	 * List of jsonpaths from where document id will be found for json type
 	 * documents
 	 */
 	private List<String> documentIdJsonPathList;
 
+	/**
+	 * Compiled form of <code>documentIdJsonPathList</code>
+	 */
+	private CompiledJsonPaths documentIdJsonPaths;
+
+	/**
+	 * Streaming form of <code>documentIdJsonPathList</code>
+	 */
+	private StreamingJsonPaths documentIdStreamingJsonPaths;
+
+	/**
+	 * Scanner of <code>documentIdJsonPathList</code>, null if not scanning
+	 */
+	private JsonIdentifierScanner documentIdJsonScanner;
+
+	/**
+	 * Order in which <code>documentIdJsonPathList</code> are tried, null if all
+	 * of them are evaluated for every document
+	 */
+	private AdaptivePathOrder documentIdJsonPathOrder;
+
+	/**
+	 * Streaming form of every jsonpath of <code>documentIdJsonPathList</code>, to
+	 * try them one by one, null if all of them are evaluated for every document
+	 */
+	private StreamingJsonPaths[] documentIdStreamingJsonPathAlternatives;
+
 	/**
 	 * Constructor
 	 */
@@ -155,17 +600,231 @@ public class JsonXmlPathFilter implements Filter {
 		this.documentField = config.get(DOC_CONFIG);
 		this.typeField = config.get(TYPE_CONFIG);
 		this.mainProperties = PropertiesLoaderUtil.getPropertiesFromFile(config.get(MAIN_PROPERTIES_PATH_CONFIG));
-		this.configCache = new ConfigurationsCache(config.get(CACHE_SIZE_CONFIG));
+		Long cacheMaxBytes = config.get(CACHE_MAX_BYTES_CONFIG);
+		if (cacheMaxBytes != null && (config.get(CACHE_SIZE_CONFIG) != null || cacheMaxBytes.longValue() < 1)) {
+			throw new ConfigurationException(StringUtils.join(
+					"cacheMaxBytes should be at least 1 and can not be used together with cacheSize. cacheMaxBytes: ",
+					cacheMaxBytes, ", cacheSize: ", config.get(CACHE_SIZE_CONFIG)));
+		}
+		this.configCache = new ConfigurationsCache(config.get(CACHE_SIZE_CONFIG),
+				config.get(CACHE_REFRESH_INTERVAL_CONFIG), cacheMaxBytes);
+		openConfigBundle(Constants.XML_CONFIG_FOLDER_PATH_KEY, Constants.XML_CONFIG_BUNDLE_PATH_KEY);
+		openConfigBundle(Constants.JSON_CONFIG_FOLDER_PATH_KEY, Constants.JSON_CONFIG_BUNDLE_PATH_KEY);
 		this.multipathId = config.get(MULTIPATH_ID_CONFIG);
-		populateDocumentIdJsonPathList();
-		populateDocumentIdXPathList();
+		this.multipathIdConflictCheckPercent = config.get(MULTIPATH_ID_CONFLICT_CHECK_PERCENT_CONFIG).longValue();
+		if (this.multipathIdConflictCheckPercent < 0 || this.multipathIdConflictCheckPercent > 100) {
+			throw new ConfigurationException(
+					"multipathIdConflictCheckPercent should be from 0 to 100: " + this.multipathIdConflictCheckPercent);
+		}
+		boolean multipathIdFirstMatch = BooleanUtils.isTrue(config.get(MULTIPATH_ID_FIRST_MATCH_CONFIG));
+		if (multipathIdFirstMatch && BooleanUtils.isNotTrue(this.multipathId)) {
+			throw new ConfigurationException("multipathIdFirstMatch can be used only with multipathId.");
+		}
+		this.xmlEngine = config.get(XML_ENGINE_CONFIG);
+		if (!StringUtils.equalsAny(this.xmlEngine, Constants.XML_ENGINE_DOM, Constants.XML_ENGINE_STAX)) {
+			throw new ConfigurationException(StringUtils.join("Unsupported xmlEngine: ", this.xmlEngine,
+					". Supported values are: ", Constants.XML_ENGINE_DOM, ", ", Constants.XML_ENGINE_STAX));
+		}
+		this.jsonEngine = config.get(JSON_ENGINE_CONFIG);
+		if (!StringUtils.equalsAny(this.jsonEngine, Constants.JSON_ENGINE_JSONPATH, Constants.JSON_ENGINE_STREAMING)) {
+			throw new ConfigurationException(StringUtils.join("Unsupported jsonEngine: ", this.jsonEngine,
+					". Supported values are: ", Constants.JSON_ENGINE_JSONPATH, ", ", Constants.JSON_ENGINE_STREAMING));
+		}
+		this.jsonParseContext = JsonParseUtil.getParseContext(config.get(JSON_PROVIDER_CONFIG));
+		Long xmlParserPoolSize = config.get(XML_PARSER_POOL_SIZE_CONFIG);
+		this.xmlParserPool = new XmlParserPool(xmlParserPoolSize != null ? xmlParserPoolSize.intValue()
+				: Runtime.getRuntime().availableProcessors());
+		this.xpathEngine = XmlParseUtil.getXPathEngine(config.get(XPATH_ENGINE_CONFIG), this.xmlParserPool);
+		this.identifierFirst = config.get(IDENTIFIER_FIRST_CONFIG);
+		this.identifierScan = config.get(IDENTIFIER_SCAN_CONFIG);
+		createParallelPool(config.get(PARALLELISM_CONFIG), config.get(PARALLEL_BATCH_THRESHOLD_CONFIG));
+		populateDocumentIdJsonPathList(multipathIdFirstMatch);
+		populateDocumentIdXPathList(multipathIdFirstMatch);
+		this.metrics = new FilterMetrics(this.configCache);
+		createResultCache(config.get(RESULT_CACHE_SIZE_CONFIG), config.get(RESULT_CACHE_TTL_CONFIG));
+		startMetricsReporter(context, config.get(METRICS_INTERVAL_CONFIG));
+		Long failureLogInterval = config.get(FAILURE_LOG_INTERVAL_CONFIG);
+		if (failureLogInterval.longValue() < 0) {
+			throw new ConfigurationException("failureLogInterval can not be negative: " + failureLogInterval);
+		}
+		this.failureLogger = new FailureLogger(LOGGER, failureLogInterval.longValue());
+		startWarmUp(config.get(WARM_UP_CONFIG), config.get(WARM_UP_FILE_CONFIG), config.get(WARM_UP_THREADS_CONFIG),
+				config.get(CACHE_SIZE_CONFIG));
+		if (BooleanUtils.isTrue(config.get(CONFIG_WATCH_CONFIG))) {
+			startConfigWatcher(config.get(CONFIG_WATCH_DELAY_CONFIG));
+		}
 		showFilterPluginInfo(config);
 	}
 
+	/**
+	 * Creates the cache of the results of mapped documents, if
+	 * <code>resultCacheSize</code> is more than 0
+	 * 
+	 * @param resultCacheSize
+	 * @param resultCacheTtl
+	 * @throws ConfigurationException
+	 *             if any of them is negative
+	 */
+	private void createResultCache(Long resultCacheSize, Long resultCacheTtl) throws ConfigurationException {
+		if (resultCacheSize.longValue() < 0 || resultCacheTtl.longValue() < 0) {
+			throw new ConfigurationException(StringUtils.join(
+					"resultCacheSize and resultCacheTtl can not be negative. resultCacheSize: ", resultCacheSize,
+					", resultCacheTtl: ", resultCacheTtl));
+		}
+		if (resultCacheSize.longValue() > 0) {
+			this.resultCache = new ResultCache(resultCacheSize.longValue(), resultCacheTtl.longValue());
+			this.metrics.setResultCache(this.resultCache);
+		}
+	}
+
+	/**
+	 * Memory maps the bundle of the configuration folder, if given in the main
+	 * properties, so that the configurations of the folder are loaded from it
+	 * 
+	 * @param configFolderKey
+	 * @param configBundleKey
+	 * @throws ConfigurationException
+	 *             if the bundle could not be mapped
+	 */
+	private void openConfigBundle(String configFolderKey, String configBundleKey) throws ConfigurationException {
+		String configBundlePath = this.mainProperties.getProperty(configBundleKey);
+		if (StringUtils.isBlank(configBundlePath)) {
+			return;
+		}
+		ConfigurationsBundle bundle = ConfigurationsBundle.open(configBundlePath.trim());
+		this.configCache.addBundle(this.mainProperties.getProperty(configFolderKey), bundle);
+		LOGGER.info(StringUtils.join("Mapped configurations bundle: ", configBundlePath, " with ", bundle.size(),
+				" document id(s)."));
+	}
+
+	/**
+	 * Starts preloading the configurations into the cache in background, as
+	 * given by <code>warmUp</code>
+	 * 
+	 * @param warmUp
+	 * @param warmUpFile
+	 * @param warmUpThreads
+	 * @param cacheSize
+	 * @throws ConfigurationException
+	 *             if the settings are not valid or the ids could not be read
+	 */
+	private void startWarmUp(String warmUp, String warmUpFile, Long warmUpThreads, Long cacheSize)
+			throws ConfigurationException {
+		if (StringUtils.equals(warmUp, Constants.WARM_UP_NONE)) {
+			return;
+		}
+		if (!StringUtils.equalsAny(warmUp, Constants.WARM_UP_ALL, Constants.WARM_UP_MANIFEST,
+				Constants.WARM_UP_SNAPSHOT)) {
+			throw new ConfigurationException(StringUtils.join("Unsupported warmUp: ", warmUp,
+					". Supported values are: ", Constants.WARM_UP_NONE, ", ", Constants.WARM_UP_ALL, ", ",
+					Constants.WARM_UP_MANIFEST, ", ", Constants.WARM_UP_SNAPSHOT));
+		}
+		if (!StringUtils.equals(warmUp, Constants.WARM_UP_ALL) && StringUtils.isBlank(warmUpFile)) {
+			throw new ConfigurationException("warmUpFile is required for warmUp: " + warmUp);
+		}
+		if (warmUpThreads.longValue() < 1) {
+			throw new ConfigurationException("warmUpThreads should be at least 1: " + warmUpThreads);
+		}
+		ConfigurationsWarmUp configWarmUp = new ConfigurationsWarmUp(this.configCache,
+				this.mainProperties.getProperty(Constants.XML_CONFIG_FOLDER_PATH_KEY),
+				this.mainProperties.getProperty(Constants.JSON_CONFIG_FOLDER_PATH_KEY), warmUpThreads.intValue(),
+				cacheSize);
+		List<String> warmUpIds;
+		if (StringUtils.equals(warmUp, Constants.WARM_UP_ALL)) {
+			warmUpIds = configWarmUp.listAllIds();
+		} else if (StringUtils.equals(warmUp, Constants.WARM_UP_MANIFEST)) {
+			warmUpIds = ConfigurationsWarmUp.readIds(warmUpFile);
+		} else {
+			// No snapshot on the first run
+			warmUpIds = Files.exists(Paths.get(warmUpFile)) ? ConfigurationsWarmUp.readIds(warmUpFile)
+					: Collections.emptyList();
+			this.warmUpSnapshots = ConfigurationsWarmUp.scheduleSnapshots(
+					() -> this.metrics.getMostMappedIds(cacheSize), warmUpFile,
+					StringUtils.join("json_xml_path_filter-warmup-snapshot-", this.id));
+		}
+		long startTime = System.nanoTime();
+		this.warmUpResult = configWarmUp.start(warmUpIds).thenApply(loads -> {
+			this.metrics.recordWarmUp(loads, System.nanoTime() - startTime);
+			return loads;
+		});
+	}
+
+	/**
+	 * Creates the threads for processing the events of a batch in parallel, if
+	 * <code>parallelism</code> is more than 1
+	 * 
+	 * @param parallelism
+	 * @param parallelBatchThreshold
+	 * @throws ConfigurationException
+	 *             if any of the values is less than 1
+	 */
+	private void createParallelPool(Long parallelism, Long parallelBatchThreshold) throws ConfigurationException {
+		if (parallelism.longValue() < 1 || parallelBatchThreshold.longValue() < 1) {
+			throw new ConfigurationException(StringUtils.join("parallelism and parallelBatchThreshold should be at least 1."
+					+ " parallelism: ", parallelism, ", parallelBatchThreshold: ", parallelBatchThreshold));
+		}
+		this.parallelBatchThreshold = parallelBatchThreshold;
+		if (parallelism.longValue() > 1) {
+			String threadNamePrefix = StringUtils.join("json_xml_path_filter-worker-", this.id, "-");
+			this.parallelPool = new ForkJoinPool(parallelism.intValue(), pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(threadNamePrefix + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+		}
+	}
+
+	/**
+	 * Starts reporting the metrics to the Logstash plugin metrics from the
+	 * <code>context</code>, or to the fallbacks if they are not available
+	 * 
+	 * @param context
+	 * @param metricsInterval
+	 * @throws ConfigurationException
+	 *             if <code>metricsInterval</code> is negative
+	 */
+	private void startMetricsReporter(Context context, Long metricsInterval) throws ConfigurationException {
+		if (metricsInterval.longValue() < 0) {
+			throw new ConfigurationException("metricsInterval can not be negative: " + metricsInterval);
+		}
+		if (metricsInterval.longValue() == 0) {
+			return;
+		}
+		NamespacedMetric pluginMetric = null;
+		try {
+			pluginMetric = context == null ? null : context.getMetric(this);
+		} catch (RuntimeException | LinkageError e) {
+			// Logstash versions without plugin metrics for java plugins
+			LOGGER.debug("Plugin metrics are not available.", e);
+		}
+		this.metricsReporter = new MetricsReporter(this.metrics, pluginMetric);
+		this.metricsReporter.start(this.id, metricsInterval.longValue());
+	}
+
+	/**
+	 * Starts watching the configuration folders of xml and json documents
+	 * 
+	 * @param debounceDelay
+	 * @throws ConfigurationException
+	 */
+	private void startConfigWatcher(Long debounceDelay) throws ConfigurationException {
+		this.configWatcher = new ConfigurationsWatcher(this.configCache, debounceDelay.longValue(),
+				this.mainProperties.getProperty(Constants.XML_CONFIG_FOLDER_PATH_KEY),
+				this.mainProperties.getProperty(Constants.JSON_CONFIG_FOLDER_PATH_KEY));
+		this.configWatcher.start(StringUtils.join("json_xml_path_filter-config-watcher-", this.id));
+	}
+
 	/**
 	 * Populates the <code>documentIdXPathList</code> from the main properties file
+	 * and compiles them
+	 * 
+	 * @param firstMatch
+	 *            if the xpaths are tried one by one until the first non blank
+	 *            document id
+	 * @throws ConfigurationException
+	 *             if any of the xpaths is invalid
 	 */
-	private void populateDocumentIdXPathList() {
+	private void populateDocumentIdXPathList(boolean firstMatch) throws ConfigurationException {
 		this.documentIdXPathList = new LinkedList<>();
 		if (BooleanUtils.isTrue(this.multipathId)) {
 			String combinedXPaths = this.mainProperties.getProperty(Constants.XML_IDENTIFIER_KEY);
@@ -176,13 +835,38 @@ public class JsonXmlPathFilter implements Filter {
 		} else {
 			this.documentIdXPathList.add(this.mainProperties.getProperty(Constants.XML_IDENTIFIER_KEY));
 		}
+		this.documentIdXPaths = this.xpathEngine.compile(this.documentIdXPathList.toArray(new String[0]));
+		this.documentIdStreamingXPaths = new StreamingXPaths(this.documentIdXPathList.toArray(new String[0]));
+		if (BooleanUtils.isTrue(this.identifierScan)) {
+			XmlIdentifierScanner xmlScanner = new XmlIdentifierScanner(
+					this.documentIdXPathList.toArray(new String[0]));
+			// Paths which are simple enough are still scanned one by one
+			this.documentIdXmlScanner = xmlScanner;
+			if (!xmlScanner.isScannable()) {
+				LOGGER.info("Xml identifier paths are not simple enough to be scanned: " + this.documentIdXPathList);
+			}
+		}
+		if (firstMatch) {
+			this.documentIdXPathOrder = new AdaptivePathOrder(this.documentIdXPathList.size());
+			this.documentIdStreamingXPathAlternatives = new StreamingXPaths[this.documentIdXPathList.size()];
+			for (int index = 0; index < this.documentIdXPathList.size(); index++) {
+				this.documentIdStreamingXPathAlternatives[index] = new StreamingXPaths(
+						new String[] { this.documentIdXPathList.get(index) });
+			}
+		}
 	}
 
 	/**
 	 * Populates the <code>documentIdJsonPathList</code> from the main properties
-	 * file
+	 * file and compiles them
+	 * 
+	 * @param firstMatch
+	 *            if the jsonpaths are tried one by one until the first non blank
+	 *            document id
+	 * @throws ConfigurationException
+	 *             if any of the jsonpaths is invalid
 	 */
-	private void populateDocumentIdJsonPathList() {
+	private void populateDocumentIdJsonPathList(boolean firstMatch) throws ConfigurationException {
 		this.documentIdJsonPathList = new LinkedList<>();
 		if (BooleanUtils.isTrue(this.multipathId)) {
 			String combinedJsonPaths = this.mainProperties.getProperty(Constants.JSON_IDENTIFIER_KEY);
@@ -193,6 +877,26 @@ public class JsonXmlPathFilter implements Filter {
 		} else {
 			this.documentIdJsonPathList.add(this.mainProperties.getProperty(Constants.JSON_IDENTIFIER_KEY));
 		}
+		this.documentIdJsonPaths = new CompiledJsonPaths(this.documentIdJsonPathList.toArray(new String[0]));
+		this.documentIdStreamingJsonPaths = new StreamingJsonPaths(
+				this.documentIdJsonPathList.toArray(new String[0]));
+		if (BooleanUtils.isTrue(this.identifierScan)) {
+			JsonIdentifierScanner jsonScanner = new JsonIdentifierScanner(
+					this.documentIdJsonPathList.toArray(new String[0]));
+			// Paths which are simple enough are still scanned one by one
+			this.documentIdJsonScanner = jsonScanner;
+			if (!jsonScanner.isScannable()) {
+				LOGGER.info("Json identifier paths are not simple enough to be scanned: " + this.documentIdJsonPathList);
+			}
+		}
+		if (firstMatch) {
+			this.documentIdJsonPathOrder = new AdaptivePathOrder(this.documentIdJsonPathList.size());
+			this.documentIdStreamingJsonPathAlternatives = new StreamingJsonPaths[this.documentIdJsonPathList.size()];
+			for (int index = 0; index < this.documentIdJsonPathList.size(); index++) {
+				this.documentIdStreamingJsonPathAlternatives[index] = new StreamingJsonPaths(
+						new String[] { this.documentIdJsonPathList.get(index) });
+			}
+		}
 	}
 
 	/**
@@ -209,6 +913,28 @@ public class JsonXmlPathFilter implements Filter {
 		filterInfo.append(" typeField: ").append(this.typeField).append(",");
 		filterInfo.append(" mainProp: ").append(config.get(MAIN_PROPERTIES_PATH_CONFIG)).append(",");
 		filterInfo.append(" cacheSize: ").append(config.get(CACHE_SIZE_CONFIG)).append(",");
+		filterInfo.append(" cacheMaxBytes: ").append(config.get(CACHE_MAX_BYTES_CONFIG)).append(",");
+		filterInfo.append(" cacheRefreshInterval: ").append(config.get(CACHE_REFRESH_INTERVAL_CONFIG)).append(",");
+		filterInfo.append(" multipathIdFirstMatch: ").append(config.get(MULTIPATH_ID_FIRST_MATCH_CONFIG)).append(",");
+		filterInfo.append(" multipathIdConflictCheckPercent: ").append(this.multipathIdConflictCheckPercent)
+				.append(",");
+		filterInfo.append(" configWatch: ").append(config.get(CONFIG_WATCH_CONFIG)).append(",");
+		filterInfo.append(" xmlEngine: ").append(this.xmlEngine).append(",");
+		filterInfo.append(" jsonEngine: ").append(this.jsonEngine).append(",");
+		filterInfo.append(" jsonProvider: ").append(config.get(JSON_PROVIDER_CONFIG)).append(",");
+		filterInfo.append(" xmlParserPoolSize: ").append(config.get(XML_PARSER_POOL_SIZE_CONFIG)).append(",");
+		filterInfo.append(" xpathEngine: ").append(config.get(XPATH_ENGINE_CONFIG)).append(",");
+		filterInfo.append(" parallelism: ").append(config.get(PARALLELISM_CONFIG)).append(",");
+		filterInfo.append(" parallelBatchThreshold: ").append(this.parallelBatchThreshold).append(",");
+		filterInfo.append(" metricsInterval: ").append(config.get(METRICS_INTERVAL_CONFIG)).append(",");
+		filterInfo.append(" failureLogInterval: ").append(config.get(FAILURE_LOG_INTERVAL_CONFIG)).append(",");
+		filterInfo.append(" warmUp: ").append(config.get(WARM_UP_CONFIG)).append(",");
+		filterInfo.append(" warmUpFile: ").append(config.get(WARM_UP_FILE_CONFIG)).append(",");
+		filterInfo.append(" warmUpThreads: ").append(config.get(WARM_UP_THREADS_CONFIG)).append(",");
+		filterInfo.append(" resultCacheSize: ").append(config.get(RESULT_CACHE_SIZE_CONFIG)).append(",");
+		filterInfo.append(" resultCacheTtl: ").append(config.get(RESULT_CACHE_TTL_CONFIG)).append(",");
+		filterInfo.append(" identifierFirst: ").append(this.identifierFirst).append(",");
+		filterInfo.append(" identifierScan: ").append(this.identifierScan).append(",");
 		filterInfo.append("]");
 
 		LOGGER.info(filterInfo.toString());
@@ -222,175 +948,593 @@ public class JsonXmlPathFilter implements Filter {
 	 */
 	@Override
 	public Collection<Event> filter(Collection<Event> events, FilterMatchListener matchListener) {
+		List<Event> batch = new ArrayList<>(events);
+		boolean parallel = this.parallelPool != null && batch.size() >= this.parallelBatchThreshold.longValue();
+		// Configurations of the document ids of the batch, resolved once per id
+		ConcurrentMap<String, Configurations> batchConfigs = new ConcurrentHashMap<>();
+		// Each document is mapped as soon as its id is found, so that its parsed
+		// document is released right away instead of being kept until the whole
+		// batch is identified
+		List<IdentifiedDocument> identifiedDocuments = processAll(batch, event -> {
+			IdentifiedDocument identifiedDocument = identifyDocument(event);
+			if (identifiedDocument != null && resolveConfigurations(identifiedDocument, batchConfigs)) {
+				mapDocument(identifiedDocument);
+			}
+			return identifiedDocument;
+		}, parallel);
+		// Remove the dropped events and notify the listener, in the order of the batch
+		Iterator<IdentifiedDocument> identifiedIterator = identifiedDocuments.iterator();
 		for (Iterator<Event> eventIterator = events.iterator(); eventIterator.hasNext();) {
 			Event event = eventIterator.next();
-			/**
-			 * Inside the file, whose path is given as the value of mainprop in
-			 * configuration for the filter, define the four properties
-			 * identifier.attribute.path.xml identifier.attribute.path.json
-			 * config.location.xml and config.location.json these properties will contain
-			 * path of the identifier attribute in xpath or jsonpath format and folder
-			 * locations where configuration files for xml and json will be stored
-			 */
-			Object docType = event.getField(typeField);
-			if (docType instanceof String) {
-				String docTypeStr = (String) docType;
+			IdentifiedDocument identifiedDocument = identifiedIterator.next();
+			if (identifiedDocument != null && identifiedDocument.dropped) {
+				eventIterator.remove();
+			}
+			matchListener.filterMatched(event);
+		}
+		return events;
+	}
+
+	/**
+	 * Applies the <code>processor</code> to all the <code>items</code>, in
+	 * <code>parallelPool</code> if <code>parallel</code>, otherwise one by one on
+	 * the calling thread.
+	 * 
+	 * @param items
+	 * @param processor
+	 * @param parallel
+	 * @return results of the <code>processor</code>, in the order of the
+	 *         <code>items</code>
+	 */
+	private <T, R> List<R> processAll(List<T> items, Function<T, R> processor, boolean parallel) {
+		List<R> results = new ArrayList<>(items.size());
+		if (!parallel) {
+			for (T item : items) {
+				results.add(processor.apply(item));
+			}
+			return results;
+		}
+		List<Callable<R>> tasks = new ArrayList<>(items.size());
+		for (T item : items) {
+			tasks.add(() -> processor.apply(item));
+		}
+		List<Future<R>> futures;
+		try {
+			futures = this.parallelPool.invokeAll(tasks);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while processing the events.", e);
+		}
+		for (Future<R> future : futures) {
+			results.add(getResult(future));
+		}
+		return results;
+	}
+
+	/**
+	 * @param result
+	 *            of a completed task
+	 * @return result of the task
+	 */
+	private static <R> R getResult(Future<R> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while processing the events.", e);
+		} catch (ExecutionException e) {
+			// Fail the batch the same way as when the events are processed one by one
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Finds the document id of the document of the event, based on its type
+	 * 
+	 * @param event
+	 * @return the identified document, null if the event is not processed further
+	 */
+	private IdentifiedDocument identifyDocument(Event event) {
+		/**
+		 * Inside the file, whose path is given as the value of mainprop in
+		 * configuration for the filter, define the four properties
+		 * identifier.attribute.path.xml identifier.attribute.path.json
+		 * config.location.xml and config.location.json these properties will contain
+		 * path of the identifier attribute in xpath or jsonpath format and folder
+		 * locations where configuration files for xml and json will be stored
+		 */
+		Object docType = event.getField(typeField);
+		if (docType instanceof String) {
+			String docTypeStr = (String) docType;
+			Object document = event.getField(this.documentField);
+			if (document instanceof String) {
 				if (StringUtils.equals(docTypeStr, Constants.DOC_TYPE_XML)) {
-					processXmlDocument(event, eventIterator);
+					IdentifiedDocument cachedDocument = identifyCachedDocument(event, Constants.DOC_TYPE_XML,
+							(String) document);
+					return cachedDocument != null ? cachedDocument : identifyXmlDocument(event, (String) document);
 				} else if (StringUtils.equals(docTypeStr, Constants.DOC_TYPE_JSON)) {
-					processJsonDocument(event, eventIterator);
+					IdentifiedDocument cachedDocument = identifyCachedDocument(event, Constants.DOC_TYPE_JSON,
+							(String) document);
+					return cachedDocument != null ? cachedDocument : identifyJsonDocument(event, (String) document);
 				} // else do nothing
 			}
-			matchListener.filterMatched(event);
 		}
-		return events;
+		return null;
+	}
+
+	/**
+	 * Takes the document id from the result of the same document in
+	 * <code>resultCache</code>, without reading the document, and adds it to the
+	 * event
+	 * 
+	 * @param event
+	 * @param documentType
+	 * @param document
+	 * @return the identified document with the cached result, null if no result
+	 *         is cached
+	 */
+	private IdentifiedDocument identifyCachedDocument(Event event, String documentType, String document) {
+		if (this.resultCache == null) {
+			return null;
+		}
+		CachedResult cachedResult = this.resultCache.get(documentType, document);
+		if (cachedResult == null) {
+			return null;
+		}
+		event.setField(Constants.IDENTIFIER_EVENT_FIELD, cachedResult.getDocumentId());
+		IdentifiedDocument identifiedDocument = new IdentifiedDocument(event, documentType, document,
+				cachedResult.getDocumentId(), null);
+		identifiedDocument.cachedResult = cachedResult;
+		return identifiedDocument;
 	}
 
 	/**
 	 * Get identifier value from documentField using the value of
-	 * <code>identifier.attribute.path.xml</code><br>
-	 * Fetch the <code>Identifier_Value.conf</code> file from folder location given
-	 * as value of <code>config.location.xml</code><br>
-	 * For all xpath in the conf file extract the value from documentField and set
-	 * as field in logstash event
+	 * <code>identifier.attribute.path.xml</code> and adds it to the event
 	 *
 	 * @param event
-	 * @param eventIterator
-	 */
-	private void processXmlDocument(Event event, Iterator<Event> eventIterator) {
-		Object document = event.getField(this.documentField);
-		if (document instanceof String) {
-			String xmlDocument = (String) document;
-			Document domDocument;
-			XPath xPathInstance = XmlParseUtil.createXPathInstance();
-			String documentId = null;
-			try {
-				DocumentBuilder xmlDocBuilder = XmlParseUtil.createDocBuilderInstance();
-				domDocument = XmlParseUtil.getDocument(xmlDocBuilder, xmlDocument);
-				for(String xpathExpression : this.documentIdXPathList) {
-					String currentDocumentId = XmlParseUtil.getStringFromXPath(domDocument, xPathInstance, xpathExpression);
-					if(StringUtils.isNotBlank(documentId) && StringUtils.isNotBlank(currentDocumentId)) {
-						if(!StringUtils.equals(documentId, currentDocumentId)) {
-							throw new ConfigurationException(
-									"More than one XPathExpression to find document Id evaluates to some different non empty string."
-											+ " 1st document Id found:" + documentId + " 2nd document Id found:"
-											+ currentDocumentId);
+	 * @param xmlDocument
+	 * @return the identified document, null if the document id could not be found
+	 */
+	private IdentifiedDocument identifyXmlDocument(Event event, String xmlDocument) {
+		// Document is read by the xpath engine only when any of the xpaths can not be evaluated by streaming
+		Object parsedXmlDocument = null;
+		String documentId = null;
+		long startTime = System.nanoTime();
+		try {
+			String[] documentIds = null;
+			if (this.documentIdXPathOrder != null && !isConflictCheckSampled()) {
+				// Only the xpaths upto the first non blank document id are evaluated
+				documentIds = new String[this.documentIdXPaths.size()];
+				int[] order = this.documentIdXPathOrder.getOrder();
+				for (int position = 0; position < order.length; position++) {
+					int index = order[position];
+					String currentDocumentId = parsedXmlDocument == null ? evaluateXmlAlternative(xmlDocument, index) : null;
+					if (currentDocumentId == null) {
+						if (parsedXmlDocument == null) {
+							parsedXmlDocument = parseXmlDocument(xmlDocument);
 						}
-					} else if(StringUtils.isNotBlank(currentDocumentId)) {
-						documentId = currentDocumentId;
+						currentDocumentId = this.documentIdXPaths.evaluate(parsedXmlDocument, index);
+					}
+					documentIds[index] = currentDocumentId;
+					if (StringUtils.isNotBlank(currentDocumentId)) {
+						break;
+					}
+					if (position == 0 && parsedXmlDocument == null && order.length > 1
+							&& (isStreamingXmlEngine() || BooleanUtils.isTrue(this.identifierFirst))
+							&& this.documentIdStreamingXPaths.isStreamable()) {
+						// The other xpaths are streamed together in a single pass, instead of a pass each
+						documentIds = this.documentIdStreamingXPaths.evaluate(xmlDocument);
+						break;
 					}
 				}
-				if(StringUtils.isBlank(documentId)) {
-					throw new ConfigurationException("Could not find the document Id.");
+			} else {
+				// Scanning the text is tried before any other way, only the xpaths it can not tell are
+				// evaluated otherwise
+				documentIds = this.documentIdXmlScanner != null ? this.documentIdXmlScanner.scan(xmlDocument)
+						: new String[this.documentIdXPaths.size()];
+				boolean streaming = isStreamingXmlEngine() || BooleanUtils.isTrue(this.identifierFirst);
+				if (ArrayUtils.contains(documentIds, null) && streaming
+						&& this.documentIdStreamingXPaths.isStreamable()) {
+					fillUnscanned(documentIds, this.documentIdStreamingXPaths.evaluate(xmlDocument));
+				} else if (ArrayUtils.contains(documentIds, null)) {
+					parsedXmlDocument = parseXmlDocument(xmlDocument);
+					for (int index = 0; index < documentIds.length; index++) {
+						if (documentIds[index] == null) {
+							documentIds[index] = this.documentIdXPaths.evaluate(parsedXmlDocument, index);
+						}
+					}
 				}
-			} catch (ConfigurationException configEx) {
-				handleConfigurationException(event, configEx);
-				return;
 			}
-			// Add identifier field in the event
-			event.setField(Constants.IDENTIFIER_EVENT_FIELD, documentId);
-			String documentIdWithExt = StringUtils.join(documentId, Constants.CONFIG_FILE_EXTENSION);
-			String configFilePath = Paths
-					.get(this.mainProperties.getProperty(Constants.XML_CONFIG_FOLDER_PATH_KEY), documentIdWithExt)
-					.toString();
-			Configurations config = null;
-			try {
-				config = this.configCache.getConfigFromFileOrCache(configFilePath);
-			} catch (ConfigurationException configEx) {
-				handleConfigurationException(event, configEx);
-				return;
+			if (this.documentIdXPathOrder != null) {
+				countMatches(this.documentIdXPathOrder, documentIds);
 			}
-			// If no configuration file or empty configuration file found for the document,
-			// do not send it to any output channel.
-			if ((!config.getConfigFilePresentFlag()) || config.isEmptyConfigSet()) {
-				LOGGER.info(StringUtils.join("No configuration found for: ", documentId,
-						". The document will not be sent to any output channel."));
-				eventIterator.remove();
-				return;
+			for (String currentDocumentId : documentIds) {
+				if(StringUtils.isNotBlank(documentId) && StringUtils.isNotBlank(currentDocumentId)) {
+					if(!StringUtils.equals(documentId, currentDocumentId)) {
+						handleFailure(event, FilterMetrics.FAILURE_CONFLICTING_IDS, StringUtils.join(
+								"More than one XPathExpression to find document Id evaluates to some different non empty string.",
+								" 1st document Id found:", documentId, " 2nd document Id found:", currentDocumentId),
+								null);
+						return null;
+					}
+				} else if(StringUtils.isNotBlank(currentDocumentId)) {
+					documentId = currentDocumentId;
+				}
 			}
-			Map<String, List<String>> destFieldValuesMap = null;
-			try {
-				destFieldValuesMap = populateDestinationFieldValueMap(config, domDocument, Constants.DOC_TYPE_XML,
-						xPathInstance);
-			} catch (ConfigurationException configEx) {
-				handleConfigurationException(event, configEx);
-				return;
+			if(StringUtils.isBlank(documentId)) {
+				handleFailure(event, FilterMetrics.FAILURE_MISSING_ID, "Could not find the document Id.", null);
+				return null;
 			}
-			// Add fields to event
-			addFieldsToEventFromMap(destFieldValuesMap, event);
-		} // else do nothing
+		} catch (ConfigurationException configEx) {
+			handleConfigurationException(event, configEx, FilterMetrics.FAILURE_PARSE);
+			return null;
+		}
+		this.metrics.recordIdentificationTime(Constants.DOC_TYPE_XML, System.nanoTime() - startTime);
+		// Add identifier field in the event
+		event.setField(Constants.IDENTIFIER_EVENT_FIELD, documentId);
+		return new IdentifiedDocument(event, Constants.DOC_TYPE_XML, xmlDocument, documentId, parsedXmlDocument);
 	}
 
 	/**
 	 * Get identifier value from documentField using the value of
-	 * <code>identifier.attribute.path.json</code><br>
-	 * Fetch the <code>Identifier_Value.conf</code> file from folder location given
-	 * as value of <code>config.location.json</code><br>
-	 * For all jsonpath in the conf file extract the value from documentField and
-	 * set as field in logstash event
+	 * <code>identifier.attribute.path.json</code> and adds it to the event
 	 *
 	 * @param event
-	 * @param eventIterator
-	 */
-	private void processJsonDocument(Event event, Iterator<Event> eventIterator) {
-		Object document = event.getField(this.documentField);
-		if (document instanceof String) {
-			String jsonDocument = (String) document;
-			DocumentContext jsonDocumentContext = JsonParseUtil.getDocumentContext(jsonDocument);
-			String documentId = null;
-			try {
-				for(String jsonpathExpression : this.documentIdJsonPathList) {
-					String currentDocumentId = JsonParseUtil.getStringFromJsonPath(jsonDocumentContext, jsonpathExpression);
-					if(StringUtils.isNotBlank(documentId) && StringUtils.isNotBlank(currentDocumentId)) {
-						if(!StringUtils.equals(documentId, currentDocumentId)) {
-							throw new ConfigurationException(
-									"More than one JsonPathExpression to find document Id evaluates to different non empty strings."
-											+ " 1st document Id found:" + documentId + " 2nd document Id found:"
-											+ currentDocumentId);
+	 * @param jsonDocument
+	 * @return the identified document, null if the document id could not be found
+	 */
+	private IdentifiedDocument identifyJsonDocument(Event event, String jsonDocument) {
+		// Document is parsed only when any of the jsonpaths can not be evaluated by
+		// streaming
+		DocumentContext jsonDocumentContext = null;
+		String documentId = null;
+		long startTime = System.nanoTime();
+		try {
+			String[] documentIds = null;
+			if (this.documentIdJsonPathOrder != null && !isConflictCheckSampled()) {
+				// Only the jsonpaths upto the first non blank document id are evaluated
+				documentIds = new String[this.documentIdJsonPaths.size()];
+				int[] order = this.documentIdJsonPathOrder.getOrder();
+				for (int position = 0; position < order.length; position++) {
+					int index = order[position];
+					String currentDocumentId = jsonDocumentContext == null
+							? evaluateJsonAlternative(jsonDocument, index)
+							: null;
+					if (currentDocumentId == null) {
+						if (jsonDocumentContext == null) {
+							jsonDocumentContext = parseJsonDocument(jsonDocument);
 						}
-					} else if(StringUtils.isNotBlank(currentDocumentId)) {
-						documentId = currentDocumentId;
+						currentDocumentId = this.documentIdJsonPaths.evaluate(jsonDocumentContext, index);
+					}
+					documentIds[index] = currentDocumentId;
+					if (StringUtils.isNotBlank(currentDocumentId)) {
+						break;
+					}
+					String[] streamedIds = null;
+					if (position == 0 && jsonDocumentContext == null && order.length > 1
+							&& (isStreamingJsonEngine() || BooleanUtils.isTrue(this.identifierFirst))) {
+						// The other jsonpaths are streamed together in a single pass, instead of a pass each
+						streamedIds = this.documentIdStreamingJsonPaths.evaluate(jsonDocument);
+					}
+					if (streamedIds != null) {
+						documentIds = streamedIds;
+						break;
 					}
 				}
-				if(StringUtils.isBlank(documentId)) {
-					throw new ConfigurationException("Could not find the document Id.");
+			} else {
+				// Scanning the text is tried before any other way, only the jsonpaths it can not tell are
+				// evaluated otherwise
+				documentIds = this.documentIdJsonScanner != null ? this.documentIdJsonScanner.scan(jsonDocument)
+						: new String[this.documentIdJsonPaths.size()];
+				String[] streamedIds = null;
+				if (ArrayUtils.contains(documentIds, null)
+						&& (isStreamingJsonEngine() || BooleanUtils.isTrue(this.identifierFirst))) {
+					streamedIds = this.documentIdStreamingJsonPaths.evaluate(jsonDocument);
 				}
-			} catch (ConfigurationException configEx) {
-				handleConfigurationException(event, configEx);
-				return;
+				if (streamedIds != null) {
+					fillUnscanned(documentIds, streamedIds);
+				} else if (ArrayUtils.contains(documentIds, null)) {
+					jsonDocumentContext = parseJsonDocument(jsonDocument);
+					for (int index = 0; index < documentIds.length; index++) {
+						if (documentIds[index] == null) {
+							documentIds[index] = this.documentIdJsonPaths.evaluate(jsonDocumentContext, index);
+						}
+					}
+				}
+			}
+			if (this.documentIdJsonPathOrder != null) {
+				countMatches(this.documentIdJsonPathOrder, documentIds);
+			}
+			for (String currentDocumentId : documentIds) {
+				if(StringUtils.isNotBlank(documentId) && StringUtils.isNotBlank(currentDocumentId)) {
+					if(!StringUtils.equals(documentId, currentDocumentId)) {
+						handleFailure(event, FilterMetrics.FAILURE_CONFLICTING_IDS, StringUtils.join(
+								"More than one JsonPathExpression to find document Id evaluates to different non empty strings.",
+								" 1st document Id found:", documentId, " 2nd document Id found:", currentDocumentId),
+								null);
+						return null;
+					}
+				} else if(StringUtils.isNotBlank(currentDocumentId)) {
+					documentId = currentDocumentId;
+				}
+			}
+			if(StringUtils.isBlank(documentId)) {
+				handleFailure(event, FilterMetrics.FAILURE_MISSING_ID, "Could not find the document Id.", null);
+				return null;
+			}
+		} catch (ConfigurationException configEx) {
+			handleConfigurationException(event, configEx, FilterMetrics.FAILURE_PARSE);
+			return null;
+		}
+		this.metrics.recordIdentificationTime(Constants.DOC_TYPE_JSON, System.nanoTime() - startTime);
+		// Add identifier field in the event
+		event.setField(Constants.IDENTIFIER_EVENT_FIELD, documentId);
+		return new IdentifiedDocument(event, Constants.DOC_TYPE_JSON, jsonDocument, documentId, jsonDocumentContext);
+	}
+
+	/**
+	 * Evaluates a single xpath of <code>documentIdXPathList</code> by scanning or
+	 * streaming
+	 * 
+	 * @param xmlDocument
+	 * @param index
+	 * @return the document id found by the xpath at <code>index</code>, null if
+	 *         it can be found only on the DOM
+	 * @throws ConfigurationException
+	 *             if the document could not be read
+	 */
+	private String evaluateXmlAlternative(String xmlDocument, int index) throws ConfigurationException {
+		String documentId = this.documentIdXmlScanner != null ? this.documentIdXmlScanner.scan(xmlDocument, index)
+				: null;
+		StreamingXPaths streamingXPath = this.documentIdStreamingXPathAlternatives[index];
+		if (documentId == null && (isStreamingXmlEngine() || BooleanUtils.isTrue(this.identifierFirst))
+				&& streamingXPath.isStreamable()) {
+			documentId = streamingXPath.evaluate(xmlDocument)[0];
+		}
+		return documentId;
+	}
+
+	/**
+	 * Evaluates a single jsonpath of <code>documentIdJsonPathList</code> by
+	 * scanning or streaming
+	 * 
+	 * @param jsonDocument
+	 * @param index
+	 * @return the document id found by the jsonpath at <code>index</code>, null
+	 *         if it can be found only on the parsed document
+	 */
+	private String evaluateJsonAlternative(String jsonDocument, int index) {
+		String documentId = this.documentIdJsonScanner != null ? this.documentIdJsonScanner.scan(jsonDocument, index)
+				: null;
+		if (documentId == null && (isStreamingJsonEngine() || BooleanUtils.isTrue(this.identifierFirst))) {
+			String[] values = this.documentIdStreamingJsonPathAlternatives[index].evaluate(jsonDocument);
+			documentId = values != null ? values[0] : null;
+		}
+		return documentId;
+	}
+
+	/**
+	 * Copies the document ids found by streaming for the paths which could not
+	 * be scanned
+	 * 
+	 * @param documentIds
+	 *            found by scanning, null for the paths which could not be
+	 *            scanned
+	 * @param streamedIds
+	 *            found by streaming all the paths
+	 */
+	private static void fillUnscanned(String[] documentIds, String[] streamedIds) {
+		for (int index = 0; index < documentIds.length; index++) {
+			if (documentIds[index] == null) {
+				documentIds[index] = streamedIds[index];
+			}
+		}
+	}
+
+	/**
+	 * @return true if all the paths to find the document id should be evaluated
+	 *         for the current document, to check for conflicting document ids
+	 */
+	private boolean isConflictCheckSampled() {
+		return ThreadLocalRandom.current().nextInt(100) < this.multipathIdConflictCheckPercent;
+	}
+
+	/**
+	 * Counts the paths which found a non blank document id
+	 * 
+	 * @param pathOrder
+	 * @param documentIds
+	 *            found by the paths, null if not evaluated
+	 */
+	private static void countMatches(AdaptivePathOrder pathOrder, String[] documentIds) {
+		for (int index = 0; index < documentIds.length; index++) {
+			if (StringUtils.isNotBlank(documentIds[index])) {
+				pathOrder.countMatch(index);
 			}
-			// Add identifier field in the event
-			event.setField(Constants.IDENTIFIER_EVENT_FIELD, documentId);
-			String documentIdWithExt = StringUtils.join(documentId, Constants.CONFIG_FILE_EXTENSION);
-			String configFilePath = Paths
-					.get(this.mainProperties.getProperty(Constants.JSON_CONFIG_FOLDER_PATH_KEY), documentIdWithExt)
+		}
+	}
+
+	/**
+	 * Fetch the <code>Identifier_Value.conf</code> file from folder location given
+	 * as value of <code>config.location.xml</code> or
+	 * <code>config.location.json</code>, once for all the documents of the batch,
+	 * which have the same type and id as <code>identifiedDocument</code>.<br>
+	 * If no configuration file or empty configuration file found, the document
+	 * is marked to be dropped.
+	 * 
+	 * @param identifiedDocument
+	 * @param batchConfigs
+	 *            configurations already resolved in the batch, by
+	 *            {@link IdentifiedDocument#getGroupKey()}
+	 * @return true if the document should be mapped
+	 */
+	private boolean resolveConfigurations(IdentifiedDocument identifiedDocument,
+			ConcurrentMap<String, Configurations> batchConfigs) {
+		String groupKey = identifiedDocument.getGroupKey();
+		Configurations config = batchConfigs.get(groupKey);
+		boolean firstOfGroup = false;
+		if (config == null) {
+			String configFolderKey = StringUtils.equals(identifiedDocument.documentType, Constants.DOC_TYPE_XML)
+					? Constants.XML_CONFIG_FOLDER_PATH_KEY
+					: Constants.JSON_CONFIG_FOLDER_PATH_KEY;
+			String documentIdWithExt = StringUtils.join(identifiedDocument.documentId,
+					Constants.CONFIG_FILE_EXTENSION);
+			String configFilePath = Paths.get(this.mainProperties.getProperty(configFolderKey), documentIdWithExt)
 					.toString();
-			Configurations config = null;
 			try {
-				config = this.configCache.getConfigFromFileOrCache(configFilePath);
+				config = this.configCache.getConfigFromFileOrCache(configFilePath, identifiedDocument.documentType);
 			} catch (ConfigurationException configEx) {
-				handleConfigurationException(event, configEx);
-				return;
+				identifiedDocument.parsedDocument = null;
+				handleConfigurationException(identifiedDocument.event, configEx, FilterMetrics.FAILURE_CONFIGURATION);
+				return false;
 			}
-			// If no configuration file or empty configuration file found for the document,
-			// do not send it to any output channel.
-			if ((!config.getConfigFilePresentFlag()) || config.isEmptyConfigSet()) {
-				LOGGER.info(StringUtils.join("No configuration found for: ", documentId,
-						". The document will not be sent to any output channel."));
-				eventIterator.remove();
-				return;
+			Configurations resolvedConfig = batchConfigs.putIfAbsent(groupKey, config);
+			firstOfGroup = resolvedConfig == null;
+			if (!firstOfGroup) {
+				config = resolvedConfig;
 			}
-			Map<String, List<String>> destFieldValuesMap = null;
-			try {
-				destFieldValuesMap = populateDestinationFieldValueMap(config, jsonDocumentContext,
-						Constants.DOC_TYPE_JSON, null);
-			} catch (ConfigurationException configEx) {
-				handleConfigurationException(event, configEx);
+		}
+		// If no configuration file or empty configuration file found for the document,
+		// do not send it to any output channel.
+		if ((!config.getConfigFilePresentFlag()) || config.isEmptyConfigSet()) {
+			if (firstOfGroup) {
+				LOGGER.info(StringUtils.join("No configuration found for: ", identifiedDocument.documentId,
+						". The documents with this id will not be sent to any output channel."));
+			}
+			identifiedDocument.dropped = true;
+			identifiedDocument.parsedDocument = null;
+			this.metrics.countDroppedNoConfig(1);
+			return false;
+		}
+		identifiedDocument.config = config;
+		this.metrics.countMapped(identifiedDocument.documentType, identifiedDocument.documentId, 1);
+		return true;
+	}
+
+	/**
+	 * For all xpath or jsonpath in the conf file extract the value from
+	 * documentField and set as field in logstash event
+	 * 
+	 * @param identifiedDocument
+	 *            with resolved configurations
+	 */
+	private void mapDocument(IdentifiedDocument identifiedDocument) {
+		Configurations config = identifiedDocument.config;
+		if (identifiedDocument.cachedResult != null) {
+			String[] cachedValues = this.resultCache.getValues(identifiedDocument.cachedResult, config);
+			identifiedDocument.cachedResult = null;
+			if (cachedValues != null) {
+				config.getExtractionPlan().write(identifiedDocument.event, cachedValues);
 				return;
 			}
-			// Add fields to event
-			addFieldsToEventFromMap(destFieldValuesMap, event);
-		} // else do nothing
+			// Cached with older configurations, mapped again below
+		}
+		ExtractionPlan extractionPlan = config.getExtractionPlan();
+		String[] values;
+		long startTime = System.nanoTime();
+		// Time taken by parsing, if the document is parsed here, is not extraction time
+		long parseTime = 0;
+		String failureReason = FilterMetrics.FAILURE_EXTRACTION;
+		try {
+			if (StringUtils.equals(identifiedDocument.documentType, Constants.DOC_TYPE_XML)) {
+				StreamingXPaths streamingXPaths = isStreamingXmlEngine() ? config.getStreamingXPaths() : null;
+				if (streamingXPaths != null && streamingXPaths.isStreamable()) {
+					values = streamingXPaths.evaluate(identifiedDocument.document);
+				} else {
+					if (identifiedDocument.parsedDocument == null) {
+						failureReason = FilterMetrics.FAILURE_PARSE;
+						long parseStartTime = System.nanoTime();
+						identifiedDocument.parsedDocument = parseXmlDocument(identifiedDocument.document);
+						parseTime = System.nanoTime() - parseStartTime;
+						failureReason = FilterMetrics.FAILURE_EXTRACTION;
+					}
+					values = evaluateAll(config, identifiedDocument.parsedDocument, Constants.DOC_TYPE_XML);
+				}
+			} else {
+				values = isStreamingJsonEngine()
+						? config.getStreamingJsonPaths().evaluate(identifiedDocument.document)
+						: null;
+				if (values == null) {
+					if (identifiedDocument.parsedDocument == null) {
+						failureReason = FilterMetrics.FAILURE_PARSE;
+						long parseStartTime = System.nanoTime();
+						identifiedDocument.parsedDocument = parseJsonDocument(identifiedDocument.document);
+						parseTime = System.nanoTime() - parseStartTime;
+						failureReason = FilterMetrics.FAILURE_EXTRACTION;
+					}
+					values = evaluateAll(config, identifiedDocument.parsedDocument, Constants.DOC_TYPE_JSON);
+				}
+			}
+		} catch (ConfigurationException configEx) {
+			identifiedDocument.parsedDocument = null;
+			handleConfigurationException(identifiedDocument.event, configEx, failureReason);
+			return;
+		}
+		// Add fields to event
+		extractionPlan.write(identifiedDocument.event, values);
+		if (this.resultCache != null) {
+			this.resultCache.put(identifiedDocument.documentType, identifiedDocument.document,
+					identifiedDocument.documentId, config, values);
+		}
+		this.metrics.recordExtractionTime(identifiedDocument.documentType,
+				System.nanoTime() - startTime - parseTime);
+		// Parsed document is not needed anymore
+		identifiedDocument.parsedDocument = null;
+	}
+
+	/**
+	 * @return true if xml documents are read by the StAX streaming engine
+	 */
+	private boolean isStreamingXmlEngine() {
+		return StringUtils.equals(this.xmlEngine, Constants.XML_ENGINE_STAX);
+	}
+
+	/**
+	 * @return true if json documents are read by the streaming engine
+	 */
+	private boolean isStreamingJsonEngine() {
+		return StringUtils.equals(this.jsonEngine, Constants.JSON_ENGINE_STREAMING);
+	}
+
+	/**
+	 * Reads the xml document with the xpath engine, into a DOM by default
+	 * 
+	 * @param xmlDocument
+	 * @return the document model of the xpath engine
+	 * @throws ConfigurationException
+	 */
+	private Object parseXmlDocument(String xmlDocument) throws ConfigurationException {
+		long startTime = System.nanoTime();
+		Object parsedXmlDocument = this.xpathEngine.parse(xmlDocument);
+		this.metrics.recordParseTime(Constants.DOC_TYPE_XML, System.nanoTime() - startTime);
+		return parsedXmlDocument;
+	}
+
+	/**
+	 * Parses the json document
+	 * 
+	 * @param jsonDocument
+	 * @return
+	 * @throws ConfigurationException
+	 *             if the document is not valid json
+	 */
+	private DocumentContext parseJsonDocument(String jsonDocument) throws ConfigurationException {
+		long startTime = System.nanoTime();
+		DocumentContext jsonDocumentContext;
+		try {
+			jsonDocumentContext = this.jsonParseContext.parse(jsonDocument);
+		} catch (InvalidJsonException e) {
+			throw new DocumentException("Failed to Parse the json document.", e);
+		}
+		this.metrics.recordParseTime(Constants.DOC_TYPE_JSON, System.nanoTime() - startTime);
+		return jsonDocumentContext;
 	}
 
 	/**
@@ -399,57 +1543,58 @@ public class JsonXmlPathFilter implements Filter {
 	 * 
 	 * @param event
 	 * @param configEx
+	 * @param failureReason
+	 *            reason counted in the metrics
 	 */
-	private void handleConfigurationException(Event event, ConfigurationException configEx) {
-		// If there any Configuration Exception occurs add error tag with the event
-		LOGGER.error("Configuration Exception Occurred. Failed to parse the document", configEx);
-		event.tag(Constants.DOCUMENT_PARSE_FAILURE_TAG);
+	private void handleConfigurationException(Event event, ConfigurationException configEx, String failureReason) {
+		handleFailure(event, failureReason, configEx.getMessage(), configEx.getCause());
 	}
 
 	/**
-	 * Gets the values from xPath or jsonPath, maps them with the targeted field.
+	 * Tags the event with failure status and the reason of the failure in
+	 * <code>@metadata</code>, the failure is logged at most once per
+	 * <code>failureLogInterval</code> for every reason
 	 * 
-	 * @param fieldValuesMap
 	 * @param event
-	 * @throws ConfigurationException
+	 * @param failureReason
+	 *            reason counted in the metrics
+	 * @param message
+	 * @param cause
+	 *            may be null
 	 */
-	private Map<String, List<String>> populateDestinationFieldValueMap(Configurations config, Object currentDocument,
-			String documentType, XPath xPathInstance) throws ConfigurationException {
-		Map<String, List<String>> destFieldValuesMap = new HashMap<String, List<String>>();
-		for (String attributePathSource : config.getAllConfigurationKeys()) {
-			String destinationField = config.getValue(attributePathSource);
-			if (!destFieldValuesMap.containsKey(destinationField)) {
-				destFieldValuesMap.put(destinationField, new ArrayList<>());
-			}
-			if (StringUtils.equals(documentType, Constants.DOC_TYPE_JSON)) {
-				destFieldValuesMap.get(destinationField).add(
-						JsonParseUtil.getStringFromJsonPath((DocumentContext) currentDocument, attributePathSource));
-			} else if (StringUtils.equals(documentType, Constants.DOC_TYPE_XML)) {
-				destFieldValuesMap.get(destinationField).add(XmlParseUtil.getStringFromXPath((Document) currentDocument,
-						xPathInstance, attributePathSource));
-			}
-		}
-		return destFieldValuesMap;
+	private void handleFailure(Event event, String failureReason, String message, Throwable cause) {
+		event.tag(Constants.DOCUMENT_PARSE_FAILURE_TAG);
+		event.setField(Constants.FAILURE_REASON_METADATA_FIELD, failureReason);
+		event.setField(Constants.FAILURE_MESSAGE_METADATA_FIELD, message);
+		this.metrics.countFailure(failureReason);
+		this.failureLogger.log(failureReason, message, cause);
 	}
 
 	/**
-	 * Adds fields with the values to event, from <code>fieldValuesMap</code>
-	 * parameter
+	 * Evaluates the xPaths or jsonPaths of the configurations on the parsed
+	 * document, into the values buffer of the worker thread
 	 * 
-	 * @param fieldValuesMap
-	 * @param event
+	 * @param config
+	 * @param currentDocument
+	 *            document model of the xpath engine or context of the json
+	 *            document
+	 * @param documentType
+	 * @return values of the configurations at their index, valid until the next
+	 *         document is extracted on the thread
+	 * @throws ConfigurationException
 	 */
-	private void addFieldsToEventFromMap(Map<String, List<String>> fieldValuesMap, Event event) {
-		for (String fieldKey : fieldValuesMap.keySet()) {
-			List<String> destFieldValues = fieldValuesMap.get(fieldKey);
-			if ((destFieldValues == null) || destFieldValues.size() == 0)
-				continue;
-			if (destFieldValues.size() == 1) {
-				event.setField(fieldKey, destFieldValues.get(0));
-			} else {
-				event.setField(fieldKey, destFieldValues);
+	private String[] evaluateAll(Configurations config, Object currentDocument, String documentType)
+			throws ConfigurationException {
+		String[] values = config.getExtractionPlan().getValuesBuffer();
+		if (StringUtils.equals(documentType, Constants.DOC_TYPE_JSON)) {
+			CompiledJsonPaths compiledJsonPaths = config.getCompiledJsonPaths();
+			for (int index = 0; index < compiledJsonPaths.size(); index++) {
+				values[index] = compiledJsonPaths.evaluate((DocumentContext) currentDocument, index);
 			}
+		} else {
+			config.getCompiledXPaths(this.xpathEngine).evaluateAll(currentDocument, values);
 		}
+		return values;
 	}
 
 	/*
@@ -465,10 +1610,54 @@ public class JsonXmlPathFilter implements Filter {
 		configList.add(TYPE_CONFIG);
 		configList.add(MAIN_PROPERTIES_PATH_CONFIG);
 		configList.add(CACHE_SIZE_CONFIG);
+		configList.add(CACHE_MAX_BYTES_CONFIG);
+		configList.add(CACHE_REFRESH_INTERVAL_CONFIG);
 		configList.add(MULTIPATH_ID_CONFIG);
+		configList.add(MULTIPATH_ID_FIRST_MATCH_CONFIG);
+		configList.add(MULTIPATH_ID_CONFLICT_CHECK_PERCENT_CONFIG);
+		configList.add(CONFIG_WATCH_CONFIG);
+		configList.add(CONFIG_WATCH_DELAY_CONFIG);
+		configList.add(XML_ENGINE_CONFIG);
+		configList.add(JSON_ENGINE_CONFIG);
+		configList.add(JSON_PROVIDER_CONFIG);
+		configList.add(IDENTIFIER_FIRST_CONFIG);
+		configList.add(IDENTIFIER_SCAN_CONFIG);
+		configList.add(XML_PARSER_POOL_SIZE_CONFIG);
+		configList.add(XPATH_ENGINE_CONFIG);
+		configList.add(PARALLELISM_CONFIG);
+		configList.add(PARALLEL_BATCH_THRESHOLD_CONFIG);
+		configList.add(METRICS_INTERVAL_CONFIG);
+		configList.add(FAILURE_LOG_INTERVAL_CONFIG);
+		configList.add(WARM_UP_CONFIG);
+		configList.add(WARM_UP_FILE_CONFIG);
+		configList.add(WARM_UP_THREADS_CONFIG);
+		configList.add(RESULT_CACHE_SIZE_CONFIG);
+		configList.add(RESULT_CACHE_TTL_CONFIG);
 		return Collections.unmodifiableList(configList);
 	}
 
+	/**
+	 * @return the metrics of the filter
+	 */
+	FilterMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * @return completed with the number of preloaded configurations when the
+	 *         warm-up of the cache is done, null if no warm-up
+	 */
+	CompletableFuture<Integer> getWarmUpResult() {
+		return this.warmUpResult;
+	}
+
+	/**
+	 * @return the configurations cache of the filter
+	 */
+	ConfigurationsCache getConfigCache() {
+		return this.configCache;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -478,4 +1667,91 @@ public class JsonXmlPathFilter implements Filter {
 	public String getId() {
 		return this.id;
 	}
+
+	/**
+	 * Stops the background work of the filter, so that nothing of it is left
+	 * running when the pipeline is stopped or reloaded and a new filter is
+	 * created with the same id. The metrics reporter is stopped, the metrics
+	 * MBean is unregistered, the configuration folders are no longer watched, a
+	 * last snapshot of the most used document ids is saved and the parallel
+	 * processing threads are stopped once their batches are done.<br>
+	 * The filter should not be used after it is closed. Closing it again does
+	 * nothing.
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		if (this.metricsReporter != null) {
+			this.metricsReporter.close();
+		}
+		if (this.configWatcher != null) {
+			try {
+				this.configWatcher.close();
+			} catch (IOException ioException) {
+				LOGGER.warn("Failed to stop watching the configuration folders.", ioException);
+			}
+		}
+		if (this.warmUpSnapshots != null) {
+			this.warmUpSnapshots.close();
+		}
+		if (this.parallelPool != null) {
+			this.parallelPool.shutdown();
+		}
+	}
+
+	/**
+	 * A document of the batch whose id has been found, with whatever is known
+	 * about it while it is processed
+	 */
+	private static final class IdentifiedDocument {
+
+		private final Event event;
+
+		/**
+		 * xml or json
+		 */
+		private final String documentType;
+
+		private final String document;
+
+		private final String documentId;
+
+		/**
+		 * Document model of the xpath engine or DocumentContext of the document, null if it is not parsed
+		 */
+		private Object parsedDocument;
+
+		/**
+		 * Configurations of the document id, null until they are resolved
+		 */
+		private Configurations config;
+
+		/**
+		 * Result of the same document, found in the result cache, null if not
+		 * cached
+		 */
+		private CachedResult cachedResult;
+
+		/**
+		 * If the event should be dropped from the batch
+		 */
+		private boolean dropped;
+
+		private IdentifiedDocument(Event event, String documentType, String document, String documentId,
+				Object parsedDocument) {
+			this.event = event;
+			this.documentType = documentType;
+			this.document = document;
+			this.documentId = documentId;
+			this.parsedDocument = parsedDocument;
+		}
+
+		/**
+		 * @return key of the documents having the same type and id
+		 */
+		private String getGroupKey() {
+			return StringUtils.join(this.documentType, ":", this.documentId);
+		}
+	}
 }
@@ -1,36 +1,158 @@
 package edu.soumya.logstash.filter.cache;
 
-import java.util.Deque;
-import java.util.Hashtable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 
 import edu.soumya.logstash.filter.config.Configurations;
+import edu.soumya.logstash.filter.config.ConfigurationsBundle;
+import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
 
 /**
- * Implementation of Least recently used cache to cache most used
- * configurations<br>
- * and remove least recently used one when a cache miss occurs,<br>
- * to avoid loading configurations from files every time.
+ * Concurrent cache of the most used configurations, to avoid loading
+ * configurations from files every time.<br>
+ * Backed by a Caffeine cache, so cache hits are lock-free and do not
+ * serialize the pipeline workers. When the cache is full, the W-TinyLFU
+ * admission policy keeps frequently used configurations and evicts recently
+ * loaded ones which are rarely used again, so one-off document ids do not push
+ * out hot configurations.<br>
+ * Concurrent misses for the same configuration file are coalesced, only one
+ * worker loads the file and the others wait for its result.<br>
+ * If a {@link ConfigurationsBundle} is added for a configuration folder, the
+ * configurations of that folder are loaded from the bundle instead of the
+ * files.
  * 
  * @author Soumya Banerjee
  *
  */
 public class ConfigurationsCache {
-	Deque<String> configurationsQueue;
-	Map<String, Configurations> configurationsMap;
+	LoadingCache<String, Configurations> configurationsCache;
 	Long capacity = null;
+	Long refreshInterval = null;
+	Long maxBytes = null;
+
+	/**
+	 * Bundles by the path of the configuration folder they were built from
+	 */
+	private final Map<String, ConfigurationsBundle> bundles = new ConcurrentHashMap<>();
 
 	public ConfigurationsCache() {
-		// Making Queue and the Map thread-safe
-		this.configurationsQueue = new LinkedBlockingDeque<String>();
-		this.configurationsMap = new Hashtable<String, Configurations>();
+		this(null);
 	}
 
 	public ConfigurationsCache(Long capacity) {
-		this();
+		this(capacity, null);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of configurations in the cache, if null the cache
+	 *            is unbounded
+	 * @param refreshInterval
+	 *            seconds after loading, when a configuration is reloaded from file
+	 *            in background on its next lookup. Until the reload completes the
+	 *            already cached configuration is returned. If null configurations
+	 *            are never refreshed.
+	 */
+	public ConfigurationsCache(Long capacity, Long refreshInterval) {
+		this(capacity, refreshInterval, null);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximum number of configurations in the cache, if null the cache
+	 *            is unbounded by number
+	 * @param refreshInterval
+	 *            seconds after loading, when a configuration is reloaded from file
+	 *            in background on its next lookup. Until the reload completes the
+	 *            already cached configuration is returned. If null configurations
+	 *            are never refreshed.
+	 * @param maxBytes
+	 *            maximum estimated bytes of the configurations in the cache, as
+	 *            estimated by {@link Configurations#estimateWeight()}, if null the
+	 *            cache is unbounded by bytes. Can not be given with
+	 *            <code>capacity</code>.
+	 * @throws IllegalArgumentException
+	 *             if both <code>capacity</code> and <code>maxBytes</code> are given
+	 */
+	public ConfigurationsCache(Long capacity, Long refreshInterval, Long maxBytes) {
+		if (capacity != null && maxBytes != null) {
+			throw new IllegalArgumentException("Cache can be bounded either by number or by bytes, not both.");
+		}
 		this.capacity = capacity;
+		this.refreshInterval = refreshInterval;
+		this.maxBytes = maxBytes;
+		Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder().recordStats();
+		// If capacity is null the cache is unbounded
+		if (capacity != null) {
+			cacheBuilder.maximumSize(capacity.longValue());
+		} else if (maxBytes != null) {
+			// Large configurations take more of the bound than small ones, the weight is
+			// taken when a configuration is cached and again on a lookup once more of it
+			// is compiled
+			cacheBuilder.maximumWeight(maxBytes.longValue()).weigher(
+					(String configFilePath, Configurations configs) -> (int) Math.min(configs.estimateWeight(),
+							Integer.MAX_VALUE));
+		}
+		if (refreshInterval != null) {
+			// Refresh needs a background executor, so the stale value is returned while the
+			// file is reloaded
+			cacheBuilder.executor(ForkJoinPool.commonPool()).refreshAfterWrite(refreshInterval.longValue(),
+					TimeUnit.SECONDS);
+		} else {
+			// Run the eviction bookkeeping on the calling worker instead of the common
+			// fork join pool, it is amortized and never blocks a cache hit
+			cacheBuilder.executor(Runnable::run);
+		}
+		this.configurationsCache = cacheBuilder.build(new ConfigurationsLoader());
+	}
+
+	/**
+	 * Loads the configurations of the folder from the bundle, instead of the
+	 * files, from the next cache miss
+	 * 
+	 * @param configFolderPath
+	 * @param bundle
+	 *            built from the folder
+	 */
+	public void addBundle(String configFolderPath, ConfigurationsBundle bundle) {
+		this.bundles.put(Paths.get(configFolderPath).toString(), bundle);
+	}
+
+	/**
+	 * Loads the configurations from the bundle of the folder of the
+	 * <code>configFilePath</code>, or from the file if the folder has no bundle
+	 * 
+	 * @param configFilePath
+	 * @param documentType
+	 *            xml or json, null to not compile the keys
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	private Configurations loadConfigurations(String configFilePath, String documentType)
+			throws ConfigurationException {
+		if (!this.bundles.isEmpty()) {
+			Path path = Paths.get(configFilePath);
+			ConfigurationsBundle bundle = this.bundles.get(String.valueOf(path.getParent()));
+			if (bundle != null) {
+				String documentId = StringUtils.removeEnd(path.getFileName().toString(),
+						Constants.CONFIG_FILE_EXTENSION);
+				return documentType == null ? bundle.getConfigurations(documentId)
+						: bundle.getConfigurations(documentId, documentType);
+			}
+		}
+		return documentType == null ? Configurations.loadConfigFromFile(configFilePath)
+				: Configurations.loadConfigFromFile(configFilePath, documentType);
 	}
 
 	/**
@@ -42,32 +164,210 @@ public class ConfigurationsCache {
 	 * @throws ConfigurationException
 	 */
 	public Configurations getConfigFromFileOrCache(String configFilePath) throws ConfigurationException {
-		if (!configurationsMap.containsKey(configFilePath)) {
-			// If capacity is null do nothing.
-			// Otherwise check if dequeue size has reached the capacity
-			// Remove the element from the tail of the dequeue and from the map
-			if (capacity != null && (configurationsQueue.size() == capacity.intValue())) {
-				String last = configurationsQueue.removeLast();
-				configurationsMap.remove(last);
+		return getConfigFromFileOrCache(configFilePath, null);
+	}
+
+	/**
+	 * Gets the {@link Configurations} from the cache or loads it from file if it is
+	 * not available in the cache.<br>
+	 * When loaded from file, the configuration keys are compiled for the given
+	 * <code>documentType</code>, so cached entries hold the compiled expressions.
+	 * <br>
+	 * If other workers are looking up the same <code>configFilePath</code> at the
+	 * same time, the file is loaded only once and all of them get the same
+	 * {@link Configurations}.
+	 * 
+	 * @param configFilePath
+	 * @param documentType
+	 *            xml or json
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	public Configurations getConfigFromFileOrCache(String configFilePath, String documentType)
+			throws ConfigurationException {
+		try {
+			Configurations configs = this.configurationsCache.get(configFilePath, filePath -> {
+				try {
+					return loadConfigurations(filePath, documentType);
+				} catch (ConfigurationException configEx) {
+					throw new ConfigurationLoadException(configEx);
+				}
+			});
+			if (this.maxBytes != null && configs.hasGrownSinceWeighed()) {
+				// Replacing with the same configurations weighs them again
+				this.configurationsCache.asMap().replace(configFilePath, configs, configs);
 			}
-		} else {
-			// If it is already in the map, it is also in queue.
-			// In this case remove the element from the queue and place it on head of the
-			// dequeue
-			// So that it becomes the last used element
-			configurationsQueue.remove(configFilePath);
-			configurationsQueue.push(configFilePath);
-			return configurationsMap.get(configFilePath);
+			return configs;
+		} catch (ConfigurationLoadException loadEx) {
+			throw loadEx.getCause();
+		}
+	}
+
+	/**
+	 * Loads the {@link Configurations} into the cache, if it is not present in
+	 * the cache, for warming the cache up.<br>
+	 * The lookup is not counted as a cache miss, so the hit rate shows only the
+	 * lookups of the documents.
+	 * 
+	 * @param configFilePath
+	 * @param documentType
+	 *            xml or json
+	 * @return true if the configuration was loaded into the cache
+	 * @throws ConfigurationException
+	 */
+	public boolean preload(String configFilePath, String documentType) throws ConfigurationException {
+		// Map view does not count the lookup as cache hit or miss
+		if (this.configurationsCache.asMap().containsKey(configFilePath)) {
+			return false;
+		}
+		Configurations configs = loadConfigurations(configFilePath, documentType);
+		return this.configurationsCache.asMap().putIfAbsent(configFilePath, configs) == null;
+	}
+
+	/**
+	 * Reloads the {@link Configurations} from file, or from the bundle of its
+	 * folder, if it is present in the cache.<br>
+	 * The file is loaded and compiled for the same document type as the cached
+	 * configuration, without blocking lookups, then the cached configuration is
+	 * replaced atomically. If the cached configuration has been replaced or
+	 * evicted meanwhile, the reloaded one is discarded.
+	 * 
+	 * @param configFilePath
+	 * @return true if the cached configuration was replaced
+	 * @throws ConfigurationException
+	 *             if the file could not be loaded, the cached configuration is
+	 *             kept in that case
+	 */
+	public boolean reloadIfCached(String configFilePath) throws ConfigurationException {
+		// Map view does not count the lookup as cache hit or miss
+		Configurations oldConfigs = this.configurationsCache.asMap().get(configFilePath);
+		if (oldConfigs == null) {
+			return false;
 		}
-		configurationsQueue.push(configFilePath);
-		configurationsMap.put(configFilePath, Configurations.loadConfigFromFile(configFilePath));
-		return configurationsMap.get(configFilePath);
+		Configurations newConfigs = loadConfigurations(configFilePath, oldConfigs.getDocumentType());
+		return this.configurationsCache.asMap().replace(configFilePath, oldConfigs, newConfigs);
+	}
+
+	/**
+	 * @return number of lookups which found the configurations in the cache
+	 */
+	public long getHitCount() {
+		return this.configurationsCache.stats().hitCount();
 	}
-	
+
+	/**
+	 * @return number of lookups which had to load the configurations from file
+	 */
+	public long getMissCount() {
+		return this.configurationsCache.stats().missCount();
+	}
+
+	/**
+	 * @return number of times configurations were loaded from file, coalesced
+	 *         misses are counted once
+	 */
+	public long getLoadCount() {
+		return this.configurationsCache.stats().loadCount();
+	}
+
+	/**
+	 * @return total nanoseconds spent loading configurations from file
+	 */
+	public long getTotalLoadTime() {
+		return this.configurationsCache.stats().totalLoadTime();
+	}
+
+	/**
+	 * @return number of times loading configurations from file failed
+	 */
+	public long getLoadFailureCount() {
+		return this.configurationsCache.stats().loadFailureCount();
+	}
+
+	/**
+	 * @return estimated bytes of all the configurations in the cache. If the cache
+	 *         is bounded by bytes, it is the weight the bound is checked against,
+	 *         otherwise it is estimated on every call.
+	 */
+	public long getEstimatedBytes() {
+		if (this.maxBytes != null) {
+			return this.configurationsCache.policy().eviction()
+					.map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+		}
+		long estimatedBytes = 0;
+		for (Configurations configs : this.configurationsCache.asMap().values()) {
+			estimatedBytes += configs.estimateSize();
+		}
+		return estimatedBytes;
+	}
+
+	/**
+	 * @return true if the cache holds as many configurations as its bound, by
+	 *         number or by bytes. Configurations are still cached, evicting
+	 *         others.
+	 */
+	public boolean isFull() {
+		if (this.capacity != null) {
+			return this.configurationsCache.estimatedSize() >= this.capacity.longValue();
+		}
+		return this.maxBytes != null && getEstimatedBytes() >= this.maxBytes.longValue();
+	}
+
+	/**
+	 * @return number of configurations evicted from the cache
+	 */
+	public long getEvictionCount() {
+		return this.configurationsCache.stats().evictionCount();
+	}
+
+	/**
+	 * Performs the pending maintenance of the cache, like evictions. The cache is
+	 * bounded eventually, under contention it can hold a few configurations
+	 * over its capacity until the maintenance is done.
+	 */
+	public void cleanUp() {
+		this.configurationsCache.cleanUp();
+	}
+
 	/**
 	 * @return the Map Instance of the cache
 	 */
 	public Map<String, Configurations> getCurrentCacheMap() {
-		return this.configurationsMap;
+		return this.configurationsCache.asMap();
+	}
+
+	/**
+	 * Reloads configurations in background, when refresh interval is configured.
+	 * A reloaded configuration is compiled for the same document type, as the
+	 * configuration it replaces.
+	 */
+	private class ConfigurationsLoader implements CacheLoader<String, Configurations> {
+
+		@Override
+		public Configurations load(String configFilePath) throws ConfigurationException {
+			return loadConfigurations(configFilePath, null);
+		}
+
+		@Override
+		public Configurations reload(String configFilePath, Configurations oldConfigs)
+				throws ConfigurationException {
+			return loadConfigurations(configFilePath, oldConfigs.getDocumentType());
+		}
+	}
+
+	/**
+	 * Carries the {@link ConfigurationException} out of the cache loading function
+	 */
+	private static class ConfigurationLoadException extends RuntimeException {
+		private static final long serialVersionUID = -2465390532479615724L;
+
+		ConfigurationLoadException(ConfigurationException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized ConfigurationException getCause() {
+			return (ConfigurationException) super.getCause();
+		}
 	}
 }
@@ -0,0 +1,342 @@
+package edu.soumya.logstash.filter.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * Preloads configurations into the {@link ConfigurationsCache} at startup, so
+ * that the first events after a restart do not wait for configuration files
+ * to load.<br>
+ * Configurations are loaded by a few background threads in parallel, the
+ * pipeline workers looking up a configuration which is not preloaded yet load
+ * it themselves as usual. At most the capacity of the cache is preloaded, by
+ * number or by bytes, in the order of the given document ids, so the most used
+ * ids should come first.<br>
+ * Document ids are given as <code>type:id</code>, like <code>xml:id1</code>,
+ * and can be listed from the configuration folders, read from a manifest file
+ * with one id per line, or from a snapshot of the most used ids, saved
+ * periodically and when closed by
+ * {@link #scheduleSnapshots(Supplier, String, String)}.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class ConfigurationsWarmUp {
+
+	/**
+	 * Logger Instance
+	 */
+	public static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * Seconds between two snapshots of the most used document ids
+	 */
+	public static final long SNAPSHOT_INTERVAL = 60L;
+
+	/**
+	 * Separator of the document type and the document id
+	 */
+	private static final String TYPE_ID_SEPARATOR = ":";
+
+	/**
+	 * Cache, where the configurations are preloaded
+	 */
+	private final ConfigurationsCache configCache;
+
+	private final String xmlConfigFolderPath;
+
+	private final String jsonConfigFolderPath;
+
+	/**
+	 * Number of threads loading configurations in parallel
+	 */
+	private final int threads;
+
+	/**
+	 * Maximum number of configurations to preload, null if unbounded
+	 */
+	private final Long capacity;
+
+	/**
+	 * @param configCache
+	 * @param xmlConfigFolderPath
+	 * @param jsonConfigFolderPath
+	 * @param threads
+	 *            number of threads loading configurations in parallel
+	 * @param capacity
+	 *            maximum number of configurations to preload, the size of the
+	 *            cache, if null all the given ids are preloaded
+	 */
+	public ConfigurationsWarmUp(ConfigurationsCache configCache, String xmlConfigFolderPath,
+			String jsonConfigFolderPath, int threads, Long capacity) {
+		this.configCache = configCache;
+		this.xmlConfigFolderPath = xmlConfigFolderPath;
+		this.jsonConfigFolderPath = jsonConfigFolderPath;
+		this.threads = threads;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Starts preloading the configurations of the document ids in background.
+	 *
+	 * @param typeAndIds
+	 *            document ids as <code>type:id</code>, most used first
+	 * @return completed with the number of configurations loaded, when all are
+	 *         preloaded
+	 */
+	public CompletableFuture<Integer> start(List<String> typeAndIds) {
+		long startTime = System.nanoTime();
+		List<String> warmUpIds = new ArrayList<>(new LinkedHashSet<>(typeAndIds));
+		if (this.capacity != null && warmUpIds.size() > this.capacity.longValue()) {
+			warmUpIds = warmUpIds.subList(0, this.capacity.intValue());
+		}
+		AtomicInteger threadCount = new AtomicInteger();
+		ExecutorService warmUpPool = Executors.newFixedThreadPool(this.threads, runnable -> {
+			Thread thread = new Thread(runnable, "json_xml_path_filter-warmup-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		AtomicInteger loadedCount = new AtomicInteger();
+		CompletableFuture<?>[] loads = new CompletableFuture<?>[warmUpIds.size()];
+		for (int index = 0; index < loads.length; index++) {
+			String typeAndId = warmUpIds.get(index);
+			loads[index] = CompletableFuture.runAsync(() -> {
+				if (preload(typeAndId)) {
+					loadedCount.incrementAndGet();
+				}
+			}, warmUpPool);
+		}
+		int warmUpSize = warmUpIds.size();
+		return CompletableFuture.allOf(loads).handle((result, throwable) -> {
+			warmUpPool.shutdown();
+			LOGGER.info(StringUtils.join("Configurations warm-up loaded ", loadedCount.get(), " of ", warmUpSize,
+					" document id(s) in ", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime), " ms."));
+			return loadedCount.get();
+		});
+	}
+
+	/**
+	 * Loads the configurations of the document id into the cache
+	 *
+	 * @param typeAndId
+	 * @return true if loaded, false if already cached or failed
+	 */
+	private boolean preload(String typeAndId) {
+		String documentType = StringUtils.substringBefore(typeAndId, TYPE_ID_SEPARATOR);
+		String documentId = StringUtils.substringAfter(typeAndId, TYPE_ID_SEPARATOR);
+		String configFolderPath = StringUtils.equals(documentType, Constants.DOC_TYPE_XML) ? this.xmlConfigFolderPath
+				: StringUtils.equals(documentType, Constants.DOC_TYPE_JSON) ? this.jsonConfigFolderPath : null;
+		if (configFolderPath == null || StringUtils.isBlank(documentId)) {
+			LOGGER.warn("Skipped warm-up of invalid document id: " + typeAndId);
+			return false;
+		}
+		// Preloading into a full cache would only evict preloaded configurations
+		if (this.configCache.isFull()) {
+			return false;
+		}
+		String configFilePath = Paths
+				.get(configFolderPath, StringUtils.join(documentId, Constants.CONFIG_FILE_EXTENSION)).toString();
+		try {
+			return this.configCache.preload(configFilePath, documentType);
+		} catch (ConfigurationException | RuntimeException e) {
+			LOGGER.warn("Failed to warm-up the configurations of: " + typeAndId, e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return all document ids having a configuration file in the configuration
+	 *         folders, as <code>type:id</code>
+	 * @throws ConfigurationException
+	 *             if a folder could not be listed
+	 */
+	public List<String> listAllIds() throws ConfigurationException {
+		List<String> typeAndIds = new ArrayList<>();
+		listIds(Constants.DOC_TYPE_XML, this.xmlConfigFolderPath, typeAndIds);
+		listIds(Constants.DOC_TYPE_JSON, this.jsonConfigFolderPath, typeAndIds);
+		return typeAndIds;
+	}
+
+	private static void listIds(String documentType, String configFolderPath, List<String> typeAndIds)
+			throws ConfigurationException {
+		if (StringUtils.isBlank(configFolderPath)) {
+			return;
+		}
+		try (DirectoryStream<Path> configFiles = Files.newDirectoryStream(Paths.get(configFolderPath),
+				"*" + Constants.CONFIG_FILE_EXTENSION)) {
+			for (Path configFile : configFiles) {
+				typeAndIds.add(StringUtils.join(documentType, TYPE_ID_SEPARATOR,
+						StringUtils.removeEnd(configFile.getFileName().toString(), Constants.CONFIG_FILE_EXTENSION)));
+			}
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to list the configuration files in: " + configFolderPath,
+					ioException);
+		}
+	}
+
+	/**
+	 * Reads the document ids of a manifest or snapshot file, one
+	 * <code>type:id</code> per line. Blank lines and lines starting with # are
+	 * skipped.
+	 *
+	 * @param filePath
+	 * @return document ids in the order of the file
+	 * @throws ConfigurationException
+	 *             if the file could not be read
+	 */
+	public static List<String> readIds(String filePath) throws ConfigurationException {
+		List<String> typeAndIds = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty() && !line.startsWith("#")) {
+					typeAndIds.add(line);
+				}
+			}
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to read the document ids from: " + filePath, ioException);
+		}
+		return typeAndIds;
+	}
+
+	/**
+	 * Writes the document ids to a snapshot file, one <code>type:id</code> per
+	 * line. The file is replaced atomically, so a crash while writing does not
+	 * leave a partial snapshot.
+	 *
+	 * @param typeAndIds
+	 * @param filePath
+	 * @throws ConfigurationException
+	 *             if the file could not be written
+	 */
+	public static void writeIds(List<String> typeAndIds, String filePath) throws ConfigurationException {
+		Path snapshotFile = Paths.get(filePath).toAbsolutePath();
+		try {
+			Path tempFile = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(),
+					".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+				for (String typeAndId : typeAndIds) {
+					writer.write(typeAndId);
+					writer.newLine();
+				}
+			}
+			Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to write the document ids to: " + filePath, ioException);
+		}
+	}
+
+	/**
+	 * Saves the most used document ids to the snapshot file every
+	 * {@link #SNAPSHOT_INTERVAL} seconds, and once more when the returned
+	 * schedule is closed, for the warm-up of the next run
+	 *
+	 * @param mostUsedIds
+	 *            supplies the document ids as <code>type:id</code>, most used
+	 *            first
+	 * @param snapshotFilePath
+	 * @param threadName
+	 *            name of the thread saving the snapshots
+	 * @return the schedule, to be closed when the ids are no longer used
+	 */
+	public static SnapshotSchedule scheduleSnapshots(Supplier<List<String>> mostUsedIds, String snapshotFilePath,
+			String threadName) {
+		ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, threadName);
+			thread.setDaemon(true);
+			return thread;
+		});
+		SnapshotSchedule snapshotSchedule = new SnapshotSchedule(mostUsedIds, snapshotFilePath, snapshotExecutor);
+		snapshotExecutor.scheduleWithFixedDelay(snapshotSchedule, SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL,
+				TimeUnit.SECONDS);
+		return snapshotSchedule;
+	}
+
+	/**
+	 * Periodic snapshots of the most used document ids. Closing it stops the
+	 * periodic snapshots and takes a final one, so the snapshot file has the ids
+	 * of the closed filter and no thread is left behind.
+	 */
+	public static final class SnapshotSchedule implements Runnable, AutoCloseable {
+
+		private final Supplier<List<String>> mostUsedIds;
+
+		private final String snapshotFilePath;
+
+		private final ScheduledExecutorService snapshotExecutor;
+
+		private boolean closed;
+
+		private SnapshotSchedule(Supplier<List<String>> mostUsedIds, String snapshotFilePath,
+				ScheduledExecutorService snapshotExecutor) {
+			this.mostUsedIds = mostUsedIds;
+			this.snapshotFilePath = snapshotFilePath;
+			this.snapshotExecutor = snapshotExecutor;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public synchronized void run() {
+			if (!this.closed) {
+				writeSnapshot();
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.AutoCloseable#close()
+		 */
+		@Override
+		public synchronized void close() {
+			if (this.closed) {
+				return;
+			}
+			this.closed = true;
+			this.snapshotExecutor.shutdownNow();
+			writeSnapshot();
+		}
+
+		private void writeSnapshot() {
+			List<String> typeAndIds = this.mostUsedIds.get();
+			// Nothing mapped yet, keep the previous snapshot
+			if (typeAndIds.isEmpty()) {
+				return;
+			}
+			try {
+				writeIds(typeAndIds, this.snapshotFilePath);
+			} catch (ConfigurationException configEx) {
+				LOGGER.warn("Failed to save the snapshot of the most used document ids.", configEx);
+			}
+		}
+	}
+}
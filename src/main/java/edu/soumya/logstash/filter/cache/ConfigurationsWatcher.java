@@ -0,0 +1,202 @@
+package edu.soumya.logstash.filter.cache;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * Watches the configuration folders and reloads the cached configurations,
+ * whose files are created, modified or deleted, so that edited configuration
+ * files are picked up without restarting Logstash.<br>
+ * Changes are collected until no further change is seen for the debounce
+ * delay, so a burst of writes to a file reloads it only once. Only the
+ * configurations present in the cache are reloaded, each one is loaded and
+ * compiled on the watcher thread and then swapped into the cache atomically,
+ * so the pipeline workers never wait for a reload.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class ConfigurationsWatcher implements Runnable, AutoCloseable {
+
+	/**
+	 * Logger Instance
+	 */
+	public static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * Cache, whose configurations are reloaded
+	 */
+	private final ConfigurationsCache configCache;
+
+	/**
+	 * Milliseconds to wait for further changes before reloading
+	 */
+	private final long debounceDelay;
+
+	/**
+	 * Watch service, where the configuration folders are registered
+	 */
+	private final WatchService watchService;
+
+	/**
+	 * Registered configuration folders by their watch keys
+	 */
+	private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+
+	/**
+	 * Thread running this watcher
+	 */
+	private Thread watcherThread;
+
+	/**
+	 * Registers the <code>configFolderPaths</code> for changes. Same folder is
+	 * registered only once.
+	 * 
+	 * @param configCache
+	 * @param debounceDelay
+	 *            milliseconds to wait for further changes before reloading
+	 * @param configFolderPaths
+	 * @throws ConfigurationException
+	 *             if a folder could not be registered
+	 */
+	public ConfigurationsWatcher(ConfigurationsCache configCache, long debounceDelay, String... configFolderPaths)
+			throws ConfigurationException {
+		this.configCache = configCache;
+		this.debounceDelay = debounceDelay;
+		try {
+			this.watchService = FileSystems.getDefault().newWatchService();
+			Set<Path> registeredFolders = new HashSet<>();
+			for (String configFolderPath : configFolderPaths) {
+				Path configFolder = Paths.get(configFolderPath);
+				if (registeredFolders.add(configFolder.toAbsolutePath().normalize())) {
+					WatchKey watchKey = configFolder.register(this.watchService, ENTRY_CREATE, ENTRY_MODIFY,
+							ENTRY_DELETE);
+					this.watchedFolders.put(watchKey, configFolder);
+				}
+			}
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to watch the configuration folders", ioException);
+		}
+	}
+
+	/**
+	 * Starts watching on a daemon thread
+	 * 
+	 * @param threadName
+	 */
+	public synchronized void start(String threadName) {
+		if (this.watcherThread == null) {
+			this.watcherThread = new Thread(this, threadName);
+			this.watcherThread.setDaemon(true);
+			this.watcherThread.start();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				Set<String> changedFilePaths = new HashSet<>();
+				collectChanges(this.watchService.take(), changedFilePaths);
+				// Debounce: keep collecting until there is no change for debounceDelay
+				WatchKey watchKey;
+				while ((watchKey = this.watchService.poll(this.debounceDelay, TimeUnit.MILLISECONDS)) != null) {
+					collectChanges(watchKey, changedFilePaths);
+				}
+				reloadConfigurations(changedFilePaths);
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// Watcher is closed
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Adds the paths of the changed configuration files from the events of
+	 * <code>watchKey</code> to <code>changedFilePaths</code>.<br>
+	 * If events were lost, all cached configurations of the folder are added.
+	 * 
+	 * @param watchKey
+	 * @param changedFilePaths
+	 */
+	private void collectChanges(WatchKey watchKey, Set<String> changedFilePaths) {
+		Path configFolder = this.watchedFolders.get(watchKey);
+		for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+			if (configFolder == null) {
+				continue;
+			}
+			if (watchEvent.kind() == OVERFLOW) {
+				for (String cachedFilePath : this.configCache.getCurrentCacheMap().keySet()) {
+					if (configFolder.equals(Paths.get(cachedFilePath).getParent())) {
+						changedFilePaths.add(cachedFilePath);
+					}
+				}
+				continue;
+			}
+			Path fileName = (Path) watchEvent.context();
+			if (StringUtils.endsWith(fileName.toString(), Constants.CONFIG_FILE_EXTENSION)) {
+				changedFilePaths.add(configFolder.resolve(fileName).toString());
+			}
+		}
+		watchKey.reset();
+	}
+
+	/**
+	 * Reloads the cached configurations of the changed files
+	 * 
+	 * @param changedFilePaths
+	 */
+	private void reloadConfigurations(Set<String> changedFilePaths) {
+		for (String changedFilePath : changedFilePaths) {
+			try {
+				if (this.configCache.reloadIfCached(changedFilePath)) {
+					LOGGER.info(StringUtils.join("Reloaded configuration: ", changedFilePath));
+				}
+			} catch (ConfigurationException configEx) {
+				LOGGER.error(StringUtils.join("Failed to reload configuration: ", changedFilePath,
+						". Continuing with the previously loaded configuration."), configEx);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (this.watcherThread != null) {
+			this.watcherThread.interrupt();
+		}
+		this.watchService.close();
+	}
+}
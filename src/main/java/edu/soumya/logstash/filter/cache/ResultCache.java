@@ -0,0 +1,217 @@
+package edu.soumya.logstash.filter.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import edu.soumya.logstash.filter.config.Configurations;
+
+/**
+ * Bounded cache of the values extracted from recently mapped documents, so
+ * that a document which is exactly the same as an already mapped one is
+ * neither parsed nor identified again, its cached values are added to the
+ * event directly.<br>
+ * Results are keyed by a fast non-cryptographic 64-bit hash of the document
+ * type and the document. The cached document is compared with the looked up
+ * one on every hit, so a hash collision is counted and treated as a miss,
+ * never served. A result is only valid for the {@link Configurations} it was
+ * extracted with, the configurations of a document id are a new instance when
+ * they are reloaded, so results of older configurations are not served
+ * either.<br>
+ * Every cached result holds its document, the memory taken is about the
+ * maximum size times the size of the documents.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class ResultCache {
+
+	private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+	private final Cache<Long, CachedResult> resultCache;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder collisions = new LongAdder();
+
+	private final LongAdder stale = new LongAdder();
+
+	/**
+	 * @param maximumSize
+	 *            maximum number of cached results
+	 * @param ttl
+	 *            seconds after caching, when a result expires, if 0 results
+	 *            expire only by size
+	 */
+	public ResultCache(long maximumSize, long ttl) {
+		Caffeine<Object, Object> cacheBuilder = Caffeine.newBuilder().recordStats().maximumSize(maximumSize)
+				// Eviction bookkeeping on the calling worker, like the configurations cache
+				.executor(Runnable::run);
+		if (ttl > 0) {
+			cacheBuilder.expireAfterWrite(ttl, TimeUnit.SECONDS);
+		}
+		this.resultCache = cacheBuilder.build();
+	}
+
+	/**
+	 * Looks up the result of a document which is exactly the same as the given
+	 * one. A miss is counted if there is none, the hit is counted by
+	 * {@link #getValues(CachedResult, Configurations)}, once the configurations
+	 * of the document id are known.
+	 *
+	 * @param documentType
+	 *            xml or json
+	 * @param document
+	 * @return the cached result, null if not cached
+	 */
+	public CachedResult get(String documentType, String document) {
+		CachedResult cachedResult = this.resultCache.getIfPresent(hash(documentType, document));
+		if (cachedResult == null) {
+			this.misses.increment();
+			return null;
+		}
+		if (!cachedResult.isResultOf(documentType, document)) {
+			this.collisions.increment();
+			this.misses.increment();
+			return null;
+		}
+		return cachedResult;
+	}
+
+	/**
+	 * @param cachedResult
+	 *            found by {@link #get(String, String)}
+	 * @param config
+	 *            current configurations of the document id
+	 * @return the cached values of the configurations at their index, not to be
+	 *         modified, null if they were extracted with other configurations
+	 */
+	public String[] getValues(CachedResult cachedResult, Configurations config) {
+		if (cachedResult.config != config) {
+			this.stale.increment();
+			this.misses.increment();
+			return null;
+		}
+		this.hits.increment();
+		return cachedResult.values;
+	}
+
+	/**
+	 * Caches the values extracted from the document, replacing any result with
+	 * the same hash
+	 *
+	 * @param documentType
+	 *            xml or json
+	 * @param document
+	 * @param documentId
+	 * @param config
+	 *            configurations the values were extracted with
+	 * @param values
+	 *            values of the configurations at their index, copied so that
+	 *            the caller can reuse the array
+	 */
+	public void put(String documentType, String document, String documentId, Configurations config,
+			String[] values) {
+		this.resultCache.put(hash(documentType, document), new CachedResult(documentType, document, documentId,
+				config, Arrays.copyOf(values, config.size())));
+	}
+
+	/**
+	 * 64-bit hash of the characters of the document, four characters per round
+	 *
+	 * @param documentType
+	 * @param document
+	 * @return
+	 */
+	static long hash(String documentType, String document) {
+		int length = document.length();
+		long hash = PRIME_3 + documentType.hashCode() + length;
+		int index = 0;
+		for (; index + 4 <= length; index += 4) {
+			long block = document.charAt(index) | (long) document.charAt(index + 1) << 16
+					| (long) document.charAt(index + 2) << 32 | (long) document.charAt(index + 3) << 48;
+			hash = Long.rotateLeft(hash + block * PRIME_2, 31) * PRIME_1;
+		}
+		for (; index < length; index++) {
+			hash = Long.rotateLeft(hash ^ document.charAt(index) * PRIME_3, 11) * PRIME_1;
+		}
+		// Final avalanche, so that all the bits of the key depend on all the
+		// characters
+		hash ^= hash >>> 33;
+		hash *= PRIME_2;
+		hash ^= hash >>> 29;
+		return hash;
+	}
+
+	public long getHitCount() {
+		return this.hits.sum();
+	}
+
+	public long getMissCount() {
+		return this.misses.sum();
+	}
+
+	/**
+	 * @return lookups which found the result of a different document with the
+	 *         same hash
+	 */
+	public long getCollisionCount() {
+		return this.collisions.sum();
+	}
+
+	/**
+	 * @return lookups which found a result extracted with older configurations
+	 */
+	public long getStaleCount() {
+		return this.stale.sum();
+	}
+
+	public long getEvictionCount() {
+		return this.resultCache.stats().evictionCount();
+	}
+
+	public long getSize() {
+		return this.resultCache.estimatedSize();
+	}
+
+	/**
+	 * Values extracted from a document, with what is needed to verify that they
+	 * are still valid for a looked up document
+	 */
+	public static final class CachedResult {
+
+		private final String documentType;
+
+		private final String document;
+
+		private final String documentId;
+
+		private final Configurations config;
+
+		private final String[] values;
+
+		private CachedResult(String documentType, String document, String documentId, Configurations config,
+				String[] values) {
+			this.documentType = documentType;
+			this.document = document;
+			this.documentId = documentId;
+			this.config = config;
+			this.values = values;
+		}
+
+		private boolean isResultOf(String documentType, String document) {
+			return this.documentType.equals(documentType) && this.document.equals(document);
+		}
+
+		public String getDocumentId() {
+			return this.documentId;
+		}
+	}
+}
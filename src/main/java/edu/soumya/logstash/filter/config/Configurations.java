@@ -5,15 +5,27 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.plan.CompiledJsonPaths;
+import edu.soumya.logstash.filter.plan.CompiledXPaths;
+import edu.soumya.logstash.filter.plan.ExtractionPlan;
+import edu.soumya.logstash.filter.plan.StreamingJsonPaths;
+import edu.soumya.logstash.filter.plan.StreamingXPaths;
+import edu.soumya.logstash.filter.spi.JdkXPathEngine;
+import edu.soumya.logstash.filter.spi.XPathEngine;
 
 /**
  * @author Soumya Banerjee
@@ -30,12 +42,63 @@ public class Configurations {
 	 * Delimiter used to generate key and values from configuration file
 	 */
 	public static final String KEY_VALUE_SEPARATOR = "=>";
+
+	/**
+	 * Compiled once, as a separator of more than one character is compiled as a
+	 * regular expression on every split
+	 */
+	private static final Pattern KEY_VALUE_SEPARATOR_PATTERN = Pattern.compile(Pattern.quote(KEY_VALUE_SEPARATOR));
+
+	/**
+	 * Estimated bytes of the object itself and its flags, without the
+	 * configurations
+	 */
+	private static final int CONFIGURATIONS_BYTES = 96;
+
+	/**
+	 * Estimated bytes of the references to a key and its value in the arrays of
+	 * configurations
+	 */
+	private static final int ARRAY_SLOTS_BYTES = 16;
+
+	/**
+	 * Estimated bytes of a string, without its characters
+	 */
+	private static final int STRING_BYTES = 40;
+
+	/**
+	 * Estimated bytes of a compiled path expression, without the bytes
+	 * proportional to its length
+	 */
+	private static final int COMPILED_PATH_BYTES = 160;
+
+	/**
+	 * Estimated bytes of a compiled path expression per character of the
+	 * expression, for its steps, tokens and predicates
+	 */
+	private static final int COMPILED_PATH_BYTES_PER_CHAR = 16;
+
+	/**
+	 * Estimated bytes of the extraction plan per configuration, for its slot and
+	 * source index
+	 */
+	private static final int EXTRACTION_PLAN_BYTES = 24;
 	
 	/**
-	 * Generate keys and values from configuration file.
-	 * Should be initialized lazily when any configuration found.
+	 * Keys of the configurations, the path expressions, in the order of the
+	 * configuration file. Interned, so a path used by many configuration files
+	 * is stored once.<br>
+	 * Null until any configuration is found.
+	 */
+	private String[] keys;
+
+	/**
+	 * Values of the configurations, the destination fields, at the index of their
+	 * keys. Interned, so a destination field used by many configuration files is
+	 * stored once.<br>
+	 * Null until any configuration is found.
 	 */
-	private Map<String, String> keyValueConfigs;
+	private String[] values;
 	
 	/**
 	 * Indicates if configuration file present. If the file not present set this
@@ -43,10 +106,87 @@ public class Configurations {
 	 */
 	private Boolean configFilePresentFlag = Boolean.TRUE;
 
+	/**
+	 * Configuration keys compiled as xpath expressions, in the iteration order of
+	 * {@link #getAllConfigurationKeys()}.<br>
+	 * Compiled when loaded for xml documents, otherwise lazily on first use.
+	 */
+	private volatile CompiledXPaths compiledXPaths;
+
+	/**
+	 * Configuration keys compiled by an xpath engine other than the default one,
+	 * with the engine, in the iteration order of
+	 * {@link #getAllConfigurationKeys()}.<br>
+	 * Compiled lazily on first use.
+	 */
+	private volatile EngineXPaths engineXPaths;
+
+	/**
+	 * Configuration keys compiled as jsonpath expressions, in the iteration order
+	 * of {@link #getAllConfigurationKeys()}.<br>
+	 * Compiled when loaded for json documents, otherwise lazily on first use.
+	 */
+	private volatile CompiledJsonPaths compiledJsonPaths;
+
+	/**
+	 * Configuration keys compiled for single pass evaluation while streaming an
+	 * xml document, in the iteration order of {@link #getAllConfigurationKeys()}.
+	 * <br>
+	 * Compiled when loaded for xml documents, otherwise lazily on first use.
+	 */
+	private volatile StreamingXPaths streamingXPaths;
+
+	/**
+	 * Configuration keys compiled for single pass evaluation while streaming a
+	 * json document, in the iteration order of {@link #getAllConfigurationKeys()}.
+	 * <br>
+	 * Compiled when loaded for json documents, otherwise lazily on first use.
+	 */
+	private volatile StreamingJsonPaths streamingJsonPaths;
+
+	/**
+	 * Destination fields of the configurations resolved for writing the
+	 * extracted values into the events.<br>
+	 * Built when loaded, otherwise lazily on first use.
+	 */
+	private volatile ExtractionPlan extractionPlan;
+
+	/**
+	 * Compiled objects counted when the configurations were last weighed, see
+	 * {@link #estimateWeight()}
+	 */
+	private volatile int weighedCompiledCount;
+
+	/**
+	 * Document type, the configuration keys were compiled for while loading
+	 */
+	private String documentType;
+
 	public Configurations() {
 		
 	}
 
+	/**
+	 * @param keys
+	 *            keys of the configurations, already split and trimmed like the
+	 *            ones loaded by {@link #load(Reader)}, without duplicates
+	 * @param values
+	 *            values at the index of their keys
+	 */
+	Configurations(String[] keys, String[] values) {
+		if (keys.length > 0) {
+			this.keys = internAll(keys);
+			this.values = internAll(values);
+		}
+	}
+
+	private static String[] internAll(String[] strings) {
+		for (int index = 0; index < strings.length; index++) {
+			strings[index] = strings[index].intern();
+		}
+		return strings;
+	}
+
 	/**
 	 * @return the configFilePresentFlag
 	 */
@@ -61,6 +201,14 @@ public class Configurations {
 		this.configFilePresentFlag = configFilePresentFlag;
 	}
 
+	/**
+	 * @return the document type, the configuration keys were compiled for while
+	 *         loading, or null if not compiled while loading
+	 */
+	public String getDocumentType() {
+		return documentType;
+	}
+
 	/**
 	 * Loads the Configurations from the files, whose location is shared as
 	 * <code>configFilePath</code>
@@ -75,15 +223,58 @@ public class Configurations {
 			configs.load(reader);
 		} catch (FileNotFoundException e) {
 			// If file is not found set configFilePresentFlag = false.
-			// Print the error log and suppress the Exception
+			// Documents without configuration are expected, the filter reports them
+			// without the stack trace
 			configs.setConfigFilePresentFlag(Boolean.FALSE);
-			LOGGER.error("Configuration file not found in the path:", configFilePath, e);
+			LOGGER.debug("Configuration file not found in the path: {}", configFilePath);
 		} catch (IOException ioException) {
 			throw new ConfigurationException("Failed to close the Configuration file Stream", ioException);
 		}
 		return configs;
 	}
 
+	/**
+	 * Loads the Configurations from the files, whose location is shared as
+	 * <code>configFilePath</code> and compiles the keys for the given
+	 * <code>documentType</code>, so that they are not compiled per event.
+	 * 
+	 * @param configFilePath
+	 * @param documentType
+	 *            xml or json
+	 * @return Configurations
+	 * @throws ConfigurationException
+	 */
+	public static Configurations loadConfigFromFile(String configFilePath, String documentType)
+			throws ConfigurationException {
+		Configurations configs = loadConfigFromFile(configFilePath);
+		configs.compile(documentType);
+		return configs;
+	}
+
+	/**
+	 * Compiles the configuration keys as path expressions of the given
+	 * <code>documentType</code>. Does nothing if no configuration is loaded.
+	 * 
+	 * @param documentType
+	 *            xml or json
+	 * @throws ConfigurationException
+	 *             if any of the keys is not a valid path expression
+	 */
+	public void compile(String documentType) throws ConfigurationException {
+		this.documentType = documentType;
+		if (isEmptyConfigSet()) {
+			return;
+		}
+		getExtractionPlan();
+		if (StringUtils.equals(documentType, Constants.DOC_TYPE_XML)) {
+			getCompiledXPaths();
+			getStreamingXPaths();
+		} else if (StringUtils.equals(documentType, Constants.DOC_TYPE_JSON)) {
+			getCompiledJsonPaths();
+			getStreamingJsonPaths();
+		}
+	}
+
 	/**
 	 * Loads the Key and Value from the lines of the Content supplied by the
 	 * <code>reader.</code> <br>
@@ -100,54 +291,349 @@ public class Configurations {
 	public void load(Reader reader) throws ConfigurationException {
 		if(reader == null) throw new ConfigurationException("Error in loading configuration. Reader not initialized.");
 		BufferedReader buffReader = new BufferedReader(reader, 32768);
+		// Keys and values are collected in a map only while loading, to find the
+		// duplicate keys
+		Map<String, String> keyValueConfigs = new LinkedHashMap<String, String>();
+		for (int index = 0; index < size(); index++) {
+			keyValueConfigs.put(this.keys[index], this.values[index]);
+		}
 		String line;
 		try {
 			while ((line = buffReader.readLine()) != null) {
 				if (StringUtils.isBlank(line))
 					continue;
-				String[] keyValue = line.split(KEY_VALUE_SEPARATOR);
+				String[] keyValue = KEY_VALUE_SEPARATOR_PATTERN.split(line);
 				if (keyValue.length != 2)
 					throw new ConfigurationException("Improper Configuration Supplied");
 				String key = keyValue[0].trim();
 				String value = keyValue[1].trim();
-				//Lazily initialize the keyValueConfigs Map
-				if(this.keyValueConfigs==null) {
-					keyValueConfigs = new HashMap<String, String>();
-				}
-				if (this.keyValueConfigs.containsKey(key))
+				if (keyValueConfigs.containsKey(key))
 					throw new ConfigurationException("Duplicate Key Found in Confugration");
-				this.keyValueConfigs.put(key, value);
+				keyValueConfigs.put(key, value);
 			}
 		} catch(IOException ioException) {
 			throw new ConfigurationException("Failed to read line, from the reader:"+ reader,ioException);
 		}
+		if (keyValueConfigs.size() > size()) {
+			this.keys = internAll(keyValueConfigs.keySet().toArray(new String[0]));
+			this.values = internAll(keyValueConfigs.values().toArray(new String[0]));
+		}
 	}
-	
+
+	/**
+	 * @return number of configurations
+	 */
+	public int size() {
+		return this.keys == null ? 0 : this.keys.length;
+	}
+
+	/**
+	 * @param index
+	 *            of the configuration, in the order of the configuration file
+	 * @return the key of the configuration, the path expression
+	 */
+	public String getKey(int index) {
+		return this.keys[index];
+	}
+
+	/**
+	 * Returns the value of the configuration at the index, the keys compiled by
+	 * this instance are at the same index in the compiled expressions.
+	 * 
+	 * @param index
+	 *            of the configuration, in the order of the configuration file
+	 * @return the value of the configuration, the destination field
+	 */
+	public String getValue(int index) {
+		return this.values[index];
+	}
+
 	/**
 	 * Searches for the configuration with the specified key in this configuration list.<br>
 	 * The method returns
-     * {@code null} if the configuration is not found.
+     * {@code null} if the configuration is not found.<br>
+	 * The keys are searched one by one, use {@link #getValue(int)} while
+	 * processing documents.
 	 * 
 	 * @param key
 	 * @return
 	 */
 	public String getValue(String key) {
-		return this.keyValueConfigs.get(key);
+		for (int index = 0; index < size(); index++) {
+			if (this.keys[index].equals(key)) {
+				return this.values[index];
+			}
+		}
+		return null;
 	}
 	
 	/**
 	 * This method returns all the loaded Configuration keys
-	 * @return All Configuration keys
+	 * @return All Configuration keys, in the order of the configuration file
 	 */
 	public Set<String> getAllConfigurationKeys() {
-		return this.keyValueConfigs.keySet();
+		if (this.keys == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(this.keys)));
 	}
 	
 	/**
-	 * @return true if <code>keyValueConfigs</code> map is null or has no entry in it
+	 * Returns the configuration keys as compiled xpath expressions, in the
+	 * iteration order of {@link #getAllConfigurationKeys()}.<br>
+	 * Compiles them on the first call, if not already compiled while loading.
+	 * 
+	 * @return compiled xpath expressions of all configuration keys
+	 * @throws ConfigurationException
+	 *             if any of the keys is not a valid xpath
+	 */
+	public CompiledXPaths getCompiledXPaths() throws ConfigurationException {
+		CompiledXPaths xPaths = this.compiledXPaths;
+		if (xPaths == null) {
+			synchronized (this) {
+				xPaths = this.compiledXPaths;
+				if (xPaths == null) {
+					xPaths = new CompiledXPaths(getKeys());
+					this.compiledXPaths = xPaths;
+				}
+			}
+		}
+		return xPaths;
+	}
+
+	/**
+	 * Returns the configuration keys as xpath expressions compiled by the
+	 * <code>xpathEngine</code>, in the iteration order of
+	 * {@link #getAllConfigurationKeys()}.<br>
+	 * For the default engine it is the same as {@link #getCompiledXPaths()},
+	 * for any other engine they are compiled on the first call with it.
+	 * 
+	 * @param xpathEngine
+	 * @return xpath expressions of all configuration keys compiled by the engine
+	 * @throws ConfigurationException
+	 *             if any of the keys is not a valid xpath
+	 */
+	public XPathEngine.Expressions getCompiledXPaths(XPathEngine xpathEngine) throws ConfigurationException {
+		if (xpathEngine instanceof JdkXPathEngine) {
+			return getCompiledXPaths();
+		}
+		EngineXPaths xPaths = this.engineXPaths;
+		if (xPaths == null || xPaths.engine != xpathEngine) {
+			synchronized (this) {
+				xPaths = this.engineXPaths;
+				if (xPaths == null || xPaths.engine != xpathEngine) {
+					xPaths = new EngineXPaths(xpathEngine, xpathEngine.compile(getKeys()));
+					this.engineXPaths = xPaths;
+				}
+			}
+		}
+		return xPaths.expressions;
+	}
+
+	/**
+	 * Returns the configuration keys compiled for evaluation while streaming an
+	 * xml document, in the iteration order of {@link #getAllConfigurationKeys()}.
+	 * <br>
+	 * Compiles them on the first call, if not already compiled while loading. If
+	 * any of the keys is outside the xpath subset supported by streaming, the
+	 * returned instance is not streamable.
+	 * 
+	 * @return streaming xpath expressions of all configuration keys
+	 */
+	public StreamingXPaths getStreamingXPaths() {
+		StreamingXPaths xPaths = this.streamingXPaths;
+		if (xPaths == null) {
+			synchronized (this) {
+				xPaths = this.streamingXPaths;
+				if (xPaths == null) {
+					xPaths = new StreamingXPaths(getKeys());
+					this.streamingXPaths = xPaths;
+				}
+			}
+		}
+		return xPaths;
+	}
+
+	/**
+	 * Returns the configuration keys compiled for evaluation while streaming a
+	 * json document, in the iteration order of {@link #getAllConfigurationKeys()}.
+	 * <br>
+	 * Compiles them on the first call, if not already compiled while loading. If
+	 * any of the keys is outside the jsonpath subset supported by streaming, the
+	 * returned instance is not streamable.
+	 * 
+	 * @return streaming jsonpath expressions of all configuration keys
+	 */
+	public StreamingJsonPaths getStreamingJsonPaths() {
+		StreamingJsonPaths jsonPaths = this.streamingJsonPaths;
+		if (jsonPaths == null) {
+			synchronized (this) {
+				jsonPaths = this.streamingJsonPaths;
+				if (jsonPaths == null) {
+					jsonPaths = new StreamingJsonPaths(getKeys());
+					this.streamingJsonPaths = jsonPaths;
+				}
+			}
+		}
+		return jsonPaths;
+	}
+
+	/**
+	 * Returns the configuration keys as compiled jsonpath expressions, in the
+	 * iteration order of {@link #getAllConfigurationKeys()}.<br>
+	 * Compiles them on the first call, if not already compiled while loading.
+	 * 
+	 * @return compiled jsonpath expressions of all configuration keys
+	 * @throws ConfigurationException
+	 *             if any of the keys is not a valid jsonpath
+	 */
+	public CompiledJsonPaths getCompiledJsonPaths() throws ConfigurationException {
+		CompiledJsonPaths jsonPaths = this.compiledJsonPaths;
+		if (jsonPaths == null) {
+			synchronized (this) {
+				jsonPaths = this.compiledJsonPaths;
+				if (jsonPaths == null) {
+					jsonPaths = new CompiledJsonPaths(getKeys());
+					this.compiledJsonPaths = jsonPaths;
+				}
+			}
+		}
+		return jsonPaths;
+	}
+	
+	/**
+	 * Returns the plan for writing the values of the configurations into the
+	 * events, the values being index wise same as the compiled expressions.<br>
+	 * Built on the first call, if not already built while loading.
+	 * 
+	 * @return extraction plan of all configurations
+	 */
+	public ExtractionPlan getExtractionPlan() {
+		ExtractionPlan plan = this.extractionPlan;
+		if (plan == null) {
+			synchronized (this) {
+				plan = this.extractionPlan;
+				if (plan == null) {
+					plan = new ExtractionPlan(this.values == null ? new String[0] : this.values);
+					this.extractionPlan = plan;
+				}
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * @return copy of the keys, in the order of the configuration file
+	 */
+	private String[] getKeys() {
+		return this.keys == null ? new String[0] : this.keys.clone();
+	}
+
+	/**
+	 * Estimates the bytes of heap held by these configurations, counting the keys,
+	 * the values and the path expressions compiled so far, with every thread copy
+	 * of the xpath expressions.<br>
+	 * It is an estimate from the lengths of the strings, not a measure, so it
+	 * should be used to compare and bound configurations, not to size the heap
+	 * exactly. Interned keys and values shared with other configurations are
+	 * counted in each of them, so it errs on the high side.
+	 * 
+	 * @return estimated bytes
+	 */
+	public long estimateSize() {
+		long size = CONFIGURATIONS_BYTES;
+		if (isEmptyConfigSet()) {
+			return size;
+		}
+		int compiledForms = countCompiledCopies();
+		if (this.extractionPlan != null) {
+			size += (long) EXTRACTION_PLAN_BYTES * this.keys.length;
+		}
+		for (int index = 0; index < this.keys.length; index++) {
+			int keyLength = this.keys[index].length();
+			// Characters are counted as two bytes, as they are without compact strings
+			size += ARRAY_SLOTS_BYTES + 2L * STRING_BYTES + 2L * (keyLength + this.values[index].length());
+			size += (long) compiledForms * (COMPILED_PATH_BYTES + COMPILED_PATH_BYTES_PER_CHAR * keyLength);
+		}
+		return size;
+	}
+
+	/**
+	 * Estimates the bytes of heap held like {@link #estimateSize()}, as the
+	 * weight of these configurations in a cache bounded by bytes
+	 * 
+	 * @return estimated bytes
+	 */
+	public long estimateWeight() {
+		this.weighedCompiledCount = countCompiledObjects();
+		return estimateSize();
+	}
+
+	/**
+	 * The keys are compiled lazily for other forms, and the xpath expressions
+	 * again for concurrent evaluations, after the configurations are weighed
+	 * when cached. Then they should be weighed again.
+	 * 
+	 * @return true if more is compiled than when {@link #estimateWeight()} was
+	 *         last called
+	 */
+	public boolean hasGrownSinceWeighed() {
+		return countCompiledObjects() != this.weighedCompiledCount;
+	}
+
+	/**
+	 * @return number of compiled copies of the keys and the extraction plan, it
+	 *         only grows
+	 */
+	private int countCompiledObjects() {
+		return countCompiledCopies() + (this.extractionPlan == null ? 0 : 1);
+	}
+
+	/**
+	 * @return number of copies, the keys are compiled to so far, of all forms
+	 */
+	private int countCompiledCopies() {
+		int compiledForms = 0;
+		CompiledXPaths xPaths = this.compiledXPaths;
+		if (xPaths != null) {
+			compiledForms += xPaths.getCopyCount();
+		}
+		EngineXPaths engineXPaths = this.engineXPaths;
+		if (engineXPaths != null) {
+			compiledForms += engineXPaths.expressions.getCopyCount();
+		}
+		if (this.streamingXPaths != null) {
+			compiledForms++;
+		}
+		if (this.compiledJsonPaths != null) {
+			compiledForms++;
+		}
+		if (this.streamingJsonPaths != null) {
+			compiledForms++;
+		}
+		return compiledForms;
+	}
+
+	/**
+	 * @return true if no configuration is loaded
 	 */
 	public Boolean isEmptyConfigSet() {
-		return Boolean.valueOf((this.keyValueConfigs==null) || (this.keyValueConfigs.size()==0));
+		return Boolean.valueOf(size() == 0);
+	}
+
+	/**
+	 * Expressions compiled by an xpath engine, with the engine
+	 */
+	private static final class EngineXPaths {
+
+		private final XPathEngine engine;
+
+		private final XPathEngine.Expressions expressions;
+
+		EngineXPaths(XPathEngine engine, XPathEngine.Expressions expressions) {
+			this.engine = engine;
+			this.expressions = expressions;
+		}
 	}
 
 }
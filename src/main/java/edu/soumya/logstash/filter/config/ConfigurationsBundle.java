@@ -0,0 +1,363 @@
+package edu.soumya.logstash.filter.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * All the configuration files of a folder, compiled into one indexed binary
+ * file, which is memory mapped by the filter.<br>
+ * A document id is found through a hash index in the mapped file and its
+ * configurations are decoded straight from the mapping, so a cache miss does
+ * no file I/O and no parsing of <code>=&gt;</code> lines. A document id which
+ * is not in the bundle has no configuration file, as if its file was missing
+ * from the folder.<br>
+ * The bundle is built offline from the folder, with the <code>main</code>
+ * method of this class or the <code>buildConfigBundle</code> Gradle task, and
+ * should be built again when the configuration files change.
+ * <p>
+ * Layout of the file, in big endian:
+ *
+ * <pre>
+ * header:  magic (int), version (int), number of ids (int), number of slots (int)
+ * index:   slots of hash of the document id (int), offset of the entry (int), 0 if empty
+ * entries: document id (int length, UTF-8 bytes), number of configurations (int),
+ *          then key and value of every configuration (int length, UTF-8 bytes)
+ * </pre>
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class ConfigurationsBundle {
+
+	/**
+	 * Logger Instance
+	 */
+	public static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * First bytes of a bundle file, "JXPB"
+	 */
+	static final int MAGIC = 0x4A585042;
+
+	/**
+	 * Version of the layout of the bundle file
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * Bytes of the header
+	 */
+	private static final int HEADER_SIZE = 16;
+
+	/**
+	 * Bytes of a slot of the index
+	 */
+	private static final int SLOT_SIZE = 8;
+
+	/**
+	 * Read only mapping of the bundle file, never read through directly, only
+	 * through duplicates, so concurrent lookups do not share a position
+	 */
+	private final ByteBuffer mapping;
+
+	/**
+	 * Number of document ids in the bundle
+	 */
+	private final int size;
+
+	/**
+	 * Number of slots of the index, a power of two
+	 */
+	private final int slotCount;
+
+	private ConfigurationsBundle(ByteBuffer mapping) throws ConfigurationException {
+		if (mapping.remaining() < HEADER_SIZE || mapping.getInt(0) != MAGIC) {
+			throw new ConfigurationException("Not a configurations bundle.");
+		}
+		if (mapping.getInt(4) != VERSION) {
+			throw new ConfigurationException("Unsupported configurations bundle version: " + mapping.getInt(4));
+		}
+		this.mapping = mapping;
+		this.size = mapping.getInt(8);
+		this.slotCount = mapping.getInt(12);
+		if (Integer.bitCount(this.slotCount) != 1
+				|| mapping.remaining() < HEADER_SIZE + (long) this.slotCount * SLOT_SIZE) {
+			throw new ConfigurationException("Corrupted configurations bundle.");
+		}
+	}
+
+	/**
+	 * Memory maps the bundle file
+	 *
+	 * @param bundleFilePath
+	 * @return the bundle
+	 * @throws ConfigurationException
+	 *             if the file could not be mapped or is not a bundle
+	 */
+	public static ConfigurationsBundle open(String bundleFilePath) throws ConfigurationException {
+		try (FileChannel channel = FileChannel.open(Paths.get(bundleFilePath), StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new ConfigurationException("Configurations bundle is larger than 2 GB: " + bundleFilePath);
+			}
+			// The mapping stays valid after the channel is closed
+			MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ConfigurationsBundle(mapping);
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to map the configurations bundle: " + bundleFilePath,
+					ioException);
+		}
+	}
+
+	/**
+	 * @return number of document ids in the bundle
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Looks the document id up in the bundle and decodes its configurations
+	 *
+	 * @param documentId
+	 * @return the configurations, with configFilePresentFlag false if the document
+	 *         id is not in the bundle
+	 */
+	public Configurations getConfigurations(String documentId) {
+		ByteBuffer buffer = this.mapping.duplicate();
+		int entryOffset = findEntry(buffer, documentId);
+		if (entryOffset == 0) {
+			Configurations configs = new Configurations();
+			configs.setConfigFilePresentFlag(Boolean.FALSE);
+			return configs;
+		}
+		buffer.position(entryOffset);
+		// Skip the document id, it is already compared
+		buffer.position(buffer.position() + 4 + buffer.getInt());
+		int configCount = buffer.getInt();
+		String[] keys = new String[configCount];
+		String[] values = new String[configCount];
+		for (int index = 0; index < configCount; index++) {
+			keys[index] = readString(buffer);
+			values[index] = readString(buffer);
+		}
+		return new Configurations(keys, values);
+	}
+
+	/**
+	 * Looks the document id up in the bundle and compiles its configurations for
+	 * the given <code>documentType</code>, like
+	 * {@link Configurations#loadConfigFromFile(String, String)}
+	 *
+	 * @param documentId
+	 * @param documentType
+	 *            xml or json
+	 * @return the configurations, with configFilePresentFlag false if the document
+	 *         id is not in the bundle
+	 * @throws ConfigurationException
+	 *             if any of the keys is not a valid path expression
+	 */
+	public Configurations getConfigurations(String documentId, String documentType) throws ConfigurationException {
+		Configurations configs = getConfigurations(documentId);
+		configs.compile(documentType);
+		return configs;
+	}
+
+	/**
+	 * Finds the entry of the document id through the index, comparing the UTF-8
+	 * bytes of the id with the mapped ones, without decoding them
+	 *
+	 * @param buffer
+	 * @param documentId
+	 * @return offset of the entry, 0 if the document id is not in the bundle
+	 */
+	private int findEntry(ByteBuffer buffer, String documentId) {
+		int hash = documentId.hashCode();
+		byte[] idBytes = null;
+		int mask = this.slotCount - 1;
+		for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+			int slotPosition = HEADER_SIZE + slot * SLOT_SIZE;
+			int entryOffset = buffer.getInt(slotPosition + 4);
+			if (entryOffset == 0) {
+				return 0;
+			}
+			if (buffer.getInt(slotPosition) != hash) {
+				continue;
+			}
+			if (idBytes == null) {
+				idBytes = documentId.getBytes(StandardCharsets.UTF_8);
+			}
+			if (buffer.getInt(entryOffset) == idBytes.length && equalBytes(buffer, entryOffset + 4, idBytes)) {
+				return entryOffset;
+			}
+		}
+	}
+
+	private static boolean equalBytes(ByteBuffer buffer, int position, byte[] bytes) {
+		for (int index = 0; index < bytes.length; index++) {
+			if (buffer.get(position + index) != bytes[index]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes a length prefixed UTF-8 string from the buffer, at its position
+	 */
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Spreads the higher bits of the hash to the lower ones, which select the
+	 * slot
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Compiles all the <code>.conf</code> files of the folder into a bundle
+	 * file.<br>
+	 * Every file is loaded like the filter loads it, so a file which the filter
+	 * would fail to load fails the build.
+	 *
+	 * @param configFolderPath
+	 *            folder of the configuration files
+	 * @param bundleFilePath
+	 *            bundle file to write, replaced if it exists
+	 * @return number of document ids in the bundle
+	 * @throws ConfigurationException
+	 *             if any configuration file could not be loaded or the bundle
+	 *             could not be written
+	 */
+	public static int build(String configFolderPath, String bundleFilePath) throws ConfigurationException {
+		Map<String, Configurations> configsById = new LinkedHashMap<>();
+		try (DirectoryStream<Path> configFiles = Files.newDirectoryStream(Paths.get(configFolderPath),
+				"*" + Constants.CONFIG_FILE_EXTENSION)) {
+			for (Path configFile : configFiles) {
+				if (!Files.isRegularFile(configFile)) {
+					continue;
+				}
+				String fileName = configFile.getFileName().toString();
+				String documentId = StringUtils.removeEnd(fileName, Constants.CONFIG_FILE_EXTENSION);
+				try {
+					configsById.put(documentId, Configurations.loadConfigFromFile(configFile.toString()));
+				} catch (ConfigurationException configEx) {
+					throw new ConfigurationException("Failed to load the configuration file: " + configFile, configEx);
+				}
+			}
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to list the configuration files in: " + configFolderPath,
+					ioException);
+		}
+		try (OutputStream output = Files.newOutputStream(Paths.get(bundleFilePath))) {
+			write(configsById, output);
+		} catch (IOException ioException) {
+			throw new ConfigurationException("Failed to write the configurations bundle: " + bundleFilePath,
+					ioException);
+		}
+		return configsById.size();
+	}
+
+	/**
+	 * Writes the bundle of the configurations by document id
+	 *
+	 * @param configsById
+	 * @param output
+	 * @throws IOException
+	 */
+	static void write(Map<String, Configurations> configsById, OutputStream output) throws IOException {
+		// Load factor of the index is at most a half, so probes stay short
+		int slotCount = Integer.highestOneBit(Math.max(configsById.size(), 1) * 2 - 1) << 1;
+		int[] slotHashes = new int[slotCount];
+		int[] slotOffsets = new int[slotCount];
+		int entriesStart = HEADER_SIZE + slotCount * SLOT_SIZE;
+
+		ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+		DataOutputStream entries = new DataOutputStream(entryBytes);
+		for (Map.Entry<String, Configurations> idAndConfigs : configsById.entrySet()) {
+			String documentId = idAndConfigs.getKey();
+			int hash = documentId.hashCode();
+			int slot = spread(hash) & (slotCount - 1);
+			while (slotOffsets[slot] != 0) {
+				slot = (slot + 1) & (slotCount - 1);
+			}
+			slotHashes[slot] = hash;
+			slotOffsets[slot] = entriesStart + entries.size();
+
+			writeString(entries, documentId);
+			Configurations configs = idAndConfigs.getValue();
+			entries.writeInt(configs.size());
+			for (int index = 0; index < configs.size(); index++) {
+				writeString(entries, configs.getKey(index));
+				writeString(entries, configs.getValue(index));
+			}
+			if (entriesStart + (long) entries.size() > Integer.MAX_VALUE) {
+				throw new IOException("Configurations bundle would be larger than 2 GB.");
+			}
+		}
+
+		DataOutputStream bundle = new DataOutputStream(output);
+		bundle.writeInt(MAGIC);
+		bundle.writeInt(VERSION);
+		bundle.writeInt(configsById.size());
+		bundle.writeInt(slotCount);
+		for (int slot = 0; slot < slotCount; slot++) {
+			bundle.writeInt(slotHashes[slot]);
+			bundle.writeInt(slotOffsets[slot]);
+		}
+		entryBytes.writeTo(bundle);
+		bundle.flush();
+	}
+
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	/**
+	 * Builds a bundle from the command line.<br>
+	 * Arguments: folder of the configuration files, bundle file to write
+	 *
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2 || StringUtils.isAnyBlank(args)) {
+			System.err.println("Usage: " + ConfigurationsBundle.class.getName()
+					+ " <configuration folder> <bundle file>");
+			System.exit(2);
+		}
+		try {
+			int size = build(args[0], args[1]);
+			LOGGER.info(StringUtils.join("Built the configurations bundle: ", args[1], " with ", size,
+					" document id(s) from: ", args[0]));
+		} catch (ConfigurationException configEx) {
+			LOGGER.error("Failed to build the configurations bundle.", configEx);
+			System.exit(1);
+		}
+	}
+}
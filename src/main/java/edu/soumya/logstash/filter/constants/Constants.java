@@ -15,6 +15,78 @@ public final class Constants {
 	 */
 	public static final String DOC_TYPE_JSON = "json";
 
+	/**
+	 * Xml engine, which parses the whole document into a DOM
+	 */
+	public static final String XML_ENGINE_DOM = "dom";
+
+	/**
+	 * Xml engine, which evaluates the xpaths while streaming the document
+	 */
+	public static final String XML_ENGINE_STAX = "stax";
+
+	/**
+	 * Json engine, which parses the whole document and evaluates the jsonpaths on
+	 * it
+	 */
+	public static final String JSON_ENGINE_JSONPATH = "jsonpath";
+
+	/**
+	 * Json engine, which evaluates the jsonpaths while streaming the tokens of the
+	 * document
+	 */
+	public static final String JSON_ENGINE_STREAMING = "streaming";
+
+	/**
+	 * Json provider parsing with json-smart, the default of JsonPath
+	 */
+	public static final String JSON_PROVIDER_SMART = "smart";
+
+	/**
+	 * Json provider parsing with Jackson databind
+	 */
+	public static final String JSON_PROVIDER_JACKSON = "jackson";
+
+	/**
+	 * Length of the text above which json-smart, the default json provider, keeps
+	 * decimal numbers as BigDecimal instead of Double
+	 */
+	public static final int MAX_DOUBLE_TEXT_LENGTH = 18;
+
+	/**
+	 * Xpath engine of the JDK, evaluating the xpaths on the DOM
+	 */
+	public static final String XPATH_ENGINE_JDK = "jdk";
+
+	/**
+	 * Xpath engine evaluating the xpaths on an index of the elements of the
+	 * document text
+	 */
+	public static final String XPATH_ENGINE_INDEX = "index";
+
+	/**
+	 * Cache warm-up, no configuration is preloaded
+	 */
+	public static final String WARM_UP_NONE = "none";
+
+	/**
+	 * Cache warm-up, configurations of all the document ids in the configuration
+	 * folders are preloaded
+	 */
+	public static final String WARM_UP_ALL = "all";
+
+	/**
+	 * Cache warm-up, configurations of the document ids in a manifest file are
+	 * preloaded
+	 */
+	public static final String WARM_UP_MANIFEST = "manifest";
+
+	/**
+	 * Cache warm-up, configurations of the most used document ids of the last
+	 * run are preloaded
+	 */
+	public static final String WARM_UP_SNAPSHOT = "snapshot";
+
 	/**
 	 * Key to get the identifier xPath in xml documents
 	 */
@@ -35,6 +107,18 @@ public final class Constants {
 	 */
 	public static final String JSON_CONFIG_FOLDER_PATH_KEY = "config.location.json";
 
+	/**
+	 * Key to get the bundle built from the configuration files to parse xml
+	 * documents, optional
+	 */
+	public static final String XML_CONFIG_BUNDLE_PATH_KEY = "config.bundle.xml";
+
+	/**
+	 * Key to get the bundle built from the configuration files to parse json
+	 * documents, optional
+	 */
+	public static final String JSON_CONFIG_BUNDLE_PATH_KEY = "config.bundle.json";
+
 	/**
 	 * Field to add to the events with identifier value
 	 */
@@ -50,6 +134,18 @@ public final class Constants {
 	 */
 	public static final String DOCUMENT_PARSE_FAILURE_TAG = "_documentparsefailure";
 
+	/**
+	 * Event field with the reason of the failure, along with
+	 * <code>_documentparsefailure</code> tag
+	 */
+	public static final String FAILURE_REASON_METADATA_FIELD = "[@metadata][json_xml_path_filter][failure_reason]";
+
+	/**
+	 * Event field with the message of the failure, along with
+	 * <code>_documentparsefailure</code> tag
+	 */
+	public static final String FAILURE_MESSAGE_METADATA_FIELD = "[@metadata][json_xml_path_filter][failure_message]";
+
 	/**
 	 * Charset Encoding UTF-8
 	 */
@@ -67,4 +67,23 @@ public class ConfigurationException extends Exception {
     public ConfigurationException(Throwable cause) {
         super(cause);
     }
+
+    /**
+     * Constructs an {@code ConfigurationException} with the specified detail message,
+     * cause, suppression enabled or disabled, and writable stack trace enabled or
+     * disabled.
+     *
+     * @param message
+     *        The detail message
+     * @param cause
+     *        The cause (A null value is permitted)
+     * @param enableSuppression
+     *        whether or not suppression is enabled or disabled
+     * @param writableStackTrace
+     *        whether or not the stack trace should be writable
+     */
+    protected ConfigurationException(String message, Throwable cause, boolean enableSuppression,
+            boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
@@ -0,0 +1,41 @@
+package edu.soumya.logstash.filter.exceptions;
+
+/**
+ * Thrown when a single document could not be processed, like a malformed
+ * document or a path which could not be evaluated on it.<br>
+ * It is thrown for every bad event, so it does not capture a stack trace,
+ * which would cost more than processing a good event. The failure is
+ * identified by its message and cause.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class DocumentException extends ConfigurationException {
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -3387312472766326013L;
+
+	/**
+	 * Constructs a {@code DocumentException} with the specified detail message.
+	 *
+	 * @param message
+	 *            The detail message
+	 */
+	public DocumentException(String message) {
+		super(message, null, false, false);
+	}
+
+	/**
+	 * Constructs a {@code DocumentException} with the specified detail message and
+	 * cause.
+	 *
+	 * @param message
+	 *            The detail message
+	 * @param cause
+	 *            The cause (A null value is permitted)
+	 */
+	public DocumentException(String message, Throwable cause) {
+		super(message, cause, false, false);
+	}
+}
@@ -0,0 +1,361 @@
+package edu.soumya.logstash.filter.metrics;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.soumya.logstash.filter.cache.ConfigurationsCache;
+import edu.soumya.logstash.filter.cache.ResultCache;
+import edu.soumya.logstash.filter.constants.Constants;
+
+/**
+ * Metrics of the filter, counted with {@link LongAdder}s so that the pipeline
+ * workers can update them without contention and they can stay on in
+ * production.<br>
+ * Cache metrics are read from the statistics of {@link ConfigurationsCache}
+ * and {@link ResultCache}.
+ * Values are read by a {@link MetricsReporter} as a snapshot, grouped by
+ * namespace.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class FilterMetrics implements FilterMetricsMXBean {
+
+	/**
+	 * Failure reason, the document could not be read
+	 */
+	public static final String FAILURE_PARSE = "parse";
+
+	/**
+	 * Failure reason, none of the identifier paths found a document id
+	 */
+	public static final String FAILURE_MISSING_ID = "missing_id";
+
+	/**
+	 * Failure reason, identifier paths found different document ids
+	 */
+	public static final String FAILURE_CONFLICTING_IDS = "conflicting_ids";
+
+	/**
+	 * Failure reason, the configuration file could not be loaded
+	 */
+	public static final String FAILURE_CONFIGURATION = "configuration";
+
+	/**
+	 * Failure reason, the configured paths could not be evaluated
+	 */
+	public static final String FAILURE_EXTRACTION = "extraction";
+
+	private final ConfigurationsCache configCache;
+
+	/**
+	 * Time taken to find the document id, by document type
+	 */
+	private final Map<String, LatencyHistogram> identificationTimes;
+
+	/**
+	 * Time taken to build the DOM or DocumentContext, by document type
+	 */
+	private final Map<String, LatencyHistogram> parseTimes;
+
+	/**
+	 * Time taken to extract the configured values, by document type
+	 */
+	private final Map<String, LatencyHistogram> extractionTimes;
+
+	/**
+	 * Number of mapped documents by document type and document id. Only ids
+	 * having a configuration file are counted, so the number of counters is
+	 * bounded by the configuration files.
+	 */
+	private final Map<String, Map<String, LongAdder>> mappedDocuments;
+
+	private final LongAdder droppedNoConfig = new LongAdder();
+
+	/**
+	 * Configurations loaded by the warm-up of the cache
+	 */
+	private volatile long warmUpLoads;
+
+	/**
+	 * Time taken by the warm-up of the cache, in milliseconds
+	 */
+	private volatile long warmUpTime;
+
+	private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+	/**
+	 * Cache of the results of mapped documents, null if not caching
+	 */
+	private volatile ResultCache resultCache;
+
+	/**
+	 * @param configCache
+	 *            cache whose statistics are reported
+	 */
+	public FilterMetrics(ConfigurationsCache configCache) {
+		this.configCache = configCache;
+		this.identificationTimes = histogramsByDocumentType();
+		this.parseTimes = histogramsByDocumentType();
+		this.extractionTimes = histogramsByDocumentType();
+		Map<String, Map<String, LongAdder>> mappedDocumentsByType = new HashMap<>();
+		mappedDocumentsByType.put(Constants.DOC_TYPE_XML, new ConcurrentHashMap<>());
+		mappedDocumentsByType.put(Constants.DOC_TYPE_JSON, new ConcurrentHashMap<>());
+		this.mappedDocuments = Collections.unmodifiableMap(mappedDocumentsByType);
+		for (String reason : new String[] { FAILURE_PARSE, FAILURE_MISSING_ID, FAILURE_CONFLICTING_IDS,
+				FAILURE_CONFIGURATION, FAILURE_EXTRACTION }) {
+			this.failures.put(reason, new LongAdder());
+		}
+	}
+
+	private static Map<String, LatencyHistogram> histogramsByDocumentType() {
+		Map<String, LatencyHistogram> histograms = new HashMap<>();
+		histograms.put(Constants.DOC_TYPE_XML, new LatencyHistogram());
+		histograms.put(Constants.DOC_TYPE_JSON, new LatencyHistogram());
+		return Collections.unmodifiableMap(histograms);
+	}
+
+	/**
+	 * @param documentType
+	 *            xml or json
+	 * @param nanos
+	 */
+	public void recordIdentificationTime(String documentType, long nanos) {
+		this.identificationTimes.get(documentType).record(nanos);
+	}
+
+	/**
+	 * @param documentType
+	 *            xml or json
+	 * @param nanos
+	 */
+	public void recordParseTime(String documentType, long nanos) {
+		this.parseTimes.get(documentType).record(nanos);
+	}
+
+	/**
+	 * @param documentType
+	 *            xml or json
+	 * @param nanos
+	 */
+	public void recordExtractionTime(String documentType, long nanos) {
+		this.extractionTimes.get(documentType).record(nanos);
+	}
+
+	/**
+	 * @param documentType
+	 *            xml or json
+	 * @param documentId
+	 *            id having a configuration file
+	 * @param count
+	 *            number of documents mapped
+	 */
+	public void countMapped(String documentType, String documentId, int count) {
+		this.mappedDocuments.get(documentType).computeIfAbsent(documentId, id -> new LongAdder()).add(count);
+	}
+
+	/**
+	 * @param loads
+	 *            configurations loaded by the warm-up of the cache
+	 * @param nanos
+	 *            time taken by the warm-up
+	 */
+	public void recordWarmUp(int loads, long nanos) {
+		this.warmUpLoads = loads;
+		this.warmUpTime = TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	/**
+	 * @param resultCache
+	 *            cache of the results of mapped documents, whose statistics are
+	 *            reported
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * @param count
+	 *            number of documents dropped as no configuration was found
+	 */
+	public void countDroppedNoConfig(int count) {
+		this.droppedNoConfig.add(count);
+	}
+
+	/**
+	 * @param reason
+	 *            one of the <code>FAILURE_</code> reasons
+	 */
+	public void countFailure(String reason) {
+		this.failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+	}
+
+	/**
+	 * @param documentType
+	 * @return histogram of times taken to build the DOM or DocumentContext
+	 */
+	public LatencyHistogram getParseTimes(String documentType) {
+		return this.parseTimes.get(documentType);
+	}
+
+	/**
+	 * @return number of documents dropped as no configuration was found
+	 */
+	public long getDroppedNoConfigCount() {
+		return this.droppedNoConfig.sum();
+	}
+
+	/**
+	 * @param reason
+	 * @return number of documents failed for the <code>reason</code>
+	 */
+	public long getFailureCount(String reason) {
+		LongAdder failureCount = this.failures.get(reason);
+		return failureCount == null ? 0L : failureCount.sum();
+	}
+
+	/**
+	 * @param documentType
+	 * @param documentId
+	 * @return number of mapped documents of the id
+	 */
+	public long getMappedCount(String documentType, String documentId) {
+		LongAdder mappedCount = this.mappedDocuments.get(documentType).get(documentId);
+		return mappedCount == null ? 0L : mappedCount.sum();
+	}
+
+	/**
+	 * @param limit
+	 *            maximum number of ids, null for all
+	 * @return ids of the mapped documents as <code>type:id</code>, the most
+	 *         mapped first
+	 */
+	public List<String> getMostMappedIds(Long limit) {
+		List<Map.Entry<String, Long>> mappedCounts = new ArrayList<>();
+		this.mappedDocuments.forEach((documentType, mappedCountsById) -> mappedCountsById
+				.forEach((documentId, mappedCount) -> mappedCounts.add(new AbstractMap.SimpleImmutableEntry<>(
+						StringUtils.join(documentType, ":", documentId), mappedCount.sum()))));
+		mappedCounts.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+		int size = limit == null ? mappedCounts.size() : (int) Math.min(limit.longValue(), mappedCounts.size());
+		List<String> mostMappedIds = new ArrayList<>(size);
+		for (int index = 0; index < size; index++) {
+			mostMappedIds.add(mappedCounts.get(index).getKey());
+		}
+		return mostMappedIds;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see edu.soumya.logstash.filter.metrics.FilterMetricsMXBean#getValues()
+	 */
+	@Override
+	public Map<String, Map<String, Long>> getValues() {
+		return getValues(null);
+	}
+
+	/**
+	 * @param mappedIdsLimit
+	 *            maximum number of document ids in the mapped_documents values,
+	 *            the most mapped of both types, null for all
+	 * @return current values of the metrics by namespace and metric name
+	 */
+	public Map<String, Map<String, Long>> getValues(Long mappedIdsLimit) {
+		Map<String, Map<String, Long>> values = new TreeMap<>();
+
+		Map<String, Long> cacheValues = new TreeMap<>();
+		long hits = this.configCache.getHitCount();
+		long misses = this.configCache.getMissCount();
+		cacheValues.put("hits", hits);
+		cacheValues.put("misses", misses);
+		cacheValues.put("hit_rate_percent", hits + misses == 0 ? 0L : hits * 100 / (hits + misses));
+		cacheValues.put("evictions", this.configCache.getEvictionCount());
+		cacheValues.put("size", (long) this.configCache.getCurrentCacheMap().size());
+		cacheValues.put("estimated_bytes", this.configCache.getEstimatedBytes());
+		cacheValues.put("loads", this.configCache.getLoadCount());
+		cacheValues.put("load_failures", this.configCache.getLoadFailureCount());
+		cacheValues.put("load_time_micros", TimeUnit.NANOSECONDS.toMicros(this.configCache.getTotalLoadTime()));
+		cacheValues.put("warm_up_loads", this.warmUpLoads);
+		cacheValues.put("warm_up_time_millis", this.warmUpTime);
+		values.put("cache", cacheValues);
+
+		ResultCache currentResultCache = this.resultCache;
+		if (currentResultCache != null) {
+			Map<String, Long> resultCacheValues = new TreeMap<>();
+			long resultHits = currentResultCache.getHitCount();
+			long resultMisses = currentResultCache.getMissCount();
+			resultCacheValues.put("hits", resultHits);
+			resultCacheValues.put("misses", resultMisses);
+			resultCacheValues.put("hit_rate_percent",
+					resultHits + resultMisses == 0 ? 0L : resultHits * 100 / (resultHits + resultMisses));
+			resultCacheValues.put("collisions", currentResultCache.getCollisionCount());
+			resultCacheValues.put("stale", currentResultCache.getStaleCount());
+			resultCacheValues.put("evictions", currentResultCache.getEvictionCount());
+			resultCacheValues.put("size", currentResultCache.getSize());
+			values.put("result_cache", resultCacheValues);
+		}
+
+		values.put("events", Collections.singletonMap("dropped_no_config", getDroppedNoConfigCount()));
+
+		Map<String, Long> failureValues = new TreeMap<>();
+		this.failures.forEach((reason, failureCount) -> failureValues.put(reason, failureCount.sum()));
+		values.put("failures", failureValues);
+
+		Map<String, Map<String, Long>> mappedValuesByType = getMappedValues(mappedIdsLimit);
+		for (String documentType : new String[] { Constants.DOC_TYPE_XML, Constants.DOC_TYPE_JSON }) {
+			values.put(StringUtils.join(documentType, ".identification_time"),
+					histogramValues(this.identificationTimes.get(documentType)));
+			values.put(StringUtils.join(documentType, ".parse_time"),
+					histogramValues(this.parseTimes.get(documentType)));
+			values.put(StringUtils.join(documentType, ".extraction_time"),
+					histogramValues(this.extractionTimes.get(documentType)));
+			values.put(StringUtils.join(documentType, ".mapped_documents"), mappedValuesByType.get(documentType));
+		}
+		return values;
+	}
+
+	/**
+	 * @param limit
+	 *            maximum number of ids, the most mapped of both types, null for
+	 *            all
+	 * @return number of mapped documents by document type and id
+	 */
+	private Map<String, Map<String, Long>> getMappedValues(Long limit) {
+		Map<String, Map<String, Long>> mappedValuesByType = new HashMap<>();
+		if (limit == null) {
+			this.mappedDocuments.forEach((documentType, mappedCountsById) -> {
+				Map<String, Long> mappedValues = new TreeMap<>();
+				mappedCountsById.forEach((documentId, mappedCount) -> mappedValues.put(documentId, mappedCount.sum()));
+				mappedValuesByType.put(documentType, mappedValues);
+			});
+			return mappedValuesByType;
+		}
+		this.mappedDocuments.keySet().forEach(documentType -> mappedValuesByType.put(documentType, new TreeMap<>()));
+		for (String typeAndId : getMostMappedIds(limit)) {
+			String documentType = StringUtils.substringBefore(typeAndId, ":");
+			String documentId = StringUtils.substringAfter(typeAndId, ":");
+			mappedValuesByType.get(documentType).put(documentId, getMappedCount(documentType, documentId));
+		}
+		return mappedValuesByType;
+	}
+
+	private static Map<String, Long> histogramValues(LatencyHistogram histogram) {
+		Map<String, Long> histogramValues = new TreeMap<>();
+		histogramValues.put("count", histogram.getCount());
+		histogramValues.put("total_micros", histogram.getTotalMicros());
+		histogramValues.put("p50_micros", histogram.getPercentileMicros(50));
+		histogramValues.put("p99_micros", histogram.getPercentileMicros(99));
+		histogramValues.put("max_micros", histogram.getMaxMicros());
+		return histogramValues;
+	}
+}
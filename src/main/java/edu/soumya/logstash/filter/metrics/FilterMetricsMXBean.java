@@ -0,0 +1,18 @@
+package edu.soumya.logstash.filter.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link FilterMetrics}, used when the Logstash plugin metrics are
+ * not available
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public interface FilterMetricsMXBean {
+
+	/**
+	 * @return current values of the metrics by namespace and metric name
+	 */
+	Map<String, Map<String, Long>> getValues();
+}
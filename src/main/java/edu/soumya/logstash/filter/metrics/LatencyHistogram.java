@@ -0,0 +1,102 @@
+package edu.soumya.logstash.filter.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations, which can be recorded from many threads without
+ * contention.<br>
+ * Durations are counted in buckets of powers of two microseconds, bucket
+ * <code>i</code> counts the durations less than <code>2^i</code> microseconds
+ * and not counted by a smaller bucket. So percentiles are approximate, upper
+ * bounds of their buckets, which is enough to see where the time goes.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets, the last one counts everything from about 33 seconds
+	 */
+	private static final int BUCKET_COUNT = 26;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0L);
+
+	public LatencyHistogram() {
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			this.buckets[index] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a duration
+	 * 
+	 * @param nanos
+	 *            duration in nanoseconds
+	 */
+	public void record(long nanos) {
+		long durationNanos = Math.max(0L, nanos);
+		long micros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+		int index = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+		this.buckets[index].increment();
+		this.count.increment();
+		this.totalNanos.add(durationNanos);
+		this.maxNanos.accumulate(durationNanos);
+	}
+
+	/**
+	 * @return number of recorded durations
+	 */
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	/**
+	 * @return sum of recorded durations in microseconds
+	 */
+	public long getTotalMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(this.totalNanos.sum());
+	}
+
+	/**
+	 * @return longest recorded duration in microseconds
+	 */
+	public long getMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(this.maxNanos.get());
+	}
+
+	/**
+	 * @param percentile
+	 *            between 0 and 100
+	 * @return microseconds within which <code>percentile</code> percent of the
+	 *         recorded durations are, 0 if nothing is recorded
+	 */
+	public long getPercentileMicros(double percentile) {
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			bucketCounts[index] = this.buckets[index].sum();
+			total += bucketCounts[index];
+		}
+		if (total == 0) {
+			return 0L;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int index = 0; index < BUCKET_COUNT - 1; index++) {
+			seen += bucketCounts[index];
+			if (seen >= rank) {
+				return 1L << index;
+			}
+		}
+		return getMaxMicros();
+	}
+}
@@ -0,0 +1,176 @@
+package edu.soumya.logstash.filter.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import co.elastic.logstash.api.NamespacedMetric;
+
+/**
+ * Reports the {@link FilterMetrics} of a filter.<br>
+ * When the Logstash plugin metrics are available, the values are published to
+ * them as gauges every interval, so they are shown by the Logstash monitoring
+ * API under the plugin. Otherwise the metrics are registered as a JMX MBean,
+ * and if that fails too, the values are logged every interval. Only the
+ * {@link #REPORTED_MAPPED_IDS} most mapped document ids are published or
+ * logged, the MBean has all of them.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class MetricsReporter implements Runnable, AutoCloseable {
+
+	/**
+	 * Logger Instance
+	 */
+	public static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * JMX domain of the MBeans
+	 */
+	public static final String JMX_DOMAIN = "edu.soumya.logstash.filter";
+
+	/**
+	 * Maximum number of document ids, whose mapped documents are published or
+	 * logged, the most mapped ones
+	 */
+	public static final long REPORTED_MAPPED_IDS = 20L;
+
+	private final FilterMetrics metrics;
+
+	/**
+	 * Plugin metrics from Logstash, null if not available
+	 */
+	private final NamespacedMetric pluginMetric;
+
+	/**
+	 * Plugin metrics by namespace, created on the reporter thread
+	 */
+	private final Map<String, NamespacedMetric> namespacedMetrics = new HashMap<>();
+
+	/**
+	 * Name of the registered MBean, null if not registered
+	 */
+	private ObjectName objectName;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param metrics
+	 * @param pluginMetric
+	 *            metrics of the plugin from Logstash, null if not available
+	 */
+	public MetricsReporter(FilterMetrics metrics, NamespacedMetric pluginMetric) {
+		this.metrics = metrics;
+		this.pluginMetric = pluginMetric;
+	}
+
+	/**
+	 * Starts reporting on a daemon thread
+	 * 
+	 * @param filterId
+	 *            id of the filter, used in the thread and MBean names
+	 * @param interval
+	 *            seconds between two reports
+	 */
+	public synchronized void start(String filterId, long interval) {
+		if (this.scheduler != null || this.objectName != null) {
+			return;
+		}
+		if (this.pluginMetric == null && registerMBean(filterId)) {
+			// JMX reads the values when asked for
+			return;
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread reporterThread = new Thread(runnable,
+					StringUtils.join("json_xml_path_filter-metrics-reporter-", filterId));
+			reporterThread.setDaemon(true);
+			return reporterThread;
+		});
+		this.scheduler.scheduleWithFixedDelay(this, interval, interval, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @param filterId
+	 * @return true if the metrics are registered as an MBean
+	 */
+	private boolean registerMBean(String filterId) {
+		try {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			ObjectName mBeanName = new ObjectName(
+					StringUtils.join(JMX_DOMAIN, ":type=JsonXmlPathFilter,id=", ObjectName.quote(filterId)));
+			mBeanServer.registerMBean(this.metrics, mBeanName);
+			this.objectName = mBeanName;
+			LOGGER.info(StringUtils.join("Plugin metrics are not available, filter metrics are registered as: ",
+					mBeanName));
+			return true;
+		} catch (JMException | RuntimeException e) {
+			LOGGER.warn("Plugin metrics and JMX are not available, filter metrics will be logged.", e);
+			return false;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		try {
+			Map<String, Map<String, Long>> values = this.metrics.getValues(REPORTED_MAPPED_IDS);
+			if (this.pluginMetric == null) {
+				LOGGER.info(StringUtils.join("Filter metrics: ", values));
+				return;
+			}
+			for (Map.Entry<String, Map<String, Long>> namespaceValues : values.entrySet()) {
+				NamespacedMetric namespacedMetric = this.namespacedMetrics.computeIfAbsent(namespaceValues.getKey(),
+						namespace -> this.pluginMetric.namespace(namespace.split("\\.")));
+				for (Map.Entry<String, Long> value : namespaceValues.getValue().entrySet()) {
+					namespacedMetric.gauge(value.getKey(), value.getValue());
+				}
+			}
+		} catch (RuntimeException e) {
+			// Keep reporting on the next interval
+			LOGGER.warn("Failed to report the filter metrics.", e);
+		}
+	}
+
+	/**
+	 * @return name of the registered MBean, null if not registered
+	 */
+	public synchronized ObjectName getObjectName() {
+		return this.objectName;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public synchronized void close() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+		}
+		if (this.objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+			} catch (JMException e) {
+				// Already unregistered
+			}
+			this.objectName = null;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Order in which alternative paths are tried, the paths which matched most
+ * often first.<br>
+ * Matches are counted by the pipeline workers without locks, and the order is
+ * recomputed every {@link #REORDER_INTERVAL} matches. At every reordering the
+ * counts are halved, so that the order follows the recent documents when the
+ * producers change. Paths which matched equally often keep the order they
+ * were supplied in.<br>
+ * Instances are thread-safe.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class AdaptivePathOrder {
+
+	/**
+	 * Number of matches after which the order is recomputed
+	 */
+	public static final int REORDER_INTERVAL = 1024;
+
+	/**
+	 * Matches by path index
+	 */
+	private final AtomicLongArray matchCounts;
+
+	private final AtomicLong matchesSinceReorder = new AtomicLong();
+
+	/**
+	 * Path indexes in the order they are tried, replaced as a whole
+	 */
+	private volatile int[] order;
+
+	/**
+	 * @param pathCount
+	 *            number of alternative paths
+	 */
+	public AdaptivePathOrder(int pathCount) {
+		this.matchCounts = new AtomicLongArray(pathCount);
+		int[] initialOrder = new int[pathCount];
+		for (int index = 0; index < pathCount; index++) {
+			initialOrder[index] = index;
+		}
+		this.order = initialOrder;
+	}
+
+	/**
+	 * @return path indexes in the order they should be tried, not to be modified
+	 */
+	public int[] getOrder() {
+		return this.order;
+	}
+
+	/**
+	 * Counts a match of the path and reorders the paths every
+	 * {@link #REORDER_INTERVAL} matches
+	 *
+	 * @param pathIndex
+	 */
+	public void countMatch(int pathIndex) {
+		this.matchCounts.incrementAndGet(pathIndex);
+		if (this.matchesSinceReorder.incrementAndGet() % REORDER_INTERVAL == 0) {
+			reorder();
+		}
+	}
+
+	/**
+	 * @param pathIndex
+	 * @return recent matches of the path
+	 */
+	public long getMatchCount(int pathIndex) {
+		return this.matchCounts.get(pathIndex);
+	}
+
+	private void reorder() {
+		int pathCount = this.matchCounts.length();
+		long[] counts = new long[pathCount];
+		Integer[] newOrder = new Integer[pathCount];
+		for (int index = 0; index < pathCount; index++) {
+			counts[index] = this.matchCounts.get(index);
+			newOrder[index] = index;
+			// Older matches weigh less at every reordering, matches counted meanwhile by
+			// other workers may be lost, which only delays the reordering
+			this.matchCounts.set(index, counts[index] / 2);
+		}
+		// Stable sort, paths matching equally often keep their order
+		Arrays.sort(newOrder, Comparator.comparingLong((Integer index) -> counts[index]).reversed());
+		this.order = Arrays.stream(newOrder).mapToInt(Integer::intValue).toArray();
+	}
+}
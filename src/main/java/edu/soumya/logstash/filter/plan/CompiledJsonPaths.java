@@ -0,0 +1,86 @@
+package edu.soumya.logstash.filter.plan;
+
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.JsonParseUtil;
+
+/**
+ * Holds a fixed list of jsonpath expressions in compiled form, so that the
+ * expressions are compiled once and not looked up in the path cache of
+ * JsonPath for every event.<br>
+ * Compiled {@link JsonPath} instances are immutable, so one instance is shared
+ * by all the pipeline worker threads.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class CompiledJsonPaths {
+
+	/**
+	 * JsonPath expressions in the order they were supplied
+	 */
+	private final String[] expressions;
+
+	/**
+	 * Compiled expressions, index wise same as <code>expressions</code>
+	 */
+	private final JsonPath[] compiledExpressions;
+
+	/**
+	 * Compiles all the <code>expressions</code>
+	 * 
+	 * @param expressions
+	 * @throws ConfigurationException
+	 *             In case of invalid <code>jsonPath</code> is given
+	 */
+	public CompiledJsonPaths(String[] expressions) throws ConfigurationException {
+		this.expressions = expressions.clone();
+		this.compiledExpressions = new JsonPath[this.expressions.length];
+		try {
+			for (int index = 0; index < this.expressions.length; index++) {
+				this.compiledExpressions[index] = JsonPath.compile(this.expressions[index]);
+			}
+		} catch (InvalidPathException | IllegalArgumentException e) {
+			throw new ConfigurationException("Failed to compile the jsonPath expression.", e);
+		}
+	}
+
+	/**
+	 * @return number of expressions
+	 */
+	public int size() {
+		return this.expressions.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the jsonpath expression at <code>index</code>, as it was supplied
+	 */
+	public String getExpression(int index) {
+		return this.expressions[index];
+	}
+
+	/**
+	 * @param index
+	 * @return the compiled jsonpath at <code>index</code>
+	 */
+	public JsonPath getCompiledExpression(int index) {
+		return this.compiledExpressions[index];
+	}
+
+	/**
+	 * Returns the string type value from the <code>context</code>, using the
+	 * expression at <code>index</code>
+	 * 
+	 * @param context
+	 * @param index
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	public String evaluate(DocumentContext context, int index) throws ConfigurationException {
+		return JsonParseUtil.getStringFromJsonPath(context, this.compiledExpressions[index]);
+	}
+}
@@ -0,0 +1,190 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.spi.XPathEngine;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+
+/**
+ * Holds a fixed list of xpath expressions in compiled form, so that the
+ * expressions are compiled once and not for every event.<br>
+ * {@link XPathExpression} is not thread-safe, so a compiled copy of the
+ * expressions is taken out of a small pool for an evaluation and given back
+ * after it, confining it to the evaluating thread meanwhile. When the pool is
+ * empty a new copy is compiled, and when it is full a given back copy is
+ * dropped, so the pool never blocks a pipeline worker. The pool keeps as many
+ * copies as there are processors, the default number of pipeline workers.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class CompiledXPaths implements XPathEngine.Expressions {
+
+	/**
+	 * XPath expressions in the order they were supplied
+	 */
+	private final String[] expressions;
+
+	/**
+	 * Maximum number of idle compiled copies kept by an instance
+	 */
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Compiled copies of the expressions, not in use by any thread
+	 */
+	private final BlockingQueue<XPathExpression[]> idleCopies = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	/**
+	 * Number of compiled copies of the expressions, the one of the constructor
+	 * and the ones compiled when the pool was empty
+	 */
+	private final AtomicInteger compiledCount = new AtomicInteger(1);
+
+	/**
+	 * Compiles all the <code>expressions</code> once on the calling thread, so
+	 * that an invalid xpath is reported when the expressions are loaded and not
+	 * when an event is processed.
+	 * 
+	 * @param expressions
+	 * @throws ConfigurationException
+	 *             In case of invalid <code>xPath</code> is given
+	 */
+	public CompiledXPaths(String[] expressions) throws ConfigurationException {
+		this.expressions = expressions.clone();
+		XPathExpression[] validatedExpressions;
+		try {
+			validatedExpressions = compileAll();
+		} catch (XPathExpressionException e) {
+			throw new ConfigurationException("Failed to compile the xpath expression.", e);
+		}
+		// The validated copy is the first one of the pool
+		this.idleCopies.offer(validatedExpressions);
+	}
+
+	/**
+	 * Compiles every expression with a new {@link XPath} instance
+	 * 
+	 * @return compiled expressions
+	 * @throws XPathExpressionException
+	 */
+	private XPathExpression[] compileAll() throws XPathExpressionException {
+		XPath xPath = XmlParseUtil.createXPathInstance();
+		XPathExpression[] compiled = new XPathExpression[this.expressions.length];
+		for (int index = 0; index < this.expressions.length; index++) {
+			compiled[index] = xPath.compile(this.expressions[index]);
+		}
+		return compiled;
+	}
+
+	/**
+	 * @return an idle compiled copy of the expressions, or a new one if none is
+	 *         idle
+	 */
+	private XPathExpression[] borrow() {
+		XPathExpression[] copy = this.idleCopies.poll();
+		if (copy != null) {
+			return copy;
+		}
+		try {
+			copy = compileAll();
+		} catch (XPathExpressionException e) {
+			// Already compiled successfully once in the constructor
+			throw new IllegalStateException("Failed to compile the xpath expression.", e);
+		}
+		this.compiledCount.incrementAndGet();
+		return copy;
+	}
+
+	/**
+	 * Keeps the <code>copy</code> if the pool has room, drops it otherwise
+	 * 
+	 * @param copy
+	 */
+	private void giveBack(XPathExpression[] copy) {
+		this.idleCopies.offer(copy);
+	}
+
+	/**
+	 * Copies compiled beyond the pool size are dropped after their evaluation,
+	 * so they are not counted.
+	 * 
+	 * @return number of compiled copies of the expressions kept by the pool
+	 */
+	@Override
+	public int getCopyCount() {
+		return Math.min(this.compiledCount.get(), POOL_SIZE);
+	}
+
+	/**
+	 * @return number of expressions
+	 */
+	@Override
+	public int size() {
+		return this.expressions.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the xpath expression at <code>index</code>, as it was supplied
+	 */
+	@Override
+	public String getExpression(int index) {
+		return this.expressions[index];
+	}
+
+	/**
+	 * Returns the string type value from the <code>document</code>, using the
+	 * expression at <code>index</code>
+	 * 
+	 * @param document
+	 * @param index
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	public String evaluate(Document document, int index) throws ConfigurationException {
+		XPathExpression[] copy = borrow();
+		try {
+			return XmlParseUtil.getStringFromXPath(document, copy[index]);
+		} finally {
+			giveBack(copy);
+		}
+	}
+
+	/**
+	 * @param document
+	 *            the {@link Document}
+	 */
+	@Override
+	public String evaluate(Object document, int index) throws ConfigurationException {
+		return evaluate((Document) document, index);
+	}
+
+	/**
+	 * Evaluates all the expressions with a single compiled copy, taken out of
+	 * the pool once for the <code>document</code>
+	 * 
+	 * @param document
+	 *            the {@link Document}
+	 */
+	@Override
+	public void evaluateAll(Object document, String[] values) throws ConfigurationException {
+		XPathExpression[] copy = borrow();
+		try {
+			for (int index = 0; index < copy.length; index++) {
+				values[index] = XmlParseUtil.getStringFromXPath((Document) document, copy[index]);
+			}
+		} finally {
+			giveBack(copy);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import co.elastic.logstash.api.Event;
+
+/**
+ * Plan for writing the values extracted from a document into the event. The
+ * destination fields of the configurations are resolved to slots once, with
+ * the configurations giving the values of every slot, so that the values are
+ * written straight into the event and no map of the destination fields is
+ * built per event.<br>
+ * A destination field of a single configuration is set to its value, a
+ * destination field of more than one configuration is set to the list of
+ * their values, in the order of the configuration file.<br>
+ * Instances are immutable and can be shared between threads. The buffers
+ * handed out by {@link #getValuesBuffer()} and used for the lists are reused
+ * by every plan on the same pipeline worker thread.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class ExtractionPlan {
+
+	/**
+	 * Values of the configurations of the document being extracted, confined to
+	 * the extracting thread and grown to the largest plan
+	 */
+	private static final ThreadLocal<String[]> VALUES_BUFFER = ThreadLocal.withInitial(() -> new String[0]);
+
+	/**
+	 * Values of a destination field of more than one configuration, confined to
+	 * the writing thread. The event copies the list when the field is set.
+	 */
+	private static final ThreadLocal<ArrayList<String>> LIST_BUFFER = ThreadLocal.withInitial(ArrayList::new);
+
+	/**
+	 * Number of configurations, the values are expected for
+	 */
+	private final int size;
+
+	/**
+	 * Destination fields, in the order of their first configuration
+	 */
+	private final String[] destinations;
+
+	/**
+	 * Indexes of the configurations giving the values of every destination field
+	 */
+	private final int[][] sources;
+
+	/**
+	 * @param destinationFields
+	 *            destination fields at the index of their configurations
+	 */
+	public ExtractionPlan(String[] destinationFields) {
+		this.size = destinationFields.length;
+		Map<String, int[]> sourcesByDestination = new LinkedHashMap<>();
+		for (int index = 0; index < destinationFields.length; index++) {
+			int[] destinationSources = sourcesByDestination.get(destinationFields[index]);
+			if (destinationSources == null) {
+				destinationSources = new int[] { index };
+			} else {
+				destinationSources = Arrays.copyOf(destinationSources, destinationSources.length + 1);
+				destinationSources[destinationSources.length - 1] = index;
+			}
+			sourcesByDestination.put(destinationFields[index], destinationSources);
+		}
+		this.destinations = sourcesByDestination.keySet().toArray(new String[0]);
+		this.sources = sourcesByDestination.values().toArray(new int[0][]);
+	}
+
+	/**
+	 * @return number of configurations, the values are expected for
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return number of distinct destination fields
+	 */
+	public int getDestinationCount() {
+		return this.destinations.length;
+	}
+
+	/**
+	 * @param slot
+	 *            of the destination field
+	 * @return the destination field
+	 */
+	public String getDestination(int slot) {
+		return this.destinations[slot];
+	}
+
+	/**
+	 * @param slot
+	 *            of the destination field
+	 * @return number of configurations giving the values of the destination
+	 *         field
+	 */
+	public int getSourceCount(int slot) {
+		return this.sources[slot].length;
+	}
+
+	/**
+	 * Returns the buffer of the calling thread, where the values of the
+	 * configurations can be collected before writing them with
+	 * {@link #write(Event, String[])}. It is shared by every plan on the thread,
+	 * so it must not be held after writing, and may contain the values of an
+	 * earlier document.
+	 *
+	 * @return buffer of at least {@link #size()} values
+	 */
+	public String[] getValuesBuffer() {
+		String[] values = VALUES_BUFFER.get();
+		if (values.length < this.size) {
+			values = new String[this.size];
+			VALUES_BUFFER.set(values);
+		}
+		return values;
+	}
+
+	/**
+	 * Sets the destination fields of the event to the values
+	 *
+	 * @param event
+	 * @param values
+	 *            values of the configurations at their index, only the first
+	 *            {@link #size()} of them are read
+	 */
+	public void write(Event event, String[] values) {
+		for (int slot = 0; slot < this.destinations.length; slot++) {
+			int[] destinationSources = this.sources[slot];
+			if (destinationSources.length == 1) {
+				event.setField(this.destinations[slot], values[destinationSources[0]]);
+			} else {
+				ArrayList<String> destinationValues = LIST_BUFFER.get();
+				destinationValues.clear();
+				for (int source : destinationSources) {
+					destinationValues.add(values[source]);
+				}
+				event.setField(this.destinations[slot], destinationValues);
+				destinationValues.clear();
+			}
+		}
+	}
+}
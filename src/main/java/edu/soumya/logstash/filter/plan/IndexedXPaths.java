@@ -0,0 +1,308 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Holds a fixed list of xpath expressions compiled for evaluation on a
+ * {@link XmlElementIndex}, without building a DOM.<br>
+ * Only absolute location paths are supported, of child steps (<code>/</code>)
+ * and descendant steps (<code>//</code>), with element names without prefix
+ * or <code>*</code>, an optional position predicate like <code>[2]</code>, and
+ * an optional last step of an attribute name or <code>text()</code>, like
+ * <code>//station[2]/id</code> or <code>/stations/station/@code</code>. The
+ * expressions outside this subset are not indexable, see
+ * {@link #isIndexable(int)}, and should be evaluated on the DOM.<br>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class IndexedXPaths {
+
+	/**
+	 * XPath expressions in the order they were supplied
+	 */
+	private final String[] expressions;
+
+	/**
+	 * Steps of the expressions, null for an expression outside the subset
+	 */
+	private final Step[][] paths;
+
+	/**
+	 * Compiles the <code>expressions</code> which are inside the supported
+	 * subset
+	 *
+	 * @param expressions
+	 */
+	public IndexedXPaths(String[] expressions) {
+		this.expressions = expressions.clone();
+		this.paths = new Step[expressions.length][];
+		for (int index = 0; index < expressions.length; index++) {
+			this.paths[index] = compile(expressions[index]);
+		}
+	}
+
+	/**
+	 * @param expression
+	 * @return steps of the expression, null if it is outside the subset
+	 */
+	private static Step[] compile(String expression) {
+		String path = StringUtils.trim(expression);
+		if (StringUtils.isEmpty(path) || path.charAt(0) != '/' || path.endsWith("/")) {
+			return null;
+		}
+		String[] tokens = StringUtils.splitPreserveAllTokens(path.substring(1), '/');
+		Step[] steps = new Step[tokens.length];
+		int stepCount = 0;
+		boolean descendant = false;
+		for (int index = 0; index < tokens.length; index++) {
+			String token = tokens[index];
+			if (token.isEmpty()) {
+				if (descendant || index == tokens.length - 1) {
+					return null;
+				}
+				descendant = true;
+				continue;
+			}
+			Step step = Step.compile(token, descendant);
+			boolean lastToken = index == tokens.length - 1;
+			if (step == null || step.kind != Step.ELEMENT && !lastToken) {
+				return null;
+			}
+			steps[stepCount++] = step;
+			descendant = false;
+		}
+		return stepCount == 0 ? null : Arrays.copyOf(steps, stepCount);
+	}
+
+	/**
+	 * @return number of expressions
+	 */
+	public int size() {
+		return this.expressions.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the xpath expression at <code>index</code>, as it was supplied
+	 */
+	public String getExpression(int index) {
+		return this.expressions[index];
+	}
+
+	/**
+	 * @param index
+	 * @return true if the expression at <code>index</code> is inside the
+	 *         supported subset
+	 */
+	public boolean isIndexable(int index) {
+		return this.paths[index] != null;
+	}
+
+	/**
+	 * Evaluates the expression at <code>index</code>, which should be
+	 * indexable
+	 *
+	 * @param elementIndex
+	 * @param index
+	 * @return string value of the expression, trimmed, empty if nothing is
+	 *         selected
+	 */
+	public String evaluate(XmlElementIndex elementIndex, int index) {
+		Step[] steps = this.paths[index];
+		int[] nodes = { XmlElementIndex.DOCUMENT };
+		int nodeCount = 1;
+		for (Step step : steps) {
+			if (step.descendant) {
+				nodes = descendantsOrSelf(elementIndex, nodes, nodeCount);
+				nodeCount = nodes.length;
+			}
+			if (step.kind != Step.ELEMENT) {
+				return StringUtils.trimToEmpty(readLastStep(elementIndex, step, nodes, nodeCount));
+			}
+			nodes = children(elementIndex, step, nodes, nodeCount);
+			nodeCount = nodes.length;
+			if (nodeCount == 0) {
+				return StringUtils.EMPTY;
+			}
+		}
+		// String value of a node set is the one of its first node in document order
+		return nodes[0] == XmlElementIndex.DOCUMENT ? StringUtils.EMPTY
+				: elementIndex.getStringValue(nodes[0]).trim();
+	}
+
+	/**
+	 * @return value of the first attribute or text child, in document order, of
+	 *         the elements
+	 */
+	private static String readLastStep(XmlElementIndex elementIndex, Step step, int[] nodes, int nodeCount) {
+		if (step.kind == Step.TEXT) {
+			return readFirstText(elementIndex, nodes, nodeCount);
+		}
+		for (int position = 0; position < nodeCount; position++) {
+			int node = nodes[position];
+			if (node == XmlElementIndex.DOCUMENT) {
+				continue;
+			}
+			String value = elementIndex.getAttribute(node, step.name);
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The text children of an element come after the ones of its descendants
+	 * which precede them, like the <code>y</code> of
+	 * <code>&lt;a&gt;&lt;b&gt;x&lt;/b&gt;y&lt;/a&gt;</code>, so the first text
+	 * child of the first element is not always the first in document order.
+	 *
+	 * @return value of the first text child, in document order, of the elements
+	 */
+	private static String readFirstText(XmlElementIndex elementIndex, int[] nodes, int nodeCount) {
+		int firstElement = XmlElementIndex.DOCUMENT;
+		int firstOffset = Integer.MAX_VALUE;
+		for (int position = 0; position < nodeCount; position++) {
+			int node = nodes[position];
+			if (node == XmlElementIndex.DOCUMENT) {
+				continue;
+			}
+			if (elementIndex.getStartOffset(node) > firstOffset) {
+				// This and the later elements start after the text found
+				break;
+			}
+			int offset = elementIndex.getFirstTextOffset(node);
+			if (offset >= 0 && offset < firstOffset) {
+				firstElement = node;
+				firstOffset = offset;
+			}
+		}
+		return firstElement == XmlElementIndex.DOCUMENT ? null : elementIndex.getFirstText(firstElement);
+	}
+
+	/**
+	 * @return the nodes and all their descendants, in document order
+	 */
+	private static int[] descendantsOrSelf(XmlElementIndex elementIndex, int[] nodes, int nodeCount) {
+		int[] result = new int[elementIndex.size() + 1];
+		int resultCount = 0;
+		int coveredEnd = Integer.MIN_VALUE;
+		for (int position = 0; position < nodeCount; position++) {
+			int node = nodes[position];
+			if (node < coveredEnd) {
+				// Already added as a descendant of an earlier node
+				continue;
+			}
+			int subtreeEnd = elementIndex.getSubtreeEnd(node);
+			for (int descendant = node; descendant < subtreeEnd; descendant++) {
+				result[resultCount++] = descendant;
+			}
+			coveredEnd = subtreeEnd;
+		}
+		return Arrays.copyOf(result, resultCount);
+	}
+
+	/**
+	 * @return the child elements of the nodes matching the step, in document
+	 *         order
+	 */
+	private static int[] children(XmlElementIndex elementIndex, Step step, int[] nodes, int nodeCount) {
+		int[] result = new int[elementIndex.size()];
+		int resultCount = 0;
+		boolean sorted = true;
+		for (int position = 0; position < nodeCount; position++) {
+			int matchCount = 0;
+			for (int child = elementIndex.getFirstChild(nodes[position]); child != XmlElementIndex.DOCUMENT; child = elementIndex
+					.getNextSibling(child)) {
+				if (step.name != null && !elementIndex.hasLocalName(child, step.name)) {
+					continue;
+				}
+				matchCount++;
+				if (step.position == 0 || step.position == matchCount) {
+					sorted &= resultCount == 0 || result[resultCount - 1] < child;
+					result[resultCount++] = child;
+					if (step.position != 0) {
+						break;
+					}
+				}
+			}
+		}
+		int[] children = Arrays.copyOf(result, resultCount);
+		if (!sorted) {
+			// Children of a node come after the children of its descendants
+			Arrays.sort(children);
+		}
+		return children;
+	}
+
+	/**
+	 * Location step of an indexable expression
+	 */
+	private static final class Step {
+
+		static final int ELEMENT = 0;
+		static final int ATTRIBUTE = 1;
+		static final int TEXT = 2;
+
+		/**
+		 * If the step is preceded by <code>//</code>
+		 */
+		final boolean descendant;
+
+		final int kind;
+
+		/**
+		 * Local name of the element or the attribute, null for any element
+		 */
+		final String name;
+
+		/**
+		 * Position of the element among the matching children, 0 for all of
+		 * them
+		 */
+		final int position;
+
+		private Step(boolean descendant, int kind, String name, int position) {
+			this.descendant = descendant;
+			this.kind = kind;
+			this.name = name;
+			this.position = position;
+		}
+
+		/**
+		 * @param token
+		 * @param descendant
+		 * @return the step, null if it is outside the subset
+		 */
+		static Step compile(String token, boolean descendant) {
+			if (token.equals("text()")) {
+				return new Step(descendant, TEXT, null, 0);
+			}
+			if (token.startsWith("@")) {
+				String attributeName = token.substring(1);
+				return PathSteps.isName(attributeName) ? new Step(descendant, ATTRIBUTE, attributeName, 0) : null;
+			}
+			String elementName = token;
+			int position = 0;
+			int predicateStart = token.indexOf('[');
+			if (predicateStart >= 0) {
+				if (!token.endsWith("]")) {
+					return null;
+				}
+				position = PathSteps.parsePosition(token.substring(predicateStart + 1, token.length() - 1));
+				if (position == 0) {
+					return null;
+				}
+				elementName = token.substring(0, predicateStart);
+			}
+			if (elementName.equals("*")) {
+				return new Step(descendant, ELEMENT, null, position);
+			}
+			return PathSteps.isName(elementName) ? new Step(descendant, ELEMENT, elementName, position) : null;
+		}
+	}
+}
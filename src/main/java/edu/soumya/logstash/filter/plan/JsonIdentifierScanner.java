@@ -0,0 +1,400 @@
+package edu.soumya.logstash.filter.plan;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Finds the values of simple identifier jsonpaths by scanning the text of the
+ * json document, without a parser or tokenizer. Values which are not on the
+ * path are skipped by tracking only their nesting. The objects on the path are
+ * read to their end, as a property repeated in an object replaces the earlier
+ * one like in the parsed document, while an array on the path is read only
+ * upto the element at its index.<br>
+ * Only definite paths of property and array index steps are supported, like
+ * <code>$.header.docType</code> or <code>$['stations'][0]['id']</code>. If
+ * any expression is outside this subset, the instance is not scannable, see
+ * {@link #isScannable()}, but the expressions inside the subset are still
+ * scanned.<br>
+ * Only strings, integers and booleans are read, they convert to the same
+ * string as the parsed value would. Whenever that is not certain, like for
+ * decimal numbers, nulls, objects, arrays, lenient json or an array index which
+ * is not found, the scan gives up and the caller should use the parser instead.
+ * The scan does not check if the document is well-formed, that is left to
+ * reading the rest of the document.<br>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class JsonIdentifierScanner {
+
+	/**
+	 * Steps of the expressions, property names (String) or array indexes
+	 * (Integer). Null for an expression outside the subset.
+	 */
+	private final Object[][] paths;
+
+	/**
+	 * If all the expressions are inside the subset
+	 */
+	private final boolean scannable;
+
+	/**
+	 * Compiles the <code>expressions</code> which are inside the supported
+	 * subset. If any of them is outside the subset, the instance is not
+	 * scannable.
+	 *
+	 * @param expressions
+	 */
+	public JsonIdentifierScanner(String[] expressions) {
+		this.paths = new Object[expressions.length][];
+		boolean allScannable = true;
+		for (int index = 0; index < expressions.length; index++) {
+			this.paths[index] = PathSteps.compileJsonPath(expressions[index]);
+			allScannable &= this.paths[index] != null;
+		}
+		this.scannable = allScannable;
+	}
+
+	/**
+	 * @return true if all the expressions are inside the supported subset
+	 */
+	public boolean isScannable() {
+		return this.scannable;
+	}
+
+	/**
+	 * @param index
+	 * @return true if the expression at <code>index</code> is inside the
+	 *         supported subset
+	 */
+	public boolean isScannable(int index) {
+		return this.paths[index] != null;
+	}
+
+	/**
+	 * Finds the values of all the expressions, one scan per expression
+	 *
+	 * @param jsonString
+	 * @return string values of the expressions, index wise same as the
+	 *         expressions. Empty string for an expression whose property is not
+	 *         found. Null for the expressions which can not be found by
+	 *         scanning, the caller should evaluate only those with the parser.
+	 */
+	public String[] scan(String jsonString) {
+		String[] values = new String[this.paths.length];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = scan(jsonString, index);
+		}
+		return values;
+	}
+
+	/**
+	 * Finds the value of the expression at <code>index</code>
+	 *
+	 * @param jsonString
+	 * @param index
+	 * @return string value of the expression, empty string if its property is
+	 *         not found. Null if it can not be found by scanning, the caller
+	 *         should evaluate the expression with the parser then.
+	 */
+	public String scan(String jsonString, int index) {
+		if (!isScannable(index)) {
+			return null;
+		}
+		try {
+			return scan(jsonString, this.paths[index]);
+		} catch (AmbiguousException ambiguousException) {
+			return null;
+		}
+	}
+
+	private static String scan(String json, Object[] steps) {
+		int position = skipWhitespace(json, 0);
+		for (Object step : steps) {
+			if (step instanceof String) {
+				position = findProperty(json, position, (String) step);
+				if (position < 0) {
+					// Like a path which is not found on the parsed document
+					return StringUtils.EMPTY;
+				}
+			} else {
+				position = findElement(json, position, ((Integer) step).intValue());
+			}
+		}
+		return readScalar(json, position);
+	}
+
+	/**
+	 * @param json
+	 * @param position
+	 *            at the object
+	 * @param name
+	 * @return position of the value of the last property with the
+	 *         <code>name</code>, -1 if the object does not have it
+	 */
+	private static int findProperty(String json, int position, String name) {
+		expect(json, position, '{');
+		int valuePosition = -1;
+		position = skipWhitespace(json, position + 1);
+		while (charAt(json, position) == '"') {
+			int keyEnd = skipString(json, position);
+			boolean nameMatches = keyEquals(json, position + 1, keyEnd - 1, name);
+			position = skipWhitespace(json, keyEnd);
+			expect(json, position, ':');
+			position = skipWhitespace(json, position + 1);
+			if (nameMatches) {
+				// The last of the repeated properties is kept by the parsers
+				valuePosition = position;
+			}
+			position = skipWhitespace(json, skipValue(json, position));
+			if (charAt(json, position) != ',') {
+				break;
+			}
+			position = skipWhitespace(json, position + 1);
+		}
+		if (charAt(json, position) == '}') {
+			return valuePosition;
+		}
+		// Not strict json
+		throw AmbiguousException.INSTANCE;
+	}
+
+	/**
+	 * @param json
+	 * @param position
+	 *            at the array
+	 * @param elementIndex
+	 * @return position of the element at <code>elementIndex</code>
+	 */
+	private static int findElement(String json, int position, int elementIndex) {
+		expect(json, position, '[');
+		position = skipWhitespace(json, position + 1);
+		for (int index = 0; index < elementIndex; index++) {
+			position = skipWhitespace(json, skipValue(json, position));
+			expect(json, position, ',');
+			position = skipWhitespace(json, position + 1);
+		}
+		if (charAt(json, position) == ']') {
+			throw AmbiguousException.INSTANCE;
+		}
+		return position;
+	}
+
+	/**
+	 * @param json
+	 * @param position
+	 * @return the string, integer or boolean at <code>position</code>, as string
+	 */
+	private static String readScalar(String json, int position) {
+		char current = charAt(json, position);
+		if (current == '"') {
+			int stringEnd = skipString(json, position);
+			return decode(json, position + 1, stringEnd - 1);
+		}
+		int valueEnd = position;
+		while (valueEnd < json.length() && !isValueEnd(json.charAt(valueEnd))) {
+			valueEnd++;
+		}
+		String value = json.substring(position, valueEnd);
+		if ("true".equals(value) || "false".equals(value) || isInteger(value)) {
+			return value;
+		}
+		throw AmbiguousException.INSTANCE;
+	}
+
+	/**
+	 * Integers keep their text when parsed, unless they have leading zeros or
+	 * are negative zero
+	 *
+	 * @param value
+	 * @return true if the text is an integer which keeps its text when parsed
+	 */
+	private static boolean isInteger(String value) {
+		int digitsStart = value.startsWith("-") ? 1 : 0;
+		if (value.length() == digitsStart || value.charAt(digitsStart) == '0' && value.length() > 1) {
+			return false;
+		}
+		for (int index = digitsStart; index < value.length(); index++) {
+			if (value.charAt(index) < '0' || value.charAt(index) > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param json
+	 * @param position
+	 * @return position after the value at <code>position</code>
+	 */
+	private static int skipValue(String json, int position) {
+		char current = charAt(json, position);
+		if (current == '"') {
+			return skipString(json, position);
+		}
+		if (current == '{' || current == '[') {
+			int nesting = 0;
+			while (true) {
+				current = charAt(json, position);
+				if (current == '"') {
+					position = skipString(json, position);
+					continue;
+				}
+				if (current == '{' || current == '[') {
+					nesting++;
+				} else if ((current == '}' || current == ']') && --nesting == 0) {
+					return position + 1;
+				}
+				position++;
+			}
+		}
+		while (position < json.length() && !isValueEnd(json.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	/**
+	 * @param json
+	 * @param position
+	 *            at the opening quote
+	 * @return position after the closing quote
+	 */
+	private static int skipString(String json, int position) {
+		position++;
+		while (true) {
+			char current = charAt(json, position);
+			if (current == '"') {
+				return position + 1;
+			}
+			position += current == '\\' ? 2 : 1;
+		}
+	}
+
+	/**
+	 * @param json
+	 * @param start
+	 *            after the opening quote
+	 * @param end
+	 *            at the closing quote
+	 * @param name
+	 * @return true if the string is the <code>name</code>
+	 */
+	private static boolean keyEquals(String json, int start, int end, String name) {
+		for (int index = start; index < end; index++) {
+			if (json.charAt(index) == '\\') {
+				return decode(json, start, end).equals(name);
+			}
+		}
+		return end - start == name.length() && json.regionMatches(start, name, 0, name.length());
+	}
+
+	/**
+	 * @param json
+	 * @param start
+	 *            after the opening quote
+	 * @param end
+	 *            at the closing quote
+	 * @return the string with its escapes replaced
+	 */
+	private static String decode(String json, int start, int end) {
+		StringBuilder decoded = null;
+		int copied = start;
+		for (int index = start; index < end; index++) {
+			char current = json.charAt(index);
+			if (current < ' ') {
+				// Control characters are not strict json
+				throw AmbiguousException.INSTANCE;
+			}
+			if (current != '\\') {
+				continue;
+			}
+			if (decoded == null) {
+				decoded = new StringBuilder(end - start);
+			}
+			decoded.append(json, copied, index);
+			char escaped = json.charAt(++index);
+			switch (escaped) {
+			case '"':
+			case '\\':
+			case '/':
+				decoded.append(escaped);
+				break;
+			case 'b':
+				decoded.append('\b');
+				break;
+			case 'f':
+				decoded.append('\f');
+				break;
+			case 'n':
+				decoded.append('\n');
+				break;
+			case 'r':
+				decoded.append('\r');
+				break;
+			case 't':
+				decoded.append('\t');
+				break;
+			case 'u':
+				if (index + 4 >= end) {
+					throw AmbiguousException.INSTANCE;
+				}
+				try {
+					decoded.append((char) Integer.parseInt(json.substring(index + 1, index + 5), 16));
+				} catch (NumberFormatException numberFormatException) {
+					throw AmbiguousException.INSTANCE;
+				}
+				index += 4;
+				break;
+			default:
+				throw AmbiguousException.INSTANCE;
+			}
+			copied = index + 1;
+		}
+		if (decoded == null) {
+			return json.substring(start, end);
+		}
+		return decoded.append(json, copied, end).toString();
+	}
+
+	private static int skipWhitespace(String json, int position) {
+		while (position < json.length() && isWhitespace(json.charAt(position))) {
+			position++;
+		}
+		return position;
+	}
+
+	private static void expect(String json, int position, char expected) {
+		if (charAt(json, position) != expected) {
+			throw AmbiguousException.INSTANCE;
+		}
+	}
+
+	private static char charAt(String json, int position) {
+		if (position >= json.length()) {
+			throw AmbiguousException.INSTANCE;
+		}
+		return json.charAt(position);
+	}
+
+	private static boolean isWhitespace(char current) {
+		return current == ' ' || current == '\n' || current == '\r' || current == '\t';
+	}
+
+	private static boolean isValueEnd(char current) {
+		return current == ',' || current == '}' || current == ']' || isWhitespace(current);
+	}
+
+	/**
+	 * Thrown when the value can not be found by scanning
+	 */
+	private static class AmbiguousException extends RuntimeException {
+		private static final long serialVersionUID = 4723043526398471226L;
+
+		static final AmbiguousException INSTANCE = new AmbiguousException();
+
+		AmbiguousException() {
+			super(null, null, false, false);
+		}
+	}
+}
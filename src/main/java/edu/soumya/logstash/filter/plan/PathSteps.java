@@ -0,0 +1,147 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Parsing of the path steps and checks of the names, shared by the forms the
+ * paths are compiled to for evaluation without the DOM or the parsed json
+ * document, so that they all agree on the supported subset.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+final class PathSteps {
+
+	private PathSteps() {
+	}
+
+	/**
+	 * @param name
+	 * @return true if <code>name</code> is a xml name without namespace prefix
+	 */
+	static boolean isName(String name) {
+		if (StringUtils.isEmpty(name)) {
+			return false;
+		}
+		char first = name.charAt(0);
+		if (!(Character.isLetter(first) || first == '_')) {
+			return false;
+		}
+		for (int index = 1; index < name.length(); index++) {
+			char current = name.charAt(index);
+			if (!(Character.isLetterOrDigit(current) || current == '_' || current == '-' || current == '.')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Documents are read without namespace awareness, as they are for the DOM.
+	 * Like the DOM xpath evaluation, names are matched without their prefix.
+	 *
+	 * @param name
+	 * @return <code>name</code> without namespace prefix
+	 */
+	static String localName(String name) {
+		return name.substring(name.indexOf(':') + 1);
+	}
+
+	/**
+	 * Same as {@link #localName(String)} for a name in the text of the
+	 * document, without creating a string
+	 *
+	 * @param xml
+	 * @param nameStart
+	 * @param nameEnd
+	 * @param localName
+	 * @return true if the name between <code>nameStart</code> and
+	 *         <code>nameEnd</code> is <code>localName</code>, without its prefix
+	 */
+	static boolean localNameEquals(String xml, int nameStart, int nameEnd, String localName) {
+		int localStart = nameStart;
+		for (int index = nameStart; index < nameEnd; index++) {
+			if (xml.charAt(index) == ':') {
+				localStart = index + 1;
+				break;
+			}
+		}
+		return nameEnd - localStart == localName.length()
+				&& xml.regionMatches(localStart, localName, 0, localName.length());
+	}
+
+	/**
+	 * @param predicate
+	 *            content of the brackets of a xpath step
+	 * @return position of a positional predicate like <code>[2]</code>, 0 if it
+	 *         is not a positive integer of upto 9 digits
+	 */
+	static int parsePosition(String predicate) {
+		if (predicate.isEmpty() || predicate.length() > 9 || predicate.charAt(0) == '0') {
+			return 0;
+		}
+		for (int index = 0; index < predicate.length(); index++) {
+			if (predicate.charAt(index) < '0' || predicate.charAt(index) > '9') {
+				return 0;
+			}
+		}
+		return Integer.parseInt(predicate);
+	}
+
+	/**
+	 * Compiles a definite jsonpath of property and array index steps, like
+	 * <code>$.stations[0].station.name</code> or
+	 * <code>$['stations'][0]['station']['name']</code>, into its steps. A step
+	 * is either a property name (String) or an array index (Integer).
+	 *
+	 * @param expression
+	 * @return the steps, null if the expression is outside the subset
+	 */
+	static Object[] compileJsonPath(String expression) {
+		String path = StringUtils.trim(expression);
+		if (StringUtils.isEmpty(path) || path.charAt(0) != '$') {
+			return null;
+		}
+		List<Object> steps = new ArrayList<>();
+		int position = 1;
+		while (position < path.length()) {
+			char current = path.charAt(position);
+			if (current == '.') {
+				int nameEnd = position + 1;
+				while (nameEnd < path.length() && path.charAt(nameEnd) != '.' && path.charAt(nameEnd) != '[') {
+					nameEnd++;
+				}
+				String name = path.substring(position + 1, nameEnd);
+				// Deep scan, wildcard and functions are not supported
+				if (name.isEmpty() || name.equals("*") || StringUtils.containsAny(name, "()?,:'\" \\")) {
+					return null;
+				}
+				steps.add(name);
+				position = nameEnd;
+			} else if (current == '[') {
+				int bracketEnd = path.indexOf(']', position);
+				if (bracketEnd < 0) {
+					return null;
+				}
+				String content = path.substring(position + 1, bracketEnd).trim();
+				if (content.matches("[0-9]{1,9}")) {
+					steps.add(Integer.valueOf(content));
+				} else if (content.length() >= 2 && (content.charAt(0) == '\'' || content.charAt(0) == '"')
+						&& content.indexOf(content.charAt(0), 1) == content.length() - 1
+						&& content.indexOf('\\') < 0) {
+					steps.add(content.substring(1, content.length() - 1));
+				} else {
+					// Filters, slices, unions, negative indexes and wildcards are not supported
+					return null;
+				}
+				position = bracketEnd + 1;
+			} else {
+				return null;
+			}
+		}
+		return steps.isEmpty() ? null : steps.toArray();
+	}
+}
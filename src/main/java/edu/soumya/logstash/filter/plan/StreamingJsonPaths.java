@@ -0,0 +1,309 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import edu.soumya.logstash.filter.constants.Constants;
+
+/**
+ * Evaluates a fixed list of jsonpath expressions in a single forward pass over
+ * the json document with a token level parser, without materializing the
+ * document. Subtrees which no expression needs are skipped. The objects on the
+ * paths are read to their end, as a property repeated in an object replaces the
+ * earlier one, like in the parsed document. Only a root array stops being read
+ * as soon as every expression is resolved.<br>
+ * Only definite paths of property and array index steps are supported, like
+ * <code>$.stations[0].station.name</code> or
+ * <code>$['stations'][0]['station']['name']</code>. If any expression is
+ * outside this subset, like filters, wildcards, deep scans or functions, the
+ * instance is not streamable, see {@link #isStreamable()}.<br>
+ * Every expression evaluates to the same string as
+ * <code>JsonParseUtil.getStringFromJsonPath</code> would. When that can not be
+ * guaranteed, i.e. an expression selects an object or array or the document is
+ * not strict json, evaluation gives up and the caller should use the parsed
+ * document instead.<br>
+ * Instances are immutable and can be shared between threads.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class StreamingJsonPaths {
+
+	/**
+	 * Token parser factory, thread-safe and costly to create
+	 */
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	/**
+	 * JsonPath expressions in the order they were supplied
+	 */
+	private final String[] expressions;
+
+	/**
+	 * Compiled steps of the expressions, index wise same as
+	 * <code>expressions</code>. Null if not streamable.
+	 */
+	private final Object[][] compiledPaths;
+
+	/**
+	 * Compiles the <code>expressions</code> which are inside the supported
+	 * subset. If any of them is outside the subset, the instance is not
+	 * streamable.
+	 * 
+	 * @param expressions
+	 */
+	public StreamingJsonPaths(String[] expressions) {
+		this.expressions = expressions.clone();
+		Object[][] paths = new Object[this.expressions.length][];
+		for (int index = 0; index < this.expressions.length; index++) {
+			paths[index] = PathSteps.compileJsonPath(this.expressions[index]);
+			if (paths[index] == null) {
+				paths = null;
+				break;
+			}
+		}
+		this.compiledPaths = paths;
+	}
+
+	/**
+	 * @return true if all the expressions are inside the supported subset
+	 */
+	public boolean isStreamable() {
+		return this.compiledPaths != null;
+	}
+
+	/**
+	 * @return number of expressions
+	 */
+	public int size() {
+		return this.expressions.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the jsonpath expression at <code>index</code>, as it was supplied
+	 */
+	public String getExpression(int index) {
+		return this.expressions[index];
+	}
+
+	/**
+	 * Evaluates all the expressions in a single pass over <code>jsonString</code>
+	 * 
+	 * @param jsonString
+	 * @return string values of the expressions, index wise same as the
+	 *         expressions. Empty string for an expression without match. Null if
+	 *         the values can not be found by streaming, the caller should evaluate
+	 *         the expressions on the parsed document then.
+	 */
+	public String[] evaluate(String jsonString) {
+		if (!isStreamable()) {
+			return null;
+		}
+		try (JsonParser parser = JSON_FACTORY.createParser(jsonString)) {
+			Evaluation evaluation = new Evaluation(this.compiledPaths);
+			if (parser.nextToken() == null) {
+				return null;
+			}
+			int[] allPaths = new int[this.compiledPaths.length];
+			for (int index = 0; index < allPaths.length; index++) {
+				allPaths[index] = index;
+			}
+			evaluation.readValue(parser, allPaths, 0);
+			return evaluation.getValues();
+		} catch (IOException | NotStreamableException e) {
+			// Not strict json or a value, which is not a scalar
+			return null;
+		}
+	}
+
+	/**
+	 * State of a single evaluation
+	 */
+	private static class Evaluation {
+		final Object[][] paths;
+		final String[] values;
+
+		/**
+		 * Expressions which are neither found nor known to be missing
+		 */
+		int pendingCount;
+
+		Evaluation(Object[][] paths) {
+			this.paths = paths;
+			this.values = new String[paths.length];
+			this.pendingCount = paths.length;
+		}
+
+		boolean isDone() {
+			return this.pendingCount == 0;
+		}
+
+		void resolve(int pathIndex, String value) {
+			if (this.values[pathIndex] == null) {
+				this.values[pathIndex] = value;
+				this.pendingCount--;
+			}
+		}
+
+		/**
+		 * Forgets the values found for the expressions, before reading a repeated
+		 * property which replaces them
+		 * 
+		 * @param pathIndexes
+		 */
+		void unresolve(int[] pathIndexes) {
+			for (int pathIndex : pathIndexes) {
+				if (this.values[pathIndex] != null) {
+					this.values[pathIndex] = null;
+					this.pendingCount++;
+				}
+			}
+		}
+
+		String[] getValues() {
+			for (int index = 0; index < this.values.length; index++) {
+				if (this.values[index] == null) {
+					this.values[index] = StringUtils.EMPTY;
+				}
+			}
+			return this.values;
+		}
+
+		/**
+		 * Reads the value at the current token of <code>parser</code>. Expressions in
+		 * <code>activePaths</code> matched upto this value, with <code>depth</code>
+		 * steps.
+		 * 
+		 * @param parser
+		 * @param activePaths
+		 * @param depth
+		 * @throws IOException
+		 */
+		void readValue(JsonParser parser, int[] activePaths, int depth) throws IOException {
+			JsonToken token = parser.currentToken();
+			int[] childPaths = new int[activePaths.length];
+			int childCount = 0;
+			for (int pathIndex : activePaths) {
+				if (this.paths[pathIndex].length == depth) {
+					resolve(pathIndex, scalarValue(parser, token));
+				} else {
+					childPaths[childCount++] = pathIndex;
+				}
+			}
+			if (token == JsonToken.START_OBJECT && childCount > 0) {
+				readObject(parser, Arrays.copyOf(childPaths, childCount), depth);
+			} else if (token == JsonToken.START_ARRAY && childCount > 0) {
+				readArray(parser, Arrays.copyOf(childPaths, childCount), depth);
+			} else {
+				// A scalar can not have the further steps
+				for (int index = 0; index < childCount; index++) {
+					resolve(childPaths[index], StringUtils.EMPTY);
+				}
+				parser.skipChildren();
+			}
+		}
+
+		void readObject(JsonParser parser, int[] activePaths, int depth) throws IOException {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				int[] childPaths = selectChildPaths(activePaths, depth, fieldName, -1);
+				if (childPaths.length > 0) {
+					// The last of the repeated properties is kept by the parsers
+					unresolve(childPaths);
+					readValue(parser, childPaths, depth + 1);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			// Object is over, expressions not found in it are missing
+			markMissing(activePaths);
+		}
+
+		void readArray(JsonParser parser, int[] activePaths, int depth) throws IOException {
+			int arrayIndex = 0;
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				if (depth == 0 && isDone()) {
+					// Nothing encloses the root array, which could repeat a property
+					return;
+				}
+				int[] childPaths = selectChildPaths(activePaths, depth, null, arrayIndex++);
+				if (childPaths.length > 0) {
+					readValue(parser, childPaths, depth + 1);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			// Array is over, expressions not found in it are missing
+			markMissing(activePaths);
+		}
+
+		int[] selectChildPaths(int[] activePaths, int depth, String fieldName, int arrayIndex) {
+			int[] childPaths = new int[activePaths.length];
+			int childCount = 0;
+			for (int pathIndex : activePaths) {
+				Object step = this.paths[pathIndex][depth];
+				if (fieldName != null ? fieldName.equals(step)
+						: (step instanceof Integer && ((Integer) step).intValue() == arrayIndex)) {
+					childPaths[childCount++] = pathIndex;
+				}
+			}
+			return childCount == activePaths.length ? childPaths : Arrays.copyOf(childPaths, childCount);
+		}
+
+		void markMissing(int[] activePaths) {
+			for (int pathIndex : activePaths) {
+				resolve(pathIndex, StringUtils.EMPTY);
+			}
+		}
+	}
+
+	/**
+	 * @param parser
+	 * @param token
+	 * @return the scalar value at the current token, as JsonPath would convert it
+	 *         to string
+	 * @throws IOException
+	 * @throws NotStreamableException
+	 *             if the token is not a scalar
+	 */
+	private static String scalarValue(JsonParser parser, JsonToken token) throws IOException {
+		switch (token) {
+		case VALUE_STRING:
+			return parser.getText();
+		case VALUE_NUMBER_INT:
+			return String.valueOf(parser.getNumberValue());
+		case VALUE_NUMBER_FLOAT:
+			String numberText = parser.getText();
+			if (numberText.length() > Constants.MAX_DOUBLE_TEXT_LENGTH) {
+				return new BigDecimal(numberText).toString();
+			}
+			return String.valueOf(Double.parseDouble(numberText));
+		case VALUE_TRUE:
+		case VALUE_FALSE:
+		case VALUE_NULL:
+			return token.asString();
+		default:
+			throw new NotStreamableException();
+		}
+	}
+
+	/**
+	 * Thrown when a value can not be converted to string by streaming
+	 */
+	private static class NotStreamableException extends RuntimeException {
+		private static final long serialVersionUID = 6113426532861549073L;
+
+		NotStreamableException() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -0,0 +1,455 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+
+/**
+ * Evaluates a fixed list of xpath expressions in a single StAX pass over the
+ * xml document, without building a DOM tree. Reading stops as soon as every
+ * expression is resolved, so the rest of the document is not checked to be
+ * well-formed.<br>
+ * Only a subset of xpath is supported:
+ * <ul>
+ * <li>absolute location paths of child steps, like
+ * <code>/stations/station/name</code></li>
+ * <li>an attribute step at the end, like
+ * <code>/stations/station/@code</code></li>
+ * <li>positional predicates, like <code>/stations/station[2]/name</code></li>
+ * <li>attribute equality predicates, like
+ * <code>/stations/station[@type='junction']/name</code></li>
+ * </ul>
+ * If any expression is outside the subset, the instance is not streamable and
+ * the expressions have to be evaluated on a DOM instead, see
+ * {@link #isStreamable()}.<br>
+ * Every expression evaluates to the same string as
+ * <code>XPathConstants.STRING</code> on a DOM would, trimmed.<br>
+ * Instances are immutable and can be shared between threads.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class StreamingXPaths {
+
+	/**
+	 * XPath expressions in the order they were supplied
+	 */
+	private final String[] expressions;
+
+	/**
+	 * Compiled expressions, index wise same as <code>expressions</code>. Null if
+	 * not streamable.
+	 */
+	private final PathPattern[] patterns;
+
+	/**
+	 * Compiles the <code>expressions</code> which are inside the supported
+	 * subset. If any of them is outside the subset, the instance is not
+	 * streamable.
+	 * 
+	 * @param expressions
+	 */
+	public StreamingXPaths(String[] expressions) {
+		this.expressions = expressions.clone();
+		PathPattern[] compiledPatterns = new PathPattern[this.expressions.length];
+		for (int index = 0; index < this.expressions.length; index++) {
+			compiledPatterns[index] = PathPattern.compile(this.expressions[index]);
+			if (compiledPatterns[index] == null) {
+				compiledPatterns = null;
+				break;
+			}
+		}
+		this.patterns = compiledPatterns;
+	}
+
+	/**
+	 * @return true if all the expressions are inside the supported subset
+	 */
+	public boolean isStreamable() {
+		return this.patterns != null;
+	}
+
+	/**
+	 * @return number of expressions
+	 */
+	public int size() {
+		return this.expressions.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the xpath expression at <code>index</code>, as it was supplied
+	 */
+	public String getExpression(int index) {
+		return this.expressions[index];
+	}
+
+	/**
+	 * Evaluates all the expressions in a single pass over <code>xmlString</code>
+	 * 
+	 * @param xmlString
+	 * @return string values of the expressions, index wise same as the
+	 *         expressions. Empty string for an expression without match.
+	 * @throws ConfigurationException
+	 *             if the document is not well-formed upto where reading
+	 *             stopped, or the instance is not streamable
+	 */
+	public String[] evaluate(String xmlString) throws ConfigurationException {
+		if (!isStreamable()) {
+			throw new ConfigurationException("XPath expressions are not streamable.");
+		}
+		XMLStreamReader reader = XmlParseUtil.createXMLStreamReader(xmlString);
+		try {
+			return evaluate(reader);
+		} catch (XMLStreamException e) {
+			throw new DocumentException("Failed to Parse the xml document.", e);
+		} finally {
+			XmlParseUtil.closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Reads the events from <code>reader</code> until all the expressions are
+	 * resolved or the document ends
+	 * 
+	 * @param reader
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	private String[] evaluate(XMLStreamReader reader) throws XMLStreamException {
+		String[] values = new String[this.patterns.length];
+		int unresolvedCount = this.patterns.length;
+		// Open elements, root element is at depth 1
+		List<Frame> openElements = new ArrayList<>();
+		openElements.add(Frame.documentFrame(this.patterns.length));
+		// Element values being collected
+		List<Capture> captures = new ArrayList<>();
+
+		while (unresolvedCount > 0 && reader.hasNext()) {
+			int eventType = reader.next();
+			switch (eventType) {
+			case XMLStreamConstants.START_ELEMENT: {
+				Frame parent = openElements.get(openElements.size() - 1);
+				int depth = openElements.size();
+				if (parent.activePaths.length == 0) {
+					// No expression needs this subtree
+					openElements.add(Frame.SKIPPED);
+					break;
+				}
+				String elementName = PathSteps.localName(reader.getLocalName());
+				int position = parent.nextPosition(elementName);
+				int[] activePaths = new int[parent.activePaths.length];
+				int activeCount = 0;
+				for (int pathIndex : parent.activePaths) {
+					if (values[pathIndex] != null) {
+						continue;
+					}
+					PathPattern pattern = this.patterns[pathIndex];
+					if (!pattern.steps[depth - 1].matches(reader, elementName, position)) {
+						continue;
+					}
+					if (depth < pattern.steps.length) {
+						activePaths[activeCount++] = pathIndex;
+					} else if (pattern.attribute != null) {
+						String attributeValue = getAttributeValue(reader, pattern.attribute);
+						if (attributeValue != null) {
+							values[pathIndex] = attributeValue.trim();
+							unresolvedCount--;
+						}
+					} else if (!isCapturing(captures, pathIndex)) {
+						captures.add(new Capture(pathIndex, depth));
+					}
+				}
+				openElements.add(new Frame(
+						activeCount == activePaths.length ? activePaths : Arrays.copyOf(activePaths, activeCount)));
+				break;
+			}
+			case XMLStreamConstants.END_ELEMENT: {
+				int depth = openElements.size() - 1;
+				for (int index = captures.size() - 1; index >= 0; index--) {
+					Capture capture = captures.get(index);
+					if (capture.depth == depth) {
+						values[capture.pathIndex] = capture.text.toString().trim();
+						unresolvedCount--;
+						captures.remove(index);
+					}
+				}
+				openElements.remove(depth);
+				break;
+			}
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				for (Capture capture : captures) {
+					capture.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		for (int index = 0; index < values.length; index++) {
+			if (values[index] == null) {
+				values[index] = StringUtils.EMPTY;
+			}
+		}
+		return values;
+	}
+
+	private static boolean isCapturing(List<Capture> captures, int pathIndex) {
+		for (Capture capture : captures) {
+			if (capture.pathIndex == pathIndex) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String getAttributeValue(XMLStreamReader reader, String attributeName) {
+		for (int index = 0; index < reader.getAttributeCount(); index++) {
+			if (StringUtils.equals(PathSteps.localName(reader.getAttributeLocalName(index)), attributeName)) {
+				return reader.getAttributeValue(index);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * An open element of the document
+	 */
+	private static class Frame {
+		/**
+		 * Frame for elements, which no expression needs
+		 */
+		static final Frame SKIPPED = new Frame(new int[0]);
+
+		/**
+		 * Indexes of the expressions, whose steps matched upto this element
+		 */
+		final int[] activePaths;
+
+		/**
+		 * Number of child elements seen so far by element name, for positional
+		 * predicates. Initialized when the first child is seen.
+		 */
+		Map<String, Integer> childCounts;
+
+		Frame(int[] activePaths) {
+			this.activePaths = activePaths;
+		}
+
+		static Frame documentFrame(int pathCount) {
+			int[] allPaths = new int[pathCount];
+			for (int index = 0; index < pathCount; index++) {
+				allPaths[index] = index;
+			}
+			return new Frame(allPaths);
+		}
+
+		/**
+		 * @param elementName
+		 * @return position of the next child with <code>elementName</code> among its
+		 *         siblings of the same name, starting from 1
+		 */
+		int nextPosition(String elementName) {
+			if (this.childCounts == null) {
+				this.childCounts = new HashMap<>();
+			}
+			Integer position = this.childCounts.merge(elementName, 1, Integer::sum);
+			return position.intValue();
+		}
+	}
+
+	/**
+	 * Collects the string value of an element matched by an expression
+	 */
+	private static class Capture {
+		final int pathIndex;
+		final int depth;
+		final StringBuilder text = new StringBuilder();
+
+		Capture(int pathIndex, int depth) {
+			this.pathIndex = pathIndex;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * Compiled form of a supported xpath expression
+	 */
+	private static class PathPattern {
+		final Step[] steps;
+
+		/**
+		 * Name of the attribute in the last step, null if the expression selects an
+		 * element
+		 */
+		final String attribute;
+
+		PathPattern(Step[] steps, String attribute) {
+			this.steps = steps;
+			this.attribute = attribute;
+		}
+
+		/**
+		 * @param expression
+		 * @return compiled pattern, null if the expression is outside the supported
+		 *         subset
+		 */
+		static PathPattern compile(String expression) {
+			String path = StringUtils.trim(expression);
+			if (StringUtils.isEmpty(path) || path.charAt(0) != '/' || path.startsWith("//")) {
+				return null;
+			}
+			List<String> stepTexts = splitSteps(path.substring(1));
+			if (stepTexts == null || stepTexts.isEmpty()) {
+				return null;
+			}
+			String attribute = null;
+			String lastStep = stepTexts.get(stepTexts.size() - 1);
+			if (lastStep.startsWith("@")) {
+				attribute = lastStep.substring(1);
+				if (!PathSteps.isName(attribute) || stepTexts.size() == 1) {
+					return null;
+				}
+				stepTexts.remove(stepTexts.size() - 1);
+			}
+			Step[] steps = new Step[stepTexts.size()];
+			for (int index = 0; index < steps.length; index++) {
+				steps[index] = Step.compile(stepTexts.get(index));
+				if (steps[index] == null) {
+					return null;
+				}
+			}
+			return new PathPattern(steps, attribute);
+		}
+
+		/**
+		 * Splits the path at '/' outside predicates
+		 * 
+		 * @param path
+		 * @return steps, null if the predicates are not closed
+		 */
+		private static List<String> splitSteps(String path) {
+			List<String> stepTexts = new ArrayList<>();
+			int stepStart = 0;
+			int bracketDepth = 0;
+			char quote = 0;
+			for (int index = 0; index < path.length(); index++) {
+				char current = path.charAt(index);
+				if (quote != 0) {
+					if (current == quote) {
+						quote = 0;
+					}
+				} else if (current == '\'' || current == '"') {
+					quote = current;
+				} else if (current == '[') {
+					bracketDepth++;
+				} else if (current == ']') {
+					bracketDepth--;
+				} else if (current == '/' && bracketDepth == 0) {
+					stepTexts.add(path.substring(stepStart, index).trim());
+					stepStart = index + 1;
+				}
+			}
+			if (quote != 0 || bracketDepth != 0) {
+				return null;
+			}
+			stepTexts.add(path.substring(stepStart).trim());
+			return stepTexts;
+		}
+	}
+
+	/**
+	 * Compiled form of a child step with its predicates
+	 */
+	private static class Step {
+		final String name;
+
+		/**
+		 * Required position among the siblings of same name, 0 if any
+		 */
+		final int position;
+
+		/**
+		 * Attribute name and value of the equality predicate, null if none
+		 */
+		final String predicateAttribute;
+		final String predicateValue;
+
+		Step(String name, int position, String predicateAttribute, String predicateValue) {
+			this.name = name;
+			this.position = position;
+			this.predicateAttribute = predicateAttribute;
+			this.predicateValue = predicateValue;
+		}
+
+		boolean matches(XMLStreamReader reader, String elementName, int elementPosition) {
+			if (!StringUtils.equals(this.name, elementName)) {
+				return false;
+			}
+			if (this.position > 0 && this.position != elementPosition) {
+				return false;
+			}
+			return this.predicateAttribute == null
+					|| StringUtils.equals(this.predicateValue, getAttributeValue(reader, this.predicateAttribute));
+		}
+
+		/**
+		 * @param stepText
+		 * @return compiled step, null if the step is outside the supported subset
+		 */
+		static Step compile(String stepText) {
+			int predicateStart = stepText.indexOf('[');
+			String name = (predicateStart < 0 ? stepText : stepText.substring(0, predicateStart)).trim();
+			if (!PathSteps.isName(name)) {
+				return null;
+			}
+			if (predicateStart < 0) {
+				return new Step(name, 0, null, null);
+			}
+			// Only a single predicate at the end of the step is supported
+			if (!stepText.endsWith("]")) {
+				return null;
+			}
+			String predicate = stepText.substring(predicateStart + 1, stepText.length() - 1).trim();
+			int position = PathSteps.parsePosition(predicate);
+			if (position > 0) {
+				return new Step(name, position, null, null);
+			}
+			int equalsIndex = predicate.indexOf('=');
+			if (!predicate.startsWith("@") || equalsIndex < 0) {
+				return null;
+			}
+			String predicateAttribute = predicate.substring(1, equalsIndex).trim();
+			String predicateValue = unquote(predicate.substring(equalsIndex + 1).trim());
+			if (!PathSteps.isName(predicateAttribute) || predicateValue == null) {
+				return null;
+			}
+			return new Step(name, 0, predicateAttribute, predicateValue);
+		}
+
+		private static String unquote(String literal) {
+			if (literal.length() >= 2) {
+				char quote = literal.charAt(0);
+				if ((quote == '\'' || quote == '"') && literal.charAt(literal.length() - 1) == quote
+						&& literal.indexOf(quote, 1) == literal.length() - 1) {
+					return literal.substring(1, literal.length() - 1);
+				}
+			}
+			return null;
+		}
+	}
+}
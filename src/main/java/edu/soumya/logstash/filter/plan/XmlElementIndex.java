@@ -0,0 +1,767 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.Arrays;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+
+/**
+ * Index of the elements of an xml document, kept as offsets into the text of
+ * the document, instead of a tree of node objects like the DOM. The text is
+ * read once, and for every element, in document order, only the offsets of its
+ * name, start tag and end tag and the ids of its parent, first child and next
+ * sibling are stored. Text and attribute values are read from the document
+ * text only when they are asked for.<br>
+ * Like the DOM parser of the filter, the index is not namespace aware, names
+ * are compared without their prefix. While indexing, the nesting of the
+ * elements, the syntax of the tags and attributes, duplicate attributes and
+ * the references are checked, not all the rules of well-formedness, like the
+ * characters allowed in the text.<br>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public final class XmlElementIndex {
+
+	/**
+	 * Id of the document node, the parent of the root element
+	 */
+	public static final int DOCUMENT = -1;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final String xml;
+
+	/**
+	 * Number of elements
+	 */
+	private int count;
+
+	/**
+	 * Offsets of the names of the elements in their start tags
+	 */
+	private int[] nameStarts;
+
+	private int[] nameEnds;
+
+	/**
+	 * Offsets of the '&gt;' ending the start tags
+	 */
+	private int[] tagEnds;
+
+	/**
+	 * Offsets of the end tags, the same as after the start tag for empty
+	 * element tags
+	 */
+	private int[] contentEnds;
+
+	/**
+	 * Ids after the last descendant of the elements
+	 */
+	private int[] subtreeEnds;
+
+	private int[] parents;
+
+	private int[] firstChildren;
+
+	private int[] nextSiblings;
+
+	private XmlElementIndex(String xml) {
+		this.xml = xml;
+		this.nameStarts = new int[INITIAL_CAPACITY];
+		this.nameEnds = new int[INITIAL_CAPACITY];
+		this.tagEnds = new int[INITIAL_CAPACITY];
+		this.contentEnds = new int[INITIAL_CAPACITY];
+		this.subtreeEnds = new int[INITIAL_CAPACITY];
+		this.parents = new int[INITIAL_CAPACITY];
+		this.firstChildren = new int[INITIAL_CAPACITY];
+		this.nextSiblings = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Indexes the elements of the xml document
+	 *
+	 * @param xmlString
+	 * @return the index, null if the document has a DOCTYPE, which can declare
+	 *         entities and default attributes, so the document can not be
+	 *         indexed
+	 * @throws ConfigurationException
+	 *             {@link DocumentException} if the document is not well-formed
+	 */
+	public static XmlElementIndex build(String xmlString) throws ConfigurationException {
+		XmlElementIndex index = new XmlElementIndex(xmlString);
+		try {
+			return index.indexElements() ? index : null;
+		} catch (MalformedException malformedException) {
+			throw new DocumentException(
+					"Failed to Parse the xml document. Not well-formed at offset " + malformedException.offset + ".");
+		}
+	}
+
+	/**
+	 * @return false if the document has a DOCTYPE
+	 */
+	private boolean indexElements() {
+		String text = this.xml;
+		int length = text.length();
+		int[] openElements = new int[16];
+		// Last child of every open element, to link the next sibling
+		int[] lastChildren = new int[16];
+		int depth = 0;
+		int position = 0;
+		if (text.startsWith("<?xml") && length > 5 && isWhitespace(text.charAt(5))) {
+			position = indexAfter("?>", 5);
+		}
+		while (position < length) {
+			char current = text.charAt(position);
+			if (current != '<') {
+				int textEnd = text.indexOf('<', position);
+				textEnd = textEnd < 0 ? length : textEnd;
+				checkText(position, textEnd, depth == 0);
+				position = textEnd;
+			} else if (text.startsWith("<!--", position)) {
+				position = indexAfter("-->", position + 4);
+			} else if (text.startsWith("<?", position)) {
+				int targetEnd = nameEnd(position + 2);
+				if (targetEnd == position + 2 || targetEnd - position - 2 == 3
+						&& text.regionMatches(true, position + 2, "xml", 0, 3)) {
+					throw new MalformedException(position);
+				}
+				position = indexAfter("?>", targetEnd);
+			} else if (text.startsWith("<![CDATA[", position)) {
+				if (depth == 0) {
+					throw new MalformedException(position);
+				}
+				position = indexAfter("]]>", position + 9);
+			} else if (text.startsWith("<!DOCTYPE", position) && depth == 0 && this.count == 0) {
+				return false;
+			} else if (text.startsWith("</", position)) {
+				if (depth == 0) {
+					throw new MalformedException(position);
+				}
+				int element = openElements[--depth];
+				int nameEnd = nameEnd(position + 2);
+				int nameLength = this.nameEnds[element] - this.nameStarts[element];
+				if (nameEnd - position - 2 != nameLength
+						|| !text.regionMatches(position + 2, text, this.nameStarts[element], nameLength)) {
+					throw new MalformedException(position);
+				}
+				int tagEnd = skipWhitespace(nameEnd);
+				if (tagEnd >= length || text.charAt(tagEnd) != '>') {
+					throw new MalformedException(tagEnd);
+				}
+				this.contentEnds[element] = position;
+				this.subtreeEnds[element] = this.count;
+				position = tagEnd + 1;
+			} else {
+				if (depth == 0 && this.count > 0) {
+					// Only one root element
+					throw new MalformedException(position);
+				}
+				int element = addElement(position, depth == 0 ? DOCUMENT : openElements[depth - 1]);
+				if (depth > 0) {
+					int lastChild = lastChildren[depth - 1];
+					if (lastChild == DOCUMENT) {
+						this.firstChildren[openElements[depth - 1]] = element;
+					} else {
+						this.nextSiblings[lastChild] = element;
+					}
+					lastChildren[depth - 1] = element;
+				}
+				int tagEnd = this.tagEnds[element];
+				position = tagEnd + 1;
+				if (text.charAt(tagEnd - 1) == '/') {
+					this.contentEnds[element] = position;
+					this.subtreeEnds[element] = this.count;
+				} else {
+					if (depth == openElements.length) {
+						openElements = Arrays.copyOf(openElements, depth * 2);
+						lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+					}
+					openElements[depth] = element;
+					lastChildren[depth] = DOCUMENT;
+					depth++;
+				}
+			}
+		}
+		if (depth != 0 || this.count == 0) {
+			// Unclosed elements or no root element
+			throw new MalformedException(length);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the element of the start tag at <code>tagStart</code>, checking its
+	 * attributes
+	 *
+	 * @param tagStart
+	 * @param parent
+	 * @return id of the element
+	 */
+	private int addElement(int tagStart, int parent) {
+		String text = this.xml;
+		int nameStart = tagStart + 1;
+		int nameEnd = nameEnd(nameStart);
+		if (nameEnd == nameStart || !isNameStart(text.charAt(nameStart))) {
+			throw new MalformedException(tagStart);
+		}
+		int position = nameEnd;
+		while (true) {
+			int attributeStart = skipWhitespace(position);
+			if (attributeStart >= text.length()) {
+				throw new MalformedException(attributeStart);
+			}
+			char current = text.charAt(attributeStart);
+			if (current == '>') {
+				position = attributeStart;
+				break;
+			}
+			if (current == '/') {
+				if (attributeStart + 1 >= text.length() || text.charAt(attributeStart + 1) != '>') {
+					throw new MalformedException(attributeStart);
+				}
+				position = attributeStart + 1;
+				break;
+			}
+			if (attributeStart == position || !isNameStart(current)) {
+				// Attributes are separated by white spaces
+				throw new MalformedException(attributeStart);
+			}
+			int attributeNameEnd = attributeNameEnd(attributeStart);
+			checkUniqueAttribute(nameEnd, attributeStart, attributeNameEnd);
+			int equals = skipWhitespace(attributeNameEnd);
+			if (equals >= text.length() || text.charAt(equals) != '=') {
+				throw new MalformedException(equals);
+			}
+			int valueStart = skipWhitespace(equals + 1);
+			char quote = valueStart < text.length() ? text.charAt(valueStart) : 0;
+			int valueEnd = quote == '"' || quote == '\'' ? text.indexOf(quote, valueStart + 1) : -1;
+			if (valueEnd < 0) {
+				throw new MalformedException(valueStart);
+			}
+			for (int index = valueStart + 1; index < valueEnd; index++) {
+				char valueChar = text.charAt(index);
+				if (valueChar == '<') {
+					throw new MalformedException(index);
+				} else if (valueChar == '&') {
+					index = referenceEnd(index) - 1;
+				}
+			}
+			position = valueEnd + 1;
+		}
+		int element = this.count;
+		if (element == this.nameStarts.length) {
+			grow();
+		}
+		this.nameStarts[element] = nameStart;
+		this.nameEnds[element] = nameEnd;
+		this.tagEnds[element] = position;
+		this.parents[element] = parent;
+		this.firstChildren[element] = DOCUMENT;
+		this.nextSiblings[element] = DOCUMENT;
+		this.count++;
+		return element;
+	}
+
+	/**
+	 * Fails if an attribute before <code>attributeStart</code> in the same start
+	 * tag has the same name
+	 */
+	private void checkUniqueAttribute(int attributesStart, int attributeStart, int attributeNameEnd) {
+		String text = this.xml;
+		int nameLength = attributeNameEnd - attributeStart;
+		int position = attributesStart;
+		while (position < attributeStart) {
+			int previousStart = skipWhitespace(position);
+			if (previousStart >= attributeStart) {
+				return;
+			}
+			int previousEnd = attributeNameEnd(previousStart);
+			if (previousEnd - previousStart == nameLength
+					&& text.regionMatches(previousStart, text, attributeStart, nameLength)) {
+				throw new MalformedException(attributeStart);
+			}
+			int valueStart = skipWhitespace(skipWhitespace(previousEnd) + 1);
+			position = text.indexOf(text.charAt(valueStart), valueStart + 1) + 1;
+		}
+	}
+
+	private void grow() {
+		int capacity = this.count * 2;
+		this.nameStarts = Arrays.copyOf(this.nameStarts, capacity);
+		this.nameEnds = Arrays.copyOf(this.nameEnds, capacity);
+		this.tagEnds = Arrays.copyOf(this.tagEnds, capacity);
+		this.contentEnds = Arrays.copyOf(this.contentEnds, capacity);
+		this.subtreeEnds = Arrays.copyOf(this.subtreeEnds, capacity);
+		this.parents = Arrays.copyOf(this.parents, capacity);
+		this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+		this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+	}
+
+	/**
+	 * Checks the references of the text, and that text outside the root element
+	 * is only white spaces
+	 */
+	private void checkText(int textStart, int textEnd, boolean outsideRoot) {
+		String text = this.xml;
+		for (int index = textStart; index < textEnd; index++) {
+			char current = text.charAt(index);
+			if (outsideRoot) {
+				if (!isWhitespace(current)) {
+					throw new MalformedException(index);
+				}
+			} else if (current == '&') {
+				index = referenceEnd(index) - 1;
+			} else if (current == '>' && index >= textStart + 2 && text.charAt(index - 1) == ']'
+					&& text.charAt(index - 2) == ']') {
+				throw new MalformedException(index);
+			}
+		}
+	}
+
+	/**
+	 * @param ampersand
+	 * @return offset after the ';' of the predefined entity or character
+	 *         reference
+	 */
+	private int referenceEnd(int ampersand) {
+		String text = this.xml;
+		int semicolon = text.indexOf(';', ampersand + 1);
+		if (semicolon < 0) {
+			throw new MalformedException(ampersand);
+		}
+		if (decodeReference(ampersand, semicolon) < 0) {
+			throw new MalformedException(ampersand);
+		}
+		return semicolon + 1;
+	}
+
+	/**
+	 * @param ampersand
+	 * @param semicolon
+	 * @return the code point of the reference, -1 if it is not a predefined
+	 *         entity or a character reference
+	 */
+	private int decodeReference(int ampersand, int semicolon) {
+		String text = this.xml;
+		int nameStart = ampersand + 1;
+		int nameLength = semicolon - nameStart;
+		if (nameLength < 2 || nameLength > 10) {
+			return -1;
+		}
+		if (text.charAt(nameStart) == '#') {
+			int radix = 10;
+			int digitsStart = nameStart + 1;
+			if (text.charAt(digitsStart) == 'x') {
+				radix = 16;
+				digitsStart++;
+			}
+			if (digitsStart == semicolon) {
+				return -1;
+			}
+			int codePoint = 0;
+			for (int index = digitsStart; index < semicolon; index++) {
+				int digit = Character.digit(text.charAt(index), radix);
+				if (digit < 0) {
+					return -1;
+				}
+				codePoint = codePoint * radix + digit;
+				if (codePoint > Character.MAX_CODE_POINT) {
+					return -1;
+				}
+			}
+			boolean surrogate = codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE;
+			return codePoint > 0 && !surrogate ? codePoint : -1;
+		}
+		if (text.startsWith("lt;", nameStart)) {
+			return '<';
+		} else if (text.startsWith("gt;", nameStart)) {
+			return '>';
+		} else if (text.startsWith("amp;", nameStart)) {
+			return '&';
+		} else if (text.startsWith("quot;", nameStart)) {
+			return '"';
+		} else if (text.startsWith("apos;", nameStart)) {
+			return '\'';
+		}
+		return -1;
+	}
+
+	/**
+	 * @return number of elements
+	 */
+	public int size() {
+		return this.count;
+	}
+
+	/**
+	 * @param element
+	 * @return id of the parent, {@link #DOCUMENT} for the root element
+	 */
+	public int getParent(int element) {
+		return this.parents[element];
+	}
+
+	/**
+	 * @param node
+	 *            element or {@link #DOCUMENT}
+	 * @return id of the first child element, {@link #DOCUMENT} if it has none
+	 */
+	public int getFirstChild(int node) {
+		if (node == DOCUMENT) {
+			return 0;
+		}
+		return this.firstChildren[node];
+	}
+
+	/**
+	 * @param element
+	 * @return id of the next sibling element, {@link #DOCUMENT} if it has none
+	 */
+	public int getNextSibling(int element) {
+		return this.nextSiblings[element];
+	}
+
+	/**
+	 * @param node
+	 *            element or {@link #DOCUMENT}
+	 * @return id after the last descendant of the node
+	 */
+	public int getSubtreeEnd(int node) {
+		return node == DOCUMENT ? this.count : this.subtreeEnds[node];
+	}
+
+	/**
+	 * @param element
+	 * @param localName
+	 * @return true if the name of the element without its prefix is
+	 *         <code>localName</code>
+	 */
+	public boolean hasLocalName(int element, String localName) {
+		return PathSteps.localNameEquals(this.xml, this.nameStarts[element], this.nameEnds[element], localName);
+	}
+
+	/**
+	 * @param element
+	 * @param localName
+	 *            name of the attribute without its prefix
+	 * @return value of the first attribute of the element with the name,
+	 *         normalized like by the parser, null if it has none. Namespace
+	 *         declarations are not attributes.
+	 */
+	public String getAttribute(int element, String localName) {
+		String text = this.xml;
+		int attributesEnd = this.tagEnds[element];
+		int position = this.nameEnds[element];
+		while (true) {
+			int attributeStart = skipWhitespace(position);
+			if (attributeStart >= attributesEnd || text.charAt(attributeStart) == '/') {
+				return null;
+			}
+			int attributeNameEnd = attributeNameEnd(attributeStart);
+			int valueStart = skipWhitespace(skipWhitespace(attributeNameEnd) + 1);
+			int valueEnd = text.indexOf(text.charAt(valueStart), valueStart + 1);
+			boolean namespaceDeclaration = text.startsWith("xmlns", attributeStart)
+					&& (attributeNameEnd == attributeStart + 5 || text.charAt(attributeStart + 5) == ':');
+			if (!namespaceDeclaration && PathSteps.localNameEquals(text, attributeStart, attributeNameEnd, localName)) {
+				return readAttributeValue(valueStart + 1, valueEnd);
+			}
+			position = valueEnd + 1;
+		}
+	}
+
+	/**
+	 * @param element
+	 * @return text of the element and its descendants, in document order, not
+	 *         trimmed
+	 */
+	public String getStringValue(int element) {
+		int contentStart = this.tagEnds[element] + 1;
+		int contentEnd = this.contentEnds[element];
+		String text = this.xml;
+		boolean plainText = true;
+		for (int index = contentStart; index < contentEnd && plainText; index++) {
+			char current = text.charAt(index);
+			plainText = current != '<' && current != '&' && current != '\r';
+		}
+		if (plainText) {
+			return text.substring(contentStart, contentEnd);
+		}
+		StringBuilder value = new StringBuilder(contentEnd - contentStart);
+		int position = contentStart;
+		while (position < contentEnd) {
+			int markupStart = text.indexOf('<', position);
+			if (markupStart < 0 || markupStart > contentEnd) {
+				markupStart = contentEnd;
+			}
+			appendText(value, position, markupStart);
+			position = skipMarkup(value, markupStart, contentEnd);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * @param element
+	 * @return offset of the start tag of the element
+	 */
+	public int getStartOffset(int element) {
+		return this.nameStarts[element] - 1;
+	}
+
+	/**
+	 * @param element
+	 * @return first text child of the element, with adjacent CDATA sections, not
+	 *         trimmed, null if it has none
+	 */
+	public String getFirstText(int element) {
+		StringBuilder value = new StringBuilder();
+		return findFirstText(element, value) < 0 ? null : value.toString();
+	}
+
+	/**
+	 * @param element
+	 * @return offset of the first text child of the element, -1 if it has none
+	 */
+	public int getFirstTextOffset(int element) {
+		return findFirstText(element, null);
+	}
+
+	/**
+	 * Finds the first text child of the element, and appends it to
+	 * <code>value</code> with its adjacent CDATA sections if
+	 * <code>value</code> is not null
+	 *
+	 * @return offset of the text, -1 if the element has no text child
+	 */
+	private int findFirstText(int element, StringBuilder value) {
+		int contentEnd = this.contentEnds[element];
+		String text = this.xml;
+		int textStart = -1;
+		int position = this.tagEnds[element] + 1;
+		int child = this.firstChildren[element];
+		while (position < contentEnd) {
+			int markupStart = text.indexOf('<', position);
+			if (markupStart < 0 || markupStart > contentEnd) {
+				markupStart = contentEnd;
+			}
+			if (markupStart > position) {
+				if (textStart < 0) {
+					textStart = position;
+				}
+				if (value == null) {
+					return textStart;
+				}
+				appendText(value, position, markupStart);
+			}
+			if (markupStart == contentEnd) {
+				break;
+			}
+			if (text.startsWith("<![CDATA[", markupStart)) {
+				int cdataEnd = text.indexOf("]]>", markupStart + 9);
+				if (cdataEnd > markupStart + 9) {
+					if (textStart < 0) {
+						textStart = markupStart;
+					}
+					if (value == null) {
+						return textStart;
+					}
+					value.append(text, markupStart + 9, cdataEnd);
+				}
+				position = cdataEnd + 3;
+				continue;
+			}
+			if (textStart >= 0) {
+				return textStart;
+			}
+			if (text.startsWith("<!--", markupStart)) {
+				position = text.indexOf("-->", markupStart + 4) + 3;
+			} else if (text.startsWith("<?", markupStart)) {
+				position = text.indexOf("?>", markupStart + 2) + 2;
+			} else {
+				// Child element, skipped as a whole
+				position = getEnd(child);
+				child = this.nextSiblings[child];
+			}
+		}
+		return textStart;
+	}
+
+	/**
+	 * @param element
+	 * @return offset after the end tag of the element
+	 */
+	private int getEnd(int element) {
+		int contentEnd = this.contentEnds[element];
+		if (contentEnd == this.tagEnds[element] + 1 && this.xml.charAt(contentEnd - 2) == '/') {
+			return contentEnd;
+		}
+		return this.xml.indexOf('>', contentEnd) + 1;
+	}
+
+	/**
+	 * Appends the text of the CDATA section at <code>markupStart</code>, skips
+	 * any other markup
+	 *
+	 * @return offset after the markup
+	 */
+	private int skipMarkup(StringBuilder value, int markupStart, int contentEnd) {
+		String text = this.xml;
+		if (markupStart >= contentEnd) {
+			return contentEnd;
+		}
+		if (text.startsWith("<![CDATA[", markupStart)) {
+			int cdataEnd = text.indexOf("]]>", markupStart + 9);
+			value.append(text, markupStart + 9, cdataEnd);
+			return cdataEnd + 3;
+		} else if (text.startsWith("<!--", markupStart)) {
+			return text.indexOf("-->", markupStart + 4) + 3;
+		} else if (text.startsWith("<?", markupStart)) {
+			return text.indexOf("?>", markupStart + 2) + 2;
+		}
+		// Start or end tag of a descendant, its text is read after it
+		char quote = 0;
+		for (int index = markupStart + 1; index < contentEnd; index++) {
+			char current = text.charAt(index);
+			if (quote != 0) {
+				if (current == quote) {
+					quote = 0;
+				}
+			} else if (current == '"' || current == '\'') {
+				quote = current;
+			} else if (current == '>') {
+				return index + 1;
+			}
+		}
+		return contentEnd;
+	}
+
+	/**
+	 * Appends the text, resolving the references and normalizing the line ends
+	 */
+	private void appendText(StringBuilder value, int textStart, int textEnd) {
+		String text = this.xml;
+		for (int index = textStart; index < textEnd; index++) {
+			char current = text.charAt(index);
+			if (current == '&') {
+				int semicolon = text.indexOf(';', index + 1);
+				value.appendCodePoint(decodeReference(index, semicolon));
+				index = semicolon;
+			} else if (current == '\r') {
+				value.append('\n');
+				if (index + 1 < textEnd && text.charAt(index + 1) == '\n') {
+					index++;
+				}
+			} else {
+				value.append(current);
+			}
+		}
+	}
+
+	/**
+	 * @return the attribute value, with references resolved and white spaces
+	 *         normalized to spaces, like by the parser
+	 */
+	private String readAttributeValue(int valueStart, int valueEnd) {
+		String text = this.xml;
+		StringBuilder value = null;
+		for (int index = valueStart; index < valueEnd; index++) {
+			char current = text.charAt(index);
+			if (current == '&' || current == '\t' || current == '\n' || current == '\r') {
+				if (value == null) {
+					value = new StringBuilder(valueEnd - valueStart).append(text, valueStart, index);
+				}
+				if (current == '&') {
+					int semicolon = text.indexOf(';', index + 1);
+					value.appendCodePoint(decodeReference(index, semicolon));
+					index = semicolon;
+				} else {
+					value.append(' ');
+					if (current == '\r' && index + 1 < valueEnd && text.charAt(index + 1) == '\n') {
+						index++;
+					}
+				}
+			} else if (value != null) {
+				value.append(current);
+			}
+		}
+		return value == null ? text.substring(valueStart, valueEnd) : value.toString();
+	}
+
+	private int nameEnd(int nameStart) {
+		String text = this.xml;
+		int index = nameStart;
+		while (index < text.length()) {
+			char current = text.charAt(index);
+			if (isWhitespace(current) || current == '/' || current == '>' || current == '?') {
+				break;
+			}
+			if (!isNameChar(current)) {
+				throw new MalformedException(index);
+			}
+			index++;
+		}
+		return index;
+	}
+
+	private int attributeNameEnd(int nameStart) {
+		String text = this.xml;
+		int index = nameStart;
+		while (index < text.length()) {
+			char current = text.charAt(index);
+			if (isWhitespace(current) || current == '=') {
+				break;
+			}
+			if (!isNameChar(current)) {
+				throw new MalformedException(index);
+			}
+			index++;
+		}
+		return index;
+	}
+
+	private int skipWhitespace(int position) {
+		String text = this.xml;
+		int index = position;
+		while (index < text.length() && isWhitespace(text.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	private int indexAfter(String delimiter, int fromIndex) {
+		int index = this.xml.indexOf(delimiter, fromIndex);
+		if (index < 0) {
+			throw new MalformedException(fromIndex);
+		}
+		return index + delimiter.length();
+	}
+
+	private static boolean isWhitespace(char current) {
+		return current == ' ' || current == '\n' || current == '\t' || current == '\r';
+	}
+
+	private static boolean isNameStart(char current) {
+		return Character.isLetter(current) || current == '_' || current == ':';
+	}
+
+	private static boolean isNameChar(char current) {
+		return Character.isLetterOrDigit(current) || current == '_' || current == ':' || current == '-'
+				|| current == '.' || current == '·';
+	}
+
+	/**
+	 * Thrown while indexing a document which is not well-formed
+	 */
+	private static class MalformedException extends RuntimeException {
+		private static final long serialVersionUID = 4410672470305372914L;
+
+		private final int offset;
+
+		MalformedException(int offset) {
+			super(null, null, false, false);
+			this.offset = offset;
+		}
+	}
+}
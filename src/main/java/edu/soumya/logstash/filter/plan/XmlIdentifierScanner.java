@@ -0,0 +1,342 @@
+package edu.soumya.logstash.filter.plan;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Finds the values of simple identifier xpaths by scanning the text of the xml
+ * document, without a parser. The text is read forward once, only the nesting
+ * of the elements is tracked, and the scan stops at the first element matching
+ * the path, or at the end of the root element if no element matches it.<br>
+ * Only absolute location paths of child steps without prefixes and
+ * predicates, with an optional attribute step at the end, are supported, like
+ * <code>/Envelope/Header/DocId</code> or
+ * <code>/Envelope/Header/@docId</code>. If any expression is outside this
+ * subset, the instance is not scannable, see {@link #isScannable()}, but the
+ * expressions inside the subset are still scanned.<br>
+ * Whenever the text alone can not tell the value which the DOM would give,
+ * like a DOCTYPE, entity or character references, child elements, comments or
+ * CDATA sections in the value, the scan gives up and the caller should use the
+ * parser instead. The scan does not check if the document is well-formed, that
+ * is left to reading the rest of the document.<br>
+ * Instances are immutable and can be shared between threads.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class XmlIdentifierScanner {
+
+	/**
+	 * Element names of the steps of the expressions, null for an expression
+	 * outside the subset
+	 */
+	private final String[][] paths;
+
+	/**
+	 * If all the expressions are inside the subset
+	 */
+	private final boolean scannable;
+
+	/**
+	 * Attribute name of the last step of the expressions, null for element steps
+	 */
+	private final String[] attributes;
+
+	/**
+	 * Compiles the <code>expressions</code> which are inside the supported
+	 * subset. If any of them is outside the subset, the instance is not
+	 * scannable.
+	 *
+	 * @param expressions
+	 */
+	public XmlIdentifierScanner(String[] expressions) {
+		this.paths = new String[expressions.length][];
+		this.attributes = new String[expressions.length];
+		boolean allScannable = true;
+		for (int index = 0; index < expressions.length; index++) {
+			compile(expressions[index], index);
+			allScannable &= this.paths[index] != null;
+		}
+		this.scannable = allScannable;
+	}
+
+	/**
+	 * Compiles the expression at <code>index</code> into <code>paths</code> and
+	 * <code>attributes</code>, if it is inside the supported subset
+	 *
+	 * @param expression
+	 * @param index
+	 */
+	private void compile(String expression, int index) {
+		String path = StringUtils.trim(expression);
+		if (StringUtils.isEmpty(path) || path.charAt(0) != '/' || path.startsWith("//")) {
+			return;
+		}
+		String[] steps = StringUtils.splitPreserveAllTokens(path.substring(1), '/');
+		if (steps.length == 0) {
+			return;
+		}
+		String attribute = null;
+		String lastStep = steps[steps.length - 1];
+		if (lastStep.startsWith("@") && steps.length > 1) {
+			attribute = lastStep.substring(1);
+			steps = Arrays.copyOf(steps, steps.length - 1);
+			if (!PathSteps.isName(attribute)) {
+				return;
+			}
+		}
+		for (String step : steps) {
+			if (!PathSteps.isName(step)) {
+				return;
+			}
+		}
+		this.paths[index] = steps;
+		this.attributes[index] = attribute;
+	}
+
+	/**
+	 * @return true if all the expressions are inside the supported subset
+	 */
+	public boolean isScannable() {
+		return this.scannable;
+	}
+
+	/**
+	 * @param index
+	 * @return true if the expression at <code>index</code> is inside the
+	 *         supported subset
+	 */
+	public boolean isScannable(int index) {
+		return this.paths[index] != null;
+	}
+
+	/**
+	 * Finds the values of all the expressions, one scan per expression
+	 *
+	 * @param xmlString
+	 * @return string values of the expressions, trimmed, index wise same as the
+	 *         expressions. Empty string for an expression without match. Null
+	 *         for the expressions which can not be found by scanning, the caller
+	 *         should evaluate only those with the parser.
+	 */
+	public String[] scan(String xmlString) {
+		String[] values = new String[this.paths.length];
+		for (int index = 0; index < values.length; index++) {
+			values[index] = scan(xmlString, index);
+		}
+		return values;
+	}
+
+	/**
+	 * Finds the value of the expression at <code>index</code>
+	 *
+	 * @param xmlString
+	 * @param index
+	 * @return string value of the expression, trimmed, empty string if it has
+	 *         no match. Null if it can not be found by scanning, the caller
+	 *         should evaluate the expression with the parser then.
+	 */
+	public String scan(String xmlString, int index) {
+		if (!isScannable(index)) {
+			return null;
+		}
+		try {
+			return scan(xmlString, this.paths[index], this.attributes[index]);
+		} catch (AmbiguousException ambiguousException) {
+			return null;
+		}
+	}
+
+	private static String scan(String xml, String[] steps, String attribute) {
+		int position = 0;
+		// Open elements and how many of them, from the root, match the steps
+		int depth = 0;
+		int matched = 0;
+		while (true) {
+			int tagStart = xml.indexOf('<', position);
+			if (tagStart < 0 || tagStart + 1 >= xml.length()) {
+				// Document ends before the root element, the parser tells why it is malformed
+				throw AmbiguousException.INSTANCE;
+			}
+			char tagType = xml.charAt(tagStart + 1);
+			if (tagType == '?') {
+				position = indexAfter(xml, "?>", tagStart + 2);
+			} else if (xml.startsWith("<!--", tagStart)) {
+				position = indexAfter(xml, "-->", tagStart + 4);
+			} else if (xml.startsWith("<![CDATA[", tagStart)) {
+				position = indexAfter(xml, "]]>", tagStart + 9);
+			} else if (tagType == '!') {
+				// A DOCTYPE can declare entities and default attributes
+				throw AmbiguousException.INSTANCE;
+			} else if (tagType == '/') {
+				position = indexAfter(xml, ">", tagStart + 2);
+				depth--;
+				if (depth < 0) {
+					throw AmbiguousException.INSTANCE;
+				}
+				if (depth == 0) {
+					// Root element is closed without a match
+					return StringUtils.EMPTY;
+				}
+				matched = Math.min(matched, depth);
+			} else {
+				int nameEnd = tagStart + 1;
+				while (nameEnd < xml.length() && !isNameEnd(xml.charAt(nameEnd))) {
+					nameEnd++;
+				}
+				if (nameEnd == tagStart + 1) {
+					throw AmbiguousException.INSTANCE;
+				}
+				int tagEnd = findTagEnd(xml, nameEnd);
+				boolean selfClosing = xml.charAt(tagEnd - 1) == '/';
+				boolean stepMatches = matched == depth && depth < steps.length
+						&& PathSteps.localNameEquals(xml, tagStart + 1, nameEnd, steps[depth]);
+				if (stepMatches && depth + 1 == steps.length) {
+					if (attribute == null) {
+						return selfClosing ? StringUtils.EMPTY : readText(xml, tagEnd + 1);
+					}
+					String attributeValue = findAttribute(xml, nameEnd, selfClosing ? tagEnd - 1 : tagEnd,
+							attribute);
+					if (attributeValue != null) {
+						return attributeValue;
+					}
+					// Attribute of a later matching element
+				}
+				if (!selfClosing) {
+					depth++;
+					if (stepMatches) {
+						matched++;
+					}
+				} else if (depth == 0) {
+					// Empty root element without a match
+					return StringUtils.EMPTY;
+				}
+				position = tagEnd + 1;
+			}
+		}
+	}
+
+	/**
+	 * @param xml
+	 * @param textStart
+	 * @return text of the element, if it has no markup and references
+	 */
+	private static String readText(String xml, int textStart) {
+		int textEnd = xml.indexOf('<', textStart);
+		if (textEnd < 0 || !xml.startsWith("</", textEnd)) {
+			// Child elements, comments and CDATA are left to the parser
+			throw AmbiguousException.INSTANCE;
+		}
+		for (int index = textStart; index < textEnd; index++) {
+			char current = xml.charAt(index);
+			// References are resolved and line ends are normalized by the parser
+			if (current == '&' || current == '\r') {
+				throw AmbiguousException.INSTANCE;
+			}
+		}
+		return xml.substring(textStart, textEnd).trim();
+	}
+
+	/**
+	 * @param xml
+	 * @param attributesStart
+	 *            after the element name
+	 * @param attributesEnd
+	 *            at the end of the start tag
+	 * @param attributeName
+	 * @return value of the attribute, trimmed, null if the element does not have
+	 *         it
+	 */
+	private static String findAttribute(String xml, int attributesStart, int attributesEnd, String attributeName) {
+		int position = attributesStart;
+		while (true) {
+			while (position < attributesEnd && Character.isWhitespace(xml.charAt(position))) {
+				position++;
+			}
+			if (position >= attributesEnd) {
+				return null;
+			}
+			int nameStart = position;
+			while (position < attributesEnd && xml.charAt(position) != '='
+					&& !Character.isWhitespace(xml.charAt(position))) {
+				position++;
+			}
+			int nameEnd = position;
+			while (position < attributesEnd && Character.isWhitespace(xml.charAt(position))) {
+				position++;
+			}
+			if (position + 1 >= attributesEnd || xml.charAt(position) != '=') {
+				throw AmbiguousException.INSTANCE;
+			}
+			position++;
+			while (position < attributesEnd && Character.isWhitespace(xml.charAt(position))) {
+				position++;
+			}
+			char quote = position < attributesEnd ? xml.charAt(position) : 0;
+			int valueEnd = quote == '"' || quote == '\'' ? xml.indexOf(quote, position + 1) : -1;
+			if (valueEnd < 0 || valueEnd >= attributesEnd) {
+				throw AmbiguousException.INSTANCE;
+			}
+			if (PathSteps.localNameEquals(xml, nameStart, nameEnd, attributeName)) {
+				for (int index = position + 1; index < valueEnd; index++) {
+					char current = xml.charAt(index);
+					// References are resolved and white spaces are normalized by the parser
+					if (current == '&' || current == '\t' || current == '\n' || current == '\r') {
+						throw AmbiguousException.INSTANCE;
+					}
+				}
+				return xml.substring(position + 1, valueEnd).trim();
+			}
+			position = valueEnd + 1;
+		}
+	}
+
+	/**
+	 * @param xml
+	 * @param position
+	 *            after the element name
+	 * @return index of the '>' ending the tag, skipping quoted attribute values
+	 */
+	private static int findTagEnd(String xml, int position) {
+		char quote = 0;
+		for (int index = position; index < xml.length(); index++) {
+			char current = xml.charAt(index);
+			if (quote != 0) {
+				if (current == quote) {
+					quote = 0;
+				}
+			} else if (current == '"' || current == '\'') {
+				quote = current;
+			} else if (current == '>') {
+				return index;
+			}
+		}
+		throw AmbiguousException.INSTANCE;
+	}
+
+	private static int indexAfter(String xml, String delimiter, int fromIndex) {
+		int index = xml.indexOf(delimiter, fromIndex);
+		if (index < 0) {
+			throw AmbiguousException.INSTANCE;
+		}
+		return index + delimiter.length();
+	}
+
+	private static boolean isNameEnd(char current) {
+		return current == '>' || current == '/' || Character.isWhitespace(current);
+	}
+
+	/**
+	 * Thrown when the value can not be found by scanning
+	 */
+	private static class AmbiguousException extends RuntimeException {
+		private static final long serialVersionUID = -2659158127458460283L;
+
+		static final AmbiguousException INSTANCE = new AmbiguousException();
+
+		AmbiguousException() {
+			super(null, null, false, false);
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package edu.soumya.logstash.filter.spi;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.util.XmlParserPool;
+
+/**
+ * Backend of {@link IndexXPathEngine}
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class IndexXPathBackend implements XPathBackend {
+
+	@Override
+	public String getName() {
+		return Constants.XPATH_ENGINE_INDEX;
+	}
+
+	@Override
+	public XPathEngine createEngine(XmlParserPool parserPool) {
+		return new IndexXPathEngine(parserPool);
+	}
+}
@@ -0,0 +1,140 @@
+package edu.soumya.logstash.filter.spi;
+
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.plan.CompiledXPaths;
+import edu.soumya.logstash.filter.plan.IndexedXPaths;
+import edu.soumya.logstash.filter.plan.XmlElementIndex;
+import edu.soumya.logstash.filter.util.XmlParserPool;
+
+/**
+ * Engine evaluating the xpaths on an {@link XmlElementIndex} of the document,
+ * instead of a DOM. The index only keeps the offsets of the elements in the
+ * text of the document, so it is faster to build and much smaller than a DOM,
+ * and the values are read from the text only for the selected nodes.<br>
+ * The expressions supported by {@link IndexedXPaths} are evaluated on the
+ * index. The other expressions, and the documents with a DOCTYPE, are
+ * evaluated like by {@link JdkXPathEngine}, on a DOM parsed when first needed.
+ * A document is not checked for all the rules of well-formedness when no DOM
+ * is parsed for it.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class IndexXPathEngine implements XPathEngine {
+
+	private final XmlParserPool parserPool;
+
+	/**
+	 * @param parserPool
+	 *            DOM parsers the documents are parsed with, when the
+	 *            expressions can not be evaluated on the index
+	 */
+	public IndexXPathEngine(XmlParserPool parserPool) {
+		this.parserPool = parserPool;
+	}
+
+	/**
+	 * @return the {@link IndexedDocument} of the xml
+	 */
+	@Override
+	public Object parse(String xmlString) throws ConfigurationException {
+		XmlElementIndex elementIndex = XmlElementIndex.build(xmlString);
+		IndexedDocument document = new IndexedDocument(xmlString, elementIndex);
+		if (elementIndex == null) {
+			// Reported as not well-formed by the parser, like by the default engine
+			document.getDom(this.parserPool);
+		}
+		return document;
+	}
+
+	/**
+	 * @return the expressions compiled for the index and for the DOM
+	 */
+	@Override
+	public Expressions compile(String[] expressions) throws ConfigurationException {
+		return new IndexedExpressions(new IndexedXPaths(expressions), new CompiledXPaths(expressions),
+				this.parserPool);
+	}
+
+	/**
+	 * Xml document read by this engine, confined to the thread processing the
+	 * event
+	 */
+	static final class IndexedDocument {
+
+		private final String xmlString;
+
+		/**
+		 * Null if the document can not be indexed
+		 */
+		private final XmlElementIndex elementIndex;
+
+		private Document dom;
+
+		IndexedDocument(String xmlString, XmlElementIndex elementIndex) {
+			this.xmlString = xmlString;
+			this.elementIndex = elementIndex;
+		}
+
+		/**
+		 * @param parserPool
+		 * @return DOM of the document, parsed on the first call
+		 * @throws ConfigurationException
+		 */
+		Document getDom(XmlParserPool parserPool) throws ConfigurationException {
+			if (this.dom == null) {
+				this.dom = parserPool.parse(this.xmlString);
+			}
+			return this.dom;
+		}
+	}
+
+	/**
+	 * Expressions of this engine, evaluated on the index when they are
+	 * indexable, on the DOM otherwise
+	 */
+	private static final class IndexedExpressions implements Expressions {
+
+		private final IndexedXPaths indexedXPaths;
+
+		private final CompiledXPaths compiledXPaths;
+
+		private final XmlParserPool parserPool;
+
+		IndexedExpressions(IndexedXPaths indexedXPaths, CompiledXPaths compiledXPaths, XmlParserPool parserPool) {
+			this.indexedXPaths = indexedXPaths;
+			this.compiledXPaths = compiledXPaths;
+			this.parserPool = parserPool;
+		}
+
+		@Override
+		public int size() {
+			return this.indexedXPaths.size();
+		}
+
+		@Override
+		public String getExpression(int index) {
+			return this.indexedXPaths.getExpression(index);
+		}
+
+		@Override
+		public int getCopyCount() {
+			return 1 + this.compiledXPaths.getCopyCount();
+		}
+
+		/**
+		 * @param document
+		 *            the {@link IndexedDocument}
+		 */
+		@Override
+		public String evaluate(Object document, int index) throws ConfigurationException {
+			IndexedDocument indexedDocument = (IndexedDocument) document;
+			if (indexedDocument.elementIndex != null && this.indexedXPaths.isIndexable(index)) {
+				return this.indexedXPaths.evaluate(indexedDocument.elementIndex, index);
+			}
+			return this.compiledXPaths.evaluate(indexedDocument.getDom(this.parserPool), index);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package edu.soumya.logstash.filter.spi;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.plan.CompiledXPaths;
+import edu.soumya.logstash.filter.util.XmlParserPool;
+
+/**
+ * The default xpath engine, the DOM parser and the xpath implementation of the
+ * JDK. Every xpath 1.0 expression is supported.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class JdkXPathEngine implements XPathEngine {
+
+	private final XmlParserPool parserPool;
+
+	/**
+	 * @param parserPool
+	 *            DOM parsers the documents are parsed with
+	 */
+	public JdkXPathEngine(XmlParserPool parserPool) {
+		this.parserPool = parserPool;
+	}
+
+	/**
+	 * @return the {@link org.w3c.dom.Document} of the xml
+	 */
+	@Override
+	public Object parse(String xmlString) throws ConfigurationException {
+		return this.parserPool.parse(xmlString);
+	}
+
+	/**
+	 * @return the expressions compiled by the JDK, per pipeline worker
+	 */
+	@Override
+	public CompiledXPaths compile(String[] expressions) throws ConfigurationException {
+		return new CompiledXPaths(expressions);
+	}
+}
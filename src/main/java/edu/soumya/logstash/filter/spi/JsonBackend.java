@@ -0,0 +1,38 @@
+package edu.soumya.logstash.filter.spi;
+
+import com.jayway.jsonpath.Configuration;
+
+/**
+ * Json parser and object model, the json documents are parsed with and the
+ * jsonpaths are evaluated on, selected by the <code>jsonProvider</code>
+ * setting of the filter.<br>
+ * The backends shipped with the filter are {@link JsonSmartBackend} and
+ * {@link JacksonBackend}. Other backends are found with
+ * {@link java.util.ServiceLoader}, by listing the implementing class in
+ * <code>META-INF/services/edu.soumya.logstash.filter.spi.JsonBackend</code>.
+ * <br>
+ * A backend should give the same values as {@link JsonSmartBackend} for the
+ * same strict json document: integers as {@link Integer}, {@link Long} or
+ * {@link java.math.BigInteger} by their size, decimals as {@link Double},
+ * objects as {@link java.util.Map} and arrays as {@link java.util.List}.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public interface JsonBackend {
+
+	/**
+	 * @return name of the backend, the value of the <code>jsonProvider</code>
+	 *         setting selecting it
+	 */
+	String getName();
+
+	/**
+	 * Builds the JsonPath configuration with the json provider and mapping
+	 * provider of the backend. It is built once per backend and shared by all
+	 * the documents, so the providers must be thread-safe.
+	 *
+	 * @return JsonPath configuration
+	 */
+	Configuration createConfiguration();
+}
@@ -0,0 +1,29 @@
+package edu.soumya.logstash.filter.spi;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JsonSmartMappingProvider;
+
+import edu.soumya.logstash.filter.constants.Constants;
+
+/**
+ * The default json backend of JsonPath, json-smart in permissive mode. It
+ * accepts lenient json, like single quoted strings and unquoted names and
+ * values.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class JsonSmartBackend implements JsonBackend {
+
+	@Override
+	public String getName() {
+		return Constants.JSON_PROVIDER_SMART;
+	}
+
+	@Override
+	public Configuration createConfiguration() {
+		return Configuration.builder().jsonProvider(new JsonSmartJsonProvider())
+				.mappingProvider(new JsonSmartMappingProvider()).build();
+	}
+}
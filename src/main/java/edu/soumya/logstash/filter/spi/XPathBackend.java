@@ -0,0 +1,34 @@
+package edu.soumya.logstash.filter.spi;
+
+import edu.soumya.logstash.filter.util.XmlParserPool;
+
+/**
+ * Creates the {@link XPathEngine} of a filter, selected by the
+ * <code>xpathEngine</code> setting of the filter.<br>
+ * The backends shipped with the filter are {@link JdkXPathBackend} and
+ * {@link IndexXPathBackend}. Other backends are found with
+ * {@link java.util.ServiceLoader}, by listing the implementing class in
+ * <code>META-INF/services/edu.soumya.logstash.filter.spi.XPathBackend</code>.
+ * They should pass the conformance tests of the shipped engines.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public interface XPathBackend {
+
+	/**
+	 * @return name of the backend, the value of the <code>xpathEngine</code>
+	 *         setting selecting it
+	 */
+	String getName();
+
+	/**
+	 * Creates the engine of a filter instance
+	 *
+	 * @param parserPool
+	 *            DOM parsers of the filter, for engines reading the documents
+	 *            into a DOM
+	 * @return the engine
+	 */
+	XPathEngine createEngine(XmlParserPool parserPool);
+}
@@ -0,0 +1,100 @@
+package edu.soumya.logstash.filter.spi;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * Reads xml documents and evaluates xpaths on them, when the xpaths are not
+ * evaluated by streaming the document. Created per filter by its
+ * {@link XPathBackend}, selected by the <code>xpathEngine</code> setting.<br>
+ * The value of an xpath is the string value of the xpath expression, trimmed,
+ * empty if nothing is selected, as {@link JdkXPathEngine} gives it. Instances
+ * are shared by the pipeline workers, so they must be thread-safe.
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public interface XPathEngine {
+
+	/**
+	 * Reads the xml document into the model the expressions of this engine are
+	 * evaluated on
+	 *
+	 * @param xmlString
+	 * @return the document model of the engine
+	 * @throws ConfigurationException
+	 *             {@link edu.soumya.logstash.filter.exceptions.DocumentException}
+	 *             if the document is not well-formed
+	 */
+	Object parse(String xmlString) throws ConfigurationException;
+
+	/**
+	 * Compiles the xpaths once, to be evaluated on every document
+	 *
+	 * @param expressions
+	 * @return compiled expressions, index wise same as <code>expressions</code>
+	 * @throws ConfigurationException
+	 *             if any of the xpaths is invalid
+	 */
+	Expressions compile(String[] expressions) throws ConfigurationException;
+
+	/**
+	 * Xpaths compiled by an engine, thread-safe
+	 */
+	interface Expressions {
+
+		/**
+		 * @return number of expressions
+		 */
+		int size();
+
+		/**
+		 * @param index
+		 * @return the expression at <code>index</code>, as supplied
+		 */
+		String getExpression(int index);
+
+		/**
+		 * Used to estimate the heap held by the expressions, for the
+		 * <code>cacheMaxBytes</code> setting
+		 *
+		 * @return number of compiled copies of the expressions held so far, like
+		 *         the pooled copies of an engine whose compiled form is not
+		 *         thread-safe
+		 */
+		default int getCopyCount() {
+			return 1;
+		}
+
+		/**
+		 * Evaluates the expression at <code>index</code>
+		 *
+		 * @param document
+		 *            returned by {@link XPathEngine#parse(String)} of the same
+		 *            engine
+		 * @param index
+		 * @return string value of the expression, trimmed
+		 * @throws ConfigurationException
+		 *             if the expression could not be evaluated
+		 */
+		String evaluate(Object document, int index) throws ConfigurationException;
+
+		/**
+		 * Evaluates all the expressions, by default one by one with
+		 * {@link #evaluate(Object, int)}
+		 *
+		 * @param document
+		 *            returned by {@link XPathEngine#parse(String)} of the same
+		 *            engine
+		 * @param values
+		 *            receives the string values, index wise same as the
+		 *            expressions
+		 * @throws ConfigurationException
+		 *             if any expression could not be evaluated
+		 */
+		default void evaluateAll(Object document, String[] values) throws ConfigurationException {
+			for (int index = 0; index < size(); index++) {
+				values[index] = evaluate(document, index);
+			}
+		}
+	}
+}
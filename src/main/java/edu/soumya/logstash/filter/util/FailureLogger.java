@@ -0,0 +1,100 @@
+package edu.soumya.logstash.filter.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Logs the failures of documents, at most once per interval for every failure
+ * reason, so that a flood of bad documents does not slow the pipeline down by
+ * logging.<br>
+ * A logged failure tells how many failures of the same reason were not logged
+ * since the previous one. Stack traces are logged only at debug level, for
+ * every failure.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class FailureLogger {
+
+	private final Logger logger;
+
+	/**
+	 * Minimum nanoseconds between two logged failures of a reason
+	 */
+	private final long intervalNanos;
+
+	private final Map<String, ReasonState> reasonStates = new ConcurrentHashMap<>();
+
+	/**
+	 * @param logger
+	 * @param interval
+	 *            minimum seconds between two logged failures of a reason, 0 logs
+	 *            every failure
+	 */
+	public FailureLogger(Logger logger, long interval) {
+		this.logger = logger;
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(interval);
+	}
+
+	/**
+	 * Logs the failure, if no failure of the <code>reason</code> is logged within
+	 * the interval
+	 * 
+	 * @param reason
+	 * @param message
+	 * @param cause
+	 *            may be null
+	 * @return true if the failure is logged at error level
+	 */
+	public boolean log(String reason, String message, Throwable cause) {
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug(StringUtils.join("Failed to process the document. Reason: ", reason, ". ", message),
+					cause);
+		}
+		long now = System.nanoTime();
+		ReasonState reasonState = this.reasonStates.computeIfAbsent(reason, key -> new ReasonState(now));
+		long nextLogTime = reasonState.nextLogTime.get();
+		if (now - nextLogTime < 0 || !reasonState.nextLogTime.compareAndSet(nextLogTime, now + this.intervalNanos)) {
+			reasonState.suppressed.increment();
+			return false;
+		}
+		long suppressed = reasonState.suppressed.sumThenReset();
+		StringBuilder logMessage = new StringBuilder("Failed to process the document. Reason: ").append(reason)
+				.append(". ").append(message);
+		if (cause != null) {
+			logMessage.append(" Cause: ").append(cause);
+		}
+		if (suppressed > 0) {
+			logMessage.append(" Failures of the same reason since the previous log: ").append(suppressed)
+					.append('.');
+		}
+		this.logger.error(logMessage.toString());
+		return true;
+	}
+
+	/**
+	 * Failures of a reason
+	 */
+	private static class ReasonState {
+
+		/**
+		 * Time from when the next failure can be logged
+		 */
+		private final AtomicLong nextLogTime;
+
+		/**
+		 * Failures not logged since the last logged one
+		 */
+		private final LongAdder suppressed = new LongAdder();
+
+		private ReasonState(long nextLogTime) {
+			this.nextLogTime = new AtomicLong(nextLogTime);
+		}
+	}
+}
@@ -1,12 +1,30 @@
 package edu.soumya.logstash.filter.util;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.apache.commons.lang3.StringUtils;
 
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.ParseContext;
 import com.jayway.jsonpath.PathNotFoundException;
+import com.jayway.jsonpath.spi.json.JsonSmartJsonProvider;
 
+import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+import edu.soumya.logstash.filter.spi.JacksonBackend;
+import edu.soumya.logstash.filter.spi.JsonBackend;
+import edu.soumya.logstash.filter.spi.JsonSmartBackend;
+import net.minidev.json.JSONArray;
 
 /**
  * @author Soumya Banerjee
@@ -14,13 +32,89 @@ import edu.soumya.logstash.filter.exceptions.ConfigurationException;
  */
 public class JsonParseUtil {
 	/**
-	 * Returns the {@link DocumentContext} instance after parsing the json.
+	 * JsonPath {@link Configuration} of the default json provider, built once and
+	 * shared by all parses, instead of building the default configuration for
+	 * every document.
+	 */
+	private static final Configuration JSON_CONFIGURATION = new JsonSmartBackend().createConfiguration();
+
+	/**
+	 * Parse context bound to <code>JSON_CONFIGURATION</code>, it is stateless and
+	 * can be shared between threads.
+	 */
+	private static final ParseContext PARSE_CONTEXT = JsonPath.using(JSON_CONFIGURATION);
+
+	/**
+	 * Parse contexts by json provider, each bound to a configuration built once
+	 * for the provider and shared by all the filters using it
+	 */
+	private static final ConcurrentMap<String, ParseContext> PARSE_CONTEXTS = new ConcurrentHashMap<>();
+
+	static {
+		PARSE_CONTEXTS.put(Constants.JSON_PROVIDER_SMART, PARSE_CONTEXT);
+	}
+
+	/**
+	 * @return the shared JsonPath {@link Configuration} of the default json
+	 *         provider
+	 */
+	public static Configuration getJsonConfiguration() {
+		return JSON_CONFIGURATION;
+	}
+
+	/**
+	 * Returns the {@link DocumentContext} instance after parsing the json with
+	 * the default json provider.
 	 * 
 	 * @param jsonString
 	 * @return
 	 */
 	public static DocumentContext getDocumentContext(String jsonString) {
-		return JsonPath.parse(jsonString);
+		return PARSE_CONTEXT.parse(jsonString);
+	}
+
+	/**
+	 * Returns the shared parse context of the json provider, building its
+	 * configuration on the first call
+	 * 
+	 * @param jsonProvider
+	 *            name of the {@link JsonBackend}
+	 * @return parse context, stateless and thread-safe
+	 * @throws ConfigurationException
+	 *             if no backend has the name
+	 */
+	public static ParseContext getParseContext(String jsonProvider) throws ConfigurationException {
+		ParseContext parseContext = PARSE_CONTEXTS.get(jsonProvider);
+		if (parseContext == null) {
+			JsonBackend jsonBackend = findJsonBackend(jsonProvider);
+			parseContext = PARSE_CONTEXTS.computeIfAbsent(jsonProvider,
+					name -> JsonPath.using(jsonBackend.createConfiguration()));
+		}
+		return parseContext;
+	}
+
+	/**
+	 * Finds the backend among the shipped ones and the ones listed as services
+	 * 
+	 * @param jsonProvider
+	 * @return
+	 * @throws ConfigurationException
+	 *             if no backend has the name
+	 */
+	private static JsonBackend findJsonBackend(String jsonProvider) throws ConfigurationException {
+		List<JsonBackend> jsonBackends = new ArrayList<>();
+		jsonBackends.add(new JsonSmartBackend());
+		jsonBackends.add(new JacksonBackend());
+		ServiceLoader.load(JsonBackend.class, JsonParseUtil.class.getClassLoader()).forEach(jsonBackends::add);
+		List<String> names = new ArrayList<>();
+		for (JsonBackend jsonBackend : jsonBackends) {
+			if (StringUtils.equals(jsonBackend.getName(), jsonProvider)) {
+				return jsonBackend;
+			}
+			names.add(jsonBackend.getName());
+		}
+		throw new ConfigurationException(StringUtils.join("Unsupported jsonProvider: ", jsonProvider,
+				". Supported values are: ", StringUtils.join(names, ", ")));
 	}
 
 	/**
@@ -35,11 +129,81 @@ public class JsonParseUtil {
 	public static String getStringFromJsonPath(DocumentContext context, String jsonPath) throws ConfigurationException {
 		try {
 			Object value = context.read(jsonPath);
-			return String.valueOf(value);
+			return String.valueOf(toJsonSmartValue(context, value));
 		} catch(PathNotFoundException pnfe) {
 			return StringUtils.EMPTY;
 		} catch (RuntimeException e) {
-			throw new ConfigurationException("Failed to evaluate the jsonPath expression.", e);
+			throw new DocumentException("Failed to evaluate the jsonPath expression.", e);
+		}
+	}
+
+	/**
+	 * Returns the string type value from the given already compiled
+	 * <code>jsonPath</code> in <code>context</code>
+	 * 
+	 * @param context
+	 * @param jsonPath
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	public static String getStringFromJsonPath(DocumentContext context, JsonPath jsonPath)
+			throws ConfigurationException {
+		try {
+			Object value = context.read(jsonPath);
+			return String.valueOf(toJsonSmartValue(context, value));
+		} catch (PathNotFoundException pnfe) {
+			return StringUtils.EMPTY;
+		} catch (RuntimeException e) {
+			throw new DocumentException("Failed to evaluate the jsonPath expression.", e);
+		}
+	}
+
+	/**
+	 * Converts a value selected by a jsonpath in <code>context</code> into the
+	 * classes json-smart gives, unless json-smart parsed it already
+	 * 
+	 * @param context
+	 * @param value
+	 * @return
+	 */
+	private static Object toJsonSmartValue(DocumentContext context, Object value) {
+		if (context.configuration().jsonProvider() instanceof JsonSmartJsonProvider) {
+			return value;
+		}
+		return toJsonSmartValue(value);
+	}
+
+	/**
+	 * Copies objects and arrays selected by a jsonpath into the classes
+	 * json-smart gives, so that their string values are the same for every json
+	 * provider. Decimal numbers, whose text is not longer than
+	 * {@link Constants#MAX_DOUBLE_TEXT_LENGTH}, are converted to Double like
+	 * json-smart does. Other values are returned as they are.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static Object toJsonSmartValue(Object value) {
+		if (value instanceof BigDecimal) {
+			String decimalText = value.toString();
+			return decimalText.length() > Constants.MAX_DOUBLE_TEXT_LENGTH ? value : Double.valueOf(decimalText);
+		}
+		if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			JSONArray array = new JSONArray();
+			for (Object element : list) {
+				array.add(toJsonSmartValue(element));
+			}
+			return array;
+		}
+		if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			Map<Object, Object> object = new LinkedHashMap<>(map.size() * 2);
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				object.put(entry.getKey(), toJsonSmartValue(entry.getValue()));
+			}
+			return object;
 		}
+		return value;
 	}
 }
@@ -1,23 +1,36 @@
 package edu.soumya.logstash.filter.util;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
-import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+import edu.soumya.logstash.filter.spi.IndexXPathBackend;
+import edu.soumya.logstash.filter.spi.JdkXPathBackend;
+import edu.soumya.logstash.filter.spi.XPathBackend;
+import edu.soumya.logstash.filter.spi.XPathEngine;
 
 /**
  * @author Soumya Banerjee
@@ -25,15 +38,63 @@ import edu.soumya.logstash.filter.exceptions.ConfigurationException;
  */
 public class XmlParseUtil {
 
+	/**
+	 * StAX factory, created once as factory lookup is costly. Like the
+	 * {@link DocumentBuilder} it is not namespace aware.
+	 */
+	private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+
+	/**
+	 * DOM factory, created once as factory lookup is costly
+	 */
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
+	/**
+	 * XPath factory, created once as factory lookup is costly
+	 */
+	private static final XPathFactory XPATH_FACTORY = XPathFactory.newInstance();
+
+	/**
+	 * Error handler failing the parse on errors, without printing them. The
+	 * failure is reported by the caller.
+	 */
+	private static final ErrorHandler SILENT_ERROR_HANDLER = new ErrorHandler() {
+
+		@Override
+		public void warning(SAXParseException exception) {
+			// Warnings do not fail the parse
+		}
+
+		@Override
+		public void error(SAXParseException exception) throws SAXException {
+			throw exception;
+		}
+
+		@Override
+		public void fatalError(SAXParseException exception) throws SAXException {
+			throw exception;
+		}
+	};
+
+	private static XMLInputFactory createXMLInputFactory() {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		inputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+		return inputFactory;
+	}
+
 	/**
 	 * @return A new {@link DocumentBuilder} Instance
 	 * @throws ConfigurationException
 	 */
 	public static DocumentBuilder createDocBuilderInstance() throws ConfigurationException {
-		try {
-			return DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			throw new ConfigurationException("Failed to get the Xml Document Builder.", e);
+		// Factories are not thread-safe
+		synchronized (DOCUMENT_BUILDER_FACTORY) {
+			try {
+				return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				throw new ConfigurationException("Failed to get the Xml Document Builder.", e);
+			}
 		}
 	}
 
@@ -41,11 +102,45 @@ public class XmlParseUtil {
 	 * @return A new {@link XPath} Instance
 	 */
 	public static XPath createXPathInstance() {
-		return XPathFactory.newInstance().newXPath();
+		synchronized (XPATH_FACTORY) {
+			return XPATH_FACTORY.newXPath();
+		}
+	}
+
+	/**
+	 * Creates the xpath engine of a filter instance, with the backend of the
+	 * name
+	 * 
+	 * @param xpathEngine
+	 *            name of the {@link XPathBackend}
+	 * @param parserPool
+	 *            DOM parsers of the filter
+	 * @return the engine
+	 * @throws ConfigurationException
+	 *             if no backend has the name
+	 */
+	public static XPathEngine getXPathEngine(String xpathEngine, XmlParserPool parserPool)
+			throws ConfigurationException {
+		List<XPathBackend> xpathBackends = new ArrayList<>();
+		xpathBackends.add(new JdkXPathBackend());
+		xpathBackends.add(new IndexXPathBackend());
+		ServiceLoader.load(XPathBackend.class, XmlParseUtil.class.getClassLoader()).forEach(xpathBackends::add);
+		List<String> names = new ArrayList<>();
+		for (XPathBackend xpathBackend : xpathBackends) {
+			if (StringUtils.equals(xpathBackend.getName(), xpathEngine)) {
+				return xpathBackend.createEngine(parserPool);
+			}
+			names.add(xpathBackend.getName());
+		}
+		throw new ConfigurationException(StringUtils.join("Unsupported xpathEngine: ", xpathEngine,
+				". Supported values are: ", StringUtils.join(names, ", ")));
 	}
 
 	/**
-	 * Returns the {@link Document} instance after parsing the xml.
+	 * Returns the {@link Document} instance after parsing the xml.<br>
+	 * The parser reads the characters of the string, without encoding it into
+	 * bytes first, so the encoding in the xml declaration is not used, the string
+	 * is already decoded.
 	 * 
 	 * @param xmlString
 	 * @return
@@ -53,15 +148,49 @@ public class XmlParseUtil {
 	 */
 	public static Document getDocument(DocumentBuilder docBuilder, String xmlString) throws ConfigurationException {
 		Document document = null;
+		// The default handler prints every error to the standard error
+		docBuilder.setErrorHandler(SILENT_ERROR_HANDLER);
 		try {
-			InputStream input = new ByteArrayInputStream(xmlString.getBytes(Constants.CHARSET_ENCODING_UTF8));
-			document = docBuilder.parse(input);
+			document = docBuilder.parse(new InputSource(new StringReader(xmlString)));
 		} catch (SAXException | IOException e) {
-			throw new ConfigurationException("Failed to Parse the xml document.", e);
+			throw new DocumentException("Failed to Parse the xml document.", e);
 		}
 		return document;
 	}
 
+	/**
+	 * Returns a StAX {@link XMLStreamReader} over the xml, for reading it without
+	 * building a DOM. Like {@link #getDocument(DocumentBuilder, String)}, the
+	 * characters of the string are read directly. Caller should close the reader.
+	 * 
+	 * @param xmlString
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	public static XMLStreamReader createXMLStreamReader(String xmlString) throws ConfigurationException {
+		try {
+			return XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xmlString));
+		} catch (XMLStreamException e) {
+			throw new DocumentException("Failed to Parse the xml document.", e);
+		}
+	}
+
+	/**
+	 * Closes the <code>reader</code>, ignoring any failure
+	 * 
+	 * @param reader
+	 */
+	public static void closeQuietly(XMLStreamReader reader) {
+		if (reader == null) {
+			return;
+		}
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			// Nothing left to read from the reader
+		}
+	}
+
 	/**
 	 * Returns the string type value from the <code>document</code> , using the given
 	 * <code>xPathExpression</code>
@@ -78,7 +207,28 @@ public class XmlParseUtil {
 		try {
 			valueFromXPath = ((String) xPath.compile(xPathExpression).evaluate(document, XPathConstants.STRING)).trim();
 		} catch (XPathExpressionException e) {
-			throw new ConfigurationException("Failed to evaluate the xpath expression.", e);
+			throw new DocumentException("Failed to evaluate the xpath expression.", e);
+		}
+		return valueFromXPath;
+	}
+
+	/**
+	 * Returns the string type value from the <code>document</code>, using the given
+	 * already compiled <code>xPathExpression</code>
+	 * 
+	 * @param document
+	 * @param xPathExpression
+	 * @return
+	 * @throws ConfigurationException
+	 *             In case the expression could not be evaluated
+	 */
+	public static String getStringFromXPath(Document document, XPathExpression xPathExpression)
+			throws ConfigurationException {
+		String valueFromXPath = StringUtils.EMPTY;
+		try {
+			valueFromXPath = ((String) xPathExpression.evaluate(document, XPathConstants.STRING)).trim();
+		} catch (XPathExpressionException e) {
+			throw new DocumentException("Failed to evaluate the xpath expression.", e);
 		}
 		return valueFromXPath;
 	}
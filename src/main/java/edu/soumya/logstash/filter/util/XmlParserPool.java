@@ -0,0 +1,96 @@
+package edu.soumya.logstash.filter.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * Keeps {@link DocumentBuilder} instances for reuse, so that a builder is not
+ * created for every xml document.<br>
+ * A {@link DocumentBuilder} is not thread-safe, so a builder is taken out of
+ * the pool for a parse and given back after it, confining it to the parsing
+ * thread meanwhile. When the pool is empty a new builder is created, and when
+ * it is full a given back builder is dropped, so the pool never blocks a
+ * pipeline worker. A pool size of the number of pipeline workers lets every
+ * worker reuse a builder.
+ * 
+ * @author Soumya Banerjee
+ *
+ */
+public class XmlParserPool {
+
+	/**
+	 * Idle builders, null if pooling is disabled
+	 */
+	private final BlockingQueue<DocumentBuilder> idleBuilders;
+
+	/**
+	 * @param poolSize
+	 *            maximum number of idle builders kept, 0 disables pooling
+	 * @throws ConfigurationException
+	 *             if <code>poolSize</code> is negative
+	 */
+	public XmlParserPool(int poolSize) throws ConfigurationException {
+		if (poolSize < 0) {
+			throw new ConfigurationException("Xml parser pool size can not be negative: " + poolSize);
+		}
+		this.idleBuilders = poolSize > 0 ? new ArrayBlockingQueue<>(poolSize) : null;
+	}
+
+	/**
+	 * Returns the {@link Document} instance after parsing the xml with a pooled
+	 * builder.
+	 * 
+	 * @param xmlString
+	 * @return
+	 * @throws ConfigurationException
+	 */
+	public Document parse(String xmlString) throws ConfigurationException {
+		DocumentBuilder docBuilder = borrow();
+		try {
+			return XmlParseUtil.getDocument(docBuilder, xmlString);
+		} finally {
+			giveBack(docBuilder);
+		}
+	}
+
+	/**
+	 * @return an idle builder, or a new one if none is idle
+	 * @throws ConfigurationException
+	 */
+	private DocumentBuilder borrow() throws ConfigurationException {
+		DocumentBuilder docBuilder = this.idleBuilders == null ? null : this.idleBuilders.poll();
+		return docBuilder != null ? docBuilder : XmlParseUtil.createDocBuilderInstance();
+	}
+
+	/**
+	 * Resets the <code>docBuilder</code>, clearing any state left by the parse
+	 * even when it failed, and keeps it if the pool has room. A builder which
+	 * can not be reset is dropped.
+	 * 
+	 * @param docBuilder
+	 */
+	private void giveBack(DocumentBuilder docBuilder) {
+		if (this.idleBuilders == null) {
+			return;
+		}
+		try {
+			docBuilder.reset();
+		} catch (UnsupportedOperationException e) {
+			return;
+		}
+		this.idleBuilders.offer(docBuilder);
+	}
+
+	/**
+	 * @return number of idle builders in the pool
+	 */
+	public int getIdleCount() {
+		return this.idleBuilders == null ? 0 : this.idleBuilders.size();
+	}
+}
@@ -1,20 +1,33 @@
 package edu.soumya.logstash.filter;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 import org.logstash.plugins.ConfigurationImpl;
 import org.logstash.plugins.ContextImpl;
@@ -24,8 +37,11 @@ import co.elastic.logstash.api.Context;
 import co.elastic.logstash.api.Event;
 import co.elastic.logstash.api.Filter;
 import co.elastic.logstash.api.FilterMatchListener;
+import co.elastic.logstash.api.PluginConfigSpec;
 import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.metrics.FilterMetrics;
+import edu.soumya.logstash.filter.metrics.MetricsReporter;
 
 /**
  * @author Soumya Banerjee
@@ -108,6 +124,557 @@ public class JsonXmlPathFilterTest {
 		}
 	}
 
+	@Test
+	public void testJsonXmlFilterForXmlDocumentWithStaxEngine() {
+		try {
+			// Create the filter with configurations
+			Filter filter = getFilter(Collections.singletonMap("xmlEngine", Constants.XML_ENGINE_STAX));
+
+			String xmlFilePath = Paths
+					.get(this.getClass().getClassLoader().getResource("test-files/filter/xml/sdh.xml").toURI())
+					.toString();
+
+			// Create the event
+			Event event = new org.logstash.Event();
+			event.setField("type", Constants.DOC_TYPE_XML);
+			event.setField("message", getContentFromFile(xmlFilePath));
+
+			Set<Event> eventSet = new HashSet<>();
+			eventSet.add(event);
+
+			// Apply the filter
+			Collection<Event> results = filter.filter(eventSet, new TestMatchListener());
+
+			// Test the result
+			assertEquals(1, results.size());
+			assertEquals("sdh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertEquals("Sealdah", event.getField("name"));
+			assertEquals("50", event.getField("trainsToday"));
+
+		} catch (URISyntaxException | ConfigurationException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testJsonXmlFilterForXmlDocumentWithIndexXPathEngine() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		Filter filter = getFilter(Collections.singletonMap("xpathEngine", Constants.XPATH_ENGINE_INDEX));
+
+		String xmlFilePath = Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/xml/sdh.xml").toURI())
+				.toString();
+
+		// Create the events, the second one is not well-formed
+		Event event = new org.logstash.Event();
+		event.setField("type", Constants.DOC_TYPE_XML);
+		event.setField("message", getContentFromFile(xmlFilePath));
+		Event invalidEvent = new org.logstash.Event();
+		invalidEvent.setField("type", Constants.DOC_TYPE_XML);
+		invalidEvent.setField("message", "<stations><station><id>sdh</id></stations>");
+		List<Event> events = new ArrayList<>();
+		events.add(event);
+		events.add(invalidEvent);
+
+		// Apply the filter
+		filter.filter(events, new TestMatchListener());
+
+		// Test the result
+		assertEquals("sdh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+		assertEquals("Sealdah", event.getField("name"));
+		assertEquals("50", event.getField("trainsToday"));
+		assertEquals(FilterMetrics.FAILURE_PARSE, invalidEvent.getField(Constants.FAILURE_REASON_METADATA_FIELD));
+	}
+
+	@Test
+	public void testJsonXmlFilterForJsonDocumentWithStreamingEngine() {
+		try {
+			// Create the filter with configurations
+			Filter filter = getFilter(Collections.singletonMap("jsonEngine", Constants.JSON_ENGINE_STREAMING));
+
+			String jsonFilePath = Paths
+					.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+					.toString();
+
+			// Create the event
+			Event event = new org.logstash.Event();
+			event.setField("type", Constants.DOC_TYPE_JSON);
+			event.setField("message", getContentFromFile(jsonFilePath));
+
+			Set<Event> eventSet = new HashSet<>();
+			eventSet.add(event);
+
+			// Apply the filter
+			Collection<Event> results = filter.filter(eventSet, new TestMatchListener());
+
+			// Test the result
+			assertEquals(1, results.size());
+			assertEquals("hwh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertEquals("Howrah", event.getField("name"));
+			assertEquals("30", event.getField("noOfTrains"));
+
+		} catch (URISyntaxException | ConfigurationException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testJsonXmlFilterForJsonDocumentWithJacksonProvider() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		Filter filter = getFilter(Collections.singletonMap("jsonProvider", Constants.JSON_PROVIDER_JACKSON));
+
+		String jsonFilePath = Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString();
+
+		// Create the events, the second one is not json
+		Event event = new org.logstash.Event();
+		event.setField("type", Constants.DOC_TYPE_JSON);
+		event.setField("message", getContentFromFile(jsonFilePath));
+		Event invalidEvent = new org.logstash.Event();
+		invalidEvent.setField("type", Constants.DOC_TYPE_JSON);
+		invalidEvent.setField("message", "{\"stations\":[{\"station\":{\"id\":\"hwh\",\"name\":");
+		List<Event> events = new ArrayList<>();
+		events.add(event);
+		events.add(invalidEvent);
+
+		// Apply the filter
+		filter.filter(events, new TestMatchListener());
+
+		// Test the result
+		assertEquals("hwh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+		assertEquals("Howrah", event.getField("name"));
+		assertEquals("30", event.getField("noOfTrains"));
+		assertEquals(FilterMetrics.FAILURE_PARSE, invalidEvent.getField(Constants.FAILURE_REASON_METADATA_FIELD));
+	}
+
+	@Test
+	public void testJsonXmlFilterWithIdentifierFirst() {
+		try {
+			// Create the filter with configurations
+			Filter filter = getFilter(Collections.singletonMap("identifierFirst", true));
+
+			String jsonFilePath = Paths
+					.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+					.toString();
+
+			// Create the events, the xml document without configuration is truncated after
+			// the identifier, it would fail if it was parsed fully. The json objects on the
+			// identifier path are read to their end, for a repeated property.
+			Event mappedEvent = new org.logstash.Event();
+			mappedEvent.setField("type", Constants.DOC_TYPE_JSON);
+			mappedEvent.setField("message", getContentFromFile(jsonFilePath));
+			Event unmappedJsonEvent = new org.logstash.Event();
+			unmappedJsonEvent.setField("type", Constants.DOC_TYPE_JSON);
+			unmappedJsonEvent.setField("message",
+					"{\"stations\": [{\"station\": {\"id\": \"kgp\", \"name\": \"Kharagpur\"}}], \"trains\": []}");
+			Event unmappedXmlEvent = new org.logstash.Event();
+			unmappedXmlEvent.setField("type", Constants.DOC_TYPE_XML);
+			unmappedXmlEvent.setField("message", "<stations><station><id>kgp</id><name>Kharag");
+
+			List<Event> events = new ArrayList<>();
+			events.add(mappedEvent);
+			events.add(unmappedJsonEvent);
+			events.add(unmappedXmlEvent);
+
+			// Apply the filter
+			Collection<Event> results = filter.filter(events, new TestMatchListener());
+
+			// Test the result
+			assertEquals(1, results.size());
+			assertEquals("hwh", mappedEvent.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertEquals("Howrah", mappedEvent.getField("name"));
+			assertEquals("30", mappedEvent.getField("noOfTrains"));
+			assertEquals("kgp", unmappedJsonEvent.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertNull(unmappedJsonEvent.getField("tags"));
+			assertEquals("kgp", unmappedXmlEvent.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertNull(unmappedXmlEvent.getField("tags"));
+
+		} catch (URISyntaxException | ConfigurationException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Test
+	public void testJsonXmlFilterInParallel() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		Map<String, Object> parallelConfigs = new HashMap<>();
+		parallelConfigs.put("parallelism", 4L);
+		parallelConfigs.put("parallelBatchThreshold", 2L);
+		Filter filter = getFilter(parallelConfigs);
+
+		String jsonDocument = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString());
+		String xmlDocument = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/xml/sdh.xml").toURI())
+				.toString());
+
+		// Create the events, mapped, without configuration and malformed ones in turn
+		List<Event> events = new ArrayList<>();
+		List<Event> expectedResults = new ArrayList<>();
+		for (int count = 0; count < 40; count++) {
+			Event event = new org.logstash.Event();
+			event.setField("count", count);
+			switch (count % 4) {
+			case 0:
+				event.setField("type", Constants.DOC_TYPE_JSON);
+				event.setField("message", jsonDocument);
+				expectedResults.add(event);
+				break;
+			case 1:
+				event.setField("type", Constants.DOC_TYPE_XML);
+				event.setField("message", xmlDocument);
+				expectedResults.add(event);
+				break;
+			case 2:
+				event.setField("type", Constants.DOC_TYPE_XML);
+				event.setField("message", "<stations><station><id>kgp</id></station></stations>");
+				break;
+			default:
+				event.setField("type", Constants.DOC_TYPE_XML);
+				event.setField("message", "<stations><station>");
+				expectedResults.add(event);
+			}
+			events.add(event);
+		}
+
+		// Apply the filter
+		TestMatchListener matchListener = new TestMatchListener();
+		Collection<Event> results = filter.filter(events, matchListener);
+
+		// Test the result
+		assertEquals(expectedResults, new ArrayList<>(results));
+		assertEquals(40, matchListener.getMatchCount());
+		for (Event event : results) {
+			switch (((Number) event.getField("count")).intValue() % 4) {
+			case 0:
+				assertEquals("Howrah", event.getField("name"));
+				break;
+			case 1:
+				assertEquals("Sealdah", event.getField("name"));
+				break;
+			default:
+				assertEquals(Collections.singletonList(Constants.DOCUMENT_PARSE_FAILURE_TAG), event.getField("tags"));
+			}
+		}
+	}
+
+	@Test
+	public void testConfigurationsResolvedOncePerDocumentId() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		JsonXmlPathFilter filter = (JsonXmlPathFilter) getFilter();
+
+		String jsonDocument = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString());
+		String xmlDocument = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/xml/sdh.xml").toURI())
+				.toString());
+
+		// Create the events, documents of the two ids interleaved
+		List<Event> events = new ArrayList<>();
+		for (int count = 0; count < 20; count++) {
+			Event event = new org.logstash.Event();
+			event.setField("count", count);
+			if (count % 2 == 0) {
+				event.setField("type", Constants.DOC_TYPE_JSON);
+				event.setField("message", jsonDocument);
+			} else {
+				event.setField("type", Constants.DOC_TYPE_XML);
+				event.setField("message", xmlDocument);
+			}
+			events.add(event);
+		}
+		List<Event> expectedResults = new ArrayList<>(events);
+
+		// Apply the filter
+		Collection<Event> results = filter.filter(events, new TestMatchListener());
+
+		// Test the result
+		assertEquals(expectedResults, new ArrayList<>(results));
+		for (Event event : results) {
+			if (((Number) event.getField("count")).intValue() % 2 == 0) {
+				assertEquals("hwh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+				assertEquals("Howrah", event.getField("name"));
+			} else {
+				assertEquals("sdh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+				assertEquals("Sealdah", event.getField("name"));
+			}
+		}
+		assertEquals(2L, filter.getConfigCache().getHitCount() + filter.getConfigCache().getMissCount());
+	}
+
+	@Test
+	public void testFilterMetrics() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		JsonXmlPathFilter filter = (JsonXmlPathFilter) getFilter(Collections.singletonMap("metricsInterval", 0L));
+
+		String jsonDocument = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString());
+
+		// Create the events, mapped, without configuration, malformed and without id
+		List<Event> events = new ArrayList<>();
+		for (String[] typeAndDocument : new String[][] { { Constants.DOC_TYPE_JSON, jsonDocument },
+				{ Constants.DOC_TYPE_XML, "<stations><station><id>kgp</id></station></stations>" },
+				{ Constants.DOC_TYPE_XML, "<stations><station>" },
+				{ Constants.DOC_TYPE_JSON, "{\"stations\": []}" } }) {
+			Event event = new org.logstash.Event();
+			event.setField("type", typeAndDocument[0]);
+			event.setField("message", typeAndDocument[1]);
+			events.add(event);
+		}
+
+		// Apply the filter
+		filter.filter(events, new TestMatchListener());
+
+		// Test the metrics
+		FilterMetrics metrics = filter.getMetrics();
+		assertEquals(1L, metrics.getMappedCount(Constants.DOC_TYPE_JSON, "hwh"));
+		assertEquals(1L, metrics.getDroppedNoConfigCount());
+		assertEquals(1L, metrics.getFailureCount(FilterMetrics.FAILURE_PARSE));
+		assertEquals(1L, metrics.getFailureCount(FilterMetrics.FAILURE_MISSING_ID));
+		assertEquals(0L, metrics.getFailureCount(FilterMetrics.FAILURE_EXTRACTION));
+		assertEquals(2L, metrics.getParseTimes(Constants.DOC_TYPE_JSON).getCount());
+		assertEquals(2L, metrics.getValues().get("cache").get("misses").longValue());
+	}
+
+	@Test
+	public void testFailureReasonInMetadata() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		Filter filter = getFilter();
+
+		// Create the events, malformed and without id
+		Event malformedEvent = new org.logstash.Event();
+		malformedEvent.setField("type", Constants.DOC_TYPE_XML);
+		malformedEvent.setField("message", "<stations><station>");
+		Event missingIdEvent = new org.logstash.Event();
+		missingIdEvent.setField("type", Constants.DOC_TYPE_JSON);
+		missingIdEvent.setField("message", "{\"stations\": []}");
+		List<Event> events = new ArrayList<>();
+		events.add(malformedEvent);
+		events.add(missingIdEvent);
+
+		// Apply the filter
+		Collection<Event> results = filter.filter(events, new TestMatchListener());
+
+		// Test the result
+		assertEquals(2, results.size());
+		assertEquals(Collections.singletonList(Constants.DOCUMENT_PARSE_FAILURE_TAG), malformedEvent.getField("tags"));
+		assertEquals(FilterMetrics.FAILURE_PARSE, malformedEvent.getField(Constants.FAILURE_REASON_METADATA_FIELD));
+		assertEquals(Collections.singletonList(Constants.DOCUMENT_PARSE_FAILURE_TAG), missingIdEvent.getField("tags"));
+		assertEquals(FilterMetrics.FAILURE_MISSING_ID,
+				missingIdEvent.getField(Constants.FAILURE_REASON_METADATA_FIELD));
+		assertEquals("Could not find the document Id.",
+				missingIdEvent.getField(Constants.FAILURE_MESSAGE_METADATA_FIELD));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testNegativeFailureLogInterval() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("failureLogInterval", -1L));
+	}
+
+	@Test
+	public void testCacheWarmUp() throws ConfigurationException, URISyntaxException, InterruptedException,
+			ExecutionException {
+		// Create the filter with configurations
+		JsonXmlPathFilter filter = (JsonXmlPathFilter) getFilter(
+				Collections.singletonMap("warmUp", Constants.WARM_UP_ALL));
+		assertEquals(2, filter.getWarmUpResult().get().intValue());
+
+		Event event = new org.logstash.Event();
+		event.setField("type", Constants.DOC_TYPE_JSON);
+		event.setField("message", getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString()));
+		filter.filter(Collections.singletonList(event), new TestMatchListener());
+
+		// Test the result
+		assertEquals("Howrah", event.getField("name"));
+		assertEquals(1L, filter.getConfigCache().getHitCount());
+		assertEquals(0L, filter.getConfigCache().getMissCount());
+		assertEquals(Collections.singletonList("json:hwh"), filter.getMetrics().getMostMappedIds(null));
+		assertEquals(2L, filter.getMetrics().getValues().get("cache").get("warm_up_loads").longValue());
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testWarmUpFileRequired() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("warmUp", Constants.WARM_UP_MANIFEST));
+	}
+
+	@Test
+	public void testResultCache() throws ConfigurationException, URISyntaxException {
+		// Create the filter with configurations
+		JsonXmlPathFilter filter = (JsonXmlPathFilter) getFilter(Collections.singletonMap("resultCacheSize", 10L));
+		String jsonContent = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString());
+
+		List<Event> events = new ArrayList<>();
+		for (int index = 0; index < 3; index++) {
+			Event event = new org.logstash.Event();
+			event.setField("type", Constants.DOC_TYPE_JSON);
+			event.setField("message", jsonContent);
+			filter.filter(new ArrayList<>(Collections.singletonList(event)), new TestMatchListener());
+			events.add(event);
+		}
+
+		// Test the result
+		for (Event event : events) {
+			assertEquals("hwh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertEquals("Howrah", event.getField("name"));
+		}
+		Map<String, Long> resultCacheValues = filter.getMetrics().getValues().get("result_cache");
+		assertEquals(2L, resultCacheValues.get("hits").longValue());
+		assertEquals(1L, resultCacheValues.get("misses").longValue());
+		assertEquals(66L, resultCacheValues.get("hit_rate_percent").longValue());
+		assertEquals(1L, filter.getMetrics().getParseTimes(Constants.DOC_TYPE_JSON).getCount());
+	}
+
+	@Test
+	public void testIdentifierScan() throws ConfigurationException, URISyntaxException {
+		String xmlContent = "<stations><station><id>kgp</id></station></stations>";
+		for (boolean identifierScan : new boolean[] { true, false }) {
+			// Create the filter with configurations
+			JsonXmlPathFilter filter = (JsonXmlPathFilter) getFilter(
+					Collections.singletonMap("identifierScan", identifierScan));
+			Event event = new org.logstash.Event();
+			event.setField("type", Constants.DOC_TYPE_XML);
+			event.setField("message", xmlContent);
+			Collection<Event> results = filter.filter(new ArrayList<>(Collections.singletonList(event)),
+					new TestMatchListener());
+
+			// Test the result, without configuration the document is parsed only to
+			// find its id
+			assertEquals(0, results.size());
+			assertEquals("kgp", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+			assertEquals(identifierScan ? 0L : 1L, filter.getMetrics().getParseTimes(Constants.DOC_TYPE_XML).getCount());
+		}
+	}
+
+	/**
+	 * A malformed document without configuration is tagged by default, and
+	 * dropped only when the scan found its id
+	 */
+	@Test
+	public void testIdentifierScanOfMalformedDocument() throws ConfigurationException, URISyntaxException {
+		String malformedXml = "<stations><station><id>kgp</id></station>";
+		Event event = new org.logstash.Event();
+		event.setField("type", Constants.DOC_TYPE_XML);
+		event.setField("message", malformedXml);
+		Collection<Event> results = getFilter().filter(new ArrayList<>(Collections.singletonList(event)),
+				new TestMatchListener());
+		assertEquals(1, results.size());
+		assertEquals(Collections.singletonList(Constants.DOCUMENT_PARSE_FAILURE_TAG), event.getField("tags"));
+
+		Event scannedEvent = new org.logstash.Event();
+		scannedEvent.setField("type", Constants.DOC_TYPE_XML);
+		scannedEvent.setField("message", malformedXml);
+		results = getFilter(Collections.singletonMap("identifierScan", true))
+				.filter(new ArrayList<>(Collections.singletonList(scannedEvent)), new TestMatchListener());
+		assertEquals(0, results.size());
+		assertEquals("kgp", scannedEvent.getField(Constants.IDENTIFIER_EVENT_FIELD));
+	}
+
+	@Test
+	public void testMultipathIdFirstMatch() throws ConfigurationException, URISyntaxException {
+		String xmlContent = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/multipath-id-xml/sdh2.xml").toURI())
+				.toString());
+		String conflictingXmlContent = "<stations><station><id>sdh</id></station>"
+				+ "<value><station><id>hwh</id></station></value></stations>";
+		for (long conflictCheckPercent : new long[] { 0L, 100L }) {
+			for (boolean identifierFirst : new boolean[] { false, true }) {
+				// Create the filter with configurations, with a single streaming pass for the
+				// other paths when the first path tried misses
+				Map<String, Object> firstMatchConfigs = new HashMap<>();
+				firstMatchConfigs.put("multipathIdFirstMatch", true);
+				firstMatchConfigs.put("multipathIdConflictCheckPercent", conflictCheckPercent);
+				firstMatchConfigs.put("identifierFirst", identifierFirst);
+				Filter filter = getMultipathIdFilter(firstMatchConfigs);
+
+				// Create the events, with the document id at the second path and at both
+				// paths
+				Event event = new org.logstash.Event();
+				event.setField("type", Constants.DOC_TYPE_XML);
+				event.setField("message", xmlContent);
+				Event conflictingEvent = new org.logstash.Event();
+				conflictingEvent.setField("type", Constants.DOC_TYPE_XML);
+				conflictingEvent.setField("message", conflictingXmlContent);
+				List<Event> events = new ArrayList<>();
+				events.add(event);
+				events.add(conflictingEvent);
+				filter.filter(events, new TestMatchListener());
+
+				// Test the result, conflicts are found only when checked
+				assertEquals("sdh", event.getField(Constants.IDENTIFIER_EVENT_FIELD));
+				assertEquals("Sealdah", event.getField("name"));
+				if (conflictCheckPercent == 0L) {
+					assertEquals("sdh", conflictingEvent.getField(Constants.IDENTIFIER_EVENT_FIELD));
+					assertNull(conflictingEvent.getField("tags"));
+				} else {
+					assertEquals(FilterMetrics.FAILURE_CONFLICTING_IDS,
+							conflictingEvent.getField(Constants.FAILURE_REASON_METADATA_FIELD));
+				}
+			}
+		}
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testMultipathIdFirstMatchWithoutMultipathId() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("multipathIdFirstMatch", true));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidMultipathIdConflictCheckPercent() throws ConfigurationException, URISyntaxException {
+		Map<String, Object> firstMatchConfigs = new HashMap<>();
+		firstMatchConfigs.put("multipathIdFirstMatch", true);
+		firstMatchConfigs.put("multipathIdConflictCheckPercent", 101L);
+		getMultipathIdFilter(firstMatchConfigs);
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testNegativeResultCacheTtl() throws ConfigurationException, URISyntaxException {
+		Map<String, Object> resultCacheConfigs = new HashMap<>();
+		resultCacheConfigs.put("resultCacheSize", 10L);
+		resultCacheConfigs.put("resultCacheTtl", -1L);
+		getFilter(resultCacheConfigs);
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testCacheSizeWithCacheMaxBytes() throws ConfigurationException, URISyntaxException {
+		Map<String, Object> cacheConfigs = new HashMap<>();
+		cacheConfigs.put("cacheSize", 10L);
+		cacheConfigs.put("cacheMaxBytes", 1048576L);
+		getFilter(cacheConfigs);
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testInvalidParallelism() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("parallelism", 0L));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testUnsupportedJsonEngine() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("jsonEngine", "gson"));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testUnsupportedJsonProvider() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("jsonProvider", "gson"));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testUnsupportedXmlEngine() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("xmlEngine", "sax"));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testUnsupportedXPathEngine() throws ConfigurationException, URISyntaxException {
+		getFilter(Collections.singletonMap("xpathEngine", "saxon"));
+	}
+
 	@Test
 	public void testJsonXmlMultipathIdFilterForJsonDocument() {
 		try {
@@ -211,7 +778,87 @@ public class JsonXmlPathFilterTest {
 		}
 	}
 
+	@Test
+	public void testConfigSchemaHasAllSettings() throws ConfigurationException, URISyntaxException {
+		Collection<PluginConfigSpec<?>> configSchema = getFilter().configSchema();
+		for (Field field : JsonXmlPathFilter.class.getFields()) {
+			if (PluginConfigSpec.class.equals(field.getType())) {
+				try {
+					assertTrue(field.getName(), configSchema.contains(field.get(null)));
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A filter closed on a pipeline reload should leave nothing behind for the
+	 * new filter with the same id
+	 */
+	@Test
+	public void testCloseAndRebuildWithSameId() throws Exception {
+		String id = "test-id-close";
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		ObjectName mBeanName = new ObjectName(
+				StringUtils.join(MetricsReporter.JMX_DOMAIN, ":type=JsonXmlPathFilter,id=", ObjectName.quote(id)));
+
+		JsonXmlPathFilter filter = getFilter(id, Collections.emptyMap());
+		assertTrue(mBeanServer.isRegistered(mBeanName));
+		filter.close();
+		assertFalse(mBeanServer.isRegistered(mBeanName));
+		// Closing again does nothing
+		filter.close();
+
+		JsonXmlPathFilter rebuiltFilter = getFilter(id, Collections.emptyMap());
+		try {
+			assertTrue(mBeanServer.isRegistered(mBeanName));
+		} finally {
+			rebuiltFilter.close();
+		}
+		assertFalse(mBeanServer.isRegistered(mBeanName));
+		assertTrue(awaitThreadsStopped(id));
+	}
+
+	@Test
+	public void testCloseStopsConfigWatcher() throws Exception {
+		String id = "test-id-close-watcher";
+		JsonXmlPathFilter filter = getFilter(id, Collections.singletonMap("configWatch", true));
+		assertFalse(awaitThreadsStopped(id));
+		filter.close();
+		assertTrue(awaitThreadsStopped(id));
+		// Closing again does nothing
+		filter.close();
+	}
+
+	@Test
+	public void testCloseStopsParallelPool() throws Exception {
+		String id = "test-id-close-pool";
+		Map<String, Object> parallelConfigs = new HashMap<>();
+		parallelConfigs.put("parallelism", 2L);
+		parallelConfigs.put("parallelBatchThreshold", 1L);
+		JsonXmlPathFilter filter = getFilter(id, parallelConfigs);
+		String jsonDocument = getContentFromFile(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/json/hwh.json").toURI())
+				.toString());
+		List<Event> events = new ArrayList<>();
+		for (int count = 0; count < 4; count++) {
+			Event event = new org.logstash.Event();
+			event.setField("type", Constants.DOC_TYPE_JSON);
+			event.setField("message", jsonDocument);
+			events.add(event);
+		}
+		filter.filter(events, new TestMatchListener());
+		assertFalse(awaitThreadsStopped(id));
+		filter.close();
+		assertTrue(awaitThreadsStopped(id));
+	}
+
 	private Filter getFilter() throws ConfigurationException, URISyntaxException {
+		return getFilter(Collections.emptyMap());
+	}
+
+	private Filter getFilter(Map<String, Object> additionalConfigs) throws ConfigurationException, URISyntaxException {
 		String propFilePath = Paths
 				.get(this.getClass().getClassLoader().getResource("test-files/filter/mainProp.properties").toURI())
 				.toString();
@@ -219,6 +866,7 @@ public class JsonXmlPathFilterTest {
 		HashMap<String, Object> configMap = new HashMap<>();
 		configMap.put("mainProp", propFilePath);
 		configMap.put("cacheSize", 10L);
+		configMap.putAll(additionalConfigs);
 		Configuration config = new ConfigurationImpl(Collections.unmodifiableMap(configMap));
 		Context context = new ContextImpl(null, null);
 
@@ -226,6 +874,11 @@ public class JsonXmlPathFilterTest {
 	}
 
 	private Filter getMultipathIdFilter() throws ConfigurationException, URISyntaxException {
+		return getMultipathIdFilter(Collections.emptyMap());
+	}
+
+	private Filter getMultipathIdFilter(Map<String, Object> additionalConfigs)
+			throws ConfigurationException, URISyntaxException {
 		String propFilePath = Paths.get(
 				this.getClass().getClassLoader().getResource("test-files/filter/multipath-id-prop.properties").toURI())
 				.toString();
@@ -234,12 +887,51 @@ public class JsonXmlPathFilterTest {
 		configMap.put("mainProp", propFilePath);
 		configMap.put("cacheSize", 10L);
 		configMap.put("multipathId", true);
+		configMap.putAll(additionalConfigs);
 		Configuration config = new ConfigurationImpl(Collections.unmodifiableMap(configMap));
 		Context context = new ContextImpl(null, null);
 
 		return new JsonXmlPathFilter("test-id-multipath", config, context);
 	}
 
+	private JsonXmlPathFilter getFilter(String id, Map<String, Object> additionalConfigs)
+			throws ConfigurationException, URISyntaxException {
+		String propFilePath = Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/mainProp.properties").toURI())
+				.toString();
+
+		HashMap<String, Object> configMap = new HashMap<>();
+		configMap.put("mainProp", propFilePath);
+		configMap.put("cacheSize", 10L);
+		configMap.putAll(additionalConfigs);
+		Configuration config = new ConfigurationImpl(Collections.unmodifiableMap(configMap));
+		Context context = new ContextImpl(null, null);
+
+		return new JsonXmlPathFilter(id, config, context);
+	}
+
+	/**
+	 * Waits up to a second for the threads of the filter to stop
+	 * 
+	 * @param filterId
+	 * @return true if no thread of the filter is alive
+	 */
+	private static boolean awaitThreadsStopped(String filterId) throws InterruptedException {
+		for (int attempt = 0; attempt < 20; attempt++) {
+			boolean alive = false;
+			for (Thread thread : Thread.getAllStackTraces().keySet()) {
+				String name = thread.getName();
+				alive |= thread.isAlive() && (name.startsWith("json_xml_path_filter-") && name.endsWith("-" + filterId)
+						|| name.startsWith(StringUtils.join("json_xml_path_filter-worker-", filterId, "-")));
+			}
+			if (!alive) {
+				return true;
+			}
+			Thread.sleep(50);
+		}
+		return false;
+	}
+
 	private String getContentFromFile(String filePath) {
 		try (Reader reader = new FileReader(filePath)) {
 			BufferedReader buffReader = new BufferedReader(reader, 32768);
@@ -1,13 +1,30 @@
 package edu.soumya.logstash.filter.cache;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import edu.soumya.logstash.filter.config.Configurations;
+import edu.soumya.logstash.filter.config.ConfigurationsBundle;
+import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
 
 /**
@@ -15,43 +32,252 @@ import edu.soumya.logstash.filter.exceptions.ConfigurationException;
  *
  */
 public class ConfigurationsCacheTest {
+
+	@Rule
+	public TemporaryFolder configFolder = new TemporaryFolder();
 	
 	/**
-	 * Tests if caching is being done using Least Recently used page replacement
-	 * policy or not
+	 * Tests if frequently used configurations are kept in the cache, when rarely
+	 * used configurations are loaded into a full cache
+	 */
+	@Test
+	public void testCachingStrategy() throws IOException, ConfigurationException {
+		ConfigurationsCache cache = new ConfigurationsCache(10L);
+
+		// Fill the cache
+		for (int count = 0; count < 10; count++) {
+			cache.getConfigFromFileOrCache(createConfigFile("warm" + count));
+		}
+		// hot1 and hot2 are the frequently used configurations
+		String hotConfigPath1 = createConfigFile("hot1");
+		String hotConfigPath2 = createConfigFile("hot2");
+		for (int count = 0; count < 10; count++) {
+			cache.getConfigFromFileOrCache(hotConfigPath1);
+			cache.getConfigFromFileOrCache(hotConfigPath2);
+		}
+		// One-off configurations should not push out the hot ones
+		for (int count = 0; count < 30; count++) {
+			cache.getConfigFromFileOrCache(createConfigFile("oneOff" + count));
+		}
+
+		assertTrue(cache.getCurrentCacheMap().containsKey(hotConfigPath1));
+		assertTrue(cache.getCurrentCacheMap().containsKey(hotConfigPath2));
+		assertEquals(10, cache.getCurrentCacheMap().size());
+	}
+
+	/**
+	 * Tests the hit, miss and eviction counters
+	 */
+	@Test
+	public void testCacheCounters() throws URISyntaxException, ConfigurationException {
+		String configPath1 = getConfigPath("hwh_json.conf");
+		String configPath2 = getConfigPath("hwh_xml.conf");
+		String configPath3 = getConfigPath("sdh_json.conf");
+		ConfigurationsCache cache = new ConfigurationsCache(2L);
+
+		cache.getConfigFromFileOrCache(configPath1);
+		cache.getConfigFromFileOrCache(configPath1);
+		cache.getConfigFromFileOrCache(configPath2);
+		cache.getConfigFromFileOrCache(configPath3);
+
+		assertEquals(1L, cache.getHitCount());
+		assertEquals(3L, cache.getMissCount());
+		assertEquals(1L, cache.getEvictionCount());
+		assertEquals(2, cache.getCurrentCacheMap().size());
+	}
+
+	/**
+	 * Tests that concurrent lookups from multiple workers keep the cache within its
+	 * capacity
 	 */
 	@Test
-	public void testCachingStrategy() {
+	public void testConcurrentAccess() throws Exception {
+		List<String> configPaths = new ArrayList<>();
+		configPaths.add(getConfigPath("hwh_json.conf"));
+		configPaths.add(getConfigPath("hwh_xml.conf"));
+		configPaths.add(getConfigPath("sdh_json.conf"));
+		configPaths.add(getConfigPath("sdh_xml.conf"));
+		ConfigurationsCache cache = new ConfigurationsCache(3L);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
 		try {
-			String configPath1 = Paths.get(this.getClass().getClassLoader().getResource("test-files/cache/hwh_json.conf").toURI()).toString();
-			String configPath2 = Paths.get(this.getClass().getClassLoader().getResource("test-files/cache/hwh_xml.conf").toURI()).toString();
-			String configPath3 = Paths.get(this.getClass().getClassLoader().getResource("test-files/cache/sdh_json.conf").toURI()).toString();
-			String configPath4 = Paths.get(this.getClass().getClassLoader().getResource("test-files/cache/sdh_xml.conf").toURI()).toString();
-			ConfigurationsCache cache = new ConfigurationsCache(2L);
-			
-			//Cache miss/hit test
-			cache.getConfigFromFileOrCache(configPath1);
-			cache.getConfigFromFileOrCache(configPath2);
-			cache.getConfigFromFileOrCache(configPath1);
-			// At this point configPath2 is least recently used so loading configPath3 will
-			// cause configPath2 to be removed
-			cache.getConfigFromFileOrCache(configPath3);
-			
-			assertTrue(cache.getCurrentCacheMap().containsKey(configPath1));
-			assertFalse(cache.getCurrentCacheMap().containsKey(configPath2));
-			
-			//Now configPath1 is least recently used
-			cache.getConfigFromFileOrCache(configPath4);
-			
-			assertFalse(cache.getCurrentCacheMap().containsKey(configPath1));
-			
-			//Now configPath3 is least recently used
-			cache.getConfigFromFileOrCache(configPath1);
-			
-			assertFalse(cache.getCurrentCacheMap().containsKey(configPath3));
-			assertTrue(cache.getCurrentCacheMap().containsKey(configPath4));
-		} catch (URISyntaxException | ConfigurationException e) {
-			e.printStackTrace();
-		} 
+			List<Future<?>> results = new ArrayList<>();
+			for (int count = 0; count < 400; count++) {
+				String configPath = configPaths.get(count % configPaths.size());
+				results.add(executor.submit(() -> {
+					assertTrue(!cache.getConfigFromFileOrCache(configPath).isEmptyConfigSet());
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		cache.cleanUp();
+		assertTrue(cache.getCurrentCacheMap().size() <= 3);
+		assertEquals(400L, cache.getHitCount() + cache.getMissCount());
+	}
+
+	/**
+	 * Tests that a cached configuration is returned as it is on a cache hit
+	 */
+	@Test
+	public void testCacheHitReturnsSameInstance() throws URISyntaxException, ConfigurationException {
+		String configPath = getConfigPath("hwh_json.conf");
+		ConfigurationsCache cache = new ConfigurationsCache();
+		assertSame(cache.getConfigFromFileOrCache(configPath), cache.getConfigFromFileOrCache(configPath));
+	}
+
+	/**
+	 * Tests that concurrent misses for the same configuration file load the file
+	 * only once
+	 */
+	@Test
+	public void testSingleLoadForConcurrentMisses() throws Exception {
+		String configPath = createConfigFile("burst");
+		ConfigurationsCache cache = new ConfigurationsCache(10L);
+		int workers = 16;
+		CountDownLatch startSignal = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Configurations>> results = new ArrayList<>();
+			for (int count = 0; count < workers; count++) {
+				results.add(executor.submit(() -> {
+					startSignal.await();
+					return cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML);
+				}));
+			}
+			startSignal.countDown();
+			Configurations loadedConfigs = results.get(0).get();
+			for (Future<Configurations> result : results) {
+				assertSame(loadedConfigs, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1L, cache.getLoadCount());
+	}
+
+	/**
+	 * Tests that a configuration is reloaded in background after the refresh
+	 * interval and the cached one is used until then
+	 */
+	@Test
+	public void testRefreshAfterInterval() throws Exception {
+		String configPath = createConfigFile("refresh");
+		ConfigurationsCache cache = new ConfigurationsCache(10L, 1L);
+		Configurations oldConfigs = cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML);
+		assertEquals("name", oldConfigs.getValue("/stations/station/name"));
+
+		Files.write(Paths.get(configPath), "/stations/station/name => stationName".getBytes(StandardCharsets.UTF_8));
+		Thread.sleep(1100L);
+		// Stale configuration is returned while reloading
+		assertSame(oldConfigs, cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML));
+
+		Configurations newConfigs = oldConfigs;
+		for (int retry = 0; retry < 50 && newConfigs == oldConfigs; retry++) {
+			Thread.sleep(100L);
+			newConfigs = cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML);
+		}
+		assertEquals("stationName", newConfigs.getValue("/stations/station/name"));
+		assertEquals(Constants.DOC_TYPE_XML, newConfigs.getDocumentType());
+	}
+
+	/**
+	 * Tests if a cache bounded by bytes keeps its estimated bytes within the bound,
+	 * counting a large configuration as more than a small one
+	 */
+	@Test
+	public void testCacheBoundedByBytes() throws IOException, ConfigurationException {
+		StringBuilder largeConfig = new StringBuilder();
+		for (int count = 0; count < 100; count++) {
+			largeConfig.append("/stations/station/field").append(count).append(" => field").append(count).append('\n');
+		}
+		String largeConfigPath = createConfigFile("large", largeConfig.toString());
+		ConfigurationsCache unboundedCache = new ConfigurationsCache();
+		long largeConfigBytes = unboundedCache.getConfigFromFileOrCache(largeConfigPath, Constants.DOC_TYPE_XML)
+				.estimateSize();
+		assertEquals(largeConfigBytes, unboundedCache.getEstimatedBytes());
+
+		long smallConfigBytes = unboundedCache
+				.getConfigFromFileOrCache(createConfigFile("small"), Constants.DOC_TYPE_XML).estimateSize();
+		assertTrue(smallConfigBytes < largeConfigBytes);
+
+		// Room for the large configuration and a few small ones
+		long maxBytes = largeConfigBytes + 10 * smallConfigBytes;
+		ConfigurationsCache cache = new ConfigurationsCache(null, null, maxBytes);
+		for (int count = 0; count < 5; count++) {
+			cache.getConfigFromFileOrCache(largeConfigPath, Constants.DOC_TYPE_XML);
+		}
+		for (int count = 0; count < 50; count++) {
+			cache.getConfigFromFileOrCache(createConfigFile("small" + count), Constants.DOC_TYPE_XML);
+		}
+		cache.cleanUp();
+		assertTrue(cache.getEstimatedBytes() <= maxBytes);
+		assertTrue(cache.getEvictionCount() > 0);
+	}
+
+	/**
+	 * Tests if a cache bounded by bytes weighs a configuration again on its next
+	 * lookup, once more of it is compiled
+	 */
+	@Test
+	public void testCacheBoundedByBytesWeighsLazyCompiles() throws IOException, ConfigurationException {
+		ConfigurationsCache cache = new ConfigurationsCache(null, null, 1024L * 1024L);
+		String configFilePath = createConfigFile("hwh");
+		Configurations configs = cache.getConfigFromFileOrCache(configFilePath, Constants.DOC_TYPE_XML);
+		cache.cleanUp();
+		long cachedBytes = cache.getEstimatedBytes();
+		assertEquals(configs.estimateSize(), cachedBytes);
+
+		// Compiled for json documents too after it was cached
+		configs.getCompiledJsonPaths();
+		assertSame(configs, cache.getConfigFromFileOrCache(configFilePath, Constants.DOC_TYPE_XML));
+		cache.cleanUp();
+		assertTrue(cachedBytes < cache.getEstimatedBytes());
+		assertEquals(configs.estimateSize(), cache.getEstimatedBytes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCacheBoundedByNumberAndBytes() {
+		new ConfigurationsCache(10L, null, 1024L);
+	}
+
+	/**
+	 * Tests if the configurations of a folder with a bundle are loaded from the
+	 * bundle, even after their files are deleted
+	 */
+	@Test
+	public void testConfigurationsFromBundle() throws IOException, ConfigurationException {
+		String configFilePath = createConfigFile("hwh");
+		String configFolderPath = this.configFolder.getRoot().getAbsolutePath();
+		String bundleFilePath = new File(this.configFolder.newFolder("bundle"), "configs.bundle").getAbsolutePath();
+		ConfigurationsBundle.build(configFolderPath, bundleFilePath);
+		Files.delete(Paths.get(configFilePath));
+
+		ConfigurationsCache cache = new ConfigurationsCache();
+		cache.addBundle(configFolderPath, ConfigurationsBundle.open(bundleFilePath));
+		Configurations configs = cache.getConfigFromFileOrCache(configFilePath, Constants.DOC_TYPE_XML);
+		assertTrue(configs.getConfigFilePresentFlag());
+		assertEquals("name", configs.getValue("/stations/station/name"));
+		assertEquals(Constants.DOC_TYPE_XML, configs.getDocumentType());
+		assertFalse(cache.getConfigFromFileOrCache(Paths.get(configFolderPath, "kgp.conf").toString(),
+				Constants.DOC_TYPE_XML).getConfigFilePresentFlag());
+	}
+
+	private String createConfigFile(String documentId) throws IOException {
+		return createConfigFile(documentId, "/stations/station/name => name");
+	}
+
+	private String createConfigFile(String documentId, String content) throws IOException {
+		File configFile = this.configFolder.newFile(documentId + ".conf");
+		Files.write(configFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return configFile.getAbsolutePath();
+	}
+
+	private String getConfigPath(String fileName) throws URISyntaxException {
+		return Paths.get(this.getClass().getClassLoader().getResource("test-files/cache/" + fileName).toURI())
+				.toString();
 	}
 }
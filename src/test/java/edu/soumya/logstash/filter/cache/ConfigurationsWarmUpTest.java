@@ -0,0 +1,120 @@
+package edu.soumya.logstash.filter.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.soumya.logstash.filter.cache.ConfigurationsWarmUp.SnapshotSchedule;
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class ConfigurationsWarmUpTest {
+
+	@Rule
+	public TemporaryFolder configFolder = new TemporaryFolder();
+
+	/**
+	 * Tests if no more configurations than the capacity of the cache are
+	 * preloaded, without counting cache misses
+	 */
+	@Test
+	public void testWarmUpRespectsCapacity() throws IOException, ConfigurationException, InterruptedException,
+			ExecutionException {
+		for (int count = 0; count < 10; count++) {
+			createConfigFile("id" + count);
+		}
+		ConfigurationsCache cache = new ConfigurationsCache(4L);
+		ConfigurationsWarmUp warmUp = new ConfigurationsWarmUp(cache,
+				this.configFolder.getRoot().getAbsolutePath(), null, 3, 4L);
+		List<String> allIds = warmUp.listAllIds();
+		assertEquals(10, allIds.size());
+
+		assertEquals(4, warmUp.start(allIds).get().intValue());
+		cache.cleanUp();
+		assertEquals(4, cache.getCurrentCacheMap().size());
+		assertEquals(0L, cache.getMissCount());
+	}
+
+	/**
+	 * Tests if already cached and invalid document ids are not loaded
+	 */
+	@Test
+	public void testWarmUpSkipsCachedAndInvalidIds() throws IOException, ConfigurationException,
+			InterruptedException, ExecutionException {
+		String configFilePath = createConfigFile("hwh");
+		createConfigFile("sdh");
+		ConfigurationsCache cache = new ConfigurationsCache();
+		cache.getConfigFromFileOrCache(configFilePath, Constants.DOC_TYPE_JSON);
+		ConfigurationsWarmUp warmUp = new ConfigurationsWarmUp(cache, null,
+				this.configFolder.getRoot().getAbsolutePath(), 2, null);
+
+		assertEquals(1, warmUp.start(Arrays.asList("json:hwh", "json:sdh", "json:sdh", "pdf:hwh", "json:"))
+				.get().intValue());
+		assertEquals(2, cache.getCurrentCacheMap().size());
+		assertEquals(Constants.DOC_TYPE_JSON,
+				cache.getCurrentCacheMap().get(new File(this.configFolder.getRoot(), "sdh.conf").getAbsolutePath())
+						.getDocumentType());
+	}
+
+	@Test
+	public void testSnapshotFile() throws IOException, ConfigurationException {
+		File snapshotFile = this.configFolder.newFile("snapshot.txt");
+		ConfigurationsWarmUp.writeIds(Arrays.asList("xml:sdh", "json:hwh"), snapshotFile.getAbsolutePath());
+		assertEquals(Arrays.asList("xml:sdh", "json:hwh"),
+				ConfigurationsWarmUp.readIds(snapshotFile.getAbsolutePath()));
+
+		// Comments and blank lines of a manifest are skipped
+		Files.write(snapshotFile.toPath(), "# hot ids\n\nxml:sdh\n  json:hwh  \n".getBytes(StandardCharsets.UTF_8));
+		assertEquals(Arrays.asList("xml:sdh", "json:hwh"),
+				ConfigurationsWarmUp.readIds(snapshotFile.getAbsolutePath()));
+	}
+
+	/**
+	 * Tests if closing the snapshot schedule saves a final snapshot once, and
+	 * keeps the previous snapshot when nothing was mapped
+	 */
+	@Test
+	public void testSnapshotScheduleClose() throws IOException, ConfigurationException {
+		File snapshotFile = this.configFolder.newFile("snapshot.txt");
+		ConfigurationsWarmUp.writeIds(Arrays.asList("xml:old"), snapshotFile.getAbsolutePath());
+		List<String> mostUsedIds = new ArrayList<>();
+		SnapshotSchedule emptySchedule = ConfigurationsWarmUp.scheduleSnapshots(() -> mostUsedIds,
+				snapshotFile.getAbsolutePath(), "warmup-snapshot-test");
+		emptySchedule.close();
+		assertEquals(Arrays.asList("xml:old"), ConfigurationsWarmUp.readIds(snapshotFile.getAbsolutePath()));
+
+		mostUsedIds.addAll(Arrays.asList("xml:sdh", "json:hwh"));
+		SnapshotSchedule snapshotSchedule = ConfigurationsWarmUp.scheduleSnapshots(() -> mostUsedIds,
+				snapshotFile.getAbsolutePath(), "warmup-snapshot-test");
+		snapshotSchedule.close();
+		assertEquals(Arrays.asList("xml:sdh", "json:hwh"),
+				ConfigurationsWarmUp.readIds(snapshotFile.getAbsolutePath()));
+
+		// Closing again does not save another snapshot
+		mostUsedIds.add("xml:hwh");
+		snapshotSchedule.close();
+		assertEquals(Arrays.asList("xml:sdh", "json:hwh"),
+				ConfigurationsWarmUp.readIds(snapshotFile.getAbsolutePath()));
+	}
+
+	private String createConfigFile(String documentId) throws IOException {
+		File configFile = this.configFolder.newFile(documentId + ".conf");
+		Files.write(configFile.toPath(), "/stations/station/name => name".getBytes(StandardCharsets.UTF_8));
+		return configFile.getAbsolutePath();
+	}
+}
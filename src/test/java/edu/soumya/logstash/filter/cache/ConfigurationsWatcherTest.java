@@ -0,0 +1,124 @@
+package edu.soumya.logstash.filter.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.soumya.logstash.filter.config.Configurations;
+import edu.soumya.logstash.filter.config.ConfigurationsBundle;
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class ConfigurationsWatcherTest {
+
+	@Rule
+	public TemporaryFolder configFolder = new TemporaryFolder();
+
+	/**
+	 * Tests that a modified configuration file is reloaded into the cache, and
+	 * files not in the cache are not loaded
+	 */
+	@Test
+	public void testReloadOfModifiedConfiguration() throws Exception {
+		File configFile = writeConfigFile("sdh.conf", "/stations/station/name => name");
+		String configPath = configFile.getAbsolutePath();
+		ConfigurationsCache cache = new ConfigurationsCache(10L);
+		cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML);
+
+		try (ConfigurationsWatcher watcher = new ConfigurationsWatcher(cache, 100L,
+				this.configFolder.getRoot().getAbsolutePath())) {
+			watcher.start("test-config-watcher");
+			writeConfigFile("sdh.conf", "/stations/station/name => stationName");
+			writeConfigFile("hwh.conf", "/stations/station/name => name");
+
+			Configurations reloadedConfigs = waitForReload(cache, configPath, "stationName");
+			assertEquals("stationName", reloadedConfigs.getValue("/stations/station/name"));
+			assertEquals(Constants.DOC_TYPE_XML, reloadedConfigs.getDocumentType());
+			assertFalse(cache.getCurrentCacheMap()
+					.containsKey(new File(this.configFolder.getRoot(), "hwh.conf").getAbsolutePath()));
+		}
+	}
+
+	/**
+	 * Tests that a deleted configuration file is reloaded as not present
+	 */
+	@Test
+	public void testReloadOfDeletedConfiguration() throws Exception {
+		File configFile = writeConfigFile("sdh.conf", "/stations/station/name => name");
+		String configPath = configFile.getAbsolutePath();
+		ConfigurationsCache cache = new ConfigurationsCache(10L);
+		cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML);
+
+		try (ConfigurationsWatcher watcher = new ConfigurationsWatcher(cache, 100L,
+				this.configFolder.getRoot().getAbsolutePath())) {
+			watcher.start("test-config-watcher");
+			Files.delete(configFile.toPath());
+
+			Configurations reloadedConfigs = cache.getCurrentCacheMap().get(configPath);
+			for (int retry = 0; retry < 100 && reloadedConfigs.getConfigFilePresentFlag(); retry++) {
+				Thread.sleep(100L);
+				reloadedConfigs = cache.getCurrentCacheMap().get(configPath);
+			}
+			assertFalse(reloadedConfigs.getConfigFilePresentFlag());
+		}
+	}
+
+	/**
+	 * Tests that the configurations of a folder with a bundle are reloaded from
+	 * the bundle, so a modified file does not replace them
+	 */
+	@Test
+	public void testReloadFromBundle() throws Exception {
+		File configFile = writeConfigFile("sdh.conf", "/stations/station/name => name");
+		String configPath = configFile.getAbsolutePath();
+		String configFolderPath = this.configFolder.getRoot().getAbsolutePath();
+		String bundleFilePath = new File(this.configFolder.newFolder("bundle"), "configs.bundle").getAbsolutePath();
+		ConfigurationsBundle.build(configFolderPath, bundleFilePath);
+		ConfigurationsCache cache = new ConfigurationsCache(10L);
+		cache.addBundle(configFolderPath, ConfigurationsBundle.open(bundleFilePath));
+		Configurations cachedConfigs = cache.getConfigFromFileOrCache(configPath, Constants.DOC_TYPE_XML);
+
+		try (ConfigurationsWatcher watcher = new ConfigurationsWatcher(cache, 100L, configFolderPath)) {
+			watcher.start("test-config-watcher");
+			writeConfigFile("sdh.conf", "/stations/station/name => stationName");
+
+			Configurations reloadedConfigs = cache.getCurrentCacheMap().get(configPath);
+			for (int retry = 0; retry < 100 && reloadedConfigs == cachedConfigs; retry++) {
+				Thread.sleep(100L);
+				reloadedConfigs = cache.getCurrentCacheMap().get(configPath);
+			}
+			assertNotSame(cachedConfigs, reloadedConfigs);
+			assertEquals("name", reloadedConfigs.getValue("/stations/station/name"));
+			assertEquals(Constants.DOC_TYPE_XML, reloadedConfigs.getDocumentType());
+		}
+	}
+
+	private Configurations waitForReload(ConfigurationsCache cache, String configPath, String expectedValue)
+			throws InterruptedException, ConfigurationException {
+		Configurations configs = cache.getCurrentCacheMap().get(configPath);
+		for (int retry = 0; retry < 100 && !expectedValue.equals(configs.getValue("/stations/station/name")); retry++) {
+			Thread.sleep(100L);
+			configs = cache.getCurrentCacheMap().get(configPath);
+		}
+		return configs;
+	}
+
+	private File writeConfigFile(String fileName, String content) throws IOException {
+		File configFile = new File(this.configFolder.getRoot(), fileName);
+		Files.write(configFile.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		return configFile;
+	}
+}
@@ -0,0 +1,122 @@
+package edu.soumya.logstash.filter.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import edu.soumya.logstash.filter.cache.ResultCache.CachedResult;
+import edu.soumya.logstash.filter.config.Configurations;
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class ResultCacheTest {
+
+	private static final String DOCUMENT = "{\"id\":\"hwh\",\"name\":\"Howrah\"}";
+
+	/**
+	 * Tests if the cached values of the same document are returned with the same
+	 * configurations only
+	 */
+	@Test
+	public void sameDocumentTest() throws ConfigurationException {
+		ResultCache resultCache = new ResultCache(10, 0);
+		Configurations config = config("$.name=>name");
+		resultCache.put(Constants.DOC_TYPE_JSON, DOCUMENT, "hwh", config, values("Howrah"));
+
+		// Another instance of the same document
+		CachedResult cachedResult = resultCache.get(Constants.DOC_TYPE_JSON, new String(DOCUMENT));
+		assertNotNull(cachedResult);
+		assertEquals("hwh", cachedResult.getDocumentId());
+		assertArrayEquals(values("Howrah"), resultCache.getValues(cachedResult, config));
+		assertEquals(1L, resultCache.getHitCount());
+
+		// Reloaded configurations
+		assertNull(resultCache.getValues(cachedResult, new Configurations()));
+		assertEquals(1L, resultCache.getStaleCount());
+		assertEquals(1L, resultCache.getHitCount());
+		assertEquals(1L, resultCache.getMissCount());
+	}
+
+	/**
+	 * Tests if nothing is returned for other documents or other document types
+	 */
+	@Test
+	public void otherDocumentTest() {
+		ResultCache resultCache = new ResultCache(10, 0);
+		resultCache.put(Constants.DOC_TYPE_JSON, DOCUMENT, "hwh", new Configurations(), values("Howrah"));
+
+		assertNull(resultCache.get(Constants.DOC_TYPE_JSON, DOCUMENT.replace("Howrah", "Haora")));
+		assertNull(resultCache.get(Constants.DOC_TYPE_XML, DOCUMENT));
+		assertEquals(0L, resultCache.getHitCount());
+		assertEquals(2L, resultCache.getMissCount());
+		assertEquals(0L, resultCache.getCollisionCount());
+	}
+
+	/**
+	 * Tests if results are evicted when the cache is full
+	 */
+	@Test
+	public void maximumSizeTest() {
+		ResultCache resultCache = new ResultCache(10, 300);
+		Configurations config = new Configurations();
+		for (int index = 0; index < 100; index++) {
+			resultCache.put(Constants.DOC_TYPE_JSON, DOCUMENT + index, "hwh", config, values("Howrah"));
+		}
+		assertTrue(resultCache.getSize() <= 10);
+		assertTrue(resultCache.getEvictionCount() >= 90);
+	}
+
+	/**
+	 * Tests if all the characters of the document change the hash, in full
+	 * blocks of four characters and in the remaining ones
+	 */
+	@Test
+	public void hashTest() {
+		String document = "<station><id>sdh</id></station>!";
+		long hash = ResultCache.hash(Constants.DOC_TYPE_XML, document);
+		assertEquals(hash, ResultCache.hash(Constants.DOC_TYPE_XML, new String(document)));
+		assertNotEquals(hash, ResultCache.hash(Constants.DOC_TYPE_JSON, document));
+		for (int index = 0; index < document.length(); index++) {
+			char[] characters = document.toCharArray();
+			characters[index]++;
+			assertNotEquals(hash, ResultCache.hash(Constants.DOC_TYPE_XML, new String(characters)));
+		}
+		assertNotEquals(ResultCache.hash(Constants.DOC_TYPE_XML, "ab"), ResultCache.hash(Constants.DOC_TYPE_XML, "ba"));
+	}
+
+	/**
+	 * Tests if the cached values are a copy, so that the extracting thread can
+	 * reuse its buffer
+	 */
+	@Test
+	public void copiedValuesTest() throws ConfigurationException {
+		ResultCache resultCache = new ResultCache(10, 0);
+		Configurations config = config("$.name=>name\n$.alias=>alias");
+		String[] buffer = { "Howrah", "Sealdah" };
+		resultCache.put(Constants.DOC_TYPE_JSON, DOCUMENT, "hwh", config, buffer);
+		buffer[0] = "Haora";
+		assertArrayEquals(new String[] { "Howrah", "Sealdah" },
+				resultCache.getValues(resultCache.get(Constants.DOC_TYPE_JSON, DOCUMENT), config));
+	}
+
+	private static Configurations config(String configurations) throws ConfigurationException {
+		Configurations config = new Configurations();
+		config.load(new StringReader(configurations));
+		return config;
+	}
+
+	private static String[] values(String name) {
+		return new String[] { name };
+	}
+}
@@ -0,0 +1,94 @@
+package edu.soumya.logstash.filter.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class ConfigurationsBundleTest {
+
+	@Rule
+	public TemporaryFolder bundleFolder = new TemporaryFolder();
+
+	@Test
+	public void testBundleFromConfigFolder() throws IOException, ConfigurationException, URISyntaxException {
+		String configFolderPath = Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/configs/xml").toURI())
+				.toString();
+		String bundleFilePath = this.bundleFolder.newFile("xml.bundle").getAbsolutePath();
+		assertEquals(1, ConfigurationsBundle.build(configFolderPath, bundleFilePath));
+
+		ConfigurationsBundle bundle = ConfigurationsBundle.open(bundleFilePath);
+		assertEquals(1, bundle.size());
+		Configurations expectedConfigs = Configurations
+				.loadConfigFromFile(Paths.get(configFolderPath, "sdh.conf").toString());
+		Configurations configs = bundle.getConfigurations("sdh", Constants.DOC_TYPE_XML);
+		assertTrue(configs.getConfigFilePresentFlag());
+		assertEquals(new ArrayList<>(expectedConfigs.getAllConfigurationKeys()),
+				new ArrayList<>(configs.getAllConfigurationKeys()));
+		for (String key : expectedConfigs.getAllConfigurationKeys()) {
+			assertEquals(expectedConfigs.getValue(key), configs.getValue(key));
+		}
+		assertEquals(Constants.DOC_TYPE_XML, configs.getDocumentType());
+		assertFalse(bundle.getConfigurations("kgp").getConfigFilePresentFlag());
+	}
+
+	@Test
+	public void testLookupOfManyDocumentIds() throws IOException, ConfigurationException {
+		Map<String, Configurations> configsById = new LinkedHashMap<>();
+		for (int count = 0; count < 5000; count++) {
+			Configurations configs = new Configurations();
+			configs.load(new StringReader("$.station.name => name\n$.station.code => code" + count));
+			configsById.put("station" + count, configs);
+		}
+		// Empty configurations are kept, the document id is known but not mapped
+		configsById.put("empty", new Configurations());
+		configsById.put("हावड़ा", configsById.get("station0"));
+		File bundleFile = this.bundleFolder.newFile("json.bundle");
+		try (OutputStream output = Files.newOutputStream(bundleFile.toPath())) {
+			ConfigurationsBundle.write(configsById, output);
+		}
+
+		ConfigurationsBundle bundle = ConfigurationsBundle.open(bundleFile.getAbsolutePath());
+		assertEquals(configsById.size(), bundle.size());
+		for (int count = 0; count < 5000; count++) {
+			Configurations configs = bundle.getConfigurations("station" + count);
+			assertEquals("name", configs.getValue("$.station.name"));
+			assertEquals("code" + count, configs.getValue("$.station.code"));
+			assertFalse(bundle.getConfigurations("station" + count + "x").getConfigFilePresentFlag());
+		}
+		Configurations emptyConfigs = bundle.getConfigurations("empty");
+		assertTrue(emptyConfigs.getConfigFilePresentFlag());
+		assertTrue(emptyConfigs.isEmptyConfigSet());
+		assertEquals("code0",
+				bundle.getConfigurations("हावड़ा").getValue("$.station.code"));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testNotABundle() throws ConfigurationException, URISyntaxException {
+		ConfigurationsBundle.open(Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/filter/configs/xml/sdh.conf").toURI())
+				.toString());
+	}
+}
@@ -2,16 +2,24 @@ package edu.soumya.logstash.filter.config;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
 import java.net.URISyntaxException;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
+import org.w3c.dom.Document;
 
+import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.spi.IndexXPathEngine;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+import edu.soumya.logstash.filter.util.XmlParserPool;
 
 /**
  * @author Soumya Banerjee
@@ -53,6 +61,73 @@ public class ConfigurationsTest {
 		}
 	}
 	
+	@Test
+	public void estimateSizeTest() throws ConfigurationException {
+		Configurations emptyConfigs = new Configurations();
+		Configurations smallConfigs = new Configurations();
+		smallConfigs.load(new StringReader("/stations/station/name => name"));
+		Configurations largeConfigs = new Configurations();
+		largeConfigs.load(new StringReader("/stations/station/name => name\n/stations/station/code => code"));
+		assertTrue(emptyConfigs.estimateSize() < smallConfigs.estimateSize());
+		assertTrue(smallConfigs.estimateSize() < largeConfigs.estimateSize());
+
+		// Compiled expressions are counted too
+		long uncompiledSize = largeConfigs.estimateSize();
+		largeConfigs.compile(Constants.DOC_TYPE_XML);
+		assertTrue(uncompiledSize < largeConfigs.estimateSize());
+	}
+
+	/**
+	 * The xpaths compiled for another engine make the configurations heavier than
+	 * when they were weighed, another thread reuses the pooled xpaths
+	 */
+	@Test
+	public void estimateWeightTest() throws ConfigurationException, InterruptedException {
+		Configurations configs = new Configurations();
+		configs.load(new StringReader("/stations/station/name => name"));
+		configs.compile(Constants.DOC_TYPE_XML);
+		long weight = configs.estimateWeight();
+		assertFalse(configs.hasGrownSinceWeighed());
+
+		Document document = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), "<stations/>");
+		AtomicReference<String> value = new AtomicReference<>();
+		Thread worker = new Thread(() -> {
+			try {
+				value.set(configs.getCompiledXPaths().evaluate(document, 0));
+			} catch (ConfigurationException configEx) {
+				configEx.printStackTrace();
+			}
+		});
+		worker.start();
+		worker.join();
+		assertEquals("", value.get());
+		assertFalse(configs.hasGrownSinceWeighed());
+
+		configs.getCompiledXPaths(new IndexXPathEngine(new XmlParserPool(0)));
+		assertTrue(configs.hasGrownSinceWeighed());
+		assertTrue(weight < configs.estimateWeight());
+		assertFalse(configs.hasGrownSinceWeighed());
+	}
+	
+	@Test
+	public void sharedKeysAndValuesTest() throws ConfigurationException {
+		Configurations configs1 = new Configurations();
+		configs1.load(new StringReader("/stations/station/name => name\n/stations/station/code => code"));
+		Configurations configs2 = new Configurations();
+		configs2.load(new StringReader("/stations/station/code => code\n/stations/station/zone => zone"));
+		assertEquals(2, configs1.size());
+		assertEquals("/stations/station/code", configs1.getKey(1));
+		assertEquals("code", configs1.getValue(1));
+		// Same paths and destination fields of different configurations are the same strings
+		assertSame(configs1.getKey(1), configs2.getKey(0));
+		assertSame(configs1.getValue(1), configs2.getValue(0));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void duplicateKeyTest() throws ConfigurationException {
+		new Configurations().load(new StringReader("/stations/station/name => name\n/stations/station/name => code"));
+	}
+	
 	private void validateConfigKeySet(Configurations configs) {
 		Map<String,String> expectedKeyValueMap = new HashMap<>();
 		expectedKeyValueMap.put("/bookstore/book/title","title");
@@ -0,0 +1,46 @@
+package edu.soumya.logstash.filter.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmptyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0L, histogram.getCount());
+		assertEquals(0L, histogram.getPercentileMicros(99));
+		assertEquals(0L, histogram.getMaxMicros());
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		// 98 durations of 100 microseconds, 2 of 10 milliseconds
+		for (int count = 0; count < 98; count++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+		assertEquals(100L, histogram.getCount());
+		assertEquals(98 * 100L + 2 * 10000L, histogram.getTotalMicros());
+		assertEquals(10000L, histogram.getMaxMicros());
+		// Upper bounds of the buckets, 100 is less than 128 and 10000 less than 16384
+		assertEquals(128L, histogram.getPercentileMicros(50));
+		assertEquals(16384L, histogram.getPercentileMicros(99));
+	}
+
+	@Test
+	public void testVeryLongDuration() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(TimeUnit.MINUTES.toNanos(5));
+		assertEquals(TimeUnit.MINUTES.toMicros(5), histogram.getPercentileMicros(50));
+	}
+}
@@ -0,0 +1,152 @@
+package edu.soumya.logstash.filter.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import co.elastic.logstash.api.CounterMetric;
+import co.elastic.logstash.api.Metric;
+import co.elastic.logstash.api.NamespacedMetric;
+import edu.soumya.logstash.filter.cache.ConfigurationsCache;
+import edu.soumya.logstash.filter.constants.Constants;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class MetricsReporterTest {
+
+	@Test
+	public void testPublishToPluginMetrics() {
+		FilterMetrics metrics = new FilterMetrics(new ConfigurationsCache());
+		metrics.countDroppedNoConfig(3);
+		metrics.countFailure(FilterMetrics.FAILURE_MISSING_ID);
+		metrics.countMapped(Constants.DOC_TYPE_XML, "sdh.v2", 2);
+		metrics.recordParseTime(Constants.DOC_TYPE_JSON, 1000L);
+		Map<String, Object> gauges = new ConcurrentHashMap<>();
+		try (MetricsReporter reporter = new MetricsReporter(metrics, new RecordingMetric("", gauges))) {
+			reporter.run();
+		}
+		assertEquals(3L, gauges.get("events/dropped_no_config"));
+		assertEquals(1L, gauges.get("failures/missing_id"));
+		assertEquals(0L, gauges.get("failures/parse"));
+		assertEquals(2L, gauges.get("xml/mapped_documents/sdh.v2"));
+		assertEquals(1L, gauges.get("json/parse_time/count"));
+		assertEquals(0L, gauges.get("cache/hits"));
+	}
+
+	/**
+	 * Only the most mapped document ids should be published, the MBean view has
+	 * all of them
+	 */
+	@Test
+	public void testPublishMostMappedIds() {
+		FilterMetrics metrics = new FilterMetrics(new ConfigurationsCache());
+		int idCount = (int) MetricsReporter.REPORTED_MAPPED_IDS + 5;
+		for (int count = 1; count <= idCount; count++) {
+			metrics.countMapped(count % 2 == 0 ? Constants.DOC_TYPE_XML : Constants.DOC_TYPE_JSON, "id" + count,
+					count);
+		}
+		Map<String, Object> gauges = new ConcurrentHashMap<>();
+		try (MetricsReporter reporter = new MetricsReporter(metrics, new RecordingMetric("", gauges))) {
+			reporter.run();
+		}
+		long publishedIds = gauges.keySet().stream().filter(name -> name.contains("/mapped_documents/")).count();
+		assertEquals(MetricsReporter.REPORTED_MAPPED_IDS, publishedIds);
+		assertEquals((long) idCount, gauges.get("json/mapped_documents/id" + idCount));
+		assertFalse(gauges.containsKey("json/mapped_documents/id1"));
+
+		Map<String, Map<String, Long>> values = metrics.getValues();
+		assertEquals(idCount, values.get("xml.mapped_documents").size() + values.get("json.mapped_documents").size());
+	}
+
+	@Test
+	public void testJmxFallback() throws Exception {
+		FilterMetrics metrics = new FilterMetrics(new ConfigurationsCache());
+		metrics.countDroppedNoConfig(5);
+		ObjectName objectName;
+		try (MetricsReporter reporter = new MetricsReporter(metrics, null)) {
+			reporter.start("reporter-test", 10);
+			objectName = reporter.getObjectName();
+			assertNotNull(objectName);
+			assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+			assertNotNull(ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Values"));
+		}
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName));
+	}
+
+	/**
+	 * Records the gauges by their full names, namespaces separated by /
+	 */
+	private static class RecordingMetric implements NamespacedMetric {
+
+		private final String prefix;
+
+		private final Map<String, Object> gauges;
+
+		private RecordingMetric(String prefix, Map<String, Object> gauges) {
+			this.prefix = prefix;
+			this.gauges = gauges;
+		}
+
+		@Override
+		public NamespacedMetric namespace(String... key) {
+			return new RecordingMetric(this.prefix + String.join("/", key) + "/", this.gauges);
+		}
+
+		@Override
+		public void gauge(String key, Object value) {
+			this.gauges.put(this.prefix + key, value);
+		}
+
+		@Override
+		public CounterMetric counter(String metric) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void increment(String key) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void increment(String key, int delta) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <T> T time(String key, Supplier<T> callable) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void reportTime(String key, long duration) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void decrement(String key) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void decrement(String key, int delta) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Metric root() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class AdaptivePathOrderTest {
+
+	/**
+	 * Paths should be tried in the order they were supplied, until they match
+	 */
+	@Test
+	public void initialOrderTest() {
+		AdaptivePathOrder pathOrder = new AdaptivePathOrder(3);
+		assertArrayEquals(new int[] { 0, 1, 2 }, pathOrder.getOrder());
+		for (int count = 1; count < AdaptivePathOrder.REORDER_INTERVAL; count++) {
+			pathOrder.countMatch(2);
+		}
+		assertArrayEquals(new int[] { 0, 1, 2 }, pathOrder.getOrder());
+	}
+
+	/**
+	 * Paths matching most often should be tried first, the others keep their
+	 * order
+	 */
+	@Test
+	public void reorderTest() {
+		AdaptivePathOrder pathOrder = new AdaptivePathOrder(4);
+		for (int count = 0; count < AdaptivePathOrder.REORDER_INTERVAL; count++) {
+			pathOrder.countMatch(count % 4 == 0 ? 1 : 3);
+		}
+		assertArrayEquals(new int[] { 3, 1, 0, 2 }, pathOrder.getOrder());
+		// Older matches weigh half
+		assertEquals(AdaptivePathOrder.REORDER_INTERVAL * 3 / 8, pathOrder.getMatchCount(3));
+	}
+
+	/**
+	 * The order should follow the recent matches when the documents change
+	 */
+	@Test
+	public void followRecentMatchesTest() {
+		AdaptivePathOrder pathOrder = new AdaptivePathOrder(2);
+		for (int count = 0; count < AdaptivePathOrder.REORDER_INTERVAL; count++) {
+			pathOrder.countMatch(1);
+		}
+		assertArrayEquals(new int[] { 1, 0 }, pathOrder.getOrder());
+		for (int count = 0; count < AdaptivePathOrder.REORDER_INTERVAL; count++) {
+			pathOrder.countMatch(0);
+		}
+		assertArrayEquals(new int[] { 0, 1 }, pathOrder.getOrder());
+	}
+}
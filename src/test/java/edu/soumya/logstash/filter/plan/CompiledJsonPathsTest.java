@@ -0,0 +1,61 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import com.jayway.jsonpath.DocumentContext;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.JsonParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class CompiledJsonPathsTest {
+
+	@Test(expected = ConfigurationException.class)
+	public void invalidJsonPathTest() throws ConfigurationException {
+		new CompiledJsonPaths(new String[] { "$.stations[0].station.id", "$.stations[0" });
+	}
+
+	@Test
+	public void compiledJsonPathExpressionTest() throws ConfigurationException, URISyntaxException {
+		CompiledJsonPaths compiledJsonPaths = new CompiledJsonPaths(new String[] { "$.stations[0].station.id",
+				"$.stations[0].station.trainsToday", "$.stations[0].station.platforms" });
+		String filePath = Paths
+				.get(this.getClass().getClassLoader().getResource("test-files/jsonUtil/stations.json").toURI())
+				.toString();
+		DocumentContext docContext = JsonParseUtil.getDocumentContext(getContentFromFile(filePath));
+		assertEquals(3, compiledJsonPaths.size());
+		assertEquals("$.stations[0].station.trainsToday", compiledJsonPaths.getExpression(1));
+		assertEquals("hwh", compiledJsonPaths.evaluate(docContext, 0));
+		assertEquals("30", compiledJsonPaths.evaluate(docContext, 1));
+		// Missing path evaluates to empty string
+		assertEquals(StringUtils.EMPTY, compiledJsonPaths.evaluate(docContext, 2));
+	}
+
+	private String getContentFromFile(String filePath) {
+		try (Reader reader = new FileReader(filePath)) {
+			BufferedReader buffReader = new BufferedReader(reader, 32768);
+			StringBuilder fileContent = new StringBuilder();
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				fileContent.append(line);
+			}
+			return fileContent.toString();
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,124 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class CompiledXPathsTest {
+
+	@Test(expected = ConfigurationException.class)
+	public void invalidXPathTest() throws ConfigurationException {
+		new CompiledXPaths(new String[] { "/class/student/firstname", "/class/[" });
+	}
+
+	@Test
+	public void compiledXPathExpressionTest() throws Exception {
+		CompiledXPaths compiledXPaths = new CompiledXPaths(
+				new String[] { "/class/student/firstname", "/class/student/marks", "/class/student/@rollno" });
+		Document doc = getDocument("test-files/xmlUtil/test1.xml");
+		assertEquals(3, compiledXPaths.size());
+		assertEquals("/class/student/marks", compiledXPaths.getExpression(1));
+		assertEquals("Soumya", compiledXPaths.evaluate(doc, 0));
+		assertEquals("85", compiledXPaths.evaluate(doc, 1));
+		assertEquals("393", compiledXPaths.evaluate(doc, 2));
+	}
+
+	/**
+	 * Evaluates the same compiled instance from multiple threads, each thread
+	 * should get the same values
+	 */
+	@Test
+	public void multiThreadedEvaluationTest() throws Exception {
+		CompiledXPaths compiledXPaths = new CompiledXPaths(
+				new String[] { "/planes_for_sale/ad/model", "/planes_for_sale/ad/location/state" });
+		String xmlContent = getContentFromFile(getResourcePath("test-files/xmlUtil/test2.xml"));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int count = 0; count < 32; count++) {
+				results.add(executor.submit(() -> {
+					Document doc = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), xmlContent);
+					return compiledXPaths.evaluate(doc, 0) + "|" + compiledXPaths.evaluate(doc, 1);
+				}));
+			}
+			for (Future<String> result : results) {
+				assertEquals("Skyhawk|South Dakota", result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(compiledXPaths.getCopyCount() <= Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Evaluations one after another, on different threads, should reuse the
+	 * copy compiled by the constructor
+	 */
+	@Test
+	public void pooledCopyTest() throws Exception {
+		CompiledXPaths compiledXPaths = new CompiledXPaths(
+				new String[] { "/planes_for_sale/ad/model", "/planes_for_sale/ad/location/state" });
+		Document doc = getDocument("test-files/xmlUtil/test2.xml");
+		for (int count = 0; count < 4; count++) {
+			String[] values = new String[2];
+			Thread worker = new Thread(() -> {
+				try {
+					compiledXPaths.evaluateAll(doc, values);
+				} catch (ConfigurationException configEx) {
+					configEx.printStackTrace();
+				}
+			});
+			worker.start();
+			worker.join();
+			assertArrayEquals(new String[] { "Skyhawk", "South Dakota" }, values);
+		}
+		assertEquals("Skyhawk", compiledXPaths.evaluate(doc, 0));
+		assertEquals(1, compiledXPaths.getCopyCount());
+	}
+
+	private Document getDocument(String resource) throws ConfigurationException, URISyntaxException {
+		return XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(),
+				getContentFromFile(getResourcePath(resource)));
+	}
+
+	private String getResourcePath(String resource) throws URISyntaxException {
+		return Paths.get(this.getClass().getClassLoader().getResource(resource).toURI()).toString();
+	}
+
+	private String getContentFromFile(String filePath) {
+		try (Reader reader = new FileReader(filePath)) {
+			BufferedReader buffReader = new BufferedReader(reader, 32768);
+			StringBuilder fileContent = new StringBuilder();
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				fileContent.append(line);
+			}
+			return fileContent.toString();
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,69 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import co.elastic.logstash.api.Event;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class ExtractionPlanTest {
+
+	private static final String[] DESTINATION_FIELDS = { "name", "platforms", "code", "platforms", "platforms" };
+
+	/**
+	 * Destination fields should be resolved once, in the order of their first
+	 * configuration
+	 */
+	@Test
+	public void destinationSlotsTest() {
+		ExtractionPlan plan = new ExtractionPlan(DESTINATION_FIELDS);
+		assertEquals(5, plan.size());
+		assertEquals(3, plan.getDestinationCount());
+		assertEquals("name", plan.getDestination(0));
+		assertEquals("platforms", plan.getDestination(1));
+		assertEquals("code", plan.getDestination(2));
+		assertEquals(1, plan.getSourceCount(0));
+		assertEquals(3, plan.getSourceCount(1));
+	}
+
+	/**
+	 * A destination of one configuration should get its value, a destination of
+	 * many configurations the list of their values
+	 */
+	@Test
+	public void writeTest() {
+		ExtractionPlan plan = new ExtractionPlan(DESTINATION_FIELDS);
+		Event event = new org.logstash.Event();
+		plan.write(event, new String[] { "Howrah", "1", "HWH", null, "3" });
+		assertEquals("Howrah", event.getField("name"));
+		assertEquals("HWH", event.getField("code"));
+		assertEquals(Arrays.asList("1", null, "3"), event.getField("platforms"));
+
+		// The list buffer is reused, the event keeps its own list
+		Event nextEvent = new org.logstash.Event();
+		plan.write(nextEvent, new String[] { "Sealdah", "9", "SDH", "10", "11" });
+		assertEquals(Arrays.asList("1", null, "3"), event.getField("platforms"));
+		assertEquals(Arrays.asList("9", "10", "11"), nextEvent.getField("platforms"));
+		assertNull(nextEvent.getField("station"));
+	}
+
+	/**
+	 * The values buffer should be shared by the plans of a thread, grown to the
+	 * largest of them
+	 */
+	@Test
+	public void valuesBufferTest() {
+		String[] largeBuffer = new ExtractionPlan(DESTINATION_FIELDS).getValuesBuffer();
+		assertTrue(largeBuffer.length >= DESTINATION_FIELDS.length);
+		assertSame(largeBuffer, new ExtractionPlan(new String[] { "name" }).getValuesBuffer());
+	}
+}
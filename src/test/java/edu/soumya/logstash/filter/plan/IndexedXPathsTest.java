@@ -0,0 +1,62 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class IndexedXPathsTest {
+
+	private static final String STATIONS_XML = "<stations>\n"
+			+ "  <station code=\"HWH\"><name>Howrah</name><platform number=\"1\"/><platform number=\"2\"/></station>\n"
+			+ "  <station code=\"SDH\"><name>Sealdah</name><platform number=\"9\"/></station>\n"
+			+ "  <region><station code=\"KGP\"><name> Kharagpur </name></station></region>\n"
+			+ "</stations>";
+
+	private static final String[] INDEXABLE_XPATHS = { "/stations/station/name", "/stations/station[2]/@code",
+			"//station[1]/name", "//platform[2]/@number", "/stations/*[3]//name", "//name/text()", "/stations/station[3]",
+			"/stations/region/station/@code", "//@number", "/stations" };
+
+	@Test
+	public void indexableSubsetTest() {
+		IndexedXPaths indexedXPaths = new IndexedXPaths(INDEXABLE_XPATHS);
+		for (int index = 0; index < INDEXABLE_XPATHS.length; index++) {
+			assertTrue(INDEXABLE_XPATHS[index], indexedXPaths.isIndexable(index));
+		}
+		String[] otherXPaths = { "stations/station", "/", "//", "/stations//", "/stations///station",
+				"/stations/station[0]", "/stations/station[last()]", "/stations/station[@code='HWH']",
+				"/stations/@code/name", "/stations/text()/name", "/ns:stations", "count(//station)",
+				"/stations/station | /stations/region", "/stations/station/..", "/stations/node()" };
+		IndexedXPaths otherIndexedXPaths = new IndexedXPaths(otherXPaths);
+		for (int index = 0; index < otherXPaths.length; index++) {
+			assertFalse(otherXPaths[index], otherIndexedXPaths.isIndexable(index));
+		}
+	}
+
+	/**
+	 * Every indexed value should be the same as on the DOM
+	 */
+	@Test
+	public void sameAsDomEvaluationTest() throws ConfigurationException {
+		Document doc = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), STATIONS_XML);
+		CompiledXPaths compiledXPaths = new CompiledXPaths(INDEXABLE_XPATHS);
+		IndexedXPaths indexedXPaths = new IndexedXPaths(INDEXABLE_XPATHS);
+		XmlElementIndex elementIndex = XmlElementIndex.build(STATIONS_XML);
+		String[] expectedValues = { "Howrah", "SDH", "Howrah", "2", "Kharagpur", "Howrah", "", "KGP", "1",
+				"Howrah\n  Sealdah\n   Kharagpur" };
+		for (int index = 0; index < INDEXABLE_XPATHS.length; index++) {
+			String indexedValue = indexedXPaths.evaluate(elementIndex, index);
+			assertEquals(INDEXABLE_XPATHS[index], compiledXPaths.evaluate(doc, index), indexedValue);
+			assertEquals(INDEXABLE_XPATHS[index], expectedValues[index], indexedValue);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.jayway.jsonpath.DocumentContext;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.JsonParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class JsonIdentifierScannerTest {
+
+	private static final String DOCUMENT_JSON = "{ \"meta\" : {\"note\":\"a } or ] in \\\"text\\\"\","
+			+ " \"tags\":[{},[1,2]]},\n"
+			+ "\t\"header\": {\"docType\": \"station\", \"seq\": 42, \"neg\": -7, \"live\": true,"
+			+ " \"name\": \"Howrah \\u0026 \\\"Junction\\\"\"},"
+			+ " \"stations\": [\"hwh\", {\"id\": \"sdh\"}, {\"id\": 3}]}";
+
+	private static final String[] SCANNABLE_JSONPATHS = { "$.header.docType", "$.header.seq", "$.header.neg",
+			"$.header.live", "$.header.name", "$['stations'][0]", "$.stations[1].id", "$[\"stations\"][2]['id']" };
+
+	@Test
+	public void scannableSubsetTest() {
+		assertTrue(new JsonIdentifierScanner(SCANNABLE_JSONPATHS).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "$.header.docType", "$..docType" }).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "$.stations[*].id" }).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "$.stations[-1].id" }).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "$.stations[?(@.id == 'hwh')]" }).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "$.stations.length()" }).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "$" }).isScannable());
+		assertFalse(new JsonIdentifierScanner(new String[] { "header.docType" }).isScannable());
+		assertArrayEquals(new String[] { null, "station" },
+				new JsonIdentifierScanner(new String[] { "$..docType", "$.header.docType" }).scan(DOCUMENT_JSON));
+	}
+
+	/**
+	 * Every scanned value should be the same as on the parsed document
+	 */
+	@Test
+	public void sameAsDocumentContextEvaluationTest() throws ConfigurationException {
+		DocumentContext docContext = JsonParseUtil.getDocumentContext(DOCUMENT_JSON);
+		CompiledJsonPaths compiledJsonPaths = new CompiledJsonPaths(SCANNABLE_JSONPATHS);
+		String[] scannedValues = new JsonIdentifierScanner(SCANNABLE_JSONPATHS).scan(DOCUMENT_JSON);
+		assertArrayEquals(new String[] { "station", "42", "-7", "true", "Howrah & \"Junction\"", "hwh", "sdh", "3" },
+				scannedValues);
+		for (int index = 0; index < SCANNABLE_JSONPATHS.length; index++) {
+			assertEquals(SCANNABLE_JSONPATHS[index], compiledJsonPaths.evaluate(docContext, index),
+					scannedValues[index]);
+		}
+		assertArrayEquals(new String[] { "escaped key" }, new JsonIdentifierScanner(new String[] { "$.header.name" })
+				.scan("{\"header\":{\"na\\u006De\":\"escaped key\"}}"));
+	}
+
+	/**
+	 * The scan should stop at the array element, the malformed end of the
+	 * document is never read. Objects are read to their end, where a property
+	 * could be repeated.
+	 */
+	@Test
+	public void earlyTerminationTest() {
+		assertArrayEquals(new String[] { "hwh" }, new JsonIdentifierScanner(new String[] { "$[0].id" })
+				.scan("[{\"id\":\"hwh\"},{\"trains\":[{\"no\":"));
+		assertArrayEquals(new String[] { null }, new JsonIdentifierScanner(new String[] { "$.station.id" })
+				.scan("{\"station\":{\"id\":\"hwh\",\"trains\":[{\"no\":"));
+	}
+
+	/**
+	 * Both json providers keep the last of the repeated properties of an object
+	 */
+	@Test
+	public void duplicatePropertyTest() throws ConfigurationException {
+		String[] jsonPaths = { "$.id", "$.station.id", "$.station.name", "$.stations[0].id", "$.stations[0].name" };
+		String[] jsons = { "{\"id\":\"hwh\",\"id\":\"sdh\"}",
+				"{\"station\":{\"id\":\"hwh\",\"name\":\"Howrah\"},\"id\":1,\"station\":{\"name\":\"Sealdah\"}}",
+				"{\"station\":{\"id\":\"hwh\",\"id\":{\"code\":\"sdh\"},\"id\":\"kol\"}}",
+				"{\"stations\":[{\"id\":\"hwh\",\"id\":\"sdh\"},{\"id\":\"kol\"}],\"stations\":[{\"name\":\"Howrah\"}]}" };
+		CompiledJsonPaths compiledJsonPaths = new CompiledJsonPaths(jsonPaths);
+		JsonIdentifierScanner scanner = new JsonIdentifierScanner(jsonPaths);
+		for (String json : jsons) {
+			String[] scannedValues = scanner.scan(json);
+			for (String jsonProvider : new String[] { Constants.JSON_PROVIDER_SMART, Constants.JSON_PROVIDER_JACKSON }) {
+				DocumentContext docContext = JsonParseUtil.getParseContext(jsonProvider).parse(json);
+				for (int index = 0; index < jsonPaths.length; index++) {
+					assertEquals(jsonProvider + " " + json + " " + jsonPaths[index],
+							compiledJsonPaths.evaluate(docContext, index), scannedValues[index]);
+				}
+			}
+		}
+		assertArrayEquals(new String[] { "", "kol", "", "", "" }, scanner.scan(jsons[2]));
+	}
+
+	/**
+	 * A property which is not found is known once its object ends, without
+	 * asking the parser
+	 */
+	@Test
+	public void missingPropertyTest() throws ConfigurationException {
+		String[] jsonPaths = { "$.header.id", "$.header.name", "$.station.id", "$.header.codes[1]" };
+		String[] jsons = { "{\"header\":{\"name\":\"Howrah\"}}", "{\"header\":{}}",
+				"{\"header\":{\"codes\":[\"hwh\",\"sdh\"],\"id\":\"hwh\"},\"station\":{\"code\":\"hwh\"}}" };
+		CompiledJsonPaths compiledJsonPaths = new CompiledJsonPaths(jsonPaths);
+		JsonIdentifierScanner scanner = new JsonIdentifierScanner(jsonPaths);
+		for (String json : jsons) {
+			DocumentContext docContext = JsonParseUtil.getDocumentContext(json);
+			String[] scannedValues = scanner.scan(json);
+			for (int index = 0; index < jsonPaths.length; index++) {
+				assertEquals(json + " " + jsonPaths[index], compiledJsonPaths.evaluate(docContext, index),
+						scannedValues[index]);
+			}
+		}
+		assertArrayEquals(new String[] { "", "Howrah", "", "" },
+				scanner.scan("{\"header\":{\"name\":\"Howrah\"}}"));
+	}
+
+	/**
+	 * Values which the text alone can not tell are left to the parser
+	 */
+	@Test
+	public void ambiguousDocumentTest() {
+		JsonIdentifierScanner scanner = new JsonIdentifierScanner(new String[] { "$.header.id" });
+		assertNull(scanner.scan("{\"header\":{\"id\":1.50}}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":1E3}}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":007}}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":-0}}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":null}}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":{\"value\":\"hwh\"}}}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":[\"hwh\"]}}", 0));
+		assertNull(scanner.scan("{'header':{'id':'hwh'}}", 0));
+		assertNull(scanner.scan("{\"header\":[{\"id\":\"hwh\"}]}", 0));
+		assertNull(scanner.scan("{\"header\":{\"id\":\"hwh", 0));
+		assertNull(scanner.scan("[]", 0));
+		assertNull(scanner.scan("", 0));
+	}
+}
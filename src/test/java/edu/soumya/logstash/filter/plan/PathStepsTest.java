@@ -0,0 +1,61 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class PathStepsTest {
+
+	@Test
+	public void nameTest() {
+		assertTrue(PathSteps.isName("station"));
+		assertTrue(PathSteps.isName("_train-no.2"));
+		assertFalse(PathSteps.isName(""));
+		assertFalse(PathSteps.isName("2station"));
+		assertFalse(PathSteps.isName("ns:station"));
+		assertFalse(PathSteps.isName("station[1]"));
+
+		assertEquals("station", PathSteps.localName("ns:station"));
+		assertEquals("station", PathSteps.localName("station"));
+		String xml = "<ns:station><station>";
+		assertTrue(PathSteps.localNameEquals(xml, 1, 11, "station"));
+		assertTrue(PathSteps.localNameEquals(xml, 13, 20, "station"));
+		assertFalse(PathSteps.localNameEquals(xml, 13, 20, "stations"));
+		assertFalse(PathSteps.localNameEquals(xml, 1, 11, "ns:station"));
+	}
+
+	@Test
+	public void positionTest() {
+		assertEquals(2, PathSteps.parsePosition("2"));
+		assertEquals(123456789, PathSteps.parsePosition("123456789"));
+		assertEquals(0, PathSteps.parsePosition("1234567890"));
+		assertEquals(0, PathSteps.parsePosition("0"));
+		assertEquals(0, PathSteps.parsePosition("02"));
+		assertEquals(0, PathSteps.parsePosition(""));
+		assertEquals(0, PathSteps.parsePosition("last()"));
+		assertEquals(0, PathSteps.parsePosition("@id='hwh'"));
+	}
+
+	@Test
+	public void jsonPathTest() {
+		assertArrayEquals(new Object[] { "stations", 0, "station", "name" },
+				PathSteps.compileJsonPath("$.stations[0].station.name"));
+		assertArrayEquals(new Object[] { "stations", 0, "station", "name" },
+				PathSteps.compileJsonPath(" $['stations'][0][\"station\"]['name'] "));
+		assertNull(PathSteps.compileJsonPath("$"));
+		assertNull(PathSteps.compileJsonPath("stations"));
+		assertNull(PathSteps.compileJsonPath("$..id"));
+		assertNull(PathSteps.compileJsonPath("$.stations[*]"));
+		assertNull(PathSteps.compileJsonPath("$.stations[-1]"));
+		assertNull(PathSteps.compileJsonPath("$.stations.length()"));
+		assertNull(PathSteps.compileJsonPath("$['a\\'b']"));
+	}
+}
@@ -0,0 +1,177 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+import com.jayway.jsonpath.DocumentContext;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.JsonParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class StreamingJsonPathsTest {
+
+	private static final String STATIONS_JSON = "{\"region\":\"east\",\"count\":3,\"stations\":["
+			+ "{\"station\":{\"id\":\"hwh\",\"name\":\"Howrah \\\"Junction\\\"\",\"trainsToday\":30,"
+			+ "\"platforms\":[1,2,3],\"electrified\":true,\"closed\":null,\"lat\":22.5839,\"fare\":1.50,"
+			+ "\"revenue\":12345678901,\"tiny\":1E-7,\"precise\":0.1234567890123456789}},"
+			+ "{\"station\":{\"id\":\"sdh\",\"name\":\"Sealdah\",\"trainsToday\":50}}],"
+			+ "\"meta\":{\"source\":\"feed\"}}";
+
+	private static final String[] SUPPORTED_JSONPATHS = { "$.region", "$.count", "$.stations[0].station.id",
+			"$.stations[0].station.name", "$.stations[1].station.trainsToday", "$['stations'][1]['station']['id']",
+			"$.stations[0].station.platforms[2]", "$.stations[0].station.electrified", "$.stations[0].station.closed",
+			"$.stations[0].station.lat", "$.stations[0].station.fare", "$.stations[0].station.revenue",
+			"$.stations[0].station.tiny", "$.stations[0].station.precise", "$.stations[5].station.id",
+			"$.stations[0].station.missing", "$.stations.station", "$.region[0]", "$.region.name",
+			"$.stations[0].station.closed.value", "$.meta.source", "$[\"meta\"].source" };
+
+	@Test
+	public void supportedSubsetTest() {
+		assertTrue(new StreamingJsonPaths(SUPPORTED_JSONPATHS).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$.region", "$..id" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$.stations[*].station.id" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$.stations[-1].station.id" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$.stations[0:1]" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$.stations[?(@.station.id == 'hwh')]" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$.stations.length()" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$['region','count']" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "$" }).isStreamable());
+		assertFalse(new StreamingJsonPaths(new String[] { "region" }).isStreamable());
+	}
+
+	/**
+	 * Every supported expression should evaluate to the same value as on the
+	 * parsed document
+	 */
+	@Test
+	public void sameAsDocumentContextEvaluationTest() throws Exception {
+		assertSameAsDocumentContext(STATIONS_JSON, SUPPORTED_JSONPATHS);
+		assertSameAsDocumentContext(getContentFromFile(getResourcePath("test-files/jsonUtil/test1.json")),
+				new String[] { "$.student.firstname", "$.student.@rollno", "$.student.marks", "$.student.age" });
+		assertSameAsDocumentContext(getContentFromFile(getResourcePath("test-files/jsonUtil/test2.json")),
+				new String[] { "$.ad.year", "$.ad.location.city", "$.ad.location.state", "$.ad.price" });
+		assertSameAsDocumentContext("[{\"a\":1},{\"a\":-0}]", new String[] { "$[1].a", "$[0].a", "$[2].a" });
+	}
+
+	@Test
+	public void streamingEvaluationTest() {
+		String[] values = new StreamingJsonPaths(SUPPORTED_JSONPATHS).evaluate(STATIONS_JSON);
+		assertNotNull(values);
+		assertEquals("east", values[0]);
+		assertEquals("Howrah \"Junction\"", values[3]);
+		assertEquals("50", values[4]);
+		assertEquals("3", values[6]);
+		assertEquals("true", values[7]);
+		assertEquals("null", values[8]);
+		assertEquals("1.5", values[10]);
+		assertEquals("", values[14]);
+		assertEquals("feed", values[21]);
+	}
+
+	/**
+	 * Objects, arrays and documents which are not strict json can not be streamed
+	 */
+	@Test
+	public void notStreamableValueTest() {
+		assertNull(new StreamingJsonPaths(new String[] { "$.meta" }).evaluate(STATIONS_JSON));
+		assertNull(new StreamingJsonPaths(new String[] { "$.stations[0].station.platforms" }).evaluate(STATIONS_JSON));
+		assertNull(new StreamingJsonPaths(new String[] { "$.region" }).evaluate("{'region':'east'}"));
+		assertNull(new StreamingJsonPaths(new String[] { "$..region" }).evaluate(STATIONS_JSON));
+	}
+
+	/**
+	 * Reading of a root array should stop once all the expressions are found, the
+	 * malformed end of the document is never read. Objects are read to their end,
+	 * where a property could be repeated.
+	 */
+	@Test
+	public void earlyTerminationTest() {
+		String truncatedJson = "[{\"id\":\"hwh\",\"name\":\"Howrah\"},{\"trains\":[{\"no\":";
+		String[] values = new StreamingJsonPaths(new String[] { "$[0].id", "$[0].name", "$[0].code" })
+				.evaluate(truncatedJson);
+		assertArrayEquals(new String[] { "hwh", "Howrah", "" }, values);
+		assertNull(new StreamingJsonPaths(new String[] { "$.station.id" })
+				.evaluate("{\"station\":{\"id\":\"hwh\"},\"trains\":[{\"no\":"));
+	}
+
+	/**
+	 * Both json providers keep the last of the repeated properties of an object
+	 */
+	@Test
+	public void duplicatePropertyTest() throws ConfigurationException {
+		String[] jsonPaths = { "$.id", "$.station.id", "$.station.name", "$.stations[0].id", "$.stations[1].id" };
+		String[] jsons = { "{\"id\":\"hwh\",\"id\":\"sdh\"}",
+				"{\"station\":{\"id\":\"hwh\",\"name\":\"Howrah\"},\"id\":1,\"station\":{\"name\":\"Sealdah\"}}",
+				"{\"station\":{\"id\":\"hwh\",\"name\":\"Howrah\",\"id\":\"kol\"}}",
+				"{\"stations\":[{\"id\":\"hwh\",\"id\":\"sdh\"},{\"id\":\"kol\"}],\"stations\":[{\"name\":\"Howrah\"}]}",
+				"[{\"id\":\"hwh\"}]" };
+		for (String json : jsons) {
+			assertSameAsParsed(json, jsonPaths, Constants.JSON_PROVIDER_SMART);
+			assertSameAsParsed(json, jsonPaths, Constants.JSON_PROVIDER_JACKSON);
+		}
+		assertArrayEquals(new String[] { "", "kol", "Howrah", "", "" },
+				new StreamingJsonPaths(jsonPaths).evaluate(jsons[2]));
+		// An object on the way is not streamable, even if a scalar replaces it later
+		assertNull(new StreamingJsonPaths(jsonPaths)
+				.evaluate("{\"station\":{\"id\":{\"code\":\"sdh\"},\"id\":\"kol\"}}"));
+	}
+
+	private void assertSameAsParsed(String json, String[] jsonPaths, String jsonProvider)
+			throws ConfigurationException {
+		DocumentContext docContext = JsonParseUtil.getParseContext(jsonProvider).parse(json);
+		CompiledJsonPaths compiledJsonPaths = new CompiledJsonPaths(jsonPaths);
+		String[] streamedValues = new StreamingJsonPaths(jsonPaths).evaluate(json);
+		assertNotNull(json, streamedValues);
+		for (int index = 0; index < jsonPaths.length; index++) {
+			assertEquals(jsonProvider + " " + json + " " + jsonPaths[index],
+					compiledJsonPaths.evaluate(docContext, index), streamedValues[index]);
+		}
+	}
+
+	private void assertSameAsDocumentContext(String json, String[] jsonPaths) throws ConfigurationException {
+		DocumentContext docContext = JsonParseUtil.getDocumentContext(json);
+		CompiledJsonPaths compiledJsonPaths = new CompiledJsonPaths(jsonPaths);
+		String[] streamedValues = new StreamingJsonPaths(jsonPaths).evaluate(json);
+		assertNotNull(streamedValues);
+		for (int index = 0; index < jsonPaths.length; index++) {
+			assertEquals(jsonPaths[index], compiledJsonPaths.evaluate(docContext, index), streamedValues[index]);
+		}
+	}
+
+	private String getResourcePath(String resource) throws URISyntaxException {
+		return Paths.get(this.getClass().getClassLoader().getResource(resource).toURI()).toString();
+	}
+
+	private String getContentFromFile(String filePath) {
+		try (Reader reader = new FileReader(filePath)) {
+			BufferedReader buffReader = new BufferedReader(reader, 32768);
+			StringBuilder fileContent = new StringBuilder();
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				fileContent.append(line);
+			}
+			return fileContent.toString();
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,138 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class StreamingXPathsTest {
+
+	private static final String STATIONS_XML = "<?xml version=\"1.0\"?>"
+			+ "<stations region=\"east\">"
+			+ "<!-- first station -->"
+			+ "<station type=\"terminal\" code=\"HWH\"><id>hwh</id><name> Howrah <![CDATA[Junction]]> </name>"
+			+ "<trains><train>12301</train><train>12305</train></trains></station>"
+			+ "<station type=\"junction\"><id>sdh</id><name>Sealdah &amp; Suburban</name>"
+			+ "<trains><train>12313</train></trains></station>"
+			+ "<station type=\"halt\" code=\"BLY\"><id>bly</id><name>Bally</name></station>"
+			+ "</stations>";
+
+	private static final String[] SUPPORTED_XPATHS = { "/stations/station/id", "/stations/station[2]/id",
+			"/stations/station[@type='junction']/name", "/stations/station[@type=\"halt\"]/@code",
+			"/stations/station/@code", "/stations/@region", "/stations/station/trains", "/stations/station/name",
+			"/stations/station[3]/trains/train", "/stations/station[4]/id", "/stations/missing",
+			"/stations/station/trains/train[2]", "/stations" };
+
+	@Test
+	public void supportedSubsetTest() {
+		assertTrue(new StreamingXPaths(SUPPORTED_XPATHS).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "/stations/station/id", "//id" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "stations/station/id" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "/stations/station[id='hwh']/name" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "/stations/*/id" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "/stations/station[@type='halt'][1]/id" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "count(/stations/station)" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "/stations/station/id/text()" }).isStreamable());
+		assertFalse(new StreamingXPaths(new String[] { "/ns:stations/ns:station" }).isStreamable());
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void notStreamableEvaluationTest() throws ConfigurationException {
+		new StreamingXPaths(new String[] { "//id" }).evaluate(STATIONS_XML);
+	}
+
+	/**
+	 * Every supported expression should evaluate to the same value as on a DOM
+	 */
+	@Test
+	public void sameAsDomEvaluationTest() throws Exception {
+		assertSameAsDom(STATIONS_XML, SUPPORTED_XPATHS);
+		assertSameAsDom(getContentFromFile(getResourcePath("test-files/xmlUtil/test1.xml")),
+				new String[] { "/class/student/firstname", "/class/student/@rollno", "/class/student/marks",
+						"/class/student" });
+		assertSameAsDom(getContentFromFile(getResourcePath("test-files/xmlUtil/test2.xml")),
+				new String[] { "/planes_for_sale/ad/description", "/planes_for_sale/ad/seller/@phone",
+						"/planes_for_sale/ad/location/city", "/planes_for_sale/ad/location" });
+	}
+
+	@Test
+	public void streamingEvaluationTest() throws ConfigurationException {
+		String[] values = new StreamingXPaths(SUPPORTED_XPATHS).evaluate(STATIONS_XML);
+		assertEquals("hwh", values[0]);
+		assertEquals("sdh", values[1]);
+		assertEquals("Sealdah & Suburban", values[2]);
+		assertEquals("BLY", values[3]);
+		assertEquals("HWH", values[4]);
+		assertEquals("east", values[5]);
+		assertEquals("Howrah Junction", values[7]);
+		assertEquals("", values[9]);
+		assertEquals("12305", values[11]);
+	}
+
+	/**
+	 * Reading should stop once all the expressions are found, the malformed end of
+	 * the document is never read
+	 */
+	@Test
+	public void earlyTerminationTest() throws ConfigurationException {
+		String truncatedXml = "<stations><station><id>hwh</id><name>Howrah</name></station><station><id>";
+		String[] values = new StreamingXPaths(new String[] { "/stations/station/id", "/stations/station/name" })
+				.evaluate(truncatedXml);
+		assertArrayEquals(new String[] { "hwh", "Howrah" }, values);
+		// The rest of the document is not checked once the values are found
+		StreamingXPaths streamingXPaths = new StreamingXPaths(new String[] { "/r/a" });
+		assertArrayEquals(new String[] { "v" }, streamingXPaths.evaluate("<r><a>v</a><b>"));
+		assertArrayEquals(new String[] { "v" }, streamingXPaths.evaluate("<r><a>v</a></r>junk"));
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void malformedDocumentTest() throws ConfigurationException {
+		new StreamingXPaths(new String[] { "/stations/station/code" })
+				.evaluate("<stations><station><id>hwh</id></station>");
+	}
+
+	private void assertSameAsDom(String xml, String[] xPaths) throws ConfigurationException {
+		Document doc = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), xml);
+		CompiledXPaths compiledXPaths = new CompiledXPaths(xPaths);
+		String[] streamedValues = new StreamingXPaths(xPaths).evaluate(xml);
+		for (int index = 0; index < xPaths.length; index++) {
+			assertEquals(xPaths[index], compiledXPaths.evaluate(doc, index), streamedValues[index]);
+		}
+	}
+
+	private String getResourcePath(String resource) throws URISyntaxException {
+		return Paths.get(this.getClass().getClassLoader().getResource(resource).toURI()).toString();
+	}
+
+	private String getContentFromFile(String filePath) {
+		try (Reader reader = new FileReader(filePath)) {
+			BufferedReader buffReader = new BufferedReader(reader, 32768);
+			StringBuilder fileContent = new StringBuilder();
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				fileContent.append(line);
+			}
+			return fileContent.toString();
+		} catch (IOException ioe) {
+			ioe.printStackTrace();
+		}
+		return null;
+	}
+}
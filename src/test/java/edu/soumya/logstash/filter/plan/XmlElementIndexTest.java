@@ -0,0 +1,74 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class XmlElementIndexTest {
+
+	private static final String STATIONS_XML = "<?xml version=\"1.0\"?>\n"
+			+ "<ns:stations xmlns:ns=\"urn:stations\" zone=\"ER\">\n"
+			+ "  <station code=\"HWH\" name=\" Howrah\tJunction \">first <b>bold</b><![CDATA[ <cdata> ]]>last</station>\n"
+			+ "  <station code='SDH'/>\n"
+			+ "  <!-- <station code=\"KGP\"/> -->\n"
+			+ "</ns:stations>";
+
+	@Test
+	public void structureTest() throws ConfigurationException {
+		XmlElementIndex index = XmlElementIndex.build(STATIONS_XML);
+		assertEquals(4, index.size());
+		assertEquals(0, index.getFirstChild(XmlElementIndex.DOCUMENT));
+		assertEquals(XmlElementIndex.DOCUMENT, index.getParent(0));
+		assertEquals(1, index.getFirstChild(0));
+		assertEquals(2, index.getFirstChild(1));
+		assertEquals(3, index.getNextSibling(1));
+		assertEquals(XmlElementIndex.DOCUMENT, index.getNextSibling(3));
+		assertEquals(XmlElementIndex.DOCUMENT, index.getFirstChild(3));
+		assertEquals(1, index.getParent(2));
+		assertEquals(0, index.getParent(3));
+		assertEquals(4, index.getSubtreeEnd(XmlElementIndex.DOCUMENT));
+		assertEquals(3, index.getSubtreeEnd(1));
+		assertTrue(index.hasLocalName(0, "stations"));
+		assertTrue(index.hasLocalName(2, "b"));
+	}
+
+	@Test
+	public void valuesTest() throws ConfigurationException {
+		XmlElementIndex index = XmlElementIndex.build(STATIONS_XML);
+		assertEquals("ER", index.getAttribute(0, "zone"));
+		assertNull(index.getAttribute(0, "ns"));
+		assertEquals(" Howrah Junction ", index.getAttribute(1, "name"));
+		assertEquals("SDH", index.getAttribute(3, "code"));
+		assertNull(index.getAttribute(3, "name"));
+		assertEquals("first bold <cdata> last", index.getStringValue(1));
+		assertEquals("first ", index.getFirstText(1));
+		assertEquals("", index.getStringValue(3));
+		assertNull(index.getFirstText(3));
+	}
+
+	@Test
+	public void doctypeTest() throws ConfigurationException {
+		assertNull(XmlElementIndex.build("<!DOCTYPE station [<!ENTITY hwh \"Howrah\">]><station>&hwh;</station>"));
+	}
+
+	@Test
+	public void notWellFormedTest() {
+		try {
+			XmlElementIndex.build("<stations><station></stations>");
+			fail("End tag does not match");
+		} catch (ConfigurationException e) {
+			assertTrue(e instanceof DocumentException);
+			assertEquals("Failed to Parse the xml document. Not well-formed at offset 19.", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package edu.soumya.logstash.filter.plan;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class XmlIdentifierScannerTest {
+
+	private static final String ENVELOPE_XML = "<?xml version=\"1.0\"?>\n"
+			+ "<!-- feed of the eastern region -->\n"
+			+ "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">\n"
+			+ "  <soap:Header source=\"feed\">\n"
+			+ "    <Trace value=\"a > b\"/>\n"
+			+ "    <DocId kind='station'>  hwh  </DocId>\n"
+			+ "    <Empty/>\n"
+			+ "  </soap:Header>\n"
+			+ "  <soap:Body><DocId>body</DocId><![CDATA[<DocId>cdata</DocId>]]></soap:Body>\n"
+			+ "</soap:Envelope>";
+
+	private static final String[] SCANNABLE_XPATHS = { "/Envelope/Header/DocId", "/Envelope/Header/@source",
+			"/Envelope/Header/DocId/@kind", "/Envelope/Header/Empty", "/Envelope/Body/DocId",
+			"/Envelope/Header/Trace/@value" };
+
+	@Test
+	public void scannableSubsetTest() {
+		assertTrue(new XmlIdentifierScanner(SCANNABLE_XPATHS).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "/Envelope/Header/DocId", "//DocId" }).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "/Envelope/Header[1]/DocId" }).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "/soap:Envelope/Header/DocId" }).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "/Envelope/*/DocId" }).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "/Envelope/Header/DocId/text()" }).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "Envelope/Header/DocId" }).isScannable());
+		assertFalse(new XmlIdentifierScanner(new String[] { "/" }).isScannable());
+		assertArrayEquals(new String[] { null, "hwh" },
+				new XmlIdentifierScanner(new String[] { "//DocId", "/Envelope/Header/DocId" }).scan(ENVELOPE_XML));
+	}
+
+	/**
+	 * Every scanned value should be the same as on the DOM
+	 */
+	@Test
+	public void sameAsDomEvaluationTest() throws ConfigurationException {
+		Document doc = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), ENVELOPE_XML);
+		CompiledXPaths compiledXPaths = new CompiledXPaths(SCANNABLE_XPATHS);
+		String[] scannedValues = new XmlIdentifierScanner(SCANNABLE_XPATHS).scan(ENVELOPE_XML);
+		assertArrayEquals(new String[] { "hwh", "feed", "station", "", "body", "a > b" }, scannedValues);
+		for (int index = 0; index < SCANNABLE_XPATHS.length; index++) {
+			assertEquals(SCANNABLE_XPATHS[index], compiledXPaths.evaluate(doc, index), scannedValues[index]);
+		}
+	}
+
+	/**
+	 * The first element matching the path gives the value, even if it has no
+	 * text, while the attribute is taken from the first element having it
+	 */
+	@Test
+	public void firstMatchTest() {
+		String xml = "<stations><station><id/></station><station code=\"SDH\"><id>sdh</id></station></stations>";
+		assertArrayEquals(new String[] { "", "SDH" },
+				new XmlIdentifierScanner(new String[] { "/stations/station/id", "/stations/station/@code" })
+						.scan(xml));
+	}
+
+	/**
+	 * The scan should stop at the match, the malformed end of the document is
+	 * never read
+	 */
+	@Test
+	public void earlyTerminationTest() {
+		assertArrayEquals(new String[] { "hwh" }, new XmlIdentifierScanner(new String[] { "/station/id" })
+				.scan("<station><id>hwh</id><name>Howrah</station"));
+	}
+
+	/**
+	 * A path without match is known once the root element ends, without asking
+	 * the parser
+	 */
+	@Test
+	public void missingPathTest() throws ConfigurationException {
+		String[] xpaths = { "/station/id", "/station/@code", "/station/name", "/platform/id" };
+		String[] xmls = { "<station><name>Howrah</name></station>", "<platform><id>1</id></platform>",
+				"<station code=\"HWH\"/>", "<station><code>HWH</code><id/></station>" };
+		CompiledXPaths compiledXPaths = new CompiledXPaths(xpaths);
+		XmlIdentifierScanner scanner = new XmlIdentifierScanner(xpaths);
+		for (String xml : xmls) {
+			Document doc = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), xml);
+			String[] scannedValues = scanner.scan(xml);
+			for (int index = 0; index < xpaths.length; index++) {
+				assertEquals(xml + " " + xpaths[index], compiledXPaths.evaluate(doc, index), scannedValues[index]);
+			}
+		}
+		assertArrayEquals(new String[] { "", "", "Howrah", "" },
+				scanner.scan("<station><name>Howrah</name></station>"));
+	}
+
+	/**
+	 * Values which the text alone can not tell are left to the parser
+	 */
+	@Test
+	public void ambiguousDocumentTest() {
+		XmlIdentifierScanner scanner = new XmlIdentifierScanner(new String[] { "/station/id" });
+		assertNull(scanner.scan("<station><id>h&amp;h</id></station>", 0));
+		assertNull(scanner.scan("<station><id><code>hwh</code></id></station>", 0));
+		assertNull(scanner.scan("<station><id>hwh<!-- id --></id></station>", 0));
+		assertNull(scanner.scan("<station><id><![CDATA[hwh]]></id></station>", 0));
+		assertNull(scanner.scan("<!DOCTYPE station [<!ENTITY id \"hwh\">]><station><id>&id;</id></station>", 0));
+		assertNull(scanner.scan("<station><id>hwh", 0));
+		assertNull(scanner.scan("", 0));
+		assertNull(new XmlIdentifierScanner(new String[] { "/station/@code" })
+				.scan("<station code=\"H&#87;H\"></station>", 0));
+	}
+}
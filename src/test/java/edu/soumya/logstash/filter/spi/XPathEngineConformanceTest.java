@@ -0,0 +1,302 @@
+package edu.soumya.logstash.filter.spi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.soumya.logstash.filter.constants.Constants;
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.util.XmlParseUtil;
+import edu.soumya.logstash.filter.util.XmlParserPool;
+
+/**
+ * Runs every xpath engine on the same documents and expressions, expecting the
+ * same values as the default engine gives
+ *
+ * @author Soumya Banerjee
+ *
+ */
+public class XPathEngineConformanceTest {
+
+	private static final String[] ENGINES = { Constants.XPATH_ENGINE_JDK, Constants.XPATH_ENGINE_INDEX };
+
+	private static final String ENVELOPE_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"
+			+ "<!-- feed of the eastern region -->\n"
+			+ "<?feed-source eastern?>\n"
+			+ "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns=\"urn:stations\">\n"
+			+ "  <soap:Header source=\"feed\" xmlns:ns=\"urn:ns\" ns:priority = 'high'>\n"
+			+ "    <Trace value=\"a &gt; b &amp; c\" note=\"line one\tline&#10;two\r\nthree\"/>\n"
+			+ "    <DocId kind='station'>  hwh  </DocId>\n"
+			+ "    <Empty/><Blank></Blank>\n"
+			+ "  </soap:Header>\n"
+			+ "  <soap:Body>\n"
+			+ "    <station code=\"HWH\"><name>Howrah &amp; Sealdah</name>"
+			+ "<note>first<!-- skipped --> second<?mark?> third</note></station>\n"
+			+ "    <station code=\"KGP\"><name><![CDATA[<Kharagpur>]]> Junction</name>"
+			+ "<note>before<b>bold</b>after</note></station>\n"
+			+ "    <station><name>&#2489;&#x9BE;&#x993;&#x9DC;&#x9BE; &lt;&apos;&quot;&gt;</name>"
+			+ "<note>line\r\nend</note></station>\n"
+			+ "    <station code=\"\"><name/><note><![CDATA[only cdata]]></note></station>\n"
+			+ "  </soap:Body>\n"
+			+ "</soap:Envelope>\n"
+			+ "<!-- end of feed -->";
+
+	private static final String[] ENVELOPE_XPATHS = { "/Envelope/Header/DocId", "/Envelope/Header/@source",
+			"/Envelope/Header/@priority", "/Envelope/@xmlns", "/Envelope/Header/DocId/@kind",
+			"/Envelope/Header/Trace/@value", "/Envelope/Header/Trace/@note", "/Envelope/Header/Empty",
+			"/Envelope/Header/Blank", "/Envelope/Header", "/Envelope/Body/station/name", "/Envelope/Body/station[2]/name",
+			"/Envelope/Body/station[3]/name", "/Envelope/Body/station[4]/name", "/Envelope/Body/station[4]/@code",
+			"/Envelope/Body/station/note", "/Envelope/Body/station[2]/note", "/Envelope/Body/station[3]/note",
+			"/Envelope/Body/station[1]/note/text()", "/Envelope/Body/station[2]/note/text()",
+			"/Envelope/Body/station[2]/name/text()", "/Envelope/Body/station[4]/note/text()",
+			"/Envelope/Body/station[4]/name/text()", "/Envelope/Body/text()", "//station/@code", "//station[3]/@code",
+			"//name", "//note/b", "//b/text()", "//@kind", "//*[2]/name", "/Envelope/*[2]/*[3]/@code", "/*/*/*",
+			"/Envelope/Body/station[5]/name", "/Envelope/Missing", "/Missing/Header", "//Missing/@code",
+			// Outside the subset of the index engine
+			"count(//station)", "//station[@code='KGP']/name", "/Envelope/Body/station[last()]/name",
+			"string(//DocId/@kind)", "normalize-space(/Envelope/Body/station[1]/note)", "//station/name | //DocId",
+			"/Envelope/Body/station[position() > 1]/name", "../Envelope", "Envelope/Header/DocId",
+			"/Envelope/Body/station/node()", "//comment()", "//processing-instruction()" };
+
+	private static final String DOCTYPE_XML = "<?xml version=\"1.0\"?>\n"
+			+ "<!DOCTYPE stations [<!ENTITY region \"eastern\"><!ATTLIST station zone CDATA \"ER\">]>\n"
+			+ "<stations><station code=\"HWH\"><name>Howrah, &region;</name></station></stations>";
+
+	private static final String[] MALFORMED_XMLS = { "", "   ", "plain text", "<station>", "<station></stations>",
+			"<stations><station></stations></station>", "<station/><station/>", "text<station/>",
+			"<station/>text", "<station code=\"HWH\" code=\"KGP\"/>", "<station code=HWH/>", "<station code=\"HWH/>",
+			"<station>&region;</station>", "<station>&#0;</station>", "<station>&#xD800;</station>",
+			"<station>a & b</station>", "<station code=\"a < b\"/>", "<station>]]></station>",
+			"<![CDATA[text]]><station/>", "<station><!-- unclosed </station>", "<station><?xml version=\"1.0\"?></station>",
+			"<station/><?xml version=\"1.0\"?>", "<1station/>", "<station code=\"HWH\"name=\"Howrah\"/>",
+			"<station></ station>" };
+
+	@Test
+	public void xmlParseUtilTestFilesTest() throws ConfigurationException, URISyntaxException {
+		Map<String, String> test1Values = new LinkedHashMap<>();
+		test1Values.put("/class/student/firstname", "Soumya");
+		test1Values.put("/class/student/lastname", "Banerjee");
+		test1Values.put("/class/student/nickname", "Bittu");
+		test1Values.put("/class/student/marks", "85");
+		Map<String, String> test2Values = new LinkedHashMap<>();
+		test2Values.put("/planes_for_sale/ad/year", "1977");
+		test2Values.put("/planes_for_sale/ad/make", "Soumya");
+		test2Values.put("/planes_for_sale/ad/model", "Skyhawk");
+		test2Values.put("/planes_for_sale/ad/color", "Light blue and white");
+		test2Values.put("/planes_for_sale/ad/description",
+				"New paint, nearly new interior," + "			685 hours SMOH, full IFR King avionics");
+		test2Values.put("/planes_for_sale/ad/price", "23,495");
+		test2Values.put("/planes_for_sale/ad/seller", "Skyway Aircraft");
+		test2Values.put("/planes_for_sale/ad/location/city", "Rapid City,");
+		test2Values.put("/planes_for_sale/ad/location/state", "South Dakota");
+		for (String engineName : ENGINES) {
+			XPathEngine engine = createEngine(engineName);
+			assertValues(engine, getContentFromResource("test-files/xmlUtil/test1.xml"), test1Values);
+			assertValues(engine, getContentFromResource("test-files/xmlUtil/test2.xml"), test2Values);
+		}
+	}
+
+	@Test
+	public void envelopeTest() throws ConfigurationException {
+		assertSameAsJdk(ENVELOPE_XML, ENVELOPE_XPATHS);
+		Map<String, String> expectedValues = new LinkedHashMap<>();
+		expectedValues.put("/Envelope/Header/DocId", "hwh");
+		expectedValues.put("/Envelope/Header/Trace/@value", "a > b & c");
+		expectedValues.put("/Envelope/Body/station[2]/name", "<Kharagpur> Junction");
+		expectedValues.put("/Envelope/Body/station[3]/name", "\u09B9\u09BE\u0993\u09DC\u09BE <'\">");
+		expectedValues.put("//station[3]/@code", "");
+		expectedValues.put("//note/b", "bold");
+		expectedValues.put("count(//station)", "4");
+		expectedValues.put("//station[@code='KGP']/name", "<Kharagpur> Junction");
+		for (String engineName : ENGINES) {
+			assertValues(createEngine(engineName), ENVELOPE_XML, expectedValues);
+		}
+	}
+
+	/**
+	 * Entities and default attributes of a DOCTYPE are only known to the parser
+	 */
+	@Test
+	public void doctypeTest() throws ConfigurationException {
+		Map<String, String> expectedValues = new LinkedHashMap<>();
+		expectedValues.put("/stations/station/name", "Howrah, eastern");
+		expectedValues.put("/stations/station/@zone", "ER");
+		expectedValues.put("//station/@code", "HWH");
+		for (String engineName : ENGINES) {
+			assertValues(createEngine(engineName), DOCTYPE_XML, expectedValues);
+		}
+	}
+
+	@Test
+	public void stationsCorpusTest() throws ConfigurationException {
+		StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>\n<railway>\n<stations zone=\"ER\">\n");
+		for (int station = 1; station <= 400; station++) {
+			xml.append("  <station code=\"S").append(station).append("\">\n    <name>Station ").append(station)
+					.append("</name>\n    <platforms>");
+			for (int platform = 1; platform <= station % 7; platform++) {
+				xml.append("<platform number=\"").append(platform).append("\" length=\" ").append(platform * 100)
+						.append(" m \">");
+				if (platform % 3 == 0) {
+					xml.append("<name>P").append(platform).append(" of ").append(station).append("</name>");
+				}
+				xml.append("</platform>");
+			}
+			xml.append("</platforms>\n  </station>\n");
+		}
+		xml.append("</stations>\n<name>Eastern Railway</name>\n</railway>");
+		String[] xpaths = { "/railway/stations/@zone", "/railway/stations/station/name",
+				"/railway/stations/station[1]/@code", "/railway/stations/station[250]/name",
+				"/railway/stations/station[400]/platforms/platform[5]/@number", "/railway/stations/station[401]/name",
+				"/railway/stations/station/platforms/platform/@number", "/railway/stations/station/platforms/platform/name",
+				"//platform[3]/name", "//platform[6]/@length", "//station[300]//platform[2]/@number", "//name",
+				"/railway/name", "//stations/name", "/railway//name", "//platforms/platform[4]/name",
+				"/railway/stations/station[7]/platforms", "//station[6]/platforms/*[6]/@number", "//*[399]/@code",
+				"//station/platforms/platform[7]", "/railway/stations/station[123]/platforms/platform/name/text()",
+				"count(//platform)", "//platform[@number='6']/name", "//station[last()]/@code" };
+		assertSameAsJdk(xml.toString(), xpaths);
+		Map<String, String> expectedValues = new LinkedHashMap<>();
+		expectedValues.put("/railway/stations/station[250]/name", "Station 250");
+		expectedValues.put("//platform[6]/@length", "600 m");
+		expectedValues.put("//station[300]//platform[2]/@number", "2");
+		expectedValues.put("//stations/name", "");
+		expectedValues.put("/railway/name", "Eastern Railway");
+		for (String engineName : ENGINES) {
+			assertValues(createEngine(engineName), xml.toString(), expectedValues);
+		}
+	}
+
+	@Test
+	public void deepNestingTest() throws ConfigurationException {
+		int depth = 300;
+		StringBuilder xml = new StringBuilder();
+		// Steps of an xpath are limited by the secure processing of the JDK
+		StringBuilder deepPath = new StringBuilder();
+		for (int level = 0; level < depth; level++) {
+			xml.append("<level depth=\"").append(level).append("\">").append(level % 50 == 0 ? "text " + level : "");
+			if (level < 40) {
+				deepPath.append("/level");
+			}
+		}
+		xml.append("<leaf>deepest</leaf>");
+		for (int level = 0; level < depth; level++) {
+			xml.append("</level>");
+		}
+		String[] xpaths = { deepPath + "/@depth", deepPath + "/level/level", deepPath + "//leaf", "//leaf",
+				"//level[1]/@depth", "//level/text()", "//level[1]/level[1]/text()", "/level/level/level/@depth",
+				"/level/text()", "/level/level/text()", "/level", "//leaf/../@depth" };
+		assertSameAsJdk(xml.toString(), xpaths);
+		Map<String, String> expectedValues = new LinkedHashMap<>();
+		expectedValues.put(deepPath + "//leaf", "deepest");
+		expectedValues.put(deepPath + "/@depth", "39");
+		expectedValues.put("//level[1]/@depth", "0");
+		expectedValues.put("//level/text()", "text 0");
+		for (String engineName : ENGINES) {
+			assertValues(createEngine(engineName), xml.toString(), expectedValues);
+		}
+	}
+
+	/**
+	 * The first text node in document order may be a child of a later element
+	 * than the first one having text
+	 */
+	@Test
+	public void textDocumentOrderTest() throws ConfigurationException {
+		String xml = "<a><b>x</b>y<c><d><![CDATA[z]]></d>w</c></a>";
+		String[] xpaths = { "//text()", "/a//text()", "/a/text()", "//c//text()", "//c/text()", "/*//*/text()" };
+		assertSameAsJdk(xml, xpaths);
+		Map<String, String> expectedValues = new LinkedHashMap<>();
+		expectedValues.put("//text()", "x");
+		expectedValues.put("/a//text()", "x");
+		expectedValues.put("/a/text()", "y");
+		expectedValues.put("//c//text()", "z");
+		expectedValues.put("//c/text()", "w");
+		for (String engineName : ENGINES) {
+			assertValues(createEngine(engineName), xml, expectedValues);
+		}
+	}
+
+	@Test
+	public void malformedDocumentTest() throws ConfigurationException {
+		for (String engineName : ENGINES) {
+			XPathEngine engine = createEngine(engineName);
+			for (String malformedXml : MALFORMED_XMLS) {
+				try {
+					engine.parse(malformedXml);
+					fail(engineName + " should fail to parse: " + malformedXml);
+				} catch (ConfigurationException e) {
+					assertTrue(e.getMessage(), e.getMessage().startsWith("Failed to Parse the xml document."));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void unsupportedEngineTest() {
+		try {
+			createEngine("vtd");
+			fail("vtd is not a shipped engine");
+		} catch (ConfigurationException e) {
+			assertEquals("Unsupported xpathEngine: vtd. Supported values are: jdk, index", e.getMessage());
+		}
+	}
+
+	/**
+	 * Every engine should give the values of the default engine
+	 */
+	private static void assertSameAsJdk(String xml, String[] xpaths) throws ConfigurationException {
+		XPathEngine jdkEngine = createEngine(Constants.XPATH_ENGINE_JDK);
+		XPathEngine.Expressions jdkExpressions = jdkEngine.compile(xpaths);
+		Object jdkDocument = jdkEngine.parse(xml);
+		for (String engineName : ENGINES) {
+			XPathEngine engine = createEngine(engineName);
+			XPathEngine.Expressions expressions = engine.compile(xpaths);
+			assertEquals(xpaths.length, expressions.size());
+			Object document = engine.parse(xml);
+			for (int index = 0; index < xpaths.length; index++) {
+				assertEquals(xpaths[index], expressions.getExpression(index));
+				assertEquals(engineName + " " + xpaths[index], jdkExpressions.evaluate(jdkDocument, index),
+						expressions.evaluate(document, index));
+			}
+		}
+	}
+
+	private static void assertValues(XPathEngine engine, String xml, Map<String, String> expectedValues)
+			throws ConfigurationException {
+		String[] xpaths = expectedValues.keySet().toArray(new String[0]);
+		XPathEngine.Expressions expressions = engine.compile(xpaths);
+		Object document = engine.parse(xml);
+		for (int index = 0; index < xpaths.length; index++) {
+			assertEquals(xpaths[index], expectedValues.get(xpaths[index]), expressions.evaluate(document, index));
+		}
+	}
+
+	private static XPathEngine createEngine(String engineName) throws ConfigurationException {
+		return XmlParseUtil.getXPathEngine(engineName, new XmlParserPool(1));
+	}
+
+	private String getContentFromResource(String resource) throws URISyntaxException {
+		String filePath = Paths.get(this.getClass().getClassLoader().getResource(resource).toURI()).toString();
+		try (Reader reader = new FileReader(filePath)) {
+			BufferedReader buffReader = new BufferedReader(reader, 32768);
+			StringBuilder fileContent = new StringBuilder();
+			String line;
+			while ((line = buffReader.readLine()) != null) {
+				fileContent.append(line);
+			}
+			return fileContent.toString();
+		} catch (IOException ioe) {
+			throw new IllegalStateException(ioe);
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package edu.soumya.logstash.filter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.Test;
+
+import edu.soumya.logstash.filter.exceptions.DocumentException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class FailureLoggerTest {
+
+	@Test
+	public void testFailuresLoggedOncePerInterval() {
+		FailureLogger failureLogger = new FailureLogger(LogManager.getLogger(FailureLoggerTest.class), 3600);
+		assertTrue(failureLogger.log("parse", "Bad document.", null));
+		assertFalse(failureLogger.log("parse", "Bad document.", null));
+		assertFalse(failureLogger.log("parse", "Bad document.", null));
+		// Every reason has its own interval
+		assertTrue(failureLogger.log("missing_id", "Could not find the document Id.", null));
+	}
+
+	@Test
+	public void testEveryFailureLoggedWithoutInterval() {
+		FailureLogger failureLogger = new FailureLogger(LogManager.getLogger(FailureLoggerTest.class), 0);
+		assertTrue(failureLogger.log("parse", "Bad document.", null));
+		assertTrue(failureLogger.log("parse", "Bad document.", new DocumentException("Bad document.")));
+	}
+
+	@Test
+	public void testDocumentExceptionIsStackless() {
+		DocumentException documentException = new DocumentException("Bad document.", new IllegalStateException());
+		assertEquals(0, documentException.getStackTrace().length);
+		assertEquals("Bad document.", documentException.getMessage());
+	}
+}
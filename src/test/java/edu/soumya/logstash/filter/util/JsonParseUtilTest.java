@@ -1,6 +1,8 @@
 package edu.soumya.logstash.filter.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
@@ -12,9 +14,15 @@ import java.util.HashMap;
 
 import org.junit.Test;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 
+import edu.soumya.logstash.filter.constants.Constants;
 import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+import edu.soumya.logstash.filter.spi.JsonBackend;
 
 /**
  * @author Soumya Banerjee
@@ -48,6 +56,75 @@ public class JsonParseUtilTest {
 		}
 	}
 	
+	/**
+	 * Every json provider should give the same values, also for objects and
+	 * arrays
+	 */
+	@Test
+	public void sameValuesForEveryProviderTest() throws ConfigurationException {
+		String jsonString = "{\"station\":{\"id\":\"hwh\",\"name\":\"Howrah \\u0026 \\\"Junction\\\"\","
+				+ "\"platforms\":[1,\"2A\",3.50,null,{\"no\":9}],\"trains\":12345678901234,"
+				+ "\"distance\":123456789012345678901234567890,\"live\":true,\"code\":null,"
+				+ "\"address\":{\"city\":\"Howrah\",\"pin\":\"711101\"},\"note\":\"\\/a\\nb\","
+				+ "\"gauge\":1.2345678901234567890,\"span\":[1.5,12.345678901234567]}}";
+		String[] jsonPaths = { "$.station.id", "$.station.name", "$.station.platforms", "$.station.platforms[2]",
+				"$.station.platforms[3]", "$.station.trains", "$.station.distance", "$.station.live", "$.station.code",
+				"$.station.address", "$.station.note", "$..city", "$.station.platforms[*]", "$.station.platforms[4]",
+				"$.station.platforms.length()", "$.station.missing", "$.station.gauge", "$.station.span",
+				"$.station.span[1]" };
+		DocumentContext smartContext = JsonParseUtil.getParseContext(Constants.JSON_PROVIDER_SMART).parse(jsonString);
+		DocumentContext jacksonContext = JsonParseUtil.getParseContext(Constants.JSON_PROVIDER_JACKSON)
+				.parse(jsonString);
+		for (String jsonPath : jsonPaths) {
+			assertEquals(jsonPath, JsonParseUtil.getStringFromJsonPath(smartContext, jsonPath),
+					JsonParseUtil.getStringFromJsonPath(jacksonContext, jsonPath));
+		}
+		assertEquals("[1,\"2A\",3.5,null,{\"no\":9}]", JsonParseUtil.getStringFromJsonPath(jacksonContext,
+				"$.station.platforms"));
+		assertEquals("1.2345678901234567890", JsonParseUtil.getStringFromJsonPath(jacksonContext, "$.station.gauge"));
+		// Default provider
+		assertSame(JsonParseUtil.getJsonConfiguration(), JsonParseUtil
+				.getParseContext(Constants.JSON_PROVIDER_SMART).parse(jsonString).configuration());
+	}
+
+	/**
+	 * Providers should be found by name, also the ones listed as services
+	 */
+	@Test
+	public void findProviderTest() throws ConfigurationException {
+		assertSame(JsonParseUtil.getParseContext(Constants.JSON_PROVIDER_JACKSON),
+				JsonParseUtil.getParseContext(Constants.JSON_PROVIDER_JACKSON));
+		assertEquals("hwh", JsonParseUtil.getStringFromJsonPath(
+				JsonParseUtil.getParseContext(StrictJacksonBackend.NAME).parse("{\"id\":\"hwh\"}"), "$.id"));
+		try {
+			JsonParseUtil.getParseContext("gson");
+			fail("Unsupported provider should not be found");
+		} catch (ConfigurationException configEx) {
+			assertEquals("Unsupported jsonProvider: gson. Supported values are: smart, jackson, "
+					+ StrictJacksonBackend.NAME, configEx.getMessage());
+		}
+	}
+
+	/**
+	 * Json backend listed in META-INF/services of the test resources
+	 */
+	public static class StrictJacksonBackend implements JsonBackend {
+
+		static final String NAME = "strict-jackson";
+
+		@Override
+		public String getName() {
+			return NAME;
+		}
+
+		@Override
+		public Configuration createConfiguration() {
+			ObjectMapper objectMapper = new ObjectMapper();
+			return Configuration.builder().jsonProvider(new JacksonJsonProvider(objectMapper))
+					.mappingProvider(new JacksonMappingProvider(objectMapper)).build();
+		}
+	}
+
 	private void test1stJson(DocumentContext docContext) throws ConfigurationException {
 		HashMap<String,String> jsonpathExpressionValueMap = new HashMap<String,String>();
 		jsonpathExpressionValueMap.put("$.student.firstname", "Soumya");
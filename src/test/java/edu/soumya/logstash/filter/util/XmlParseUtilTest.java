@@ -11,6 +11,8 @@ import java.nio.file.Paths;
 import java.util.HashMap;
 
 import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPath;
 
 import org.junit.Test;
@@ -39,6 +41,27 @@ public class XmlParseUtilTest {
 		}
 	}
 	
+	/**
+	 * Tests if the characters of the string are read as they are, whatever the
+	 * encoding in the xml declaration is
+	 */
+	@Test
+	public void readsCharactersOfStringTest() throws ConfigurationException, XMLStreamException {
+		String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><station><name>হাওড়া</name></station>";
+		Document document = XmlParseUtil.getDocument(XmlParseUtil.createDocBuilderInstance(), xml);
+		assertEquals("হাওড়া",
+				XmlParseUtil.getStringFromXPath(document, XmlParseUtil.createXPathInstance(), "/station/name"));
+
+		XMLStreamReader streamReader = XmlParseUtil.createXMLStreamReader(xml);
+		try {
+			streamReader.nextTag();
+			streamReader.nextTag();
+			assertEquals("হাওড়া", streamReader.getElementText());
+		} finally {
+			streamReader.close();
+		}
+	}
+	
 	private void test1stXml(Document doc,XPath xPath) throws ConfigurationException {
 		HashMap<String,String> xpathExpressionValueMap = new HashMap<String,String>();
 		xpathExpressionValueMap.put("/class/student/firstname", "Soumya");
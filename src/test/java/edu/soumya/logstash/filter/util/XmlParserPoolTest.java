@@ -0,0 +1,83 @@
+package edu.soumya.logstash.filter.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import edu.soumya.logstash.filter.exceptions.ConfigurationException;
+
+/**
+ * @author Soumya Banerjee
+ *
+ */
+public class XmlParserPoolTest {
+
+	private static final String XML = "<class><student rollno=\"393\"><firstname>Soumya</firstname></student></class>";
+
+	@Test
+	public void testParserIsReused() throws ConfigurationException {
+		XmlParserPool pool = new XmlParserPool(2);
+		assertEquals(0, pool.getIdleCount());
+		Document document = pool.parse(XML);
+		assertEquals("Soumya", document.getElementsByTagName("firstname").item(0).getTextContent());
+		assertEquals(1, pool.getIdleCount());
+		pool.parse(XML);
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	@Test
+	public void testParserIsReusedAfterFailedParse() throws ConfigurationException {
+		XmlParserPool pool = new XmlParserPool(1);
+		try {
+			pool.parse("<class><student>");
+			fail("Malformed xml should not be parsed");
+		} catch (ConfigurationException e) {
+			// expected
+		}
+		assertEquals(1, pool.getIdleCount());
+		assertEquals("393", pool.parse(XML).getDocumentElement().getFirstChild().getAttributes()
+				.getNamedItem("rollno").getNodeValue());
+	}
+
+	@Test
+	public void testPoolingDisabled() throws ConfigurationException {
+		XmlParserPool pool = new XmlParserPool(0);
+		pool.parse(XML);
+		assertEquals(0, pool.getIdleCount());
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void testNegativePoolSize() throws ConfigurationException {
+		new XmlParserPool(-1);
+	}
+
+	@Test
+	public void testConcurrentParse() throws Exception {
+		XmlParserPool pool = new XmlParserPool(2);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> results = new ArrayList<>();
+			for (int count = 0; count < 400; count++) {
+				results.add(executor.submit(() -> {
+					assertEquals("class", pool.parse(XML).getDocumentElement().getNodeName());
+					return null;
+				}));
+			}
+			for (Future<?> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(pool.getIdleCount() <= 2);
+	}
+}